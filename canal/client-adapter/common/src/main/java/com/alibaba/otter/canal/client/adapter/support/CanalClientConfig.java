@@ -28,6 +28,8 @@ public class CanalClientConfig {
     private Integer            retries;
     // 消费超时时间
     private Long               timeout;
+    // tcp模式下预取的批次数, 大于0时拉取/转换下一批数据与适配器写入并行
+    private Integer            prefetchSize  = 0;
     // 模式 tcp kafka rocketMQ
     private String             mode          = "tcp";
     // aliyun ak/sk
@@ -108,6 +110,14 @@ public class CanalClientConfig {
         this.timeout = timeout;
     }
 
+    public Integer getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    public void setPrefetchSize(Integer prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
     public String getMode() {
         return mode;
     }
@@ -167,4 +167,41 @@ public class JdbcTypeUtil {
             return value;
         }
     }
+
+    /**
+     * 转换Column.typedValue解码后的值，结果类型和typeConvert保持一致
+     */
+    public static Object typedConvert(String tableName, String columnName, Object value, int sqlType,
+                                      String mysqlType) {
+        if (!(value instanceof Number) || value instanceof BigDecimal) {
+            // decimal/float/double/binary直接使用
+            return value;
+        }
+
+        long number = ((Number) value).longValue();
+        switch (sqlType) {
+            case Types.INTEGER:
+                return (int) number;
+            case Types.SMALLINT:
+                return (short) number;
+            case Types.BIT:
+            case Types.TINYINT:
+                if (number < Byte.MIN_VALUE || number > Byte.MAX_VALUE) {
+                    logger.error("table: {} column: {}, failed convert type {} to {}",
+                        tableName,
+                        columnName,
+                        value,
+                        sqlType);
+                    return String.valueOf(number);
+                }
+                return (byte) number;
+            case Types.BIGINT:
+                if (mysqlType.startsWith("bigint") && mysqlType.endsWith("unsigned")) {
+                    return BigInteger.valueOf(number);
+                }
+                return number;
+            default:
+                return value;
+        }
+    }
 }
@@ -6,6 +6,7 @@ import java.util.stream.Collectors;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.TypedValueUtil;
 
 /**
  * Message对象解析工具类
@@ -88,12 +89,7 @@ public class MessageUtil {
                         if (column.getIsNull()) {
                             row.put(column.getName(), null);
                         } else {
-                            row.put(column.getName(),
-                                JdbcTypeUtil.typeConvert(dml.getTable(),
-                                    column.getName(),
-                                    column.getValue(),
-                                    column.getSqlType(),
-                                    column.getMysqlType()));
+                            row.put(column.getName(), convertColumn(dml.getTable(), column));
                         }
                         // 获取update为true的字段
                         if (column.getUpdated()) {
@@ -113,12 +109,7 @@ public class MessageUtil {
                                     rowOld.put(column.getName(), null);
                                 } else {
 
-                                    rowOld.put(column.getName(),
-                                        JdbcTypeUtil.typeConvert(dml.getTable(),
-                                            column.getName(),
-                                            column.getValue(),
-                                            column.getSqlType(),
-                                            column.getMysqlType()));
+                                    rowOld.put(column.getName(), convertColumn(dml.getTable(), column));
 
                                 }
                             }
@@ -160,6 +151,22 @@ public class MessageUtil {
         return dmls;
     }
 
+    private static Object convertColumn(String table, CanalEntry.Column column) {
+        if (TypedValueUtil.isTyped(column)) {
+            // 二进制编码的字段值，直接解码，不需要再解析文本
+            return JdbcTypeUtil.typedConvert(table,
+                column.getName(),
+                TypedValueUtil.getObject(column),
+                column.getSqlType(),
+                column.getMysqlType());
+        }
+        return JdbcTypeUtil.typeConvert(table,
+            column.getName(),
+            column.getValue(),
+            column.getSqlType(),
+            column.getMysqlType());
+    }
+
     public static List<Dml> flatMessage2Dml(String destination, String groupId, List<FlatMessage> flatMessages) {
         List<Dml> dmls = new ArrayList<Dml>(flatMessages.size());
         for (FlatMessage flatMessage : flatMessages) {
@@ -101,6 +101,7 @@ public class ESSyncConfig implements AdapterConfig {
         private String                       etlCondition;
         private boolean                      syncByTimestamp = false;                // 是否按时间戳定时同步
         private Long                         syncInterval;                           // 同步时间间隔
+        private boolean                      joinBatch       = false;                // 关联从表变更时按批次合并反查sql
 
         private SchemaItem                   schemaItem;                             // sql解析结果模型
 
@@ -200,6 +201,14 @@ public class ESSyncConfig implements AdapterConfig {
             this.syncInterval = syncInterval;
         }
 
+        public boolean isJoinBatch() {
+            return joinBatch;
+        }
+
+        public void setJoinBatch(boolean joinBatch) {
+            this.joinBatch = joinBatch;
+        }
+
         public boolean isSyncByTimestamp() {
             return syncByTimestamp;
         }
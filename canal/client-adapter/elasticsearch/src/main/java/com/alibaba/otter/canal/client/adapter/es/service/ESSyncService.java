@@ -1,5 +1,7 @@
 package com.alibaba.otter.canal.client.adapter.es.service;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
 
 import javax.sql.DataSource;
@@ -29,9 +31,11 @@ import com.alibaba.otter.canal.client.adapter.support.Util;
  */
 public class ESSyncService {
 
-    private static Logger logger = LoggerFactory.getLogger(ESSyncService.class);
+    private static Logger    logger        = LoggerFactory.getLogger(ESSyncService.class);
 
-    private ESTemplate    esTemplate;
+    private static final int MAX_JOIN_KEYS = 500;
+
+    private ESTemplate       esTemplate;
 
     public ESSyncService(ESTemplate esTemplate){
         this.esTemplate = esTemplate;
@@ -123,6 +127,7 @@ public class ESSyncService {
             return;
         }
         SchemaItem schemaItem = config.getEsMapping().getSchemaItem();
+        Map<TableItem, JoinBatch> joinBatches = config.getEsMapping().isJoinBatch() ? new LinkedHashMap<>() : null;
         for (Map<String, Object> data : dataList) {
             if (data == null || data.isEmpty()) {
                 continue;
@@ -170,15 +175,16 @@ public class ESSyncService {
                             joinTableSimpleFieldOperation(config, dml, data, tableItem, esFieldData);
                         } else {
                             // ------关联子表简单字段插入------
-                            subTableSimpleFieldOperation(config, dml, data, null, tableItem);
+                            joinOperation(config, dml, data, null, tableItem, false, joinBatches);
                         }
                     } else {
                         // ------关联子表复杂字段插入 执行全sql更新es------
-                        wholeSqlOperation(config, dml, data, null, tableItem);
+                        joinOperation(config, dml, data, null, tableItem, true, joinBatches);
                     }
                 }
             }
         }
+        joinBatchOperation(config, dml, joinBatches);
     }
 
     /**
@@ -194,6 +200,7 @@ public class ESSyncService {
             return;
         }
         SchemaItem schemaItem = config.getEsMapping().getSchemaItem();
+        Map<TableItem, JoinBatch> joinBatches = config.getEsMapping().isJoinBatch() ? new LinkedHashMap<>() : null;
         int i = 0;
         for (Map<String, Object> data : dataList) {
             Map<String, Object> old = oldList.get(i);
@@ -299,17 +306,18 @@ public class ESSyncService {
                             joinTableSimpleFieldOperation(config, dml, data, tableItem, esFieldData);
                         } else {
                             // ------关联子表简单字段更新------
-                            subTableSimpleFieldOperation(config, dml, data, old, tableItem);
+                            joinOperation(config, dml, data, old, tableItem, false, joinBatches);
                         }
                     } else {
                         // ------关联子表复杂字段更新 执行全sql更新es------
-                        wholeSqlOperation(config, dml, data, old, tableItem);
+                        joinOperation(config, dml, data, old, tableItem, true, joinBatches);
                     }
                 }
             }
 
             i++;
         }
+        joinBatchOperation(config, dml, joinBatches);
     }
 
     /**
@@ -324,6 +332,7 @@ public class ESSyncService {
             return;
         }
         SchemaItem schemaItem = config.getEsMapping().getSchemaItem();
+        Map<TableItem, JoinBatch> joinBatches = config.getEsMapping().isJoinBatch() ? new LinkedHashMap<>() : null;
 
         for (Map<String, Object> data : dataList) {
             if (data == null || data.isEmpty()) {
@@ -410,14 +419,15 @@ public class ESSyncService {
                         joinTableSimpleFieldOperation(config, dml, data, tableItem, esFieldData);
                     } else {
                         // ------关联子表简单字段更新------
-                        subTableSimpleFieldOperation(config, dml, data, null, tableItem);
+                        joinOperation(config, dml, data, null, tableItem, false, joinBatches);
                     }
                 } else {
                     // ------关联子表复杂字段更新 执行全sql更新es------
-                    wholeSqlOperation(config, dml, data, null, tableItem);
+                    joinOperation(config, dml, data, null, tableItem, true, joinBatches);
                 }
             }
         }
+        joinBatchOperation(config, dml, joinBatches);
     }
 
     /**
@@ -602,51 +612,8 @@ public class ESSyncService {
         Util.sqlRS(ds, sql.toString(), rs -> {
             try {
                 while (rs.next()) {
-                    Map<String, Object> esFieldData = new LinkedHashMap<>();
-
-                    for (FieldItem fieldItem : tableItem.getRelationSelectFieldItems()) {
-                        if (old != null) {
-                            out: for (FieldItem fieldItem1 : tableItem.getSubQueryFields()) {
-                                for (ColumnItem columnItem0 : fieldItem.getColumnItems()) {
-                                    if (fieldItem1.getFieldName().equals(columnItem0.getColumnName()))
-                                        for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
-                                            if (old.containsKey(columnItem.getColumnName())) {
-                                                Object val = esTemplate.getValFromRS(mapping,
-                                                    rs,
-                                                    fieldItem.getFieldName(),
-                                                    fieldItem.getColumn().getColumnName());
-                                                esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
-                                                break out;
-                                            }
-                                        }
-                                }
-                            }
-                        } else {
-                            Object val = esTemplate.getValFromRS(mapping,
-                                rs,
-                                fieldItem.getFieldName(),
-                                fieldItem.getColumn().getColumnName());
-                            esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
-                        }
-                    }
-
-                    Map<String, Object> paramsTmp = new LinkedHashMap<>();
-                    for (Map.Entry<FieldItem, List<FieldItem>> entry : tableItem.getRelationTableFields().entrySet()) {
-                        for (FieldItem fieldItem : entry.getValue()) {
-                            if (fieldItem.getColumnItems().size() == 1) {
-                                Object value = esTemplate.getValFromRS(mapping,
-                                    rs,
-                                    fieldItem.getFieldName(),
-                                    entry.getKey().getColumn().getColumnName());
-                                String fieldName = fieldItem.getFieldName();
-                                // 判断是否是主键
-                                if (fieldName.equals(mapping.get_id())) {
-                                    fieldName = "_id";
-                                }
-                                paramsTmp.put(fieldName, value);
-                            }
-                        }
-                    }
+                    Map<String, Object> esFieldData = subTableFieldData(mapping, rs, old, tableItem);
+                    Map<String, Object> paramsTmp = subTableParams(mapping, rs, tableItem);
 
                     if (logger.isDebugEnabled()) {
                         logger.trace("Join table update es index by query sql, destination:{}, table: {}, index: {}",
@@ -706,60 +673,8 @@ public class ESSyncService {
         Util.sqlRS(ds, sql.toString(), rs -> {
             try {
                 while (rs.next()) {
-                    Map<String, Object> esFieldData = new LinkedHashMap<>();
-                    for (FieldItem fieldItem : tableItem.getRelationSelectFieldItems()) {
-                        if (old != null) {
-                            // 从表子查询
-                            out: for (FieldItem fieldItem1 : tableItem.getSubQueryFields()) {
-                                for (ColumnItem columnItem0 : fieldItem.getColumnItems()) {
-                                    if (fieldItem1.getFieldName().equals(columnItem0.getColumnName()))
-                                        for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
-                                            if (old.containsKey(columnItem.getColumnName())) {
-                                                Object val = esTemplate.getValFromRS(mapping,
-                                                    rs,
-                                                    fieldItem.getFieldName(),
-                                                    fieldItem.getFieldName());
-                                                esFieldData.put(fieldItem.getFieldName(), val);
-                                                break out;
-                                            }
-                                        }
-                                }
-                            }
-                            // 从表非子查询
-                            for (FieldItem fieldItem1 : tableItem.getRelationSelectFieldItems()) {
-                                if (fieldItem1.equals(fieldItem)) {
-                                    for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
-                                        if (old.containsKey(columnItem.getColumnName())) {
-                                            Object val = esTemplate.getValFromRS(mapping,
-                                                rs,
-                                                fieldItem.getFieldName(),
-                                                fieldItem.getFieldName());
-                                            esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
-                        } else {
-                            Object val = esTemplate
-                                .getValFromRS(mapping, rs, fieldItem.getFieldName(), fieldItem.getFieldName());
-                            esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
-                        }
-                    }
-
-                    Map<String, Object> paramsTmp = new LinkedHashMap<>();
-                    for (Map.Entry<FieldItem, List<FieldItem>> entry : tableItem.getRelationTableFields().entrySet()) {
-                        for (FieldItem fieldItem : entry.getValue()) {
-                            Object value = esTemplate
-                                .getValFromRS(mapping, rs, fieldItem.getFieldName(), fieldItem.getFieldName());
-                            String fieldName = fieldItem.getFieldName();
-                            // 判断是否是主键
-                            if (fieldName.equals(mapping.get_id())) {
-                                fieldName = "_id";
-                            }
-                            paramsTmp.put(fieldName, value);
-                        }
-                    }
+                    Map<String, Object> esFieldData = wholeSqlFieldData(mapping, rs, old, tableItem);
+                    Map<String, Object> paramsTmp = wholeSqlParams(mapping, rs, tableItem);
 
                     if (logger.isDebugEnabled()) {
                         logger.trace(
@@ -777,6 +692,254 @@ public class ESSyncService {
         });
     }
 
+    /**
+     * 关联子查询的结果行转换为es的data
+     */
+    private Map<String, Object> subTableFieldData(ESMapping mapping, ResultSet rs, Map<String, Object> old,
+                                                  TableItem tableItem) throws SQLException {
+        Map<String, Object> esFieldData = new LinkedHashMap<>();
+        for (FieldItem fieldItem : tableItem.getRelationSelectFieldItems()) {
+            if (old != null) {
+                out: for (FieldItem fieldItem1 : tableItem.getSubQueryFields()) {
+                    for (ColumnItem columnItem0 : fieldItem.getColumnItems()) {
+                        if (fieldItem1.getFieldName().equals(columnItem0.getColumnName()))
+                            for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
+                                if (old.containsKey(columnItem.getColumnName())) {
+                                    Object val = esTemplate.getValFromRS(mapping,
+                                        rs,
+                                        fieldItem.getFieldName(),
+                                        fieldItem.getColumn().getColumnName());
+                                    esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
+                                    break out;
+                                }
+                            }
+                    }
+                }
+            } else {
+                Object val = esTemplate.getValFromRS(mapping,
+                    rs,
+                    fieldItem.getFieldName(),
+                    fieldItem.getColumn().getColumnName());
+                esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
+            }
+        }
+        return esFieldData;
+    }
+
+    /**
+     * 关联子查询的结果行转换为update by query的查询条件
+     */
+    private Map<String, Object> subTableParams(ESMapping mapping, ResultSet rs,
+                                               TableItem tableItem) throws SQLException {
+        Map<String, Object> paramsTmp = new LinkedHashMap<>();
+        for (Map.Entry<FieldItem, List<FieldItem>> entry : tableItem.getRelationTableFields().entrySet()) {
+            for (FieldItem fieldItem : entry.getValue()) {
+                if (fieldItem.getColumnItems().size() == 1) {
+                    Object value = esTemplate.getValFromRS(mapping,
+                        rs,
+                        fieldItem.getFieldName(),
+                        entry.getKey().getColumn().getColumnName());
+                    String fieldName = fieldItem.getFieldName();
+                    // 判断是否是主键
+                    if (fieldName.equals(mapping.get_id())) {
+                        fieldName = "_id";
+                    }
+                    paramsTmp.put(fieldName, value);
+                }
+            }
+        }
+        return paramsTmp;
+    }
+
+    /**
+     * 全sql的结果行转换为es的data
+     */
+    private Map<String, Object> wholeSqlFieldData(ESMapping mapping, ResultSet rs, Map<String, Object> old,
+                                                  TableItem tableItem) throws SQLException {
+        Map<String, Object> esFieldData = new LinkedHashMap<>();
+        for (FieldItem fieldItem : tableItem.getRelationSelectFieldItems()) {
+            if (old != null) {
+                // 从表子查询
+                out: for (FieldItem fieldItem1 : tableItem.getSubQueryFields()) {
+                    for (ColumnItem columnItem0 : fieldItem.getColumnItems()) {
+                        if (fieldItem1.getFieldName().equals(columnItem0.getColumnName()))
+                            for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
+                                if (old.containsKey(columnItem.getColumnName())) {
+                                    Object val = esTemplate.getValFromRS(mapping,
+                                        rs,
+                                        fieldItem.getFieldName(),
+                                        fieldItem.getFieldName());
+                                    esFieldData.put(fieldItem.getFieldName(), val);
+                                    break out;
+                                }
+                            }
+                    }
+                }
+                // 从表非子查询
+                for (FieldItem fieldItem1 : tableItem.getRelationSelectFieldItems()) {
+                    if (fieldItem1.equals(fieldItem)) {
+                        for (ColumnItem columnItem : fieldItem1.getColumnItems()) {
+                            if (old.containsKey(columnItem.getColumnName())) {
+                                Object val = esTemplate.getValFromRS(mapping,
+                                    rs,
+                                    fieldItem.getFieldName(),
+                                    fieldItem.getFieldName());
+                                esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                Object val = esTemplate
+                    .getValFromRS(mapping, rs, fieldItem.getFieldName(), fieldItem.getFieldName());
+                esFieldData.put(Util.cleanColumn(fieldItem.getFieldName()), val);
+            }
+        }
+        return esFieldData;
+    }
+
+    /**
+     * 全sql的结果行转换为update by query的查询条件
+     */
+    private Map<String, Object> wholeSqlParams(ESMapping mapping, ResultSet rs,
+                                               TableItem tableItem) throws SQLException {
+        Map<String, Object> paramsTmp = new LinkedHashMap<>();
+        for (Map.Entry<FieldItem, List<FieldItem>> entry : tableItem.getRelationTableFields().entrySet()) {
+            for (FieldItem fieldItem : entry.getValue()) {
+                Object value = esTemplate
+                    .getValFromRS(mapping, rs, fieldItem.getFieldName(), fieldItem.getFieldName());
+                String fieldName = fieldItem.getFieldName();
+                // 判断是否是主键
+                if (fieldName.equals(mapping.get_id())) {
+                    fieldName = "_id";
+                }
+                paramsTmp.put(fieldName, value);
+            }
+        }
+        return paramsTmp;
+    }
+
+    /**
+     * 关联从表操作, 开启joinBatch时先收集到批次中, 由{@link #joinBatchOperation}合并执行
+     */
+    private void joinOperation(ESSyncConfig config, Dml dml, Map<String, Object> data, Map<String, Object> old,
+                               TableItem tableItem, boolean wholeSql, Map<TableItem, JoinBatch> joinBatches) {
+        if (joinBatches != null) {
+            joinBatches.computeIfAbsent(tableItem, k -> new JoinBatch(wholeSql)).add(data, old);
+        } else if (wholeSql) {
+            wholeSqlOperation(config, dml, data, old, tableItem);
+        } else {
+            subTableSimpleFieldOperation(config, dml, data, old, tableItem);
+        }
+    }
+
+    /**
+     * 按从表合并执行批次中的关联反查, 每个批次按关联值拼接in条件只查询一次
+     */
+    private void joinBatchOperation(ESSyncConfig config, Dml dml, Map<TableItem, JoinBatch> joinBatches) {
+        if (joinBatches == null) {
+            return;
+        }
+        ESMapping mapping = config.getEsMapping();
+        DataSource ds = DatasourceConfig.DATA_SOURCES.get(config.getDataSourceKey());
+        joinBatches.forEach((tableItem, joinBatch) -> {
+            for (JoinCondition joinCondition : joinConditions(mapping, tableItem, joinBatch.datas)) {
+                String condition = joinCondition.sql;
+                String sql;
+                if (joinBatch.wholeSql) {
+                    //防止最后出现groupby 导致sql解析异常
+                    String[] sqlSplit = mapping.getSql().split("GROUP\\ BY(?!(.*)ON)");
+                    sql = sqlSplit[0] + " WHERE (" + condition + ") ";
+                    if (sqlSplit.length > 1) {
+                        sql += "GROUP BY " + sqlSplit[1];
+                    }
+                } else {
+                    sql = "SELECT * FROM (" + tableItem.getSubQuerySql() + ") " + tableItem.getAlias() + " WHERE "
+                          + condition;
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Join table batch update es index by query sql, destination:{}, table: {}, index: {}, sql: {}",
+                        config.getDestination(),
+                        dml.getTable(),
+                        mapping.get_index(),
+                        sql.replace("\n", " "));
+                }
+
+                Map<Map<String, Object>, Map<String, Object>> updates = new LinkedHashMap<>();
+                Util.sqlRS(ds, sql, joinCondition.values, rs -> {
+                    try {
+                        while (rs.next()) {
+                            if (joinBatch.wholeSql) {
+                                updates.put(wholeSqlParams(mapping, rs, tableItem),
+                                    wholeSqlFieldData(mapping, rs, joinBatch.old, tableItem));
+                            } else {
+                                updates.put(subTableParams(mapping, rs, tableItem),
+                                    subTableFieldData(mapping, rs, joinBatch.old, tableItem));
+                            }
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    return 0;
+                });
+                esTemplate.updateByQuery(config, updates);
+            }
+        });
+    }
+
+    /**
+     * 按关联字段值去重后拼接查询条件, 单个关联字段使用in, 多个关联字段使用or, 每个条件最多包含MAX_JOIN_KEYS个值, 值使用占位符绑定
+     */
+    private List<JoinCondition> joinConditions(ESMapping mapping, TableItem tableItem, List<Map<String, Object>> datas) {
+        List<FieldItem> fkFieldItems = new ArrayList<>(tableItem.getRelationTableFields().keySet());
+        Set<List<Object>> keySet = new LinkedHashSet<>();
+        for (Map<String, Object> data : datas) {
+            List<Object> key = new ArrayList<>(fkFieldItems.size());
+            for (FieldItem fkFieldItem : fkFieldItems) {
+                key.add(esTemplate.getValFromData(mapping,
+                    data,
+                    fkFieldItem.getFieldName(),
+                    fkFieldItem.getColumn().getColumnName()));
+            }
+            keySet.add(key);
+        }
+
+        List<List<Object>> keys = new ArrayList<>(keySet);
+        List<JoinCondition> conditions = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += MAX_JOIN_KEYS) {
+            List<List<Object>> subKeys = keys.subList(from, Math.min(from + MAX_JOIN_KEYS, keys.size()));
+            StringBuilder sql = new StringBuilder();
+            List<Object> values = new ArrayList<>();
+            if (fkFieldItems.size() == 1) {
+                List<Object> inValues = new ArrayList<>(subKeys.size());
+                subKeys.forEach(key -> inValues.add(key.get(0)));
+                ESSyncUtil.appendInCondition(sql,
+                    inValues,
+                    tableItem.getAlias(),
+                    fkFieldItems.get(0).getColumn().getColumnName(),
+                    values);
+            } else {
+                for (List<Object> key : subKeys) {
+                    sql.append("(");
+                    for (int i = 0; i < fkFieldItems.size(); i++) {
+                        ESSyncUtil.appendCondition(sql,
+                            key.get(i),
+                            tableItem.getAlias(),
+                            fkFieldItems.get(i).getColumn().getColumnName(),
+                            values);
+                    }
+                    int len = sql.length();
+                    sql.delete(len - 6, len).append(") OR ");
+                }
+                int len = sql.length();
+                sql.delete(len - 4, len);
+            }
+            conditions.add(new JoinCondition(sql.toString(), values));
+        }
+        return conditions;
+    }
+
     /**
      * 单表简单字段update
      *
@@ -850,5 +1013,44 @@ public class ESSyncService {
      */
     public void commit() {
         esTemplate.commit();
+        esTemplate.clearJoinCache();
+    }
+
+    /**
+     * 关联反查的查询条件及其绑定参数
+     */
+    private static class JoinCondition {
+
+        private final String       sql;
+        private final List<Object> values;
+
+        public JoinCondition(String sql, List<Object> values){
+            this.sql = sql;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 一个dml中同一个从表需要关联反查的行
+     */
+    private static class JoinBatch {
+
+        private final boolean                   wholeSql;
+        private final List<Map<String, Object>> datas = new ArrayList<>();
+        private Map<String, Object>             old;                      // 所有行old的并集, insert/delete时为null
+
+        public JoinBatch(boolean wholeSql){
+            this.wholeSql = wholeSql;
+        }
+
+        public void add(Map<String, Object> data, Map<String, Object> old) {
+            datas.add(data);
+            if (old != null) {
+                if (this.old == null) {
+                    this.old = new LinkedHashMap<>();
+                }
+                this.old.putAll(old);
+            }
+        }
     }
 }
@@ -7,9 +7,11 @@ import java.sql.Blob;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -299,6 +301,51 @@ public class ESSyncUtil {
         return sql + " WHERE " + condition + " ";
     }
 
+    /**
+     * 拼接in查询条件, 值使用占位符绑定
+     *
+     * @param sql sql
+     * @param values in的值
+     * @param owner 表别名
+     * @param columnName 字段名
+     * @param params 绑定参数, 按占位符顺序追加
+     */
+    public static void appendInCondition(StringBuilder sql, Collection<Object> values, String owner,
+                                         String columnName, List<Object> params) {
+        sql.append(owner).append(".").append(columnName).append(" IN (");
+        for (Object value : values) {
+            sql.append("?,");
+            params.add(value);
+        }
+        sql.setCharAt(sql.length() - 1, ')');
+    }
+
+    /**
+     * 拼接等值查询条件, 值使用占位符绑定
+     *
+     * @param sql sql
+     * @param value 值
+     * @param owner 表别名
+     * @param columnName 字段名
+     * @param params 绑定参数, 按占位符顺序追加
+     */
+    public static void appendCondition(StringBuilder sql, Object value, String owner, String columnName,
+                                       List<Object> params) {
+        sql.append(owner).append(".").append(columnName).append("=?  AND ");
+        params.add(value);
+    }
+
+    /**
+     * 关联条件反查主表id缓存的key, 由索引名和条件字段值组成, 按值比较
+     *
+     * @param index 索引名
+     * @param params 条件字段 -> 值
+     * @return 缓存key
+     */
+    public static List<Object> joinCacheKey(String index, Map<String, Object> params) {
+        return Arrays.asList(index, new HashMap<>(params));
+    }
+
     public static void appendCondition(StringBuilder sql, Object value, String owner, String columnName) {
         if (value instanceof String) {
             sql.append(owner).append(".").append(columnName).append("='").append(value).append("'  AND ");
@@ -41,10 +41,27 @@ public class ESTemplate {
 
     private static final int MAX_BATCH_SIZE = 1000;
 
+    private static final int MAX_JOIN_CACHE_SIZE = 10000;
+
+    private static final int MAX_IN_SIZE = 500;
+
     private ESConnection esConnection;
 
     private ESBulkRequest esBulkRequest;
 
+    // 关联条件反查主表id的结果缓存, 只在一个批次内有效, 只有开启joinBatch时使用
+    private Map<List<Object>, List<Object>> joinIdCache = new LinkedHashMap<List<Object>, List<Object>>(16,
+        0.75f,
+        true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, List<Object>> eldest) {
+            return size() > MAX_JOIN_CACHE_SIZE;
+        }
+    };
+
     public ESTemplate(ESConnection esConnection) {
         this.esConnection = esConnection;
         this.esBulkRequest = this.esConnection.new ESBulkRequest();
@@ -128,8 +145,78 @@ public class ESTemplate {
             return;
         }
         ESMapping mapping = config.getEsMapping();
-        BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
-        paramsTmp.forEach((fieldName, value) -> queryBuilder.must(QueryBuilders.termsQuery(fieldName, value)));
+        List<Object> idVals = getIdValsByQuery(config, paramsTmp);
+        for (Object idVal : idVals) {
+            append4Update(mapping, idVal, esFieldData);
+            commitBulk();
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Update ES by query affected {} records", idVals.size());
+        }
+    }
+
+    /**
+     * 批量update by query, 只有一个查询条件字段时合并为in查询
+     *
+     * @param config  配置对象
+     * @param updates 查询条件 -> 数据Map
+     */
+    public void updateByQuery(ESSyncConfig config, Map<Map<String, Object>, Map<String, Object>> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        ESMapping mapping = config.getEsMapping();
+
+        // 未命中缓存并且可以合并查询的条件, 按照条件字段分组, in查询的结果只能通过缓存传递
+        Map<String, Map<String, Map<String, Object>>> pendings = new LinkedHashMap<>();
+        for (Map<String, Object> paramsTmp : updates.keySet()) {
+            if (!mapping.isJoinBatch() || paramsTmp.size() != 1
+                || joinIdCache.containsKey(joinCacheKey(mapping, paramsTmp))) {
+                continue;
+            }
+            Map.Entry<String, Object> param = paramsTmp.entrySet().iterator().next();
+            Object value = param.getValue();
+            if (value == null || value instanceof Collection || value.getClass().isArray()) {
+                continue;
+            }
+            pendings.computeIfAbsent(param.getKey(), k -> new LinkedHashMap<>())
+                .put(String.valueOf(value), paramsTmp);
+        }
+        pendings.forEach((fieldName, params) -> queryIdValsByIn(config, fieldName, params));
+
+        int count = 0;
+        for (Map.Entry<Map<String, Object>, Map<String, Object>> entry : updates.entrySet()) {
+            if (entry.getKey().isEmpty()) {
+                continue;
+            }
+            for (Object idVal : getIdValsByQuery(config, entry.getKey())) {
+                append4Update(mapping, idVal, entry.getValue());
+                commitBulk();
+                count++;
+            }
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Batch update ES by query affected {} records", count);
+        }
+    }
+
+    /**
+     * 清空关联条件反查的缓存
+     */
+    public void clearJoinCache() {
+        joinIdCache.clear();
+    }
+
+    private List<Object> getIdValsByQuery(ESSyncConfig config, Map<String, Object> paramsTmp) {
+        ESMapping mapping = config.getEsMapping();
+        // 未开启joinBatch时每条变更直接反查, 不使用缓存
+        List<Object> cacheKey = mapping.isJoinBatch() ? joinCacheKey(mapping, paramsTmp) : null;
+        if (cacheKey != null) {
+            List<Object> idVals = joinIdCache.get(cacheKey);
+            if (idVals != null) {
+                return idVals;
+            }
+        }
 
         // 查询sql批量更新
         DataSource ds = DatasourceConfig.DATA_SOURCES.get(config.getDataSourceKey());
@@ -142,23 +229,67 @@ public class ESTemplate {
         // TODO 直接外部包裹sql会导致全表扫描性能低, 待优化拼接内部where条件
         int len = sql.length();
         sql.delete(len - 4, len);
-        Integer syncCount = (Integer) Util.sqlRS(ds, sql.toString(), values, rs -> {
-            int count = 0;
+        List<Object> result = new ArrayList<>();
+        Util.sqlRS(ds, sql.toString(), values, rs -> {
             try {
                 while (rs.next()) {
-                    Object idVal = getIdValFromRS(mapping, rs);
-                    append4Update(mapping, idVal, esFieldData);
-                    commitBulk();
-                    count++;
+                    result.add(getIdValFromRS(mapping, rs));
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
-            return count;
+            return result.size();
         });
-        if (logger.isTraceEnabled()) {
-            logger.trace("Update ES by query affected {} records", syncCount);
+        if (cacheKey != null) {
+            joinIdCache.put(cacheKey, result);
         }
+        return result;
+    }
+
+    /**
+     * 按单个条件字段合并为in查询, 结果写入缓存
+     */
+    private void queryIdValsByIn(ESSyncConfig config, String fieldName, Map<String, Map<String, Object>> params) {
+        ESMapping mapping = config.getEsMapping();
+        DataSource ds = DatasourceConfig.DATA_SOURCES.get(config.getDataSourceKey());
+        String columnName = Util.cleanColumn(fieldName);
+        List<String> keys = new ArrayList<>(params.keySet());
+        for (int from = 0; from < keys.size(); from += MAX_IN_SIZE) {
+            List<String> subKeys = keys.subList(from, Math.min(from + MAX_IN_SIZE, keys.size()));
+            Map<String, List<Object>> result = new HashMap<>();
+            List<Object> values = new ArrayList<>();
+            StringBuilder sql = new StringBuilder("SELECT * FROM (" + mapping.getSql() + ") _v WHERE _v.");
+            sql.append(fieldName).append(" IN (");
+            for (String key : subKeys) {
+                sql.append("?,");
+                values.add(params.get(key).get(fieldName));
+                result.put(key, new ArrayList<>());
+            }
+            sql.setCharAt(sql.length() - 1, ')');
+            Util.sqlRS(ds, sql.toString(), values, rs -> {
+                try {
+                    while (rs.next()) {
+                        List<Object> idVals = result.get(String.valueOf(rs.getObject(columnName)));
+                        if (idVals != null) {
+                            idVals.add(getIdValFromRS(mapping, rs));
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return 0;
+            });
+            // 没有匹配到的条件不写缓存, 之后按单条查询兜底, 避免类型转换导致的key不一致丢失更新
+            result.forEach((key, idVals) -> {
+                if (!idVals.isEmpty()) {
+                    joinIdCache.put(joinCacheKey(mapping, params.get(key)), idVals);
+                }
+            });
+        }
+    }
+
+    private static List<Object> joinCacheKey(ESMapping mapping, Map<String, Object> paramsTmp) {
+        return ESSyncUtil.joinCacheKey(mapping.get_index(), paramsTmp);
     }
 
     /**
@@ -0,0 +1,67 @@
+package com.alibaba.otter.canal.client.adapter.es.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.es.support.ESSyncUtil;
+
+public class ESSyncUtilTest {
+
+    @Test
+    public void appendInConditionTest() {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        ESSyncUtil.appendInCondition(sql, Arrays.asList("1", "x') OR ('1'='1", 3L), "c", "user_id", params);
+
+        // 值不拼接到sql中, 按顺序作为绑定参数
+        Assert.assertEquals("c.user_id IN (?,?,?)", sql.toString());
+        Assert.assertEquals(Arrays.asList("1", "x') OR ('1'='1", 3L), params);
+    }
+
+    @Test
+    public void appendConditionTest() {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        ESSyncUtil.appendCondition(sql, "a'b", "c", "user_id", params);
+        ESSyncUtil.appendCondition(sql, 2, "c", "label_id", params);
+
+        Assert.assertEquals("c.user_id=?  AND c.label_id=?  AND ", sql.toString());
+        Assert.assertEquals(Arrays.asList("a'b", 2), params);
+    }
+
+    @Test
+    public void joinCacheKeyTest() {
+        Map<String, Object> params1 = new LinkedHashMap<>();
+        params1.put("a", "1, b=2");
+        Map<String, Object> params2 = new LinkedHashMap<>();
+        params2.put("a", "1");
+        params2.put("b", "2");
+        // toString相同的条件不会命中同一个缓存
+        Assert.assertEquals(params1.toString(), params2.toString());
+        Assert.assertNotEquals(ESSyncUtil.joinCacheKey("user", params1), ESSyncUtil.joinCacheKey("user", params2));
+
+        // 类型不同的值区分开
+        Map<String, Object> params3 = new LinkedHashMap<>();
+        params3.put("a", 1L);
+        Map<String, Object> params4 = new LinkedHashMap<>();
+        params4.put("a", "1");
+        Assert.assertNotEquals(ESSyncUtil.joinCacheKey("user", params3), ESSyncUtil.joinCacheKey("user", params4));
+
+        // 索引不同的条件区分开
+        Assert.assertNotEquals(ESSyncUtil.joinCacheKey("user", params3), ESSyncUtil.joinCacheKey("role", params3));
+
+        // 字段顺序不同的相同条件命中同一个缓存
+        Map<String, Object> params5 = new LinkedHashMap<>();
+        params5.put("b", "2");
+        params5.put("a", "1");
+        Assert.assertEquals(ESSyncUtil.joinCacheKey("user", params2), ESSyncUtil.joinCacheKey("user", params5));
+        Assert.assertEquals(ESSyncUtil.joinCacheKey("user", params2).hashCode(),
+            ESSyncUtil.joinCacheKey("user", params5).hashCode());
+    }
+}
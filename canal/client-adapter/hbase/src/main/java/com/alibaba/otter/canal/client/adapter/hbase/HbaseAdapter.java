@@ -94,6 +94,12 @@ public class HbaseAdapter implements OuterAdapter {
             Configuration hbaseConfig = HBaseConfiguration.create();
             properties.forEach(hbaseConfig::set);
             hbaseTemplate = new HbaseTemplate(hbaseConfig);
+            // 异步模式下通过BufferedMutator批量写入，缓冲区大小由hbase.client.write.buffer控制
+            hbaseTemplate.setAsync("true".equalsIgnoreCase(properties.get("async")));
+            String flushInterval = properties.get("flushInterval");
+            if (StringUtils.isNotEmpty(flushInterval)) {
+                hbaseTemplate.setFlushInterval(Long.parseLong(flushInterval));
+            }
             hbaseSyncService = new HbaseSyncService(hbaseTemplate);
 
             configMonitor = new HbaseConfigMonitor();
@@ -111,6 +117,8 @@ public class HbaseAdapter implements OuterAdapter {
         for (Dml dml : dmls) {
             sync(dml);
         }
+        // 批次结束前提交所有缓冲的写入，保证ack之前数据已经落地
+        hbaseTemplate.flush();
     }
 
     private void sync(Dml dml) {
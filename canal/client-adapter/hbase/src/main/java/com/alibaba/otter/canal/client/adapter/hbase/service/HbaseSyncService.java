@@ -84,14 +84,14 @@ public class HbaseSyncService {
             rows.add(hRow);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
                 rows.clear();
                 complete = true;
             }
             i++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
         }
 
     }
@@ -245,7 +245,7 @@ public class HbaseSyncService {
             rows.add(hRow);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
                 rows.clear();
                 complete = true;
             }
@@ -253,7 +253,7 @@ public class HbaseSyncService {
             index++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
         }
     }
 
@@ -292,14 +292,14 @@ public class HbaseSyncService {
             rowKeys.add(rowKeyBytes);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rowKeys.isEmpty()) {
-                hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
+                hbaseTemplate.mutateDeletes(hbaseMapping.getHbaseTable(), rowKeys);
                 rowKeys.clear();
                 complete = true;
             }
             i++;
         }
         if (!complete && !rowKeys.isEmpty()) {
-            hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
+            hbaseTemplate.mutateDeletes(hbaseMapping.getHbaseTable(), rowKeys);
         }
     }
 
@@ -356,9 +356,9 @@ public class HbaseSyncService {
             rows.add(row);
             complete = false;
             if (i % config.getHbaseMapping().getCommitBatch() == 0 && !rows.isEmpty()) {
-                hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
+                hbaseTemplate.mutateDeletes(hbaseMapping.getHbaseTable(), rowKeys);
 
-                hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+                hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
                 rowKeys.clear();
                 rows.clear();
                 complete = true;
@@ -367,8 +367,8 @@ public class HbaseSyncService {
             index++;
         }
         if (!complete && !rows.isEmpty()) {
-            hbaseTemplate.deletes(hbaseMapping.getHbaseTable(), rowKeys);
-            hbaseTemplate.puts(hbaseMapping.getHbaseTable(), rows);
+            hbaseTemplate.mutateDeletes(hbaseMapping.getHbaseTable(), rowKeys);
+            hbaseTemplate.mutatePuts(hbaseMapping.getHbaseTable(), rows);
         }
     }
 
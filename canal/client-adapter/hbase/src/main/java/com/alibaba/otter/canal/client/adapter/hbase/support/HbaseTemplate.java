@@ -3,17 +3,21 @@ package com.alibaba.otter.canal.client.adapter.hbase.support;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
@@ -27,10 +31,14 @@ import org.slf4j.LoggerFactory;
  */
 public class HbaseTemplate {
 
-    private Logger        logger = LoggerFactory.getLogger(this.getClass());
+    private Logger                           logger        = LoggerFactory.getLogger(this.getClass());
 
-    private Configuration hbaseConfig;                                      // hbase配置对象
-    private Connection    conn;                                             // hbase连接
+    private Configuration                    hbaseConfig;                                           // hbase配置对象
+    private Connection                       conn;                                                  // hbase连接
+
+    private boolean                          async         = false;                                 // 是否通过BufferedMutator异步写入
+    private long                             flushInterval = 1000L;                                 // 异步写入的最长缓冲时间(ms)
+    private final Map<String, TableMutator>  mutators      = new ConcurrentHashMap<>();             // 表名对应的BufferedMutator
 
     public HbaseTemplate(Configuration hbaseConfig){
         this.hbaseConfig = hbaseConfig;
@@ -135,16 +143,7 @@ public class HbaseTemplate {
         boolean flag = false;
         try {
             HTable table = (HTable) getConnection().getTable(TableName.valueOf(tableName));
-            List<Put> puts = new ArrayList<>();
-            for (HRow hRow : rows) {
-                Put put = new Put(hRow.getRowKey());
-                for (HRow.HCell hCell : hRow.getCells()) {
-                    put.addColumn(Bytes.toBytes(hCell.getFamily()),
-                        Bytes.toBytes(hCell.getQualifier()),
-                        hCell.getValue());
-                }
-                puts.add(put);
-            }
+            List<Put> puts = toPuts(rows);
             if (!puts.isEmpty()) {
                 table.put(puts);
             }
@@ -167,11 +166,7 @@ public class HbaseTemplate {
         boolean flag = false;
         try {
             HTable table = (HTable) getConnection().getTable(TableName.valueOf(tableName));
-            List<Delete> deletes = new ArrayList<>();
-            for (byte[] rowKey : rowKeys) {
-                Delete delete = new Delete(rowKey);
-                deletes.add(delete);
-            }
+            List<Delete> deletes = toDeletes(rowKeys);
             if (!deletes.isEmpty()) {
                 table.delete(deletes);
             }
@@ -183,9 +178,156 @@ public class HbaseTemplate {
         return flag;
     }
 
+    /**
+     * 批量写入，异步模式下放入表对应的BufferedMutator，按照缓冲区大小(hbase.client.write.buffer)和flushInterval自动提交
+     *
+     * @param tableName 表名
+     * @param rows 行数据对象集合
+     */
+    public void mutatePuts(String tableName, List<HRow> rows) {
+        if (!async) {
+            puts(tableName, rows);
+            return;
+        }
+
+        mutate(tableName, false, toPuts(rows));
+    }
+
+    /**
+     * 批量删除，异步模式下放入表对应的BufferedMutator
+     *
+     * @param tableName 表名
+     * @param rowKeys rowKey集合
+     */
+    public void mutateDeletes(String tableName, Set<byte[]> rowKeys) {
+        if (!async) {
+            deletes(tableName, rowKeys);
+            return;
+        }
+
+        mutate(tableName, true, toDeletes(rowKeys));
+    }
+
+    /**
+     * 提交所有BufferedMutator中缓冲的数据，在一批数据同步完成、ack之前调用
+     */
+    public void flush() {
+        for (String tableName : mutators.keySet()) {
+            TableMutator tableMutator = mutators.get(tableName);
+            if (tableMutator != null) {
+                flush(tableName, tableMutator);
+            }
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
     public void close() throws IOException {
+        for (TableMutator tableMutator : mutators.values()) {
+            try {
+                tableMutator.mutator.close();
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        mutators.clear();
+
         if (conn != null) {
             conn.close();
         }
     }
+
+    private void mutate(String tableName, boolean delete, List<? extends Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+
+        TableMutator tableMutator = mutators.computeIfAbsent(tableName, k -> {
+            try {
+                return new TableMutator(getConnection().getBufferedMutator(TableName.valueOf(k)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        if (tableMutator.delete != delete) {
+            // BufferedMutator不保证同一批次中put/delete的执行顺序，切换操作类型前先提交
+            flush(tableName, tableMutator);
+            tableMutator.delete = delete;
+        }
+
+        try {
+            tableMutator.mutator.mutate(mutations);
+        } catch (IOException e) {
+            discard(tableName, tableMutator);
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+
+        if (System.currentTimeMillis() - tableMutator.lastFlushTime >= flushInterval) {
+            flush(tableName, tableMutator);
+        }
+    }
+
+    private void flush(String tableName, TableMutator tableMutator) {
+        try {
+            tableMutator.mutator.flush();
+            tableMutator.lastFlushTime = System.currentTimeMillis();
+        } catch (IOException e) {
+            // 丢弃写入失败的BufferedMutator，由上层重试整批数据
+            discard(tableName, tableMutator);
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void discard(String tableName, TableMutator tableMutator) {
+        mutators.remove(tableName, tableMutator);
+        try {
+            tableMutator.mutator.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static List<Put> toPuts(List<HRow> rows) {
+        List<Put> puts = new ArrayList<>();
+        for (HRow hRow : rows) {
+            Put put = new Put(hRow.getRowKey());
+            for (HRow.HCell hCell : hRow.getCells()) {
+                put.addColumn(Bytes.toBytes(hCell.getFamily()), Bytes.toBytes(hCell.getQualifier()), hCell.getValue());
+            }
+            puts.add(put);
+        }
+        return puts;
+    }
+
+    private static List<Delete> toDeletes(Set<byte[]> rowKeys) {
+        List<Delete> deletes = new ArrayList<>();
+        for (byte[] rowKey : rowKeys) {
+            Delete delete = new Delete(rowKey);
+            deletes.add(delete);
+        }
+        return deletes;
+    }
+
+    private static class TableMutator {
+
+        private final BufferedMutator mutator;
+        private boolean               delete        = false;
+        private long                  lastFlushTime = System.currentTimeMillis();
+
+        private TableMutator(BufferedMutator mutator){
+            this.mutator = mutator;
+        }
+    }
 }
@@ -48,92 +48,59 @@ public abstract class AbstractCanalAdapterWorker {
     }
 
     protected void writeOut(final Message message) {
-        List<Future<Boolean>> futures = new ArrayList<>();
-        // 组间适配器并行运行
-        canalOuterAdapters.forEach(outerAdapters -> {
-            final List<OuterAdapter> adapters = outerAdapters;
-            futures.add(groupInnerExecutorService.submit(() -> {
-                try {
-                    // 组内适配器穿行运行，尽量不要配置组内适配器
-                    adapters.forEach(adapter -> {
-                        long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message);
-                        if (dmls != null) {
-                            batchSync(dmls, adapter);
-
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("{} elapsed time: {}",
-                                    adapter.getClass().getName(),
-                                    (System.currentTimeMillis() - begin));
-                            }
-                        }
-                    });
-                    return true;
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    return false;
-                }
-            }));
-
-            // 等待所有适配器写入完成
-            // 由于是组间并发操作，所以将阻塞直到耗时最久的工作组操作完成
-            RuntimeException exception = null;
-            for (Future<Boolean> future : futures) {
-                try {
-                    if (!future.get()) {
-                        exception = new RuntimeException("Outer adapter sync failed! ");
-                    }
-                } catch (Exception e) {
-                    exception = new RuntimeException(e);
-                }
-            }
-            if (exception != null) {
-                throw exception;
-            }
-        });
+        // 只转换一次，各适配器共用
+        List<Dml> dmls = MessageUtil.parse4Dml(canalDestination, groupId, message);
+        if (dmls != null) {
+            writeOutDmls(dmls);
+        }
     }
 
     protected void writeOut(final List<FlatMessage> flatMessages) {
+        writeOutDmls(MessageUtil.flatMessage2Dml(canalDestination, groupId, flatMessages));
+    }
+
+    /**
+     * 写出已经转换好的dml，组间适配器并行写入，阻塞直到耗时最久的工作组完成
+     *
+     * @param dmls 批量 DML
+     */
+    protected void writeOutDmls(final List<Dml> dmls) {
         List<Future<Boolean>> futures = new ArrayList<>();
         // 组间适配器并行运行
-        canalOuterAdapters.forEach(outerAdapters -> {
-            futures.add(groupInnerExecutorService.submit(() -> {
-                try {
-                    // 组内适配器穿行运行，尽量不要配置组内适配器
-                    outerAdapters.forEach(adapter -> {
-                        long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.flatMessage2Dml(canalDestination, groupId, flatMessages);
-                        batchSync(dmls, adapter);
-
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("{} elapsed time: {}",
-                                adapter.getClass().getName(),
-                                (System.currentTimeMillis() - begin));
-                        }
-                    });
-                    return true;
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    return false;
-                }
-            }));
-
-            // 等待所有适配器写入完成
-            // 由于是组间并发操作，所以将阻塞直到耗时最久的工作组操作完成
-            RuntimeException exception = null;
-            for (Future<Boolean> future : futures) {
-                try {
-                    if (!future.get()) {
-                        exception = new RuntimeException("Outer adapter sync failed! ");
+        canalOuterAdapters.forEach(outerAdapters -> futures.add(groupInnerExecutorService.submit(() -> {
+            try {
+                // 组内适配器穿行运行，尽量不要配置组内适配器
+                outerAdapters.forEach(adapter -> {
+                    long begin = System.currentTimeMillis();
+                    batchSync(dmls, adapter);
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("{} elapsed time: {}",
+                            adapter.getClass().getName(),
+                            (System.currentTimeMillis() - begin));
                     }
-                } catch (Exception e) {
-                    exception = new RuntimeException(e);
-                }
+                });
+                return true;
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                return false;
             }
-            if (exception != null) {
-                throw exception;
+        })));
+
+        // 等待所有适配器写入完成
+        RuntimeException exception = null;
+        for (Future<Boolean> future : futures) {
+            try {
+                if (!future.get()) {
+                    exception = new RuntimeException("Outer adapter sync failed! ");
+                }
+            } catch (Exception e) {
+                exception = new RuntimeException(e);
             }
-        });
+        }
+        if (exception != null) {
+            throw exception;
+        }
     }
 
     @SuppressWarnings("unchecked")
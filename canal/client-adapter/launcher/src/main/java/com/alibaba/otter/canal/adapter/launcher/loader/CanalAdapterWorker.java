@@ -1,7 +1,13 @@
 package com.alibaba.otter.canal.adapter.launcher.loader;
 
 import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -9,6 +15,8 @@ import com.alibaba.otter.canal.client.CanalConnector;
 import com.alibaba.otter.canal.client.CanalConnectors;
 import com.alibaba.otter.canal.client.adapter.OuterAdapter;
 import com.alibaba.otter.canal.client.adapter.support.CanalClientConfig;
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.MessageUtil;
 import com.alibaba.otter.canal.client.impl.ClusterCanalConnector;
 import com.alibaba.otter.canal.client.impl.SimpleCanalConnector;
 import com.alibaba.otter.canal.protocol.Message;
@@ -21,10 +29,12 @@ import com.alibaba.otter.canal.protocol.Message;
  */
 public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
 
-    private static final int BATCH_SIZE = 50;
-    private static final int SO_TIMEOUT = 0;
+    private static final int BATCH_SIZE  = 50;
+    private static final int SO_TIMEOUT  = 0;
 
     private CanalConnector   connector;
+    private ExecutorService  applyExecutor;              // 预取模式下串行写入适配器的线程
+    private volatile boolean applyFailed = false;        // 写入失败后跳过已预取的后续批次
 
     /**
      * 单台client适配器worker的构造方法
@@ -57,6 +67,14 @@ public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
         ((ClusterCanalConnector) connector).setSoTimeout(SO_TIMEOUT);
     }
 
+    CanalAdapterWorker(CanalClientConfig canalClientConfig, String canalDestination, CanalConnector connector,
+                       List<List<OuterAdapter>> canalOuterAdapters){
+        super(canalOuterAdapters);
+        this.canalDestination = canalDestination;
+        this.canalClientConfig = canalClientConfig;
+        this.connector = connector;
+    }
+
     @Override
     protected void process() {
         while (!running) { // waiting until running == true
@@ -79,6 +97,10 @@ public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
         if (batchSize == null) {
             batchSize = BATCH_SIZE;
         }
+        int prefetchSize = canalClientConfig.getPrefetchSize() == null ? 0 : canalClientConfig.getPrefetchSize();
+        if (prefetchSize > 0) {
+            applyExecutor = Executors.newSingleThreadExecutor();
+        }
 
         while (running) {
             try {
@@ -89,7 +111,10 @@ public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
                 logger.info("=============> Start to subscribe destination: {} <=============", this.canalDestination);
                 connector.subscribe();
                 logger.info("=============> Subscribe destination: {} succeed <=============", this.canalDestination);
-                while (running) {
+                if (prefetchSize > 0) {
+                    pipelinedProcess(retry, batchSize, prefetchSize);
+                }
+                while (running && prefetchSize <= 0) {
                     try {
                         syncSwitch.get(canalDestination, 1L, TimeUnit.MINUTES);
                     } catch (TimeoutException e) {
@@ -156,6 +181,166 @@ public class CanalAdapterWorker extends AbstractCanalAdapterWorker {
                 }
             }
         }
+
+        if (applyExecutor != null) {
+            applyExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 预取模式，当前线程负责拉取数据、转换dml和按顺序ack，适配器写入由applyExecutor串行执行
+     *
+     * <pre>
+     * 1. 批次N写入的同时拉取并转换批次N+1，最多预取prefetchSize个批次
+     * 2. ack严格按照批次顺序提交
+     * 3. 写入失败时丢弃已预取的批次，通过rollback回到最早未写入的批次重新拉取
+     * </pre>
+     */
+    private void pipelinedProcess(int retry, int batchSize, int prefetchSize) throws InterruptedException {
+        Deque<PrefetchBatch> batches = new ArrayDeque<>();
+        int failures = 0;
+        try {
+            while (running) {
+                boolean fetched = false;
+                if (batches.size() <= prefetchSize) {
+                    try {
+                        syncSwitch.get(canalDestination, 1L, TimeUnit.MINUTES);
+                    } catch (TimeoutException e) {
+                        break;
+                    }
+                    if (!running) {
+                        break;
+                    }
+
+                    Message message = connector.getWithoutAck(batchSize); // 获取指定数量的数据
+                    if (message.getId() != -1) {
+                        batches.addLast(submit(message));
+                        fetched = !message.getEntries().isEmpty();
+                    }
+                }
+
+                // 按顺序ack已经写入完成的批次
+                PrefetchBatch head;
+                while ((head = batches.peekFirst()) != null) {
+                    if (fetched && batches.size() <= prefetchSize && !head.future.isDone()) {
+                        // 还可以继续预取
+                        break;
+                    }
+
+                    boolean success;
+                    try {
+                        success = head.future.get(500, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        break;
+                    } catch (ExecutionException e) {
+                        logger.error(e.getMessage(), e);
+                        success = false;
+                    }
+
+                    if (success) {
+                        connector.ack(head.batchId); // 提交确认
+                        batches.pollFirst();
+                        failures = 0;
+                        continue;
+                    }
+
+                    if (++failures >= retry) {
+                        connector.ack(head.batchId);
+                        batches.pollFirst();
+                        failures = 0;
+                        logger.error("batchId: " + head.batchId + " Error sync but ACK!");
+                    } else {
+                        logger.error("batchId: " + head.batchId + " Error sync and rollback, execute times: "
+                                     + failures);
+                    }
+                    // 后续已预取的批次都被跳过，回滚到最早未写入的批次重新拉取
+                    awaitAll(batches);
+                    batches.clear();
+                    applyFailed = false;
+                    connector.rollback();
+                    Thread.sleep(500);
+                    break;
+                }
+
+                if (!fetched && batches.isEmpty()) {
+                    Thread.sleep(500);
+                }
+            }
+        } finally {
+            // 等待已提交的批次写入完成，按顺序ack写入成功的批次，其余批次在重新订阅后由server回滚
+            try {
+                for (PrefetchBatch batch : batches) {
+                    if (!awaitQuietly(batch)) {
+                        break;
+                    }
+                    connector.ack(batch.batchId);
+                }
+            } catch (Throwable e) {
+                logger.warn("ack prefetched batches failed, they will be rolled back by server: " + e.getMessage());
+            }
+            awaitAll(batches);
+            applyFailed = false;
+        }
+    }
+
+    private PrefetchBatch submit(Message message) {
+        final long batchId = message.getId();
+        final int size = message.getEntries().size();
+        // 在拉取线程中完成转换，与上一批次的写入并行
+        final List<Dml> dmls = size == 0 ? null : MessageUtil.parse4Dml(canalDestination, groupId, message);
+        Future<Boolean> future = applyExecutor.submit(() -> {
+            if (applyFailed) {
+                return false;
+            }
+            if (dmls == null) {
+                return true;
+            }
+
+            try {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("destination: {} batchId: {} batchSize: {} ", canalDestination, batchId, size);
+                }
+                long begin = System.currentTimeMillis();
+                writeOutDmls(dmls);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("destination: {} batchId: {} elapsed time: {} ms",
+                        canalDestination,
+                        batchId,
+                        System.currentTimeMillis() - begin);
+                }
+                return true;
+            } catch (Throwable e) {
+                // 写入线程是单线程的，后续批次执行前一定能看到失败状态
+                applyFailed = true;
+                throw e;
+            }
+        });
+        return new PrefetchBatch(batchId, future);
+    }
+
+    private void awaitAll(Deque<PrefetchBatch> batches) {
+        for (PrefetchBatch batch : batches) {
+            awaitQuietly(batch);
+        }
+    }
+
+    private boolean awaitQuietly(PrefetchBatch batch) {
+        try {
+            return batch.future.get();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static class PrefetchBatch {
+
+        private final long            batchId;
+        private final Future<Boolean> future;
+
+        private PrefetchBatch(long batchId, Future<Boolean> future){
+            this.batchId = batchId;
+            this.future = future;
+        }
     }
 
     @Override
@@ -0,0 +1,221 @@
+package com.alibaba.otter.canal.adapter.launcher.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import com.alibaba.otter.canal.adapter.launcher.common.SyncSwitch;
+import com.alibaba.otter.canal.adapter.launcher.config.SpringContext;
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.client.adapter.OuterAdapter;
+import com.alibaba.otter.canal.client.adapter.support.CanalClientConfig;
+import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.OuterAdapterConfig;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * 测试预取模式下按批次顺序ack，写入失败后回滚重新拉取
+ *
+ * @version 1.1.4
+ */
+public class CanalAdapterWorkerTest {
+
+    private GenericApplicationContext context;
+    private CanalAdapterWorker        worker;
+
+    @Before
+    public void setUp() {
+        // 没有初始化的SyncSwitch不会阻塞
+        context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("syncSwitch", new SyncSwitch());
+        context.refresh();
+        new SpringContext().setApplicationContext(context);
+    }
+
+    @After
+    public void tearDown() {
+        if (worker != null) {
+            worker.stop();
+        }
+        context.close();
+    }
+
+    @Test
+    public void testAckInOrder() throws Exception {
+        StubConnector connector = new StubConnector(5);
+        RecordAdapter adapter = new RecordAdapter(null);
+        worker = start(connector, adapter, 3);
+
+        Assert.assertTrue(connector.awaitAcks(5));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), connector.acks);
+        Assert.assertEquals(Arrays.asList("t1", "t2", "t3", "t4", "t5"), adapter.applied);
+        Assert.assertEquals(0, connector.rollbacks.get());
+        Assert.assertTrue(connector.errors.toString(), connector.errors.isEmpty());
+    }
+
+    @Test
+    public void testRollbackAfterFailedBatch() throws Exception {
+        StubConnector connector = new StubConnector(4);
+        // 第一次写入批次2失败
+        RecordAdapter adapter = new RecordAdapter("t2");
+        worker = start(connector, adapter, 3);
+
+        Assert.assertTrue(connector.awaitAcks(4));
+        // 失败的批次没有ack，回滚之后从批次2重新拉取，已预取的批次3不会越过批次2写入
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), connector.acks);
+        Assert.assertEquals(Arrays.asList("t1", "t2", "t3", "t4"), adapter.applied);
+        Assert.assertEquals(1, adapter.failures.get());
+        Assert.assertTrue(connector.rollbacks.get() >= 1);
+        Assert.assertTrue(connector.errors.toString(), connector.errors.isEmpty());
+    }
+
+    private CanalAdapterWorker start(CanalConnector connector, OuterAdapter adapter, int retries) {
+        CanalClientConfig config = new CanalClientConfig();
+        config.setBatchSize(10);
+        config.setPrefetchSize(2);
+        config.setRetries(retries);
+        CanalAdapterWorker worker = new CanalAdapterWorker(config,
+            "example",
+            connector,
+            Collections.singletonList(Collections.singletonList(adapter)));
+        worker.start();
+        return worker;
+    }
+
+    /**
+     * 模拟server端：按顺序返回批次，ack必须按顺序提交，rollback后从最早未ack的批次重新返回
+     */
+    private static class StubConnector implements CanalConnector {
+
+        private final int           count;
+        private int                 next      = 0;
+        private int                 acked     = 0;
+        private final List<Long>    acks      = new CopyOnWriteArrayList<>();
+        private final List<String>  errors    = new CopyOnWriteArrayList<>();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        private StubConnector(int count){
+            this.count = count;
+        }
+
+        public synchronized Message getWithoutAck(int batchSize) throws CanalClientException {
+            if (next >= count) {
+                return new Message(-1, new ArrayList<>());
+            }
+            long batchId = ++next;
+            return new Message(batchId, Collections.singletonList(entry("t" + batchId)));
+        }
+
+        public Message getWithoutAck(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+            return getWithoutAck(batchSize);
+        }
+
+        public synchronized void ack(long batchId) throws CanalClientException {
+            if (batchId != acked + 1 || batchId > next) {
+                errors.add("unexpected ack " + batchId + ", acked " + acked + ", fetched " + next);
+                return;
+            }
+            acked++;
+            acks.add(batchId);
+        }
+
+        public synchronized void rollback() throws CanalClientException {
+            next = acked;
+            rollbacks.incrementAndGet();
+        }
+
+        public void rollback(long batchId) throws CanalClientException {
+            errors.add("unexpected rollback " + batchId);
+        }
+
+        private boolean awaitAcks(int size) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 30 * 1000;
+            while (acks.size() < size && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return acks.size() == size;
+        }
+
+        public void connect() throws CanalClientException {
+        }
+
+        public void disconnect() throws CanalClientException {
+        }
+
+        public boolean checkValid() throws CanalClientException {
+            return true;
+        }
+
+        public void subscribe(String filter) throws CanalClientException {
+        }
+
+        public void subscribe() throws CanalClientException {
+        }
+
+        public void unsubscribe() throws CanalClientException {
+        }
+
+        public Message get(int batchSize) throws CanalClientException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Message get(int batchSize, Long timeout, TimeUnit unit) throws CanalClientException {
+            throw new UnsupportedOperationException();
+        }
+
+        private static Entry entry(String table) {
+            return Entry.newBuilder()
+                .setEntryType(EntryType.ROWDATA)
+                .setHeader(Header.newBuilder().setSchemaName("test").setTableName(table))
+                .setStoreValue(RowChange.newBuilder().setEventType(EventType.INSERT).build().toByteString())
+                .build();
+        }
+    }
+
+    /**
+     * 记录写入成功的表名，第一次写入failTable时失败
+     */
+    private static class RecordAdapter implements OuterAdapter {
+
+        private final String        failTable;
+        private final List<String>  applied  = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private RecordAdapter(String failTable){
+            this.failTable = failTable;
+        }
+
+        public void init(OuterAdapterConfig configuration, Properties envProperties) {
+        }
+
+        public void sync(List<Dml> dmls) {
+            for (Dml dml : dmls) {
+                if (dml.getTable().equals(failTable) && failures.get() == 0) {
+                    failures.incrementAndGet();
+                    throw new RuntimeException("sync " + failTable + " failed");
+                }
+                applied.add(dml.getTable());
+            }
+        }
+
+        public void destroy() {
+        }
+    }
+}
@@ -143,6 +143,7 @@ public class RdbAdapter implements OuterAdapter {
         rdbSyncService = new RdbSyncService(dataSource,
             threads != null ? Integer.valueOf(threads) : null,
             skipDupException);
+        rdbSyncService.setNetChange(BooleanUtils.toBoolean(properties.getOrDefault("netChange", "false")));
 
         rdbMirrorDbSyncService = new RdbMirrorDbSyncService(mirrorDbConfigCache,
             dataSource,
@@ -6,6 +6,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -25,6 +26,7 @@ import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
 import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping;
 import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
+import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor.BatchFlushException;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
 import com.alibaba.otter.canal.client.adapter.rdb.support.SyncUtil;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
@@ -38,17 +40,26 @@ import com.alibaba.otter.canal.client.adapter.support.Util;
  */
 public class RdbSyncService {
 
-    private static final Logger               logger  = LoggerFactory.getLogger(RdbSyncService.class);
+    private static final Logger               logger    = LoggerFactory.getLogger(RdbSyncService.class);
 
     // 源库表字段类型缓存: instance.schema.table -> <columnName, jdbcType>
     private Map<String, Map<String, Integer>> columnsTypeCache;
 
-    private int                               threads = 3;
+    private int                               threads   = 3;
     private boolean                           skipDupException;
+    // 是否合并同一批次中同一主键的多次变更，合并后的变更在该主键第一次变更的位置执行，相对同一分区中其他主键的变更提前了。
+    // 目标表只有主键约束时结果不变；存在其他唯一约束时，提前执行可能和其他行的变更冲突，例如：
+    // A.uk 1->2, B.uk 3->1, A.uk 2->3 合并为 A.uk 1->3, B.uk 3->1，执行A时B仍然持有uk=3，出现唯一键冲突。
+    // 不同分区之间本来就不保证执行顺序，所以目标表存在主键以外的唯一约束时不要开启
+    private boolean                           netChange = false;
+
+    private DataSource                        dataSource;
+    private Set<String>                       zipperTables = ConcurrentHashMap.newKeySet();   // 已经创建的拉链表
 
     private List<SyncItem>[]                  dmlsPartition;
     private BatchExecutor[]                   batchExecutors;
     private ExecutorService[]                 executorThreads;
+    private Map<List<Object>, SyncItem>[]     lastSyncItems;                          // 每个分区中各主键最后一条未执行的变更
 
     public List<SyncItem>[] getDmlsPartition() {
         return dmlsPartition;
@@ -65,6 +76,7 @@ public class RdbSyncService {
     @SuppressWarnings("unchecked")
     public RdbSyncService(DataSource dataSource, Integer threads, Map<String, Map<String, Integer>> columnsTypeCache,
                           boolean skipDupException){
+        this.dataSource = dataSource;
         this.columnsTypeCache = columnsTypeCache;
         this.skipDupException = skipDupException;
         try {
@@ -74,8 +86,10 @@ public class RdbSyncService {
             this.dmlsPartition = new List[this.threads];
             this.batchExecutors = new BatchExecutor[this.threads];
             this.executorThreads = new ExecutorService[this.threads];
+            this.lastSyncItems = new Map[this.threads];
             for (int i = 0; i < this.threads; i++) {
                 dmlsPartition[i] = new ArrayList<>();
+                lastSyncItems[i] = new HashMap<>();
                 batchExecutors[i] = new BatchExecutor(dataSource);
                 executorThreads[i] = Executors.newSingleThreadExecutor();
             }
@@ -133,6 +147,9 @@ public class RdbSyncService {
                 });
             }
         } finally {
+            for (Map<List<Object>, SyncItem> items : lastSyncItems) {
+                items.clear();
+            }
             for (BatchExecutor batchExecutor : batchExecutors) {
                 if (batchExecutor != null) {
                     batchExecutor.close();
@@ -180,14 +197,14 @@ public class RdbSyncService {
                         singleDmls.forEach(singleDml -> {
                             int hash = pkHash(config.getDbMapping(), singleDml.getData());
                             SyncItem syncItem = new SyncItem(config, singleDml);
-                            dmlsPartition[hash].add(syncItem);
+                            addSyncItem(hash, syncItem);
                         });
                     } else {
                         int hash = 0;
                         List<SingleDml> singleDmls = SingleDml.dml2SingleDmls(dml);
                         singleDmls.forEach(singleDml -> {
                             SyncItem syncItem = new SyncItem(config, singleDml);
-                            dmlsPartition[hash].add(syncItem);
+                            addSyncItem(hash, syncItem);
                         });
                     }
                 }
@@ -196,6 +213,77 @@ public class RdbSyncService {
         }   );
     }
 
+    /**
+     * 加入分区，开启netChange时将同一主键的连续变更合并为一条
+     *
+     * <pre>
+     * 1. truncate等无法按主键定位的变更作为屏障，之前的变更不再参与合并
+     * 2. 修改了主键的update不合并，新旧主键之前的变更也不再参与合并
+     * 3. 开启skipDupException时，update不合并进insert(insert可能因为主键冲突被忽略)
+     * 4. 合并后的变更在第一次变更的位置执行，限制参见netChange
+     * </pre>
+     *
+     * @param hash 分区
+     * @param syncItem 同步项
+     */
+    public void addSyncItem(int hash, SyncItem syncItem) {
+        if (!netChange) {
+            dmlsPartition[hash].add(syncItem);
+            return;
+        }
+
+        Map<List<Object>, SyncItem> items = lastSyncItems[hash];
+        SingleDml dml = syncItem.singleDml;
+        if (!dml.isPrimary() || dml.getData() == null) {
+            // 无法按主键定位的变更(如truncate)，之前的变更不再参与合并
+            items.clear();
+            dmlsPartition[hash].add(syncItem);
+            return;
+        }
+
+        List<Object> pk = pkValues(syncItem.config, dml.getData(), null);
+        List<Object> oldPk = pkValues(syncItem.config, dml.getData(), dml.getOld());
+        if (!pk.equals(oldPk)) {
+            // 修改了主键，新旧主键之前的变更都不再参与合并
+            items.remove(pk);
+            items.remove(oldPk);
+            dmlsPartition[hash].add(syncItem);
+            return;
+        }
+
+        SyncItem last = items.get(pk);
+        // 忽略主键冲突时insert可能不生效，不能把后续的update合并进insert
+        boolean mergeable = last != null
+                            && !(skipDupException && "INSERT".equalsIgnoreCase(last.singleDml.getType())
+                                 && "UPDATE".equalsIgnoreCase(dml.getType()));
+        if (mergeable && last.singleDml.merge(dml)) {
+            return;
+        }
+        dmlsPartition[hash].add(syncItem);
+        items.put(pk, syncItem);
+    }
+
+    private List<Object> pkValues(MappingConfig config, Map<String, Object> d, Map<String, Object> o) {
+        List<Object> values = new ArrayList<>();
+        values.add(config);
+        for (Map.Entry<String, String> entry : config.getDbMapping().getTargetPk().entrySet()) {
+            String srcColumnName = entry.getValue();
+            if (srcColumnName == null) {
+                srcColumnName = Util.cleanColumn(entry.getKey());
+            }
+            if (o != null && o.containsKey(srcColumnName)) {
+                values.add(o.get(srcColumnName));
+            } else {
+                values.add(d.get(srcColumnName));
+            }
+        }
+        return values;
+    }
+
+    public void setNetChange(boolean netChange) {
+        this.netChange = netChange;
+    }
+
     /**
      * 单条 dml 同步
      *
@@ -275,7 +363,15 @@ public class RdbSyncService {
         }
 
         try {
-            batchExecutor.execute(insertSql.toString(), values);
+            if (skipDupException) {
+                // 需要逐条忽略主键冲突，不能批量执行
+                batchExecutor.execute(insertSql.toString(), values);
+            } else {
+                batchExecutor.batch(insertSql.toString(), values, dbMapping.getCommitBatch(), dml);
+            }
+        } catch (BatchFlushException e) {
+            // 之前批量中的行失败，已经记录了失败的dml
+            throw e;
         } catch (SQLException e) {
             logger.error("==========SQL:{},DML:{}", insertSql,JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
             if (skipDupException
@@ -332,7 +428,7 @@ public class RdbSyncService {
                         "  `create_time` datetime(0) NULL DEFAULT NULL COMMENT '数据时间',\n" +
                         "  PRIMARY KEY (`id`) USING BTREE\n" +
                         ") ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin ROW_FORMAT = Compact;";
-                batchExecutor.execute(createSql, new ArrayList<>());
+                createZipperTable(dml.getTable(), createSql);
                 String old_value = "{}";
                 String update_value = "{}";
                 String primary_key = "";//主键
@@ -376,6 +472,28 @@ public class RdbSyncService {
 
     }
 
+    /**
+     * 创建拉链表，每张表只创建一次
+     *
+     * <pre>
+     * 使用独立的连接执行，不刷出当前批量，也不会因为ddl隐式提交批量所在的事务
+     * </pre>
+     */
+    private void createZipperTable(String table, String createSql) throws SQLException {
+        if (zipperTables.contains(table)) {
+            return;
+        }
+        synchronized (zipperTables) {
+            if (zipperTables.contains(table)) {
+                return;
+            }
+            try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute(createSql);
+            }
+            zipperTables.add(table);
+        }
+    }
+
     /**
      * 更新拉链信息到其他数据库的对应表(更新操作)
      *
@@ -472,7 +590,10 @@ public class RdbSyncService {
         }
 
         try{
-            batchExecutor.execute(updateSql.toString(), values);
+            batchExecutor.batch(updateSql.toString(), values, dbMapping.getCommitBatch(), dml);
+        } catch (BatchFlushException e) {
+            // 之前批量中的行失败，已经记录了失败的dml
+            throw e;
         }catch (SQLException e){
             logger.error("==========SQL:{},DML:{}", updateSql,JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
             throw e;
@@ -505,7 +626,10 @@ public class RdbSyncService {
         // 拼接主键
         appendCondition(dbMapping, sql, ctype, values, data);
         try{
-            batchExecutor.execute(sql.toString(), values);
+            batchExecutor.batch(sql.toString(), values, dbMapping.getCommitBatch(), dml);
+        } catch (BatchFlushException e) {
+            // 之前批量中的行失败，已经记录了失败的dml
+            throw e;
         }catch (SQLException e){
             logger.error("==========SQL:{},DML:{}", sql,JSON.toJSONString(dml, SerializerFeature.WriteMapNullValue));
             throw e;
@@ -526,6 +650,9 @@ public class RdbSyncService {
         sql.append("TRUNCATE TABLE ").append(SyncUtil.getDbTableName(dbMapping));
         try {
             batchExecutor.execute(sql.toString(), new ArrayList<>());
+        } catch (BatchFlushException e) {
+            // 之前批量中的行失败，已经记录了失败的dml
+            throw e;
         }catch (SQLException e){
             logger.error("==========SQL:{},DML:{}", sql,"");
             throw e;
@@ -615,6 +742,14 @@ public class RdbSyncService {
             this.config = config;
             this.singleDml = singleDml;
         }
+
+        public MappingConfig getConfig() {
+            return config;
+        }
+
+        public SingleDml getSingleDml() {
+            return singleDml;
+        }
     }
 
     /**
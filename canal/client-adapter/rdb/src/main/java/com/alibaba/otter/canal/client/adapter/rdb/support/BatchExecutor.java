@@ -1,9 +1,12 @@
 package com.alibaba.otter.canal.client.adapter.rdb.support;
 
 import java.io.Closeable;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +17,19 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
 /**
  * sql批量执行器
  *
+ * <pre>
+ * 1. execute: 单条执行
+ * 2. batch: 连续相同的sql复用同一个PreparedStatement，通过addBatch/executeBatch一次提交，sql变化、执行execute或者commit时刷出
+ * 3. mysql可以在jdbc url中配置rewriteBatchedStatements=true，由驱动把批量insert改写为多值insert
+ * 4. 批量中的每一行记录其来源(如对应的dml)，刷出失败时抛出{@link BatchFlushException}，指明失败的行而不是触发刷出的那一行
+ * </pre>
+ *
  * @author rewerma 2018-11-7 下午06:45:49
  * @version 1.0.0
  */
@@ -28,6 +41,11 @@ public class BatchExecutor implements Closeable {
     private Connection          conn;
     private AtomicInteger       idx    = new AtomicInteger(0);
 
+    private String              batchSql;                                               // 当前批量中的sql
+    private PreparedStatement   batchPstmt;                                             // 当前批量复用的statement
+    private int                 batchCount;                                             // 当前批量中未刷出的行数
+    private List<Object>        batchSources = new ArrayList<>();                       // 当前批量中每一行的来源
+
     public BatchExecutor(DataSource dataSource){
         this.dataSource = dataSource;
     }
@@ -52,6 +70,8 @@ public class BatchExecutor implements Closeable {
     }
 
     public void execute(String sql, List<Map<String, ?>> values) throws SQLException {
+        // 保证与之前批量中的sql的执行顺序
+        flush();
         PreparedStatement pstmt = getConn().prepareStatement(sql);
         int len = values.size();
         for (int i = 0; i < len; i++) {
@@ -65,7 +85,123 @@ public class BatchExecutor implements Closeable {
         pstmt.close();
     }
 
+    /**
+     * 加入批量执行，与上一条sql相同时复用statement，否则先刷出之前的批量
+     *
+     * @param sql sql
+     * @param values 参数
+     * @param maxBatchSize 单个批量的最大行数，达到之后立即刷出
+     */
+    public void batch(String sql, List<Map<String, ?>> values, int maxBatchSize) throws SQLException {
+        batch(sql, values, maxBatchSize, null);
+    }
+
+    /**
+     * 加入批量执行，与上一条sql相同时复用statement，否则先刷出之前的批量
+     *
+     * @param sql sql
+     * @param values 参数
+     * @param maxBatchSize 单个批量的最大行数，达到之后立即刷出
+     * @param source 该行的来源，刷出失败时用于定位失败的行
+     */
+    public void batch(String sql, List<Map<String, ?>> values, int maxBatchSize, Object source) throws SQLException {
+        if (batchPstmt != null && !sql.equals(batchSql)) {
+            flush();
+        }
+        if (batchPstmt == null) {
+            batchPstmt = getConn().prepareStatement(sql);
+            batchSql = sql;
+        }
+
+        int len = values.size();
+        for (int i = 0; i < len; i++) {
+            int type = (Integer) values.get(i).get("type");
+            Object value = values.get(i).get("value");
+            SyncUtil.setPStmt(type, batchPstmt, value, i + 1);
+        }
+        batchPstmt.addBatch();
+        batchSources.add(source);
+        batchCount++;
+        idx.incrementAndGet();
+
+        if (maxBatchSize > 0 && batchCount >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 刷出当前批量中的sql
+     */
+    public void flush() throws SQLException {
+        if (batchPstmt == null) {
+            return;
+        }
+
+        try {
+            if (batchCount > 0) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("execute batch sql:{}, rows:{}", batchSql, batchCount);
+                }
+                batchPstmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            int index = failedIndex(e);
+            if (index >= 0) {
+                Object source = batchSources.get(index);
+                logger.error("==========Batch SQL:{}, rows:{}, failed row:{}, source:{}",
+                    batchSql,
+                    batchCount,
+                    index,
+                    JSON.toJSONString(source, SerializerFeature.WriteMapNullValue));
+                throw new BatchFlushException(batchSql, source, e);
+            } else {
+                logger.error("==========Batch SQL:{}, rows:{}, sources:{}",
+                    batchSql,
+                    batchCount,
+                    JSON.toJSONString(batchSources, SerializerFeature.WriteMapNullValue));
+                throw new BatchFlushException(batchSql, null, e);
+            }
+        } finally {
+            clearBatch();
+        }
+    }
+
+    /**
+     * 根据驱动返回的更新计数找到失败的行，驱动没有给出时返回-1
+     */
+    private int failedIndex(SQLException e) {
+        if (!(e instanceof BatchUpdateException)) {
+            return batchCount == 1 ? 0 : -1;
+        }
+        int[] counts = ((BatchUpdateException) e).getUpdateCounts();
+        if (counts == null) {
+            return -1;
+        }
+        for (int i = 0; i < counts.length && i < batchCount; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        // 驱动遇到错误即停止时，只返回之前成功的行的计数
+        return counts.length < batchCount ? counts.length : -1;
+    }
+
+    private void clearBatch() {
+        if (batchPstmt != null) {
+            try {
+                batchPstmt.close();
+            } catch (SQLException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        batchPstmt = null;
+        batchSql = null;
+        batchCount = 0;
+        batchSources.clear();
+    }
+
     public void commit() throws SQLException {
+        flush();
         getConn().commit();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor commit " + idx.get() + " rows");
@@ -74,6 +210,7 @@ public class BatchExecutor implements Closeable {
     }
 
     public void rollback() throws SQLException {
+        clearBatch();
         getConn().rollback();
         if (logger.isTraceEnabled()) {
             logger.trace("Batch executor rollback " + idx.get() + " rows");
@@ -83,6 +220,7 @@ public class BatchExecutor implements Closeable {
 
     @Override
     public void close() {
+        clearBatch();
         if (conn != null) {
             try {
                 conn.close();
@@ -93,4 +231,29 @@ public class BatchExecutor implements Closeable {
             }
         }
     }
+
+    /**
+     * 批量刷出失败，source为失败的行加入批量时记录的来源，无法确定时为null
+     */
+    public static class BatchFlushException extends SQLException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String      sql;
+        private final Object      source;
+
+        public BatchFlushException(String sql, Object source, SQLException cause){
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+            this.sql = sql;
+            this.source = source;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Object getSource() {
+            return source;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.alibaba.otter.canal.client.adapter.rdb.support;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +76,47 @@ public class SingleDml {
 
 
 
+    /**
+     * 将同一主键的后一条变更合并到当前变更，合并后只需要执行当前变更
+     *
+     * <pre>
+     * insert + update = insert(最新的行数据)
+     * update + update = update(最新的行数据，old保留最早的原始值)
+     * insert/update + delete = delete
+     * </pre>
+     *
+     * @param next 同一主键的后一条变更
+     * @return 是否合并成功，不能合并时需要按顺序分别执行
+     */
+    public boolean merge(SingleDml next) {
+        String nextType = next.getType();
+        if ("DELETE".equalsIgnoreCase(nextType)) {
+            if ("INSERT".equalsIgnoreCase(type) || "UPDATE".equalsIgnoreCase(type)) {
+                this.type = nextType;
+                this.data = next.getData();
+                this.old = null;
+                return true;
+            }
+        } else if ("UPDATE".equalsIgnoreCase(nextType)) {
+            if ("INSERT".equalsIgnoreCase(type)) {
+                this.data = next.getData();
+                return true;
+            } else if ("UPDATE".equalsIgnoreCase(type)) {
+                Map<String, Object> mergedOld = new LinkedHashMap<>();
+                if (next.getOld() != null) {
+                    mergedOld.putAll(next.getOld());
+                }
+                if (old != null) {
+                    mergedOld.putAll(old);
+                }
+                this.data = next.getData();
+                this.old = mergedOld;
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static List<SingleDml> dml2SingleDmls(Dml dml) {
         List<SingleDml> singleDmls = new ArrayList<>();
 
@@ -0,0 +1,104 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor;
+import com.alibaba.otter.canal.client.adapter.rdb.support.BatchExecutor.BatchFlushException;
+
+/**
+ * 测试批量刷出失败时定位到失败的行
+ *
+ * @version 1.1.4
+ */
+public class BatchExecutorTest {
+
+    @Test
+    public void testStopOnFailure() throws SQLException {
+        // 驱动遇到错误即停止，只返回第一行的计数
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource(new int[] { 1 }));
+        batchExecutor.batch("UPDATE t SET a=?", values("1"), 100, "dml1");
+        batchExecutor.batch("UPDATE t SET a=?", values("2"), 100, "dml2");
+        batchExecutor.batch("UPDATE t SET a=?", values("3"), 100, "dml3");
+        try {
+            // 由下一条不同的sql触发刷出
+            batchExecutor.batch("DELETE FROM t WHERE a=?", values("4"), 100, "dml4");
+            Assert.fail();
+        } catch (BatchFlushException e) {
+            Assert.assertEquals("dml2", e.getSource());
+            Assert.assertEquals("UPDATE t SET a=?", e.getSql());
+            Assert.assertTrue(e.getCause() instanceof BatchUpdateException);
+        }
+    }
+
+    @Test
+    public void testContinueOnFailure() throws SQLException {
+        // 驱动继续执行剩余的行，失败的行标记为EXECUTE_FAILED
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource(new int[] { 1, 1, Statement.EXECUTE_FAILED }));
+        batchExecutor.batch("UPDATE t SET a=?", values("1"), 100, "dml1");
+        batchExecutor.batch("UPDATE t SET a=?", values("2"), 100, "dml2");
+        batchExecutor.batch("UPDATE t SET a=?", values("3"), 100, "dml3");
+        try {
+            batchExecutor.commit();
+            Assert.fail();
+        } catch (BatchFlushException e) {
+            Assert.assertEquals("dml3", e.getSource());
+        }
+    }
+
+    @Test
+    public void testUnknownFailure() throws SQLException {
+        // 驱动没有返回计数时无法定位
+        BatchExecutor batchExecutor = new BatchExecutor(dataSource(null));
+        batchExecutor.batch("UPDATE t SET a=?", values("1"), 100, "dml1");
+        batchExecutor.batch("UPDATE t SET a=?", values("2"), 100, "dml2");
+        try {
+            batchExecutor.flush();
+            Assert.fail();
+        } catch (BatchFlushException e) {
+            Assert.assertNull(e.getSource());
+        }
+
+        // 刷出失败后批量被清空
+        batchExecutor.flush();
+    }
+
+    private static List<Map<String, ?>> values(String value) {
+        List<Map<String, ?>> values = new ArrayList<>();
+        BatchExecutor.setValue(values, Types.VARCHAR, value);
+        return values;
+    }
+
+    /**
+     * executeBatch时按updateCounts抛出BatchUpdateException，其余操作为空实现
+     */
+    private static DataSource dataSource(int[] updateCounts) {
+        PreparedStatement pstmt = (PreparedStatement) Proxy.newProxyInstance(BatchExecutorTest.class.getClassLoader(),
+            new Class[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("executeBatch")) {
+                    throw new BatchUpdateException("Duplicate entry", updateCounts);
+                }
+                return method.getReturnType() == boolean.class ? false : null;
+            });
+        Connection conn = (Connection) Proxy.newProxyInstance(BatchExecutorTest.class.getClassLoader(),
+            new Class[] { Connection.class },
+            (proxy, method, args) -> method.getName().equals("prepareStatement") ? pstmt : null);
+        return (DataSource) Proxy.newProxyInstance(BatchExecutorTest.class.getClassLoader(),
+            new Class[] { DataSource.class },
+            (proxy, method, args) -> method.getName().equals("getConnection") ? conn : null);
+    }
+}
@@ -0,0 +1,183 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig;
+import com.alibaba.otter.canal.client.adapter.rdb.config.MappingConfig.DbMapping;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService;
+import com.alibaba.otter.canal.client.adapter.rdb.service.RdbSyncService.SyncItem;
+import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+
+/**
+ * 测试开启netChange时分区内变更的合并规则
+ *
+ * @version 1.1.4
+ */
+public class NetChangePartitionTest {
+
+    private MappingConfig  config = config("user");
+    private RdbSyncService rdbSyncService;
+
+    @After
+    public void tearDown() {
+        if (rdbSyncService != null) {
+            rdbSyncService.close();
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        RdbSyncService service = service(false, true);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        add(service, config, dml("INSERT", row(2L, "b"), null));
+        add(service, config, dml("UPDATE", row(1L, "c"), old("name", "a")));
+        add(service, config, dml("UPDATE", row(1L, "d"), old("name", "c")));
+
+        // 合并到主键第一次变更的位置
+        Assert.assertEquals(types("INSERT", "INSERT"), types(service));
+        Assert.assertEquals(row(1L, "d"), partition(service).get(0).getSingleDml().getData());
+        Assert.assertEquals(row(2L, "b"), partition(service).get(1).getSingleDml().getData());
+    }
+
+    @Test
+    public void testNetChangeDisabled() {
+        RdbSyncService service = service(false, false);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        add(service, config, dml("UPDATE", row(1L, "c"), old("name", "a")));
+        Assert.assertEquals(types("INSERT", "UPDATE"), types(service));
+    }
+
+    @Test
+    public void testPkChange() {
+        RdbSyncService service = service(false, true);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        // 主键 1 -> 3
+        add(service, config, dml("UPDATE", row(3L, "a"), old("id", 1L)));
+        add(service, config, dml("UPDATE", row(3L, "b"), old("name", "a")));
+        add(service, config, dml("UPDATE", row(3L, "c"), old("name", "b")));
+        // 复用旧主键的新行
+        add(service, config, dml("INSERT", row(1L, "x"), null));
+        add(service, config, dml("UPDATE", row(1L, "y"), old("name", "x")));
+
+        // 修改主键的update单独执行，之后新旧主键的变更不会合并到它之前
+        Assert.assertEquals(types("INSERT", "UPDATE", "UPDATE", "INSERT"), types(service));
+        List<SyncItem> items = partition(service);
+        Assert.assertEquals(row(1L, "a"), items.get(0).getSingleDml().getData());
+        Assert.assertEquals(old("id", 1L), items.get(1).getSingleDml().getOld());
+        Assert.assertEquals(row(3L, "c"), items.get(2).getSingleDml().getData());
+        Assert.assertEquals(row(1L, "y"), items.get(3).getSingleDml().getData());
+    }
+
+    @Test
+    public void testTruncate() {
+        RdbSyncService service = service(false, true);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        SingleDml truncate = new SingleDml();
+        truncate.setType("TRUNCATE");
+        add(service, config, truncate);
+        add(service, config, dml("UPDATE", row(1L, "b"), old("name", "a")));
+        add(service, config, dml("UPDATE", row(1L, "c"), old("name", "b")));
+
+        // truncate之后的变更不会合并到truncate之前
+        Assert.assertEquals(types("INSERT", "TRUNCATE", "UPDATE"), types(service));
+        Assert.assertEquals(row(1L, "a"), partition(service).get(0).getSingleDml().getData());
+        Assert.assertEquals(row(1L, "c"), partition(service).get(2).getSingleDml().getData());
+    }
+
+    @Test
+    public void testSkipDupException() {
+        RdbSyncService service = service(true, true);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        add(service, config, dml("UPDATE", row(1L, "b"), old("name", "a")));
+        add(service, config, dml("UPDATE", row(1L, "c"), old("name", "b")));
+        add(service, config, dml("INSERT", row(2L, "a"), null));
+        add(service, config, dml("DELETE", row(2L, "a"), null));
+
+        // insert可能因为主键冲突被忽略，update不能合并进insert，update之间仍然合并；delete可以合并
+        Assert.assertEquals(types("INSERT", "UPDATE", "DELETE"), types(service));
+        Assert.assertEquals(row(1L, "c"), partition(service).get(1).getSingleDml().getData());
+        Assert.assertEquals(old("name", "a"), partition(service).get(1).getSingleDml().getOld());
+    }
+
+    @Test
+    public void testDifferentTable() {
+        RdbSyncService service = service(false, true);
+        add(service, config, dml("INSERT", row(1L, "a"), null));
+        // 主键值相同但是表不同
+        add(service, config("role"), dml("UPDATE", row(1L, "b"), old("name", "a")));
+        Assert.assertEquals(types("INSERT", "UPDATE"), types(service));
+    }
+
+    private RdbSyncService service(boolean skipDupException, boolean netChange) {
+        rdbSyncService = new RdbSyncService(null, 1, skipDupException);
+        rdbSyncService.setNetChange(netChange);
+        return rdbSyncService;
+    }
+
+    private void add(RdbSyncService service, MappingConfig config, SingleDml dml) {
+        service.addSyncItem(0, new SyncItem(config, dml));
+    }
+
+    private List<SyncItem> partition(RdbSyncService service) {
+        return service.getDmlsPartition()[0];
+    }
+
+    private List<String> types(RdbSyncService service) {
+        List<String> types = new ArrayList<>();
+        for (SyncItem item : partition(service)) {
+            types.add(item.getSingleDml().getType());
+        }
+        return types;
+    }
+
+    private List<String> types(String... types) {
+        List<String> list = new ArrayList<>();
+        for (String type : types) {
+            list.add(type);
+        }
+        return list;
+    }
+
+    private static MappingConfig config(String table) {
+        Map<String, String> targetPk = new HashMap<>();
+        targetPk.put("id", "id");
+        DbMapping dbMapping = new DbMapping();
+        dbMapping.setTable(table);
+        dbMapping.setTargetTable(table);
+        dbMapping.setTargetPk(targetPk);
+        MappingConfig config = new MappingConfig();
+        config.setDbMapping(dbMapping);
+        return config;
+    }
+
+    private SingleDml dml(String type, Map<String, Object> data, Map<String, Object> old) {
+        SingleDml dml = new SingleDml();
+        dml.setType(type);
+        dml.setPrimary(true);
+        dml.setData(data);
+        dml.setOld(old);
+        return dml;
+    }
+
+    private Map<String, Object> row(Long id, String name) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        return row;
+    }
+
+    private Map<String, Object> old(Object... kvs) {
+        Map<String, Object> old = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            old.put((String) kvs[i], kvs[i + 1]);
+        }
+        return old;
+    }
+}
@@ -0,0 +1,85 @@
+package com.alibaba.otter.canal.client.adapter.rdb.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.client.adapter.rdb.support.SingleDml;
+
+/**
+ * 测试同一主键的变更合并
+ *
+ * @version 1.1.4
+ */
+public class SingleDmlMergeTest {
+
+    @Test
+    public void testInsertUpdate() {
+        SingleDml insert = dml("INSERT", row(1L, "a", 1), null);
+        Assert.assertTrue(insert.merge(dml("UPDATE", row(1L, "a", 2), old("count", 1))));
+        Assert.assertTrue(insert.merge(dml("UPDATE", row(1L, "b", 2), old("name", "a"))));
+        Assert.assertEquals("INSERT", insert.getType());
+        Assert.assertEquals(row(1L, "b", 2), insert.getData());
+        Assert.assertNull(insert.getOld());
+    }
+
+    @Test
+    public void testUpdateUpdate() {
+        SingleDml update = dml("UPDATE", row(1L, "a", 2), old("count", 1));
+        Assert.assertTrue(update.merge(dml("UPDATE", row(1L, "b", 3), old("count", 2, "name", "a"))));
+        Assert.assertEquals("UPDATE", update.getType());
+        Assert.assertEquals(row(1L, "b", 3), update.getData());
+        // old保留最早的原始值，包含所有变更过的字段
+        Assert.assertEquals(old("count", 1, "name", "a"), update.getOld());
+    }
+
+    @Test
+    public void testDelete() {
+        SingleDml update = dml("UPDATE", row(1L, "a", 2), old("count", 1));
+        Assert.assertTrue(update.merge(dml("DELETE", row(1L, "a", 2), null)));
+        Assert.assertEquals("DELETE", update.getType());
+        Assert.assertNull(update.getOld());
+
+        SingleDml insert = dml("INSERT", row(1L, "a", 1), null);
+        Assert.assertTrue(insert.merge(dml("DELETE", row(1L, "a", 1), null)));
+        Assert.assertEquals("DELETE", insert.getType());
+    }
+
+    @Test
+    public void testNotMergeable() {
+        SingleDml delete = dml("DELETE", row(1L, "a", 1), null);
+        Assert.assertFalse(delete.merge(dml("INSERT", row(1L, "a", 1), null)));
+        Assert.assertFalse(delete.merge(dml("UPDATE", row(1L, "a", 2), old("count", 1))));
+        Assert.assertEquals("DELETE", delete.getType());
+
+        SingleDml insert = dml("INSERT", row(1L, "a", 1), null);
+        Assert.assertFalse(insert.merge(dml("INSERT", row(1L, "a", 1), null)));
+    }
+
+    private SingleDml dml(String type, Map<String, Object> data, Map<String, Object> old) {
+        SingleDml dml = new SingleDml();
+        dml.setType(type);
+        dml.setPrimary(true);
+        dml.setData(data);
+        dml.setOld(old);
+        return dml;
+    }
+
+    private Map<String, Object> row(Long id, String name, Integer count) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        row.put("count", count);
+        return row;
+    }
+
+    private Map<String, Object> old(Object... kvs) {
+        Map<String, Object> old = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            old.put((String) kvs[i], kvs[i + 1]);
+        }
+        return old;
+    }
+}
@@ -3,7 +3,7 @@ package com.alibaba.otter.canal.client;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
-import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.alibaba.otter.canal.protocol.CompressionUtil;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 import com.google.protobuf.ByteString;
@@ -15,39 +15,43 @@ public class CanalMessageDeserializer {
     }
 
     public static Message deserializer(byte[] data, boolean lazyParseEntry) {
+        if (data == null) {
+            return null;
+        }
+        CanalPacket.Packet p;
         try {
-            if (data == null) {
-                return null;
-            } else {
-                CanalPacket.Packet p = CanalPacket.Packet.parseFrom(data);
-                switch (p.getType()) {
-                    case MESSAGES: {
-                        if (!p.getCompression().equals(Compression.NONE)
-                            && !p.getCompression().equals(Compression.COMPRESSIONCOMPATIBLEPROTO2)) {
-                            throw new CanalClientException("compression is not supported in this connector");
-                        }
+            p = CanalPacket.Packet.parseFrom(data);
+        } catch (Exception e) {
+            throw new CanalClientException("deserializer failed", e);
+        }
+        return deserializer(p, lazyParseEntry);
+    }
 
-                        CanalPacket.Messages messages = CanalPacket.Messages.parseFrom(p.getBody());
-                        Message result = new Message(messages.getBatchId());
-                        if (lazyParseEntry) {
-                            // byteString
-                            result.setRawEntries(messages.getMessagesList());
-                            result.setRaw(true);
-                        } else {
-                            for (ByteString byteString : messages.getMessagesList()) {
-                                result.addEntry(CanalEntry.Entry.parseFrom(byteString));
-                            }
-                            result.setRaw(false);
+    public static Message deserializer(CanalPacket.Packet p, boolean lazyParseEntry) {
+        try {
+            switch (p.getType()) {
+                case MESSAGES: {
+                    ByteString body = CompressionUtil.decompress(p.getCompression(), p.getBody());
+                    CanalPacket.Messages messages = CanalPacket.Messages.parseFrom(body);
+                    Message result = new Message(messages.getBatchId());
+                    if (lazyParseEntry) {
+                        // byteString
+                        result.setRawEntries(messages.getMessagesList());
+                        result.setRaw(true);
+                    } else {
+                        for (ByteString byteString : messages.getMessagesList()) {
+                            result.addEntry(CanalEntry.Entry.parseFrom(byteString));
                         }
-                        return result;
-                    }
-                    case ACK: {
-                        Ack ack = Ack.parseFrom(p.getBody());
-                        throw new CanalClientException("something goes wrong with reason: " + ack.getErrorMessage());
-                    }
-                    default: {
-                        throw new CanalClientException("unexpected packet type: " + p.getType());
+                        result.setRaw(false);
                     }
+                    return result;
+                }
+                case ACK: {
+                    Ack ack = Ack.parseFrom(p.getBody());
+                    throw new CanalClientException("something goes wrong with reason: " + ack.getErrorMessage());
+                }
+                default: {
+                    throw new CanalClientException("unexpected packet type: " + p.getType());
                 }
             }
         } catch (Exception e) {
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.client.CanalConnector;
 import com.alibaba.otter.canal.client.CanalNodeAccessStrategy;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 
@@ -19,17 +20,19 @@ import com.alibaba.otter.canal.protocol.exception.CanalClientException;
  */
 public class ClusterCanalConnector implements CanalConnector {
 
-    private final Logger            logger        = LoggerFactory.getLogger(this.getClass());
+    private final Logger            logger         = LoggerFactory.getLogger(this.getClass());
     private String                  username;
     private String                  password;
-    private int                     soTimeout     = 60000;
-    private int                     idleTimeout   = 60 * 60 * 1000;
-    private int                     retryTimes    = 3;                                       // 设置-1时可以subscribe阻塞等待时优雅停机
-    private int                     retryInterval = 5000;                                    // 重试的时间间隔，默认5秒
+    private int                     soTimeout      = 60000;
+    private int                     idleTimeout    = 60 * 60 * 1000;
+    private int                     retryTimes     = 3;                                      // 设置-1时可以subscribe阻塞等待时优雅停机
+    private int                     retryInterval  = 5000;                                   // 重试的时间间隔，默认5秒
     private CanalNodeAccessStrategy accessStrategy;
     private SimpleCanalConnector    currentConnector;
     private String                  destination;
     private String                  filter;                                                  // 记录上一次的filter提交值,便于自动重试时提交
+    private Compression             compression    = Compression.NONE;                       // 期望server对数据使用的压缩方式
+    private int                     prefetchWindow = 1;                                      // getWithoutAck时最多预先发送的GET请求数
 
     public ClusterCanalConnector(String username, String password, String destination,
                                  CanalNodeAccessStrategy accessStrategy){
@@ -54,6 +57,8 @@ public class ClusterCanalConnector implements CanalConnector {
                     };
                     currentConnector.setSoTimeout(soTimeout);
                     currentConnector.setIdleTimeout(idleTimeout);
+                    currentConnector.setCompression(compression);
+                    currentConnector.setPrefetchWindow(prefetchWindow);
                     if (filter != null) {
                         currentConnector.setFilter(filter);
                     }
@@ -308,6 +313,22 @@ public class ClusterCanalConnector implements CanalConnector {
         this.idleTimeout = idleTimeout;
     }
 
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+
+    public void setPrefetchWindow(int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
     public int getRetryTimes() {
         return retryTimes;
     }
@@ -3,6 +3,7 @@ package com.alibaba.otter.canal.client.impl;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channel;
@@ -12,6 +13,7 @@ import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -38,6 +40,7 @@ import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
 import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
 import com.alibaba.otter.canal.protocol.CanalPacket.Unsub;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.CompressionUtil;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.SecurityUtil;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
@@ -65,6 +68,7 @@ public class SimpleCanalConnector implements CanalConnector {
     private ReadableByteChannel  readableChannel;
     private WritableByteChannel  writableChannel;
     private List<Compression>    supportedCompressions = new ArrayList<Compression>();
+    private Compression          compression           = Compression.NONE;                                   // 期望server对数据使用的压缩方式，server不支持时不压缩
     private ClientIdentity       clientIdentity;
     private ClientRunningMonitor runningMonitor;                                                             // 运行控制
     private ZkClientx            zkClientx;
@@ -73,6 +77,12 @@ public class SimpleCanalConnector implements CanalConnector {
     private boolean              rollbackOnConnect     = true;                                               // 是否在connect链接成功后，自动执行rollback操作
     private boolean              rollbackOnDisConnect  = false;                                              // 是否在connect链接成功后，自动执行rollback操作
     private boolean              lazyParseEntry        = false;                                              // 是否自动化解析Entry对象,如果考虑最大化性能可以延后解析
+    private int                  prefetchWindow        = 1;                                                  // getWithoutAck时最多预先发送的GET请求数，server有数据时直接返回，默认1代表不预取
+    private int                  pendingGets           = 0;                                                  // 已发送但还未读取结果的GET请求数
+    private byte[]               pendingGetPacket;                                                           // 预取的GET请求，batchSize/timeout变化时不再复用
+    private int                  drainTimeout          = 10 * 1000;                                          // rollback/subscribe等操作丢弃预取结果的最长等待时间，单位ms
+    private int                  streamWindow          = 0;                                                  // 大于0时使用STREAM由server主动推送数据，代表未ack的batch数上限，0代表使用GET
+    private byte[]               streamPacket;                                                               // 当前生效的STREAM请求，没有推送时为null
     // 读写数据分别使用不同的锁进行控制，减小锁粒度,读也需要排他锁，并发度容易造成数据包混乱，反序列化失败
     private Object               readDataLock          = new Object();
     private Object               writeDataLock         = new Object();
@@ -150,6 +160,9 @@ public class SimpleCanalConnector implements CanalConnector {
             channel.connect(address);
             readableChannel = Channels.newChannel(channel.socket().getInputStream());
             writableChannel = Channels.newChannel(channel.socket().getOutputStream());
+            pendingGets = 0;
+            pendingGetPacket = null;
+            streamPacket = null;
             Packet p = Packet.parseFrom(readNextPacket());
             if (p.getVersion() != 1) {
                 throw new CanalClientException("unsupported version at this client.");
@@ -175,11 +188,15 @@ public class SimpleCanalConnector implements CanalConnector {
                 .setNetReadTimeout(idleTimeout)
                 .setNetWriteTimeout(idleTimeout)
                 .build();
-            writeWithHeader(Packet.newBuilder()
+            Packet.Builder authBuilder = Packet.newBuilder()
                 .setType(PacketType.CLIENTAUTHENTICATION)
-                .setBody(ca.toByteString())
-                .build()
-                .toByteArray());
+                .setBody(ca.toByteString());
+            // 老版本的server在handshake中不会声明压缩方式
+            if (CompressionUtil.isSupported(compression)
+                && CompressionUtil.isCompressed(handshake.getSupportedCompressions())) {
+                authBuilder.setCompression(compression);
+            }
+            writeWithHeader(authBuilder.build().toByteArray());
             //
             Packet ack = Packet.parseFrom(readNextPacket());
             if (ack.getType() != PacketType.ACK) {
@@ -232,6 +249,8 @@ public class SimpleCanalConnector implements CanalConnector {
             return;
         }
         try {
+            discardPendingGets();
+            stopStream();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.SUBSCRIPTION)
                 .setBody(Sub.newBuilder()
@@ -261,6 +280,8 @@ public class SimpleCanalConnector implements CanalConnector {
             return;
         }
         try {
+            discardPendingGets();
+            stopStream();
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.UNSUBSCRIPTION)
                 .setBody(Unsub.newBuilder()
@@ -307,7 +328,11 @@ public class SimpleCanalConnector implements CanalConnector {
                 unit = TimeUnit.MILLISECONDS;
             }
 
-            writeWithHeader(Packet.newBuilder()
+            if (streamWindow > 0) {
+                return receiveStream(size, time, unit);
+            }
+
+            byte[] getPacket = Packet.newBuilder()
                 .setType(PacketType.GET)
                 .setBody(Get.newBuilder()
                     .setAutoAck(false)
@@ -319,13 +344,91 @@ public class SimpleCanalConnector implements CanalConnector {
                     .build()
                     .toByteString())
                 .build()
-                .toByteArray());
-            return receiveMessages();
+                .toByteArray();
+            synchronized (readDataLock) {
+                stopStream();
+                if (pendingGets > 0 && !Arrays.equals(getPacket, pendingGetPacket)) {
+                    // 参数变化，已经发出的预取请求还是旧的batchSize/timeout，先读取它们的结果
+                    while (pendingGets > 0) {
+                        Message message;
+                        try {
+                            message = receiveMessages();
+                        } finally {
+                            pendingGets--;
+                        }
+                        if (message.getId() != -1) {
+                            // server已经分配了batch，丢弃需要整体回滚，按顺序返回给调用方，剩余的预取结果下一次再处理
+                            return message;
+                        }
+                    }
+                }
+
+                // 补齐预取窗口，server按照请求顺序处理，有数据时直接返回给client
+                pendingGetPacket = getPacket;
+                while (pendingGets < prefetchWindow || pendingGets == 0) {
+                    writeWithHeader(getPacket);
+                    pendingGets++;
+                }
+
+                try {
+                    return receiveMessages();
+                } finally {
+                    pendingGets--;
+                }
+            }
         } catch (IOException e) {
             throw new CanalClientException(e);
         }
     }
 
+    /**
+     * 读取server推送的数据，第一次调用或者参数变化时发送STREAM请求
+     *
+     * <pre>
+     * server在STREAM的应答之前写出按旧参数推送的batch，它们依旧有效，按顺序返回给调用方
+     * </pre>
+     */
+    private Message receiveStream(int size, long time, TimeUnit unit) throws IOException {
+        byte[] packet = streamPacket(size, time, unit, streamWindow);
+        synchronized (readDataLock) {
+            discardPendingGets();
+            if (!Arrays.equals(packet, streamPacket)) {
+                writeWithHeader(packet);
+                streamPacket = packet;
+            }
+
+            while (true) {
+                Packet p = Packet.parseFrom(readNextPacket());
+                if (p.getType() == PacketType.ACK) {
+                    Ack ack = Ack.parseFrom(p.getBody());
+                    if (ack.getErrorCode() > 0) {
+                        streamPacket = null;
+                        throw new CanalClientException("something goes wrong with reason: " + ack.getErrorMessage());
+                    }
+                    continue;// STREAM请求的应答
+                }
+                return CanalMessageDeserializer.deserializer(p, lazyParseEntry);
+            }
+        }
+    }
+
+    private byte[] streamPacket(int size, long time, TimeUnit unit, int window) {
+        return Packet.newBuilder()
+            .setType(PacketType.STREAM)
+            .setBody(Get.newBuilder()
+                .setAutoAck(false)
+                .setDestination(clientIdentity.getDestination())
+                .setClientId(String.valueOf(clientIdentity.getClientId()))
+                .setFetchSize(size)
+                .setTimeout(time)
+                .setUnit(unit.ordinal())
+                .setWindow(window)
+                .build()
+                .toByteString())
+            .build()
+            .toByteArray();
+    }
+
     private Message receiveMessages() throws IOException {
         byte[] data = readNextPacket();
         return CanalMessageDeserializer.deserializer(data, lazyParseEntry);
@@ -360,6 +463,19 @@ public class SimpleCanalConnector implements CanalConnector {
             .setBatchId(batchId)
             .build();
         try {
+            if (streamPacket != null) {
+                // server停止推送并全部回滚，之后写出ACK作为分界，丢弃分界之前已经推送的batch
+                drainStream(Packet.newBuilder()
+                    .setType(PacketType.CLIENTROLLBACK)
+                    .setBody(ca.toBuilder().setBatchId(0).build().toByteString())
+                    .build()
+                    .toByteArray());
+                return;
+            }
+            if (discardPendingGets() && batchId != 0) {
+                // 预取的batch没有返回给调用方，需要全部回滚
+                ca = ca.toBuilder().setBatchId(0).build();
+            }
             writeWithHeader(Packet.newBuilder()
                 .setType(PacketType.CLIENTROLLBACK)
                 .setBody(ca.toByteString())
@@ -377,6 +493,110 @@ public class SimpleCanalConnector implements CanalConnector {
 
     // ==================== helper method ====================
 
+    /**
+     * 读取并丢弃预取的GET结果，在发送其他需要应答的请求或者rollback之前调用
+     *
+     * <pre>
+     * 预取的GET可能带着很长的timeout(或者-1不限制)阻塞在server端，最多等待drainTimeout，
+     * 超时后链接上还有未读取的应答，无法继续使用，直接断开链接，重连时会自动rollback
+     * </pre>
+     *
+     * @return 是否丢弃了有效的batch
+     */
+    private boolean discardPendingGets() throws IOException {
+        boolean discarded = false;
+        synchronized (readDataLock) {
+            if (pendingGets == 0) {
+                return false;
+            }
+
+            long deadline = System.currentTimeMillis() + drainTimeout;
+            try {
+                while (pendingGets > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException();
+                    }
+                    channel.socket().setSoTimeout((int) remaining);
+                    byte[] data = readNextPacket();
+                    pendingGets--;
+                    try {
+                        Message message = CanalMessageDeserializer.deserializer(data, true);
+                        if (message.getId() != -1) {
+                            discarded = true;
+                        }
+                    } catch (CanalClientException e) {
+                        logger.warn("discard prefetched packet with error : {}", e.getMessage());
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                logger.warn("discard {} prefetched gets timeout after {} ms, close the connection",
+                    pendingGets,
+                    drainTimeout);
+                pendingGets = 0;
+                doDisconnect();
+                throw new CanalClientException("discard prefetched gets timeout, connection is closed");
+            } finally {
+                if (channel != null) {
+                    channel.socket().setSoTimeout(soTimeout);
+                }
+            }
+        }
+        return discarded;
+    }
+
+    /**
+     * 停止server的推送，丢弃已经推送但还未读取的batch
+     */
+    private void stopStream() throws IOException {
+        synchronized (readDataLock) {
+            if (streamPacket == null) {
+                return;
+            }
+
+            streamPacket = null;
+            drainStream(streamPacket(0, -1, TimeUnit.MILLISECONDS, 0));// window为0代表停止推送
+        }
+    }
+
+    /**
+     * 发送请求后丢弃推送的数据，直到读取到server的ACK应答，最多等待drainTimeout
+     */
+    private void drainStream(byte[] request) throws IOException {
+        synchronized (readDataLock) {
+            writeWithHeader(request);
+            long deadline = System.currentTimeMillis() + drainTimeout;
+            try {
+                while (true) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException();
+                    }
+                    channel.socket().setSoTimeout((int) remaining);
+                    Packet p = Packet.parseFrom(readNextPacket());
+                    if (p.getType() == PacketType.ACK) {
+                        Ack ack = Ack.parseFrom(p.getBody());
+                        if (ack.getErrorCode() > 0) {
+                            streamPacket = null;
+                            throw new CanalClientException("something goes wrong with reason: "
+                                                           + ack.getErrorMessage());
+                        }
+                        return;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                logger.warn("discard pushed batches timeout after {} ms, close the connection", drainTimeout);
+                streamPacket = null;
+                doDisconnect();
+                throw new CanalClientException("discard pushed batches timeout, connection is closed");
+            } finally {
+                if (channel != null) {
+                    channel.socket().setSoTimeout(soTimeout);
+                }
+            }
+        }
+    }
+
     private void writeWithHeader(byte[] body) throws IOException {
         writeWithHeader(writableChannel, body);
     }
@@ -534,6 +754,38 @@ public class SimpleCanalConnector implements CanalConnector {
         this.lazyParseEntry = lazyParseEntry;
     }
 
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+
+    public void setPrefetchWindow(int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public int getStreamWindow() {
+        return streamWindow;
+    }
+
+    public void setStreamWindow(int streamWindow) {
+        this.streamWindow = streamWindow;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
     public void stopRunning() {
         if (running) {
             running = false; // 设置为非running状态
@@ -0,0 +1,326 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
+import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
+import com.alibaba.otter.canal.protocol.CanalPacket.Get;
+import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+import com.google.protobuf.ByteString;
+
+/**
+ * 基于本地的模拟server测试GET预取：参数变化时重新发送请求，丢弃预取结果时限制等待时间；以及STREAM推送的额度控制和回滚
+ *
+ * @version 1.1.4
+ */
+public class SimpleCanalConnectorTest {
+
+    private static final Long    SILENT    = Long.MIN_VALUE;                                   // 不应答对应的GET，模拟server端阻塞
+
+    private ServerSocket         serverSocket;
+    private Thread               serverThread;
+    private BlockingQueue<Long>  replies   = new LinkedBlockingQueue<Long>();                // 按顺序应答GET的batchId，没有设置时返回空batch
+    private List<Get>            gets      = new CopyOnWriteArrayList<Get>();
+    private List<ClientRollback> rollbacks = new CopyOnWriteArrayList<ClientRollback>();
+    private List<Get>            streams   = new CopyOnWriteArrayList<Get>();
+    private List<Long>           pushed    = new CopyOnWriteArrayList<Long>();                 // STREAM模式下推送的batchId
+    private CountDownLatch       closed    = new CountDownLatch(1);
+    private SimpleCanalConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        serverThread = new Thread(new Runnable() {
+
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket);
+                } catch (IOException e) {
+                    // ignore
+                } finally {
+                    closed.countDown();
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        connector = new SimpleCanalConnector(new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort()),
+            null,
+            null,
+            "example",
+            60 * 1000);
+        connector.setRollbackOnConnect(false);
+        connector.setLazyParseEntry(true);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    @Test
+    public void testReissueOnParameterChange() throws Exception {
+        connector.setPrefetchWindow(2);
+        connector.connect();
+
+        Assert.assertEquals(-1L, connector.getWithoutAck(10).getId());
+        // 预取的GET还是batchSize=10，丢弃它的空结果后按新的参数重新请求
+        Assert.assertEquals(-1L, connector.getWithoutAck(20, 100L, TimeUnit.MILLISECONDS).getId());
+        assertGets(new int[] { 10, 10, 20, 20 }, new long[] { -1, -1, 100, 100 });
+
+        // 参数不变时继续复用预取的请求
+        connector.getWithoutAck(20, 100L, TimeUnit.MILLISECONDS);
+        assertGets(new int[] { 10, 10, 20, 20, 20 }, new long[] { -1, -1, 100, 100, 100 });
+    }
+
+    @Test
+    public void testReissueKeepsPrefetchedBatch() throws Exception {
+        replies.add(1L);
+        replies.add(2L);
+        connector.setPrefetchWindow(2);
+        connector.connect();
+
+        Assert.assertEquals(1L, connector.getWithoutAck(10).getId());
+        // server已经为预取的GET分配了batch，按顺序返回，不能直接丢弃
+        Message message = connector.getWithoutAck(20);
+        Assert.assertEquals(2L, message.getId());
+        assertGets(new int[] { 10, 10 }, new long[] { -1, -1 });
+
+        // 旧的请求处理完之后再按新的参数请求
+        Assert.assertEquals(-1L, connector.getWithoutAck(20).getId());
+        assertGets(new int[] { 10, 10, 20, 20 }, new long[] { -1, -1, -1, -1 });
+    }
+
+    @Test
+    public void testRollbackDiscardsPrefetchedBatch() throws Exception {
+        replies.add(1L);
+        replies.add(2L);
+        connector.setPrefetchWindow(2);
+        connector.connect();
+
+        Assert.assertEquals(1L, connector.getWithoutAck(10).getId());
+        // 丢弃了预取的batch 2，需要全部回滚
+        connector.rollback(1L);
+        Assert.assertEquals(0L, awaitRollback().getBatchId());
+    }
+
+    @Test
+    public void testDrainTimeout() throws Exception {
+        replies.add(-1L);
+        replies.add(SILENT);
+        connector.setPrefetchWindow(2);
+        connector.setDrainTimeout(200);
+        connector.connect();
+
+        Assert.assertEquals(-1L, connector.getWithoutAck(10).getId());
+        long start = System.currentTimeMillis();
+        try {
+            // 第二个GET一直没有应答，超过drainTimeout之后断开链接
+            connector.rollback();
+            Assert.fail();
+        } catch (CanalClientException e) {
+            // expected
+        }
+        long cost = System.currentTimeMillis() - start;
+        Assert.assertTrue("cost " + cost, cost >= 200 && cost < 10 * 1000);
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(rollbacks.isEmpty());
+    }
+
+    @Test
+    public void testStreamWindow() throws Exception {
+        replies.add(1L);
+        replies.add(2L);
+        replies.add(3L);
+        connector.setStreamWindow(2);
+        connector.connect();
+
+        Assert.assertEquals(1L, connector.getWithoutAck(10).getId());
+        Assert.assertEquals(2L, connector.getWithoutAck(10).getId());
+        // 未ack的batch达到window，server停止推送
+        Thread.sleep(100);
+        Assert.assertEquals(2, pushed.size());
+
+        connector.ack(1L);
+        Assert.assertEquals(3L, connector.getWithoutAck(10).getId());
+        Assert.assertEquals(1, streams.size());
+        Assert.assertEquals(2, streams.get(0).getWindow());
+        Assert.assertTrue(gets.isEmpty());
+
+        // 参数变化时重新发送STREAM
+        Assert.assertEquals(-1L, connector.getWithoutAck(20).getId());
+        Assert.assertEquals(2, streams.size());
+        Assert.assertEquals(20, streams.get(1).getFetchSize());
+    }
+
+    @Test
+    public void testStreamRollback() throws Exception {
+        replies.add(1L);
+        replies.add(2L);
+        connector.setStreamWindow(2);
+        connector.connect();
+
+        Assert.assertEquals(1L, connector.getWithoutAck(10).getId());
+        awaitPushed(2);
+        replies.add(1L);
+        // batch 2已经推送但未读取，回滚时丢弃，之后server从头开始推送
+        connector.rollback(1L);
+        Assert.assertEquals(0L, awaitRollback().getBatchId());
+        Assert.assertEquals(1L, connector.getWithoutAck(10).getId());
+        Assert.assertEquals(1, streams.size());
+
+        // 停止推送后再使用GET
+        connector.setStreamWindow(0);
+        Assert.assertEquals(-1L, connector.getWithoutAck(10).getId());
+        Assert.assertEquals(2, streams.size());
+        Assert.assertEquals(0, streams.get(1).getWindow());
+        assertGets(new int[] { 10 }, new long[] { -1 });
+    }
+
+    private void awaitPushed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (pushed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, pushed.size());
+    }
+
+    private void assertGets(int[] fetchSizes, long[] timeouts) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (gets.size() < fetchSizes.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(fetchSizes.length, gets.size());
+        for (int i = 0; i < fetchSizes.length; i++) {
+            Assert.assertEquals(fetchSizes[i], gets.get(i).getFetchSize());
+            Assert.assertEquals(timeouts[i], gets.get(i).getTimeout());
+        }
+    }
+
+    private ClientRollback awaitRollback() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (rollbacks.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(rollbacks.isEmpty());
+        return rollbacks.get(0);
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        write(output, Packet.newBuilder()
+            .setVersion(1)
+            .setType(PacketType.HANDSHAKE)
+            .setBody(Handshake.newBuilder().setSeeds(ByteString.copyFromUtf8("12345678")).build().toByteString())
+            .build());
+
+        Packet auth = read(input);
+        Assert.assertEquals(PacketType.CLIENTAUTHENTICATION, auth.getType());
+        write(output, Packet.newBuilder()
+            .setType(PacketType.ACK)
+            .setBody(Ack.newBuilder().setErrorCode(0).build().toByteString())
+            .build());
+
+        Get stream = null;
+        int inflight = 0;
+        try {
+            while (true) {
+                Packet packet = read(input);
+                switch (packet.getType()) {
+                    case GET:
+                        gets.add(Get.parseFrom(packet.getBody()));
+                        Long batchId = replies.poll();
+                        if (SILENT.equals(batchId)) {
+                            break;
+                        }
+                        writeMessages(output, batchId != null ? batchId : -1L);
+                        break;
+                    case STREAM:
+                        Get get = Get.parseFrom(packet.getBody());
+                        streams.add(get);
+                        stream = get.getWindow() > 0 ? get : null;
+                        writeAck(output);
+                        break;
+                    case CLIENTACK:
+                        inflight--;
+                        break;
+                    case CLIENTROLLBACK:
+                        rollbacks.add(ClientRollback.parseFrom(packet.getBody()));
+                        if (stream != null) {
+                            inflight = 0;
+                            writeAck(output);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+
+                // 按照window推送，没有数据时推送空batch
+                if (stream != null) {
+                    if (replies.isEmpty()) {
+                        writeMessages(output, -1L);
+                    }
+                    while (inflight < stream.getWindow() && !replies.isEmpty()) {
+                        Long batchId = replies.poll();
+                        pushed.add(batchId);
+                        writeMessages(output, batchId);
+                        inflight++;
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // client断开链接
+        }
+    }
+
+    private void writeMessages(DataOutputStream output, long batchId) throws IOException {
+        write(output, Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setBody(Messages.newBuilder().setBatchId(batchId).build().toByteString())
+            .build());
+    }
+
+    private void writeAck(DataOutputStream output) throws IOException {
+        write(output, Packet.newBuilder()
+            .setType(PacketType.ACK)
+            .setBody(Ack.newBuilder().setErrorCode(0).build().toByteString())
+            .build());
+    }
+
+    private Packet read(DataInputStream input) throws IOException {
+        byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+        return Packet.parseFrom(body);
+    }
+
+    private void write(DataOutputStream output, Packet packet) throws IOException {
+        byte[] body = packet.toByteArray();
+        output.writeInt(body.length);
+        output.write(body);
+        output.flush();
+    }
+}
@@ -0,0 +1,59 @@
+package com.alibaba.otter.canal.common.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * mmap映射区域的显式释放，不等待gc回收buffer，避免映射区域、文件句柄和已删除文件的磁盘空间堆积
+ *
+ * @version 1.1.4
+ */
+public class MappedBufferUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBufferUtils.class);
+
+    /**
+     * 通过cleaner释放mmap映射，java9及以上使用Unsafe.invokeCleaner，java8使用DirectBuffer.cleaner()，失败时等待gc回收
+     *
+     * @return 是否释放成功
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return false;
+        }
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                invokeCleaner = null;
+            }
+
+            if (invokeCleaner != null) {
+                // java9及以上
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                // java8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            logger.warn("unmap buffer failed, wait for gc", e);
+            return false;
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class ZkClientx extends ZkClient {
         this(new ZooKeeperx(zkServers, sessionTimeout), connectionTimeout, zkSerializer);
     }
 
-    private ZkClientx(IZkConnection connection, int connectionTimeout){
+    public ZkClientx(IZkConnection connection, int connectionTimeout){
         this(connection, connectionTimeout, new ByteSerializer());
     }
 
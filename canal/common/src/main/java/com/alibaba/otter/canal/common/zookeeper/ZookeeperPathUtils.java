@@ -20,6 +20,7 @@ import org.apache.commons.lang.StringUtils;
  *            cluster
  *            filter
  *            cursor
+ *            meta (CompactZooKeeperMetaManager)
  *            mark
  *              1
  *              2
@@ -49,6 +50,8 @@ public class ZookeeperPathUtils {
 
     public static final String CURSOR_NODE                                  = "cursor";
 
+    public static final String META_NODE                                    = "meta";
+
     public static final String RUNNING_NODE                                 = "running";
 
     public static final String CLUSTER_NODE                                 = "cluster";
@@ -65,6 +68,9 @@ public class ZookeeperPathUtils {
     public static final String DESTINATION_CURSOR_NODE                      = DESTINATION_CLIENTID_NODE
                                                                               + ZOOKEEPER_SEPARATOR + CURSOR_NODE;
 
+    public static final String DESTINATION_CLIENTID_META_NODE               = DESTINATION_CLIENTID_NODE
+                                                                              + ZOOKEEPER_SEPARATOR + META_NODE;
+
     public static final String DESTINATION_CLIENTID_FILTER_NODE             = DESTINATION_CLIENTID_NODE
                                                                               + ZOOKEEPER_SEPARATOR + FILTER_NODE;
 
@@ -130,6 +136,10 @@ public class ZookeeperPathUtils {
         return MessageFormat.format(DESTINATION_CURSOR_NODE, destination, String.valueOf(clientId));
     }
 
+    public static String getMetaPath(String destination, short clientId) {
+        return MessageFormat.format(DESTINATION_CLIENTID_META_NODE, destination, String.valueOf(clientId));
+    }
+
     public static String getCanalClusterNode(String node) {
         return MessageFormat.format(CANAL_CLUSTER_NODE, node);
     }
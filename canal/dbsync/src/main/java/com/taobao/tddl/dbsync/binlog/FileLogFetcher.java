@@ -29,7 +29,7 @@ import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
  * @author <a href="mailto:changyuan.lh@taobao.com">Changyuan.lh</a>
  * @version 1.0
  */
-public final class FileLogFetcher extends LogFetcher {
+public class FileLogFetcher extends LogFetcher {
 
     public static final byte[] BINLOG_MAGIC = { -2, 0x62, 0x69, 0x6e };
 
@@ -72,10 +72,10 @@ public final class FileLogFetcher extends LogFetcher {
      * Open binlog file in local disk to fetch.
      */
     public void open(File file, final long filePosition) throws FileNotFoundException, IOException {
-        fin = new FileInputStream(file);
+        openFile(file);
 
         ensureCapacity(BIN_LOG_HEADER_SIZE);
-        if (BIN_LOG_HEADER_SIZE != fin.read(buffer, 0, BIN_LOG_HEADER_SIZE)) {
+        if (BIN_LOG_HEADER_SIZE != read(buffer, 0, BIN_LOG_HEADER_SIZE)) {
             throw new IOException("No binlog file header");
         }
 
@@ -96,9 +96,9 @@ public final class FileLogFetcher extends LogFetcher {
                                                      + LogEvent.CHECKSUM_CRC32_SIGNATURE_LEN;
 
             ensureCapacity(maxFormatDescriptionEventLen);
-            limit = fin.read(buffer, 0, maxFormatDescriptionEventLen);
+            limit = read(buffer, 0, maxFormatDescriptionEventLen);
             limit = (int) getUint32(LogEvent.EVENT_LEN_OFFSET);
-            fin.getChannel().position(filePosition);
+            seek(filePosition);
         }
     }
 
@@ -109,7 +109,7 @@ public final class FileLogFetcher extends LogFetcher {
      */
     public boolean fetch() throws IOException {
         if (limit == 0) {
-            final int len = fin.read(buffer, 0, buffer.length);
+            final int len = read(buffer, 0, buffer.length);
             if (len >= 0) {
                 limit += len;
                 position = 0;
@@ -122,7 +122,7 @@ public final class FileLogFetcher extends LogFetcher {
             if (limit > buffer.length / 2) {
                 ensureCapacity(buffer.length + limit);
             }
-            final int len = fin.read(buffer, limit, buffer.length - limit);
+            final int len = read(buffer, limit, buffer.length - limit);
             if (len >= 0) {
                 limit += len;
 
@@ -146,7 +146,7 @@ public final class FileLogFetcher extends LogFetcher {
             System.arraycopy(buffer, origin, buffer, 0, limit);
             position -= origin;
             origin = 0;
-            final int len = fin.read(buffer, limit, buffer.length - limit);
+            final int len = read(buffer, limit, buffer.length - limit);
             if (len >= 0) {
                 limit += len;
 
@@ -168,6 +168,36 @@ public final class FileLogFetcher extends LogFetcher {
      * @see com.taobao.tddl.dbsync.binlog.LogFetcher#close()
      */
     public void close() throws IOException {
+        closeFile();
+    }
+
+    /**
+     * Open the file to read.
+     */
+    protected void openFile(File file) throws FileNotFoundException, IOException {
+        fin = new FileInputStream(file);
+    }
+
+    /**
+     * Reads up to len bytes from the file.
+     * 
+     * @return the number of bytes read, or -1 if the end of file is reached
+     */
+    protected int read(byte[] b, final int off, final int len) throws IOException {
+        return fin.read(b, off, len);
+    }
+
+    /**
+     * Sets the file position for the next read.
+     */
+    protected void seek(final long filePosition) throws IOException {
+        fin.getChannel().position(filePosition);
+    }
+
+    /**
+     * Close the file.
+     */
+    protected void closeFile() throws IOException {
         if (fin != null) {
             fin.close();
         }
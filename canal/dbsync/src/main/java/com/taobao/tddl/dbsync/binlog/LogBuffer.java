@@ -1245,6 +1245,21 @@ public class LogBuffer {
             frac0x);
     }
 
+    /**
+     * Return the packed size of a big decimal.
+     *
+     * @see mysql-5.1.60/strings/decimal.c - decimal_bin_size()
+     */
+    public static final int getDecimalBinSize(final int precision, final int scale) {
+        final int intg = precision - scale;
+        final int intg0 = intg / DIG_PER_INT32;
+        final int frac0 = scale / DIG_PER_INT32;
+        final int intg0x = intg - intg0 * DIG_PER_INT32;
+        final int frac0x = scale - frac0 * DIG_PER_INT32;
+
+        return intg0 * SIZE_OF_INT32 + dig2bytes[intg0x] + frac0 * SIZE_OF_INT32 + dig2bytes[frac0x];
+    }
+
     /**
      * Return next big decimal from buffer.
      * 
@@ -0,0 +1,117 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.alibaba.otter.canal.common.utils.MappedBufferUtils;
+
+/**
+ * 基于FileChannel内存映射读取本地binlog文件，按照mapSize分段映射，避免FileInputStream每次read的系统调用和堆外临时内存拷贝
+ *
+ * <pre>
+ * MappedFileLogFetcher fetcher = new MappedFileLogFetcher();
+ * fetcher.open(file, 0);
+ *
+ * while (fetcher.fetch()) {
+ *     LogEvent event;
+ *     do {
+ *         event = decoder.decode(fetcher, context);
+ *
+ *         // process log event.
+ *     } while (event != null);
+ * }
+ * // file ending reached.
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class MappedFileLogFetcher extends FileLogFetcher {
+
+    /** Default mapped region size */
+    public static final int  DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+    private final int        mapSize;
+    private RandomAccessFile file;
+    private FileChannel      channel;
+    private MappedByteBuffer mapped;
+    private long             filePosition;
+
+    public MappedFileLogFetcher(){
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAP_SIZE);
+    }
+
+    public MappedFileLogFetcher(final int initialCapacity){
+        this(initialCapacity, DEFAULT_MAP_SIZE);
+    }
+
+    public MappedFileLogFetcher(final int initialCapacity, final int mapSize){
+        super(initialCapacity, DEFAULT_GROWTH_FACTOR);
+        this.mapSize = mapSize;
+    }
+
+    @Override
+    protected void openFile(File binlogFile) throws FileNotFoundException, IOException {
+        file = new RandomAccessFile(binlogFile, "r");
+        channel = file.getChannel();
+        mapped = null;
+        filePosition = 0;
+    }
+
+    @Override
+    protected int read(byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (mapped == null || !mapped.hasRemaining()) {
+            // 重新读取文件大小，兼容还在追加写入的文件
+            final long size = channel.size();
+            if (filePosition >= size) {
+                return -1;
+            }
+
+            unmap();
+            mapped = channel.map(MapMode.READ_ONLY, filePosition, Math.min(mapSize, size - filePosition));
+        }
+
+        final int n = Math.min(len, mapped.remaining());
+        mapped.get(b, off, n);
+        filePosition += n;
+        return n;
+    }
+
+    @Override
+    protected void seek(final long position) throws IOException {
+        filePosition = position;
+        unmap();
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        unmap();
+        channel = null;
+        if (file != null) {
+            file.close();
+        }
+
+        file = null;
+    }
+
+    /**
+     * 显式释放当前映射的区域，不等待gc回收，避免读取大量binlog时映射区域和文件句柄堆积
+     */
+    private void unmap() {
+        if (mapped == null) {
+            return;
+        }
+
+        MappedByteBuffer buffer = mapped;
+        mapped = null;
+        MappedBufferUtils.unmap(buffer);
+    }
+}
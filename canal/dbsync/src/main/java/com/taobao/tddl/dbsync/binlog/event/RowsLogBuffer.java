@@ -126,6 +126,152 @@ public final class RowsLogBuffer {
         }
     }
 
+    /**
+     * 跳过下一个字段，只根据type/meta计算字段在packed buffer中的长度并移动位置，不做字符集转换和格式化.
+     * 跳过之后value/javaType/length不再对应当前字段，仅isNull()有效
+     *
+     * @see mysql-5.1.60/sql/log_event.cc - log_event_print_value
+     */
+    public final void skipValue(final int type, final int meta) {
+        fNull = nullBits.get(nullBitIndex++);
+        value = null;
+        length = 0;
+        if (!fNull) {
+            buffer.forward(valueLength(type, meta));
+        }
+    }
+
+    /**
+     * 计算字段值在packed buffer中占用的字节数，变长字段会读取长度前缀
+     */
+    final int valueLength(int type, final int meta) {
+        int len = 0;
+
+        if (type == LogEvent.MYSQL_TYPE_STRING) {
+            if (meta >= 256) {
+                int byte0 = meta >> 8;
+                int byte1 = meta & 0xff;
+                if ((byte0 & 0x30) != 0x30) {
+                    /* a long CHAR() field: see #37426 */
+                    len = byte1 | (((byte0 & 0x30) ^ 0x30) << 4);
+                    type = byte0 | 0x30;
+                } else {
+                    switch (byte0) {
+                        case LogEvent.MYSQL_TYPE_SET:
+                        case LogEvent.MYSQL_TYPE_ENUM:
+                        case LogEvent.MYSQL_TYPE_STRING:
+                            type = byte0;
+                            len = byte1;
+                            break;
+                        default:
+                            throw new IllegalArgumentException(String.format("!! Don't know how to handle column type=%d meta=%d (%04X)",
+                                type,
+                                meta,
+                                meta));
+                    }
+                }
+            } else {
+                len = meta;
+            }
+        }
+
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_TINY:
+            case LogEvent.MYSQL_TYPE_YEAR:
+                return 1;
+            case LogEvent.MYSQL_TYPE_SHORT:
+                return 2;
+            case LogEvent.MYSQL_TYPE_INT24:
+            case LogEvent.MYSQL_TYPE_TIME:
+            case LogEvent.MYSQL_TYPE_DATE:
+                return 3;
+            case LogEvent.MYSQL_TYPE_LONG:
+            case LogEvent.MYSQL_TYPE_FLOAT:
+            case LogEvent.MYSQL_TYPE_TIMESTAMP:
+                return 4;
+            case LogEvent.MYSQL_TYPE_LONGLONG:
+            case LogEvent.MYSQL_TYPE_DOUBLE:
+            case LogEvent.MYSQL_TYPE_DATETIME:
+                return 8;
+            case LogEvent.MYSQL_TYPE_DECIMAL:
+            case LogEvent.MYSQL_TYPE_NEWDATE:
+                /* only used internally and cannot exist in a binlog */
+                return 0;
+            case LogEvent.MYSQL_TYPE_NEWDECIMAL:
+                return LogBuffer.getDecimalBinSize(meta >> 8, meta & 0xff);
+            case LogEvent.MYSQL_TYPE_BIT: {
+                final int nbits = ((meta >> 8) * 8) + (meta & 0xff);
+                return nbits > 1 ? (nbits + 7) / 8 : 1;
+            }
+            case LogEvent.MYSQL_TYPE_TIMESTAMP2:
+                return 4 + fracLength(meta);
+            case LogEvent.MYSQL_TYPE_DATETIME2:
+                return 5 + fracLength(meta);
+            case LogEvent.MYSQL_TYPE_TIME2:
+                return 3 + fracLength(meta);
+            case LogEvent.MYSQL_TYPE_ENUM:
+                if (len != 1 && len != 2) {
+                    throw new IllegalArgumentException("!! Unknown ENUM packlen = " + len);
+                }
+                return len;
+            case LogEvent.MYSQL_TYPE_SET: {
+                final int setLen = meta & 0xFF;
+                if (setLen > 8) {
+                    throw new IllegalArgumentException("!! Unknown Set len = " + setLen);
+                }
+                return setLen > 0 ? setLen : 1;
+            }
+            case LogEvent.MYSQL_TYPE_VARCHAR:
+            case LogEvent.MYSQL_TYPE_VAR_STRING:
+                return meta < 256 ? buffer.getUint8() : buffer.getUint16();
+            case LogEvent.MYSQL_TYPE_STRING:
+                return len < 256 ? buffer.getUint8() : buffer.getUint16();
+            case LogEvent.MYSQL_TYPE_TINY_BLOB:
+            case LogEvent.MYSQL_TYPE_MEDIUM_BLOB:
+            case LogEvent.MYSQL_TYPE_LONG_BLOB:
+            case LogEvent.MYSQL_TYPE_BLOB:
+            case LogEvent.MYSQL_TYPE_JSON:
+            case LogEvent.MYSQL_TYPE_GEOMETRY:
+                switch (meta) {
+                    case 1:
+                        return buffer.getUint8();
+                    case 2:
+                        return buffer.getUint16();
+                    case 3:
+                        return buffer.getUint24();
+                    case 4:
+                        return (int) buffer.getUint32();
+                    default:
+                        throw new IllegalArgumentException("!! Unknown packlen = " + meta + " for column type=" + type);
+                }
+            default:
+                logger.error(String.format("!! Don't know how to handle column type=%d meta=%d (%04X)",
+                    type,
+                    meta,
+                    meta));
+                return 0;
+        }
+    }
+
+    /**
+     * TIMESTAMP2/DATETIME2/TIME2小数秒部分的字节数
+     */
+    private static int fracLength(final int meta) {
+        switch (meta) {
+            case 1:
+            case 2:
+                return 1;
+            case 3:
+            case 4:
+                return 2;
+            case 5:
+            case 6:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Maps the given MySQL type to the correct JDBC type.
      */
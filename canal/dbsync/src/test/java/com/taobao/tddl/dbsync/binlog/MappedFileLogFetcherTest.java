@@ -0,0 +1,62 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试内存映射读取和FileInputStream读取解析出的事件一致
+ *
+ * @version 1.1.4
+ */
+public class MappedFileLogFetcherTest {
+
+    private File binlogFile;
+
+    @Before
+    public void setUp() {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("dummy.txt");
+        File dummyFile = new File(url.getFile());
+        binlogFile = new File(dummyFile.getParent() + "/binlog", "mysql-bin.000001");
+    }
+
+    @Test
+    public void testSameEvents() throws IOException {
+        List<String> expected = decode(new FileLogFetcher(1024), 0L);
+        Assert.assertTrue(expected.size() > 3);
+        // 映射区域小于单个事件，覆盖跨区域读取
+        Assert.assertEquals(expected, decode(new MappedFileLogFetcher(1024, 100), 0L));
+        Assert.assertEquals(expected, decode(new MappedFileLogFetcher(), 0L));
+
+        // 从中间位点开始读取
+        String middle = expected.get(expected.size() / 2);
+        long position = Long.parseLong(middle.substring(middle.indexOf(':') + 1));
+        List<String> expectedFromMiddle = decode(new FileLogFetcher(1024), position);
+        Assert.assertEquals(expectedFromMiddle, decode(new MappedFileLogFetcher(1024, 100), position));
+    }
+
+    private List<String> decode(FileLogFetcher fetcher, long position) throws IOException {
+        List<String> events = new ArrayList<String>();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        LogContext context = new LogContext();
+        try {
+            fetcher.open(binlogFile, position);
+            context.setLogPosition(new LogPosition(binlogFile.getName()));
+            while (fetcher.fetch()) {
+                LogEvent event = decoder.decode(fetcher, context);
+                if (event != null) {
+                    events.add(event.getHeader().getType() + ":" + event.getLogPos());
+                }
+            }
+        } finally {
+            fetcher.close();
+        }
+        return events;
+    }
+}
@@ -0,0 +1,110 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer;
+
+/**
+ * 测试跳过字段和完整解码字段时buffer的位置一致
+ *
+ * @version 1.1.4
+ */
+public class RowsLogBufferSkipTest {
+
+    private static final int[] TYPES = { LogEvent.MYSQL_TYPE_LONG, LogEvent.MYSQL_TYPE_VARCHAR,
+            LogEvent.MYSQL_TYPE_NEWDECIMAL, LogEvent.MYSQL_TYPE_DATETIME2, LogEvent.MYSQL_TYPE_BLOB,
+            LogEvent.MYSQL_TYPE_TIMESTAMP2, LogEvent.MYSQL_TYPE_STRING, LogEvent.MYSQL_TYPE_TINY,
+            LogEvent.MYSQL_TYPE_BIT, LogEvent.MYSQL_TYPE_STRING };
+    private static final int[] METAS = { 0, 100, (10 << 8) | 2, 3, 2, 6, (LogEvent.MYSQL_TYPE_STRING << 8) | 30, 0,
+            (1 << 8) | 4, (LogEvent.MYSQL_TYPE_ENUM << 8) | 1 };
+
+    @Test
+    public void testSkipValue() {
+        byte[] data = buildRow();
+
+        // 完整解码所有字段
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        RowsLogBuffer rowsBuffer = new RowsLogBuffer(buffer, TYPES.length, "UTF-8", 0, false);
+        BitSet columns = new BitSet();
+        columns.set(0, TYPES.length);
+        Assert.assertTrue(rowsBuffer.nextOneRow(columns));
+        Serializable[] values = new Serializable[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            values[i] = rowsBuffer.nextValue("c" + i, i, TYPES[i], METAS[i]);
+        }
+        Assert.assertEquals(data.length, buffer.position());
+        Assert.assertEquals(Long.valueOf(12), Long.valueOf(((Number) values[0]).longValue()));
+        Assert.assertEquals("abc", values[1]);
+        Assert.assertEquals(0, new BigDecimal("1.00").compareTo((BigDecimal) values[2]));
+        Assert.assertNull(values[5]);
+        Assert.assertEquals("xyz", values[6]);
+
+        // 跳过部分字段，其余字段的值保持一致
+        for (int skip = 0; skip < 2; skip++) {
+            buffer = new LogBuffer(data, 0, data.length);
+            rowsBuffer = new RowsLogBuffer(buffer, TYPES.length, "UTF-8", 0, false);
+            Assert.assertTrue(rowsBuffer.nextOneRow(columns));
+            for (int i = 0; i < TYPES.length; i++) {
+                if (i % 2 == skip) {
+                    rowsBuffer.skipValue(TYPES[i], METAS[i]);
+                    Assert.assertEquals(i == 5, rowsBuffer.isNull());
+                } else {
+                    Assert.assertEquals(toString(values[i]), toString(rowsBuffer.nextValue("c" + i, i, TYPES[i], METAS[i])));
+                }
+            }
+            Assert.assertEquals(data.length, buffer.position());
+        }
+    }
+
+    @Test
+    public void testDecimalBinSize() {
+        Assert.assertEquals(5, LogBuffer.getDecimalBinSize(10, 2));
+        Assert.assertEquals(8, LogBuffer.getDecimalBinSize(18, 0));
+        Assert.assertEquals(14, LogBuffer.getDecimalBinSize(30, 10));
+    }
+
+    private String toString(Serializable value) {
+        return value instanceof byte[] ? Arrays.toString((byte[]) value) : String.valueOf(value);
+    }
+
+    private byte[] buildRow() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // null bitmap : 第6列为null
+        out.write(1 << 5);
+        out.write(0);
+        // LONG
+        out.write(new byte[] { 12, 0, 0, 0 }, 0, 4);
+        // VARCHAR(100)
+        out.write(3);
+        out.write(new byte[] { 'a', 'b', 'c' }, 0, 3);
+        // DECIMAL(10,2) : 1.00
+        out.write(new byte[] { (byte) 0x80, 0, 0, 1, 0 }, 0, 5);
+        // DATETIME(3) : 2018-01-01 00:00:00.000
+        long intpart = (((2018L * 13 + 1) << 5 | 1) << 17) + RowsLogBuffer.DATETIMEF_INT_OFS;
+        for (int i = 4; i >= 0; i--) {
+            out.write((int) (intpart >> (i * 8)));
+        }
+        out.write(new byte[] { 0, 0 }, 0, 2);
+        // BLOB
+        out.write(2);
+        out.write(0);
+        out.write(new byte[] { 1, 2 }, 0, 2);
+        // CHAR(30)
+        out.write(3);
+        out.write(new byte[] { 'x', 'y', 'z' }, 0, 3);
+        // TINYINT
+        out.write(7);
+        // BIT(12)
+        out.write(new byte[] { 0x0f, (byte) 0xff }, 0, 2);
+        // ENUM
+        out.write(2);
+        return out.toByteArray();
+    }
+}
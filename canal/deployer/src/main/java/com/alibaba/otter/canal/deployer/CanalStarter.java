@@ -194,6 +194,16 @@ public class CanalStarter {
         if (!StringUtils.isEmpty(canalGetTimeout)) {
             mqProperties.setCanalGetTimeout(Long.valueOf(canalGetTimeout));
         }
+        String maxInFlightBatches = CanalController.getProperty(properties,
+            CanalConstants.CANAL_MQ_MAXINFLIGHTBATCHES);
+        if (!StringUtils.isEmpty(maxInFlightBatches)) {
+            mqProperties.setMaxInFlightBatches(Integer.valueOf(maxInFlightBatches));
+        }
+        String parallelThreadSize = CanalController.getProperty(properties,
+            CanalConstants.CANAL_MQ_PARALLELTHREADSIZE);
+        if (!StringUtils.isEmpty(parallelThreadSize)) {
+            mqProperties.setParallelThreadSize(Integer.valueOf(parallelThreadSize));
+        }
         String flatMessage = CanalController.getProperty(properties, CanalConstants.CANAL_MQ_FLATMESSAGE);
         if (!StringUtils.isEmpty(flatMessage)) {
             mqProperties.setFlatMessage(Boolean.valueOf(flatMessage));
@@ -0,0 +1,193 @@
+package com.alibaba.otter.canal.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+/**
+ * 预编译的表名正则匹配，每个pattern都按照头尾完全匹配、忽略大小写的语义处理
+ *
+ * <pre>
+ * 1. 不含正则元字符的表名(允许\.转义)，放入hash set直接查找
+ * 2. 以.*结尾并且前缀为普通字符的pattern，例如 test\..*，放入前缀树
+ * 3. 未转义的.只当作单个任意字符的表名，例如 test.t1，按字符逐个比较
+ * 4. 其余的pattern保留为正则，逐个匹配
+ * 5. 匹配结果按照原始表名缓存，缓存超过上限后整体清空
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class CompiledRegexMatcher {
+
+    private static final int                     MAX_CACHE_SIZE   = 10000;
+    private static final String                  META_CHARS       = "*?+|(){}[]^$";
+
+    private final Set<String>                    literals         = new HashSet<String>();
+    private final List<char[]>                   wildcardLiterals = new ArrayList<char[]>();
+    private final PrefixNode                     prefixRoot       = new PrefixNode();
+    private final List<Pattern>                  regexes          = new ArrayList<Pattern>();
+    private final ConcurrentMap<String, Boolean> cache            = new ConcurrentHashMap<String, Boolean>();
+
+    public CompiledRegexMatcher(List<String> patterns){
+        for (String pattern : patterns) {
+            compile(pattern);
+        }
+    }
+
+    public boolean matches(String target) {
+        Boolean result = cache.get(target);
+        if (result == null) {
+            result = doMatches(target.toLowerCase());
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(target, result);
+        }
+        return result;
+    }
+
+    private boolean doMatches(String target) {
+        if (literals.contains(target)) {
+            return true;
+        }
+
+        PrefixNode node = prefixRoot;
+        for (int i = 0; node != null; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i == target.length()) {
+                break;
+            }
+            node = node.children.get(target.charAt(i));
+        }
+
+        for (char[] wildcardLiteral : wildcardLiterals) {
+            if (matchesWildcard(wildcardLiteral, target)) {
+                return true;
+            }
+        }
+
+        if (!regexes.isEmpty()) {
+            Perl5Matcher matcher = new Perl5Matcher();
+            for (Pattern regex : regexes) {
+                if (matcher.matches(target, regex)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void compile(String pattern) {
+        // 没有分组的或条件，拆分为多个pattern，完全匹配的语义不变
+        if (pattern.indexOf('|') > 0 && !containsAny(pattern, "()[]") && !pattern.contains("\\|")) {
+            for (String item : pattern.split("\\|")) {
+                if (item.length() > 0) {
+                    compile(item);
+                }
+            }
+            return;
+        }
+
+        if (pattern.endsWith(".*")) {
+            String prefix = unescape(pattern.substring(0, pattern.length() - 2), false);
+            if (prefix != null) {
+                addPrefix(prefix.toLowerCase());
+                return;
+            }
+        }
+
+        String literal = unescape(pattern, false);
+        if (literal != null) {
+            literals.add(literal.toLowerCase());
+            return;
+        }
+
+        String wildcard = unescape(pattern, true);
+        if (wildcard != null) {
+            wildcardLiterals.add(wildcard.toLowerCase().toCharArray());
+            return;
+        }
+
+        regexes.add(PatternUtils.getPattern("^" + pattern + "$"));
+    }
+
+    /**
+     * 将只包含普通字符的pattern还原为字符串，\.还原为.，allowWildcard为true时未转义的.用\0表示任意字符
+     *
+     * @return 包含其他正则语法时返回null
+     */
+    private static String unescape(String pattern, boolean allowWildcard) {
+        StringBuilder result = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '.') {
+                    result.append('.');
+                    i++;
+                } else {
+                    return null;
+                }
+            } else if (c == '.') {
+                if (!allowWildcard) {
+                    return null;
+                }
+                result.append('\0');
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean matchesWildcard(char[] wildcard, String target) {
+        if (wildcard.length != target.length()) {
+            return false;
+        }
+        for (int i = 0; i < wildcard.length; i++) {
+            if (wildcard[i] != '\0' && wildcard[i] != target.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsAny(String value, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (value.indexOf(chars.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPrefix(String prefix) {
+        PrefixNode node = prefixRoot;
+        for (int i = 0; i < prefix.length(); i++) {
+            PrefixNode child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                child = new PrefixNode();
+                node.children.put(prefix.charAt(i), child);
+            }
+            node = child;
+        }
+        node.terminal = true;
+    }
+
+    private static class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+        private boolean                          terminal = false;
+    }
+}
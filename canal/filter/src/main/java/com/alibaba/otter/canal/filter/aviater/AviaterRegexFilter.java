@@ -4,19 +4,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 
 import com.alibaba.otter.canal.filter.CanalEventFilter;
+import com.alibaba.otter.canal.filter.CompiledRegexMatcher;
 import com.alibaba.otter.canal.filter.exception.CanalFilterException;
 import com.googlecode.aviator.AviatorEvaluator;
-import com.googlecode.aviator.Expression;
 
 /**
- * 基于aviater进行tableName正则匹配的过滤算法
+ * 基于aviater进行tableName正则匹配的过滤算法，匹配通过{@linkplain CompiledRegexMatcher}预编译执行
  * 
  * @author jianghang 2012-7-20 下午06:01:34
  */
@@ -24,9 +22,7 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
 
     private static final String             SPLIT             = ",";
     private static final String             PATTERN_SPLIT     = "|";
-    private static final String             FILTER_EXPRESSION = "regex(pattern,target)";
     private static final RegexFunction      regexFunction     = new RegexFunction();
-    private final Expression                exp               = AviatorEvaluator.compile(FILTER_EXPRESSION, true);
     static {
         AviatorEvaluator.addFunction(regexFunction);
     }
@@ -35,6 +31,7 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
 
     final private String                    pattern;
     final private boolean                   defaultEmptyValue;
+    final private CompiledRegexMatcher      matcher;
 
     public AviaterRegexFilter(String pattern){
         this(pattern, true);
@@ -50,6 +47,8 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
             list = Arrays.asList(ss);
         }
 
+        this.matcher = new CompiledRegexMatcher(list);
+
         // 对pattern按照从长到短的排序
         // 因为 foo|foot 匹配 foot 会出错，原因是 foot 匹配了 foo 之后，会返回 foo，但是 foo 的长度和 foot
         // 的长度不一样
@@ -68,10 +67,7 @@ public class AviaterRegexFilter implements CanalEventFilter<String> {
             return defaultEmptyValue;
         }
 
-        Map<String, Object> env = new HashMap<String, Object>();
-        env.put("pattern", pattern);
-        env.put("target", filtered.toLowerCase());
-        return (Boolean) exp.execute(env);
+        return matcher.matches(filtered);
     }
 
     /**
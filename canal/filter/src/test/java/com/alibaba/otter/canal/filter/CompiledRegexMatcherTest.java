@@ -0,0 +1,60 @@
+package com.alibaba.otter.canal.filter;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 测试预编译表名匹配与正则完全匹配的语义一致
+ *
+ * @version 1.1.4
+ */
+public class CompiledRegexMatcherTest {
+
+    @Test
+    public void testLiteral() {
+        CompiledRegexMatcher matcher = new CompiledRegexMatcher(Arrays.asList("s1\\.t1", "S2.T2"));
+        Assert.assertTrue(matcher.matches("s1.t1"));
+        Assert.assertTrue(matcher.matches("S1.T1"));
+        Assert.assertTrue(matcher.matches("s2.t2"));
+        // 未转义的.匹配任意字符
+        Assert.assertTrue(matcher.matches("s2xt2"));
+        Assert.assertFalse(matcher.matches("s1xt1"));
+        Assert.assertFalse(matcher.matches("s1.t11"));
+    }
+
+    @Test
+    public void testPrefix() {
+        CompiledRegexMatcher matcher = new CompiledRegexMatcher(Arrays.asList("s1\\..*", "s2\\.t_.*"));
+        Assert.assertTrue(matcher.matches("s1.t1"));
+        Assert.assertTrue(matcher.matches("S1.ANY"));
+        Assert.assertTrue(matcher.matches("s2.t_1"));
+        Assert.assertFalse(matcher.matches("s12.t1"));
+        Assert.assertFalse(matcher.matches("s2.t1"));
+
+        matcher = new CompiledRegexMatcher(Arrays.asList(".*"));
+        Assert.assertTrue(matcher.matches("s3.t3"));
+    }
+
+    @Test
+    public void testRegex() {
+        CompiledRegexMatcher matcher = new CompiledRegexMatcher(Arrays.asList("foooo", "f.*t", "s[0-9]+\\.t1"));
+        Assert.assertTrue(matcher.matches("fooooot"));
+        Assert.assertTrue(matcher.matches("foooo"));
+        Assert.assertTrue(matcher.matches("s12.t1"));
+        Assert.assertFalse(matcher.matches("sx.t1"));
+        Assert.assertFalse(matcher.matches("fooo"));
+    }
+
+    @Test
+    public void testAlternation() {
+        CompiledRegexMatcher matcher = new CompiledRegexMatcher(Arrays.asList("otter2.otter_stability1|otter1.otter_stability1|retl\\..*",
+            "(a|b)\\.t1"));
+        Assert.assertTrue(matcher.matches("otter1.otter_stability1"));
+        Assert.assertTrue(matcher.matches("retl.xdual"));
+        Assert.assertTrue(matcher.matches("b.t1"));
+        Assert.assertFalse(matcher.matches("c.t1"));
+        Assert.assertFalse(matcher.matches("otter3.otter_stability1"));
+    }
+}
@@ -0,0 +1,486 @@
+package com.alibaba.otter.canal.meta;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.I0Itec.zkclient.exception.ZkBadVersionException;
+import org.I0Itec.zkclient.exception.ZkNoNodeException;
+import org.I0Itec.zkclient.exception.ZkNodeExistsException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
+import com.alibaba.otter.canal.common.zookeeper.ZookeeperPathUtils;
+import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningData;
+import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
+import com.alibaba.otter.canal.meta.exception.CanalMetaManagerException;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.google.common.base.Function;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.MigrateMap;
+
+/**
+ * 紧凑存储的zk版本meta manager，每个client的cursor和未ack的batch记录保存在同一个znode中
+ *
+ * <pre>
+ * /otter
+ *    canal
+ *      destinations
+ *        dest1
+ *          client1
+ *            filter
+ *            meta (cursor + batchs)
+ *
+ * 几个优化：
+ * 1. addBatch/removeBatch不再创建/删除顺序节点，也不需要getChildren，所有变更先写内存
+ * 2. 后台线程进行group commit，上一次写zk期间累积的多次变更合并为一次setData
+ * 3. setData带版本号条件更新，版本冲突时重新读取zk中的记录，只有本地cursor领先于zk中的cursor，并且instance没有被其他server接管时才覆盖，
+ *    HA切换时旧server最后一次提交不会让新server永久无法写入，也不会覆盖新server的cursor和batch记录
+ * 4. 写zk失败时按指数退避重试，zk不可用时不会高频重试刷错误日志
+ * 5. meta节点不存在时从cursor/mark节点加载，兼容ZooKeeperMetaManager的存储结构
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class CompactZooKeeperMetaManager extends MemoryMetaManager implements CanalMetaManager {
+
+    private static final Logger             logger       = LoggerFactory.getLogger(CompactZooKeeperMetaManager.class);
+    private static final int                NO_NODE      = -1;
+    private static final long               RETRY_MIN    = 100;                                                        // 失败重试的初始间隔，单位ms
+    private static final long               RETRY_MAX    = 10 * 1000;                                                  // 失败重试的最大间隔，单位ms
+    private ZkClientx                       zkClientx;
+    private ZooKeeperMetaManager            zooKeeperMetaManager;                                                      // 订阅信息的读写以及历史结构的读取
+    @SuppressWarnings("serial")
+    private final Position                  nullCursor   = new Position() {
+                                                         };
+    private long                            period       = 0;                                                          // 两次提交之间的最小间隔，单位ms
+    private Map<ClientIdentity, MetaRecord> records;                                                                   // 从zk加载的记录
+    private Map<ClientIdentity, Integer>    versions;                                                                  // meta节点的版本
+    private final Set<ClientIdentity>       dirtyClients = new LinkedHashSet<ClientIdentity>();                        // 待提交的client
+    private final Object                    flushLock    = new Object();                                               // 写zk与删除订阅互斥
+    private volatile boolean                flushing     = false;
+    private Thread                          flushThread;
+
+    public void start() {
+        super.start();
+        Assert.notNull(zkClientx);
+        zooKeeperMetaManager = new ZooKeeperMetaManager();
+        zooKeeperMetaManager.setZkClientx(zkClientx);
+        zooKeeperMetaManager.start();
+
+        versions = new MapMaker().makeMap();
+        records = MigrateMap.makeComputingMap(new Function<ClientIdentity, MetaRecord>() {
+
+            public MetaRecord apply(ClientIdentity clientIdentity) {
+                return load(clientIdentity);
+            }
+        });
+
+        destinations = MigrateMap.makeComputingMap(new Function<String, List<ClientIdentity>>() {
+
+            public List<ClientIdentity> apply(String destination) {
+                return zooKeeperMetaManager.listAllSubscribeInfo(destination);
+            }
+        });
+
+        cursors = MigrateMap.makeComputingMap(new Function<ClientIdentity, Position>() {
+
+            public Position apply(ClientIdentity clientIdentity) {
+                Position position = records.get(clientIdentity).getCursor();
+                return position == null ? nullCursor : position;
+            }
+        });
+
+        batches = MigrateMap.makeComputingMap(new Function<ClientIdentity, MemoryClientIdentityBatch>() {
+
+            public MemoryClientIdentityBatch apply(ClientIdentity clientIdentity) {
+                MemoryClientIdentityBatch batches = MemoryClientIdentityBatch.create(clientIdentity);
+                for (BatchRecord batch : records.get(clientIdentity).getBatchs()) {
+                    batches.addPositionRange(batch.getPositionRange(), batch.getBatchId());
+                }
+                return batches;
+            }
+        });
+
+        flushing = true;
+        flushThread = new Thread(new Runnable() {
+
+            public void run() {
+                int failures = 0;
+                while (flushing) {
+                    try {
+                        failures = flushDirtyClients(true, false) ? 0 : failures + 1;
+                        long interval = period;
+                        if (failures > 0) {
+                            // 失败后按指数退避，避免zk不可用时高频重试
+                            interval = Math.max(period, Math.min(RETRY_MAX, RETRY_MIN << Math.min(failures - 1, 10)));
+                        }
+                        if (interval > 0) {
+                            Thread.sleep(interval);
+                        }
+                    } catch (InterruptedException e) {
+                        break;
+                    } catch (Throwable e) {
+                        logger.error("flush meta failed!", e);
+                    }
+                }
+            }
+        }, "compact-zk-meta-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    public void stop() {
+        flushing = false;
+        flushThread.interrupt();
+        try {
+            flushThread.join();
+        } catch (InterruptedException e) {
+            // ignore
+        }
+        // 停止前提交最后一次变更，HA切换后instance已经被其他server接管时不再提交
+        try {
+            flushDirtyClients(false, true);
+        } catch (Throwable e) {
+            logger.error("flush meta failed!", e);
+        }
+
+        super.stop();
+        if (zooKeeperMetaManager.isStart()) {
+            zooKeeperMetaManager.stop();
+        }
+        destinations.clear();
+        batches.clear();
+        records.clear();
+    }
+
+    public void subscribe(ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        super.subscribe(clientIdentity);
+        zooKeeperMetaManager.subscribe(clientIdentity);
+    }
+
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        super.unsubscribe(clientIdentity);
+        synchronized (flushLock) {
+            synchronized (dirtyClients) {
+                dirtyClients.remove(clientIdentity);
+            }
+            zooKeeperMetaManager.unsubscribe(clientIdentity);
+            versions.remove(clientIdentity);
+            records.remove(clientIdentity);
+        }
+    }
+
+    public Position getCursor(ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        Position position = super.getCursor(clientIdentity);
+        if (position == nullCursor) {
+            return null;
+        } else {
+            return position;
+        }
+    }
+
+    public void updateCursor(ClientIdentity clientIdentity, Position position) throws CanalMetaManagerException {
+        super.updateCursor(clientIdentity, position);
+        markDirty(clientIdentity);
+    }
+
+    public Long addBatch(ClientIdentity clientIdentity, PositionRange positionRange) throws CanalMetaManagerException {
+        Long batchId = super.addBatch(clientIdentity, positionRange);
+        markDirty(clientIdentity);
+        return batchId;
+    }
+
+    public void addBatch(ClientIdentity clientIdentity, PositionRange positionRange, Long batchId)
+                                                                                                  throws CanalMetaManagerException {
+        super.addBatch(clientIdentity, positionRange, batchId);
+        markDirty(clientIdentity);
+    }
+
+    public PositionRange removeBatch(ClientIdentity clientIdentity, Long batchId) throws CanalMetaManagerException {
+        PositionRange positionRange = super.removeBatch(clientIdentity, batchId);
+        markDirty(clientIdentity);
+        return positionRange;
+    }
+
+    public void clearAllBatchs(ClientIdentity clientIdentity) throws CanalMetaManagerException {
+        super.clearAllBatchs(clientIdentity);
+        markDirty(clientIdentity);
+    }
+
+    private void markDirty(ClientIdentity clientIdentity) {
+        records.get(clientIdentity); // 确保已经加载过zk中的记录和版本
+        synchronized (dirtyClients) {
+            dirtyClients.add(clientIdentity);
+            dirtyClients.notifyAll();
+        }
+    }
+
+    /**
+     * 提交所有有变更的client，提交期间新产生的变更在下一轮合并提交
+     * 
+     * @param checkRunning 是否跳过已经被其他server接管的instance
+     * @return 是否全部提交成功
+     */
+    private boolean flushDirtyClients(boolean wait, boolean checkRunning) throws InterruptedException {
+        List<ClientIdentity> clientIdentities;
+        synchronized (dirtyClients) {
+            while (wait && dirtyClients.isEmpty()) {
+                dirtyClients.wait();
+            }
+
+            clientIdentities = new ArrayList<ClientIdentity>(dirtyClients);
+            dirtyClients.clear();
+        }
+
+        // 写zk期间不持有dirtyClients，ack等操作不会被阻塞
+        boolean success = true;
+        synchronized (flushLock) {
+            for (ClientIdentity clientIdentity : clientIdentities) {
+                if (!versions.containsKey(clientIdentity)) {
+                    // 已经取消订阅
+                    continue;
+                }
+                if (checkRunning && isRunningInOthers(clientIdentity.getDestination())) {
+                    logger.warn("{} is running in other server, skip flush meta of {}",
+                        clientIdentity.getDestination(),
+                        clientIdentity);
+                    continue;
+                }
+
+                try {
+                    flush(clientIdentity);
+                } catch (Throwable e) {
+                    logger.error("flush meta of " + clientIdentity + " failed!", e);
+                    success = false;
+                    // 重新放回待提交列表，由flush线程退避之后重试，这里不唤醒flush线程
+                    synchronized (dirtyClients) {
+                        dirtyClients.add(clientIdentity);
+                    }
+                }
+            }
+        }
+        return success;
+    }
+
+    private void flush(ClientIdentity clientIdentity) {
+        MetaRecord record = new MetaRecord();
+        record.setCursor(getCursor(clientIdentity));
+        List<BatchRecord> batchRecords = new ArrayList<BatchRecord>();
+        for (Map.Entry<Long, PositionRange> entry : listAllBatchs(clientIdentity).entrySet()) {
+            batchRecords.add(new BatchRecord(entry.getKey(), entry.getValue()));
+        }
+        record.setBatchs(batchRecords);
+
+        String path = ZookeeperPathUtils.getMetaPath(clientIdentity.getDestination(), clientIdentity.getClientId());
+        byte[] data = JsonUtils.marshalToByte(record, SerializerFeature.WriteClassName);
+        Integer version = versions.get(clientIdentity);
+        try {
+            if (version == null || version == NO_NODE) {
+                zkClientx.createPersistent(path, data, true);
+                versions.put(clientIdentity, 0);
+            } else {
+                Stat stat = zkClientx.writeDataReturnStat(path, data, version);
+                versions.put(clientIdentity, stat.getVersion());
+            }
+        } catch (ZkBadVersionException e) {
+            reconcile(clientIdentity, path, record, data);
+        } catch (ZkNodeExistsException e) {
+            reconcile(clientIdentity, path, record, data);
+        }
+    }
+
+    /**
+     * 版本冲突时重新读取zk中的记录和版本
+     * 
+     * <pre>
+     * 1. 本地cursor没有领先于zk中的cursor(包括相同)，不覆盖，只记录最新的版本，下一次变更时基于该版本提交
+     * 2. instance已经被其他server接管，不覆盖，避免旧server的batch记录覆盖新server的记录
+     * 3. 否则(比如HA切换时旧server停止前的最后一次提交)，基于最新的版本写入本地记录
+     * </pre>
+     */
+    private void reconcile(ClientIdentity clientIdentity, String path, MetaRecord record, byte[] data) {
+        Stat stat = new Stat();
+        byte[] remoteData = null;
+        try {
+            remoteData = zkClientx.readData(path, stat);
+        } catch (ZkNoNodeException e) {
+            versions.put(clientIdentity, NO_NODE);
+            throw new CanalMetaManagerException("meta of " + clientIdentity + " is deleted by others, retry later");
+        }
+
+        MetaRecord remote = null;
+        if (remoteData != null && remoteData.length > 0) {
+            remote = JsonUtils.unmarshalFromByte(remoteData, MetaRecord.class);
+        }
+        versions.put(clientIdentity, stat.getVersion());
+        if (remote != null && !isAhead(record.getCursor(), remote.getCursor())) {
+            logger.warn("meta of {} is updated by others with cursor {}, skip flush local cursor {}", new Object[] {
+                    clientIdentity, remote.getCursor(), record.getCursor() });
+            return;
+        }
+        if (isRunningInOthers(clientIdentity.getDestination())) {
+            logger.warn("meta of {} is updated by others and {} is running in other server, skip flush local cursor {}",
+                new Object[] { clientIdentity, clientIdentity.getDestination(), record.getCursor() });
+            return;
+        }
+
+        logger.warn("meta of {} is updated by others with cursor {}, overwrite with local cursor {}", new Object[] {
+                clientIdentity, remote == null ? null : remote.getCursor(), record.getCursor() });
+        Stat newStat = zkClientx.writeDataReturnStat(path, data, stat.getVersion());
+        versions.put(clientIdentity, newStat.getVersion());
+    }
+
+    /**
+     * 判断instance是否已经在其他server上运行，没有开启HA(比如embedded方式使用)时返回false
+     */
+    private boolean isRunningInOthers(String destination) {
+        ServerRunningData serverData = ServerRunningMonitors.getServerData();
+        if (serverData == null) {
+            return false;
+        }
+
+        byte[] bytes = zkClientx.readData(ZookeeperPathUtils.getDestinationServerRunning(destination), true);
+        if (bytes == null || bytes.length == 0) {
+            return false;
+        }
+        ServerRunningData activeData = JsonUtils.unmarshalFromByte(bytes, ServerRunningData.class);
+        return !serverData.getAddress().equals(activeData.getAddress());
+    }
+
+    /**
+     * 判断position1是否比position2更新
+     */
+    private boolean isAhead(Position position1, Position position2) {
+        if (!(position1 instanceof LogPosition)) {
+            return false;
+        }
+        if (!(position2 instanceof LogPosition)) {
+            return true;
+        }
+
+        EntryPosition entry1 = ((LogPosition) position1).getPostion();
+        EntryPosition entry2 = ((LogPosition) position2).getPostion();
+        if (entry1 == null || entry2 == null) {
+            return entry1 != null;
+        }
+
+        LogIdentity identity1 = ((LogPosition) position1).getIdentity();
+        LogIdentity identity2 = ((LogPosition) position2).getIdentity();
+        if (identity1 != null && identity1.equals(identity2) && entry1.getJournalName() != null
+            && entry2.getJournalName() != null && entry1.getPosition() != null && entry2.getPosition() != null) {
+            // 同一个库，根据文件和offset比较
+            int val = entry1.getJournalName().compareTo(entry2.getJournalName());
+            return val > 0 || (val == 0 && entry1.getPosition() > entry2.getPosition());
+        }
+
+        // 不同的主备库，根据时间进行比较
+        return entry1.getTimestamp() != null && entry2.getTimestamp() != null
+               && entry1.getTimestamp() > entry2.getTimestamp();
+    }
+
+    private MetaRecord load(ClientIdentity clientIdentity) {
+        String path = ZookeeperPathUtils.getMetaPath(clientIdentity.getDestination(), clientIdentity.getClientId());
+        Stat stat = new Stat();
+        byte[] data = null;
+        try {
+            data = zkClientx.readData(path, stat);
+        } catch (ZkNoNodeException e) {
+            // ignore
+        }
+
+        if (data != null && data.length > 0) {
+            versions.put(clientIdentity, stat.getVersion());
+            return JsonUtils.unmarshalFromByte(data, MetaRecord.class);
+        }
+
+        // 兼容ZooKeeperMetaManager的存储结构
+        versions.put(clientIdentity, data == null ? NO_NODE : stat.getVersion());
+        MetaRecord record = new MetaRecord();
+        record.setCursor(zooKeeperMetaManager.getCursor(clientIdentity));
+        List<BatchRecord> batchRecords = new ArrayList<BatchRecord>();
+        for (Map.Entry<Long, PositionRange> entry : zooKeeperMetaManager.listAllBatchs(clientIdentity).entrySet()) {
+            batchRecords.add(new BatchRecord(entry.getKey(), entry.getValue()));
+        }
+        record.setBatchs(batchRecords);
+        return record;
+    }
+
+    /**
+     * meta节点中保存的记录
+     */
+    public static class MetaRecord {
+
+        private Position          cursor;
+        private List<BatchRecord> batchs = new ArrayList<BatchRecord>();
+
+        public Position getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(Position cursor) {
+            this.cursor = cursor;
+        }
+
+        public List<BatchRecord> getBatchs() {
+            return batchs;
+        }
+
+        public void setBatchs(List<BatchRecord> batchs) {
+            this.batchs = batchs;
+        }
+    }
+
+    public static class BatchRecord {
+
+        private Long          batchId;
+        private PositionRange positionRange;
+
+        public BatchRecord(){
+        }
+
+        public BatchRecord(Long batchId, PositionRange positionRange){
+            this.batchId = batchId;
+            this.positionRange = positionRange;
+        }
+
+        public Long getBatchId() {
+            return batchId;
+        }
+
+        public void setBatchId(Long batchId) {
+            this.batchId = batchId;
+        }
+
+        public PositionRange getPositionRange() {
+            return positionRange;
+        }
+
+        public void setPositionRange(PositionRange positionRange) {
+            this.positionRange = positionRange;
+        }
+    }
+
+    // =============== setter / getter ================
+
+    public void setZkClientx(ZkClientx zkClientx) {
+        this.zkClientx = zkClientx;
+    }
+
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+}
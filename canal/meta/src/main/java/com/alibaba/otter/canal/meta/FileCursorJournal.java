@@ -0,0 +1,327 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+
+/**
+ * 基于追加写的cursor二进制日志，记录单个destination下client的cursor变更
+ *
+ * <pre>
+ * 文件格式：
+ * 1. 文件头：magic(int) + generation(long)，generation与meta.dat中记录的一致时日志才有效
+ * 2. 记录：length(int) + crc32(int) + payload，payload为clientId及cursor的二进制编码，字符串为length(int) + utf8
+ * 3. 回放时以最后一条完整的记录为准，遇到不完整、超过MAX_RECORD或校验失败的记录即停止(进程崩溃时写了一半的尾部)
+ * 4. 超过MAX_RECORD的记录不追加，由调用方直接合并到meta.dat
+ * </pre>
+ *
+ * 非线程安全，由调用方保证单线程写入
+ *
+ * @version 1.1.4
+ */
+class FileCursorJournal {
+
+    private static final int      MAGIC       = 0x434D4A31;
+    private static final int      HEADER_SIZE = 12;
+    private static final int      MAX_RECORD  = 64 * 1024;
+    private static final Charset  charset     = Charset.forName("UTF-8");
+
+    private final File            file;
+    private final FileChannel     channel;
+    private ByteArrayOutputStream pending     = new ByteArrayOutputStream();
+    private long                  generation;
+    private long                  size;
+
+    private FileCursorJournal(File file, FileChannel channel, long generation, long size){
+        this.file = file;
+        this.channel = channel;
+        this.generation = generation;
+        this.size = size;
+    }
+
+    /**
+     * 打开日志文件，文件不存在、文件头损坏或者generation不一致时重建日志，否则截掉不完整的尾部后继续追加
+     */
+    public static FileCursorJournal open(File file, long generation) throws IOException {
+        long end = replay(file, generation, null);
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        FileCursorJournal journal = new FileCursorJournal(file, channel, generation, end);
+        try {
+            if (end < 0) {
+                journal.reset(generation);
+            } else if (channel.size() > end) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+            channel.position(journal.size);
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * 回放日志，将每个client最后一次记录的cursor放入cursors
+     *
+     * @return 最后一条完整记录的结束位置，日志不存在或不可用时返回-1
+     */
+    public static long replay(File file, long generation, Map<Short, LogPosition> cursors) throws IOException {
+        if (!file.exists()) {
+            return -1;
+        }
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            try {
+                if (input.readInt() != MAGIC || input.readLong() != generation) {
+                    return -1;
+                }
+            } catch (EOFException e) {
+                return -1;
+            }
+
+            long end = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = input.readInt();
+                    int checksum = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD) {
+                        break;
+                    }
+
+                    payload = new byte[length];
+                    input.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (cursors != null) {
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    try {
+                        short clientId = record.readShort();
+                        cursors.put(clientId, readCursor(record));
+                    } catch (IOException e) {
+                        // 校验通过但无法解析，同样当作损坏的记录
+                        break;
+                    }
+                }
+                end += 8 + payload.length;
+            }
+            return end;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * 追加一条cursor记录到缓冲区，调用sync()后写入文件
+     *
+     * @return 记录超过MAX_RECORD时不追加并返回false，否则回放时会被当作损坏的记录
+     */
+    public boolean append(short clientId, LogPosition cursor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeShort(clientId);
+        writeCursor(record, cursor);
+        record.flush();
+
+        byte[] payload = bytes.toByteArray();
+        if (payload.length > MAX_RECORD) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        DataOutputStream output = new DataOutputStream(pending);
+        output.writeInt(payload.length);
+        output.writeInt((int) crc.getValue());
+        output.write(payload);
+        output.flush();
+        return true;
+    }
+
+    /**
+     * 将缓冲区中的记录一次性写入文件并fsync
+     */
+    public void sync() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // 回退到写入前的位置，避免留下不完整的记录
+            channel.truncate(size);
+            channel.position(size);
+            throw e;
+        } finally {
+            pending.reset();
+        }
+        size = channel.position();
+    }
+
+    /**
+     * 清空日志并切换到新的generation，在meta.dat合并完成后调用
+     */
+    public void reset(long generation) throws IOException {
+        pending.reset();
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(generation).flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        this.generation = generation;
+        this.size = HEADER_SIZE;
+    }
+
+    public boolean isEmpty() {
+        return size <= HEADER_SIZE;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    // ============================ helper method ======================
+
+    private static void writeCursor(DataOutputStream output, LogPosition cursor) throws IOException {
+        EntryPosition position = cursor.getPostion();
+        output.writeBoolean(position != null);
+        if (position != null) {
+            writeString(output, position.getJournalName());
+            writeLong(output, position.getPosition());
+            writeLong(output, position.getTimestamp());
+            writeLong(output, position.getServerId());
+            writeString(output, position.getGtid());
+            output.writeBoolean(position.isIncluded());
+        }
+
+        LogIdentity identity = cursor.getIdentity();
+        output.writeBoolean(identity != null);
+        if (identity != null) {
+            InetSocketAddress address = identity.getSourceAddress();
+            output.writeBoolean(address != null);
+            if (address != null) {
+                writeBytes(output, address.getHostString());
+                output.writeInt(address.getPort());
+            }
+            writeLong(output, identity.getSlaveId());
+        }
+    }
+
+    private static LogPosition readCursor(DataInputStream input) throws IOException {
+        LogPosition cursor = new LogPosition();
+        if (input.readBoolean()) {
+            EntryPosition position = new EntryPosition();
+            position.setJournalName(readString(input));
+            position.setPosition(readLong(input));
+            position.setTimestamp(readLong(input));
+            position.setServerId(readLong(input));
+            position.setGtid(readString(input));
+            position.setIncluded(input.readBoolean());
+            cursor.setPostion(position);
+        }
+
+        if (input.readBoolean()) {
+            LogIdentity identity = new LogIdentity();
+            if (input.readBoolean()) {
+                String host = readBytes(input);
+                identity.setSourceAddress(new InetSocketAddress(host, input.readInt()));
+            }
+            identity.setSlaveId(readLong(input));
+            cursor.setIdentity(identity);
+        }
+        return cursor;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            writeBytes(output, value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? readBytes(input) : null;
+    }
+
+    /**
+     * 字符串按length(int) + utf8写入，writeUTF最多只支持65535字节，gtid较长时会失败
+     */
+    private static void writeBytes(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(charset);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_RECORD) {
+            throw new IOException("invalid string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, charset);
+    }
+
+    private static void writeLong(DataOutputStream output, Long value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readLong() : null;
+    }
+}
@@ -1,9 +1,13 @@
 package com.alibaba.otter.canal.meta;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -26,6 +30,7 @@ import com.alibaba.otter.canal.protocol.position.LogPosition;
 import com.alibaba.otter.canal.protocol.position.Position;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.MigrateMap;
 
 /**
@@ -33,8 +38,10 @@ import com.google.common.collect.MigrateMap;
  * 
  * <pre>
  * 策略：
- * 1. 先写内存，然后定时刷新数据到File
- * 2. 数据采取overwrite模式(只保留最后一次)，通过logger实施append模式(记录历史版本)
+ * 1. 先写内存，然后定时将有变更的client cursor追加到二进制日志(meta.log)，每个destination每次只做一次fsync
+ * 2. meta.log超过journalCompactSize或者订阅关系变化时，将完整数据写入临时文件后原子rename为meta.dat，并清空meta.log
+ * 3. 启动时读取meta.dat，再回放meta.log中generation一致的记录得到最新的cursor
+ * 4. 所有文件写入都在单个工作线程中完成，不需要基于destination加锁
  * </pre>
  * 
  * @author jianghang 2013-4-15 下午05:55:57
@@ -42,17 +49,21 @@ import com.google.common.collect.MigrateMap;
  */
 public class FileMixedMetaManager extends MemoryMetaManager implements CanalMetaManager {
 
-    private static final Logger      logger       = LoggerFactory.getLogger(FileMixedMetaManager.class);
-    private static final Charset     charset      = Charset.forName("UTF-8");
-    private File                     dataDir;
-    private String                   dataFileName = "meta.dat";
-    private Map<String, File>        dataFileCaches;
-    private ScheduledExecutorService executor;
+    private static final Logger               logger             = LoggerFactory.getLogger(FileMixedMetaManager.class);
+    private static final Charset              charset            = Charset.forName("UTF-8");
+    private File                              dataDir;
+    private String                            dataFileName       = "meta.dat";
+    private String                            journalFileName    = "meta.log";
+    private Map<String, File>                 dataFileCaches;
+    private Map<String, FileMetaInstanceData> loadedDatas;
+    private Map<String, FileCursorJournal>    journals;                                                                 // 只在executor线程中访问
+    private ScheduledExecutorService          executor;
     @SuppressWarnings("serial")
-    private final Position           nullCursor   = new Position() {
-                                                  };
-    private long                     period       = 1000;                                               // 单位ms
-    private Set<ClientIdentity>      updateCursorTasks;
+    private final Position                    nullCursor         = new Position() {
+                                                                 };
+    private long                              period             = 1000;                                                // 单位ms
+    private long                              journalCompactSize = 1024 * 1024;                                         // 单位byte
+    private Set<ClientIdentity>               updateCursorTasks;
 
     public void start() {
         super.start();
@@ -76,6 +87,14 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
             }
         });
 
+        loadedDatas = MigrateMap.makeComputingMap(new Function<String, FileMetaInstanceData>() {
+
+            public FileMetaInstanceData apply(String destination) {
+                return loadData(destination);
+            }
+        });
+
+        journals = Maps.newHashMap();
         executor = Executors.newScheduledThreadPool(1);
         destinations = MigrateMap.makeComputingMap(new Function<String, List<ClientIdentity>>() {
 
@@ -102,26 +121,7 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         executor.scheduleAtFixedRate(new Runnable() {
 
             public void run() {
-                List<ClientIdentity> tasks = new ArrayList<ClientIdentity>(updateCursorTasks);
-                for (ClientIdentity clientIdentity : tasks) {
-                    MDC.put("destination", String.valueOf(clientIdentity.getDestination()));
-                    try {
-                        // 定时将内存中的最新值刷到file中，多次变更只刷一次
-                        if (logger.isInfoEnabled()) {
-                            LogPosition cursor = (LogPosition) getCursor(clientIdentity);
-                            logger.info("clientId:{} cursor:[{},{},{},{},{}] address[{}]", new Object[] {
-                                    clientIdentity.getClientId(), cursor.getPostion().getJournalName(),
-                                    cursor.getPostion().getPosition(), cursor.getPostion().getTimestamp(),
-                                    cursor.getPostion().getServerId(), cursor.getPostion().getGtid(),
-                                    cursor.getIdentity().getSourceAddress().toString() });
-                        }
-                        flushDataToFile(clientIdentity.getDestination());
-                        updateCursorTasks.remove(clientIdentity);
-                    } catch (Throwable e) {
-                        // ignore
-                        logger.error("period update" + clientIdentity.toString() + " curosr failed!", e);
-                    }
-                }
+                flushCursors();
             }
         },
             period,
@@ -130,41 +130,57 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
     }
 
     public void stop() {
-        super.stop();
+        // 等待工作线程中正在进行的写入完成，避免中断导致FileChannel被关闭
+        executor.shutdown();
+        boolean interrupted = false;
+        try {
+            if (!executor.awaitTermination(period * 10, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        flushCursors();// 刷新数据
+        for (Map.Entry<String, FileCursorJournal> entry : journals.entrySet()) {
+            try {
+                if (!entry.getValue().isEmpty()) {
+                    compact(entry.getKey());// 合并日志，下次启动时无需回放
+                }
+            } catch (Throwable e) {
+                logger.error("compact destination[" + entry.getKey() + "] meta failed!", e);
+            } finally {
+                entry.getValue().close();
+            }
+        }
+        journals.clear();
 
-        flushDataToFile();// 刷新数据
-        executor.shutdownNow();
+        super.stop();
         destinations.clear();
         batches.clear();
+        loadedDatas.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void subscribe(final ClientIdentity clientIdentity) throws CanalMetaManagerException {
         super.subscribe(clientIdentity);
 
-        // 订阅信息频率发生比较低，不需要做定时merge处理
-        executor.submit(new Runnable() {
-
-            public void run() {
-                flushDataToFile(clientIdentity.getDestination());
-            }
-        });
+        // 订阅信息频率发生比较低，直接合并一次完整数据
+        submitCompact(clientIdentity.getDestination());
     }
 
     public void unsubscribe(final ClientIdentity clientIdentity) throws CanalMetaManagerException {
         super.unsubscribe(clientIdentity);
 
-        // 订阅信息频率发生比较低，不需要做定时merge处理
-        executor.submit(new Runnable() {
-
-            public void run() {
-                flushDataToFile(clientIdentity.getDestination());
-            }
-        });
+        // 订阅信息频率发生比较低，直接合并一次完整数据
+        submitCompact(clientIdentity.getDestination());
     }
 
     public void updateCursor(ClientIdentity clientIdentity, Position position) throws CanalMetaManagerException {
-        updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发
         super.updateCursor(clientIdentity, position);
+        updateCursorTasks.add(clientIdentity);// 添加到任务队列中进行触发，需在写入内存之后
     }
 
     public Position getCursor(ClientIdentity clientIdentity) throws CanalMetaManagerException {
@@ -191,6 +207,10 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         return new File(destinationMetaDir, dataFileName);
     }
 
+    private File getJournalFile(String destination) {
+        return new File(dataFileCaches.get(destination).getParentFile(), journalFileName);
+    }
+
     private FileMetaInstanceData loadDataFromFile(File dataFile) {
         try {
             if (!dataFile.exists()) {
@@ -204,81 +224,207 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         }
     }
 
-    private void flushDataToFile() {
-        for (String destination : destinations.keySet()) {
-            flushDataToFile(destination);
+    private FileMetaInstanceData loadData(String destination) {
+        FileMetaInstanceData data = loadDataFromFile(dataFileCaches.get(destination));
+        if (data == null) {
+            data = new FileMetaInstanceData(destination, null);
+        }
+
+        if (data.getClientDatas() == null) {
+            data.setClientDatas(Lists.<FileMetaClientIdentityData> newArrayList());
+        }
+
+        // 回放cursor日志，以日志中最后一次记录的cursor为准
+        Map<Short, LogPosition> journalCursors = Maps.newHashMap();
+        try {
+            FileCursorJournal.replay(getJournalFile(destination), data.getGeneration(), journalCursors);
+        } catch (IOException e) {
+            throw new CanalMetaManagerException(e);
+        }
+
+        for (FileMetaClientIdentityData clientData : data.getClientDatas()) {
+            if (clientData.getClientIdentity() != null) {
+                LogPosition cursor = journalCursors.get(clientData.getClientIdentity().getClientId());
+                if (cursor != null) {
+                    clientData.setCursor(cursor);
+                }
+            }
+        }
+
+        return data;
+    }
+
+    private FileCursorJournal getJournal(String destination) throws IOException {
+        FileCursorJournal journal = journals.get(destination);
+        if (journal == null) {
+            journal = FileCursorJournal.open(getJournalFile(destination), loadedDatas.get(destination)
+                .getGeneration());
+            journals.put(destination, journal);
         }
+
+        return journal;
     }
 
-    private void flushDataToFile(String destination) {
-        flushDataToFile(destination, dataFileCaches.get(destination));
+    private void closeJournal(String destination) {
+        FileCursorJournal journal = journals.remove(destination);
+        if (journal != null) {
+            journal.close();// 下次使用时重新打开，并截掉可能写了一半的记录
+        }
     }
 
-    private void flushDataToFile(String destination, File dataFile) {
-        FileMetaInstanceData data = new FileMetaInstanceData();
-        if (destinations.containsKey(destination)) {
-            synchronized (destination.intern()) { // 基于destination控制一下并发更新
-                data.setDestination(destination);
-
-                List<FileMetaClientIdentityData> clientDatas = Lists.newArrayList();
-                List<ClientIdentity> clientIdentitys = destinations.get(destination);
-                for (ClientIdentity clientIdentity : clientIdentitys) {
-                    FileMetaClientIdentityData clientData = new FileMetaClientIdentityData();
-                    clientData.setClientIdentity(clientIdentity);
-                    Position position = cursors.get(clientIdentity);
-                    if (position != null && position != nullCursor) {
-                        clientData.setCursor((LogPosition) position);
-                    }
-
-                    clientDatas.add(clientData);
+    private void flushCursors() {
+        Map<String, List<ClientIdentity>> tasks = Maps.newHashMap();
+        synchronized (updateCursorTasks) {
+            for (ClientIdentity clientIdentity : updateCursorTasks) {
+                List<ClientIdentity> clientIdentitys = tasks.get(clientIdentity.getDestination());
+                if (clientIdentitys == null) {
+                    clientIdentitys = Lists.newArrayList();
+                    tasks.put(clientIdentity.getDestination(), clientIdentitys);
                 }
-
-                data.setClientDatas(clientDatas);
+                clientIdentitys.add(clientIdentity);
             }
+            // 先移除再读取cursor，刷新期间发生的变更会在下一次刷新
+            updateCursorTasks.clear();
+        }
 
-            String json = JsonUtils.marshalToString(data);
+        for (Map.Entry<String, List<ClientIdentity>> entry : tasks.entrySet()) {
+            String destination = entry.getKey();
+            MDC.put("destination", destination);
             try {
-                FileUtils.writeStringToFile(dataFile, json);
-            } catch (IOException e) {
-                throw new CanalMetaManagerException(e);
+                flushCursors(destination, entry.getValue());
+            } catch (Throwable e) {
+                updateCursorTasks.addAll(entry.getValue());
+                closeJournal(destination);
+                logger.error("period update destination[" + destination + "] curosr failed!", e);
             }
         }
     }
 
-    private List<ClientIdentity> loadClientIdentity(String destination) {
-        List<ClientIdentity> result = Lists.newArrayList();
+    private void flushCursors(String destination, List<ClientIdentity> clientIdentitys) throws IOException {
+        FileCursorJournal journal = getJournal(destination);
+        boolean oversize = false;
+        for (ClientIdentity clientIdentity : clientIdentitys) {
+            Position position = cursors.get(clientIdentity);
+            if (!(position instanceof LogPosition)) {
+                continue;
+            }
 
-        FileMetaInstanceData data = loadDataFromFile(dataFileCaches.get(destination));
-        if (data == null) {
-            return result;
+            LogPosition cursor = (LogPosition) position;
+            if (logger.isInfoEnabled()) {
+                logger.info("clientId:{} cursor:[{},{},{},{},{}] address[{}]", new Object[] {
+                        clientIdentity.getClientId(), cursor.getPostion().getJournalName(),
+                        cursor.getPostion().getPosition(), cursor.getPostion().getTimestamp(),
+                        cursor.getPostion().getServerId(), cursor.getPostion().getGtid(),
+                        cursor.getIdentity().getSourceAddress().toString() });
+            }
+            if (!journal.append(clientIdentity.getClientId(), cursor)) {
+                // cursor过大(比如很长的gtid)无法记录到日志，直接合并到meta.dat
+                logger.warn("clientId:{} cursor is too large for meta.log, compact to meta.dat",
+                    clientIdentity.getClientId());
+                oversize = true;
+            }
         }
 
-        List<FileMetaClientIdentityData> clientDatas = data.getClientDatas();
-        if (clientDatas == null) {
-            return result;
+        // 同一个destination下多个client的变更只做一次fsync
+        journal.sync();
+        if (oversize || journal.size() >= journalCompactSize) {
+            compact(destination);
         }
+    }
 
-        for (FileMetaClientIdentityData clientData : clientDatas) {
-            if (clientData.getClientIdentity().getDestination().equals(destination)) {
-                result.add(clientData.getClientIdentity());
+    private void submitCompact(final String destination) {
+        executor.submit(new Runnable() {
+
+            public void run() {
+                MDC.put("destination", destination);
+                try {
+                    compact(destination);
+                } catch (Throwable e) {
+                    closeJournal(destination);
+                    logger.error("compact destination[" + destination + "] meta failed!", e);
+                }
             }
+        });
+    }
+
+    /**
+     * 将完整数据写入meta.dat并清空meta.log
+     * 
+     * <pre>
+     * 1. 数据先写入临时文件并fsync，再原子rename为meta.dat，任何时刻崩溃meta.dat都是完整的
+     * 2. meta.dat中记录新的generation，rename之后、清空meta.log之前崩溃，旧的日志因generation不一致而被忽略
+     * </pre>
+     */
+    private void compact(String destination) throws IOException {
+        FileCursorJournal journal = getJournal(destination);
+        FileMetaInstanceData data = new FileMetaInstanceData();
+        data.setDestination(destination);
+        data.setGeneration(journal.getGeneration() + 1);
+
+        List<FileMetaClientIdentityData> clientDatas = Lists.newArrayList();
+        for (ClientIdentity clientIdentity : listAllSubscribeInfo(destination)) {
+            FileMetaClientIdentityData clientData = new FileMetaClientIdentityData();
+            clientData.setClientIdentity(clientIdentity);
+            Position position = cursors.get(clientIdentity);
+            if (position != null && position != nullCursor) {
+                clientData.setCursor((LogPosition) position);
+            }
+
+            clientDatas.add(clientData);
         }
+        data.setClientDatas(clientDatas);
 
-        return result;
+        File dataFile = dataFileCaches.get(destination);
+        File tmpFile = new File(dataFile.getParentFile(), dataFileName + ".tmp");
+        FileOutputStream output = new FileOutputStream(tmpFile);
+        try {
+            output.write(JsonUtils.marshalToString(data).getBytes(charset));
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        Files.move(tmpFile.toPath(), dataFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        // rename需要fsync所在目录才能持久化，否则清空meta.log之后崩溃可能恢复出旧的meta.dat
+        syncDirectory(dataFile.getParentFile());
+        // 重新打开日志时以meta.dat中的generation为准
+        loadedDatas.get(destination).setGeneration(data.getGeneration());
+        journal.reset(data.getGeneration());
     }
 
-    private Position loadCursor(String destination, ClientIdentity clientIdentity) {
-        FileMetaInstanceData data = loadDataFromFile(dataFileCaches.get(destination));
-        if (data == null) {
-            return null;
+    private void syncDirectory(File dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            // 部分平台(如windows)不支持打开目录，rename由文件系统自身保证
+            logger.debug("open dir " + dir.getPath() + " failed, skip sync", e);
+            return;
         }
 
-        List<FileMetaClientIdentityData> clientDatas = data.getClientDatas();
-        if (clientDatas == null) {
-            return null;
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private List<ClientIdentity> loadClientIdentity(String destination) {
+        List<ClientIdentity> result = Lists.newArrayList();
+
+        FileMetaInstanceData data = loadedDatas.get(destination);
+        for (FileMetaClientIdentityData clientData : data.getClientDatas()) {
+            if (clientData.getClientIdentity().getDestination().equals(destination)) {
+                result.add(clientData.getClientIdentity());
+            }
         }
 
-        for (FileMetaClientIdentityData clientData : clientDatas) {
+        return result;
+    }
+
+    private Position loadCursor(String destination, ClientIdentity clientIdentity) {
+        FileMetaInstanceData data = loadedDatas.get(destination);
+        for (FileMetaClientIdentityData clientData : data.getClientDatas()) {
             if (clientData.getClientIdentity() != null && clientData.getClientIdentity().equals(clientIdentity)) {
                 return clientData.getCursor();
             }
@@ -336,6 +482,7 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
 
         private String                           destination;
         private List<FileMetaClientIdentityData> clientDatas;
+        private long                             generation;                 // 与meta.log文件头中的generation对应
 
         public FileMetaInstanceData(){
 
@@ -362,6 +509,14 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
             this.clientDatas = clientDatas;
         }
 
+        public long getGeneration() {
+            return generation;
+        }
+
+        public void setGeneration(long generation) {
+            this.generation = generation;
+        }
+
     }
 
     public void setDataDir(String dataDir) {
@@ -376,4 +531,8 @@ public class FileMixedMetaManager extends MemoryMetaManager implements CanalMeta
         this.period = period;
     }
 
+    public void setJournalCompactSize(long journalCompactSize) {
+        this.journalCompactSize = journalCompactSize;
+    }
+
 }
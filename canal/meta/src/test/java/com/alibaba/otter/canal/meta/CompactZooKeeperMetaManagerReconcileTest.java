@@ -0,0 +1,282 @@
+package com.alibaba.otter.canal.meta;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.I0Itec.zkclient.ZkConnection;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooKeeper.States;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.common.utils.JsonUtils;
+import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
+import com.alibaba.otter.canal.common.zookeeper.ZookeeperPathUtils;
+import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningData;
+import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
+import com.alibaba.otter.canal.meta.CompactZooKeeperMetaManager.BatchRecord;
+import com.alibaba.otter.canal.meta.CompactZooKeeperMetaManager.MetaRecord;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+
+/**
+ * 基于内存模拟的zk测试meta节点版本冲突时的处理：cursor没有领先或者instance已经被其他server接管时不覆盖
+ *
+ * @version 1.1.4
+ */
+public class CompactZooKeeperMetaManagerReconcileTest {
+
+    private static final String         DESTINATION    = "example";
+    private static final String         LOCAL_ADDRESS  = "127.0.0.1:11111";
+    private static final String         REMOTE_ADDRESS = "127.0.0.2:11111";
+
+    private ClientIdentity              clientIdentity = new ClientIdentity(DESTINATION, (short) 1001);
+    private String                      metaPath       = ZookeeperPathUtils.getMetaPath(DESTINATION, (short) 1001);
+    private MemoryZkConnection          connection;
+    private ZkClientx                   zkClientx;
+    private CompactZooKeeperMetaManager metaManager;
+
+    @Before
+    public void setUp() {
+        connection = new MemoryZkConnection();
+        zkClientx = new ZkClientx(connection, 10 * 1000);
+        ServerRunningMonitors.setServerData(new ServerRunningData(LOCAL_ADDRESS));
+        setRunning(LOCAL_ADDRESS);
+        writeRemote(10, 1L);
+
+        metaManager = new CompactZooKeeperMetaManager();
+        metaManager.setZkClientx(zkClientx);
+        metaManager.setPeriod(60 * 1000);
+        metaManager.start();
+        // 加载zk中的记录和版本
+        Assert.assertEquals(position(10), metaManager.getCursor(clientIdentity));
+    }
+
+    @After
+    public void tearDown() {
+        if (metaManager.isStart()) {
+            metaManager.stop();
+        }
+        ServerRunningMonitors.setServerData(null);
+        zkClientx.close();
+    }
+
+    @Test
+    public void testSkipSameCursor() throws Exception {
+        // 其他server写入了相同的cursor和自己的batch记录
+        writeRemote(10, 2L);
+        metaManager.updateCursor(clientIdentity, position(10));
+        awaitConflicts(1);
+        Assert.assertEquals(Arrays.asList(2L), remoteBatchIds());
+
+        // 记录了最新的版本，stop时可以正常提交
+        metaManager.updateCursor(clientIdentity, position(11));
+        metaManager.stop();
+        Assert.assertEquals(position(11), readRemote().getCursor());
+        Assert.assertEquals(1, connection.conflicts.get());
+    }
+
+    @Test
+    public void testSkipWhenRunningInOthers() throws Exception {
+        // HA切换，新server接管后推进了位点
+        setRunning(REMOTE_ADDRESS);
+        writeRemote(5, 2L);
+        metaManager.updateCursor(clientIdentity, position(20));
+        awaitConflicts(1);
+        Assert.assertEquals(position(5), readRemote().getCursor());
+
+        // 停止时最后一次提交也不能覆盖新server的记录
+        metaManager.updateCursor(clientIdentity, position(21));
+        metaManager.stop();
+        Assert.assertEquals(position(5), readRemote().getCursor());
+        Assert.assertEquals(Arrays.asList(2L), remoteBatchIds());
+    }
+
+    @Test
+    public void testOverwriteWhenRunning() throws Exception {
+        // 旧server停止前的最后一次提交，本地cursor更新
+        writeRemote(5, 2L);
+        metaManager.updateCursor(clientIdentity, position(20));
+        awaitConflicts(1);
+        metaManager.stop();
+        Assert.assertEquals(position(20), readRemote().getCursor());
+        Assert.assertEquals(Arrays.asList(1L), remoteBatchIds());
+    }
+
+    private void awaitConflicts(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (connection.conflicts.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, connection.conflicts.get());
+        // 等待冲突处理完成
+        Thread.sleep(200);
+    }
+
+    private void setRunning(String address) {
+        zkClientx.createPersistent(ZookeeperPathUtils.getDestinationServerRunning(DESTINATION),
+            JsonUtils.marshalToByte(new ServerRunningData(address)),
+            true);
+        zkClientx.writeData(ZookeeperPathUtils.getDestinationServerRunning(DESTINATION),
+            JsonUtils.marshalToByte(new ServerRunningData(address)));
+    }
+
+    private void writeRemote(long offset, Long batchId) {
+        MetaRecord record = new MetaRecord();
+        record.setCursor(position(offset));
+        List<BatchRecord> batchs = new ArrayList<BatchRecord>();
+        batchs.add(new BatchRecord(batchId, new PositionRange<LogPosition>(position(offset + 1), position(offset + 2))));
+        record.setBatchs(batchs);
+        byte[] data = JsonUtils.marshalToByte(record, SerializerFeature.WriteClassName);
+        zkClientx.createPersistent(metaPath, data, true);
+        zkClientx.writeData(metaPath, data);
+    }
+
+    private MetaRecord readRemote() {
+        byte[] data = zkClientx.readData(metaPath);
+        return JsonUtils.unmarshalFromByte(data, MetaRecord.class);
+    }
+
+    private List<Long> remoteBatchIds() {
+        List<Long> batchIds = new ArrayList<Long>();
+        for (BatchRecord batch : readRemote().getBatchs()) {
+            batchIds.add(batch.getBatchId());
+        }
+        return batchIds;
+    }
+
+    private LogPosition position(long offset) {
+        LogPosition position = new LogPosition();
+        position.setIdentity(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L));
+        position.setPostion(new EntryPosition("mysql-bin.000001", offset, 1000L + offset));
+        return position;
+    }
+
+    /**
+     * 内存中的zk节点，只支持meta manager用到的操作
+     */
+    static class MemoryZkConnection extends ZkConnection {
+
+        private Map<String, Node> nodes     = new ConcurrentHashMap<String, Node>();
+        private AtomicInteger     conflicts = new AtomicInteger();                  // 版本冲突的次数
+
+        public MemoryZkConnection(){
+            super("127.0.0.1:2181");
+        }
+
+        public void connect(Watcher watcher) {
+            watcher.process(new WatchedEvent(EventType.None, KeeperState.SyncConnected, null));
+        }
+
+        public void close() {
+        }
+
+        public States getZookeeperState() {
+            return States.CONNECTED;
+        }
+
+        public String create(String path, byte[] data, CreateMode mode) throws KeeperException {
+            synchronized (nodes) {
+                if (nodes.containsKey(path)) {
+                    throw KeeperException.create(KeeperException.Code.NODEEXISTS, path);
+                }
+                nodes.put(path, new Node(data));
+                return path;
+            }
+        }
+
+        public String create(String path, byte[] data, List<ACL> acl, CreateMode mode) throws KeeperException {
+            return create(path, data, mode);
+        }
+
+        public void delete(String path) throws KeeperException {
+            if (nodes.remove(path) == null) {
+                throw KeeperException.create(KeeperException.Code.NONODE, path);
+            }
+        }
+
+        public void delete(String path, int version) throws KeeperException {
+            delete(path);
+        }
+
+        public boolean exists(String path, boolean watch) {
+            return nodes.containsKey(path);
+        }
+
+        public List<String> getChildren(String path, boolean watch) throws KeeperException {
+            List<String> children = new ArrayList<String>();
+            for (String child : nodes.keySet()) {
+                if (child.startsWith(path + "/") && child.indexOf('/', path.length() + 1) < 0) {
+                    children.add(child.substring(path.length() + 1));
+                }
+            }
+            return children;
+        }
+
+        public byte[] readData(String path, Stat stat, boolean watch) throws KeeperException {
+            synchronized (nodes) {
+                Node node = getNode(path);
+                if (stat != null) {
+                    stat.setVersion(node.version);
+                }
+                return node.data;
+            }
+        }
+
+        public void writeData(String path, byte[] data, int expectedVersion) throws KeeperException {
+            writeDataReturnStat(path, data, expectedVersion);
+        }
+
+        public Stat writeDataReturnStat(String path, byte[] data, int expectedVersion) throws KeeperException {
+            synchronized (nodes) {
+                Node node = getNode(path);
+                if (expectedVersion != -1 && expectedVersion != node.version) {
+                    conflicts.incrementAndGet();
+                    throw KeeperException.create(KeeperException.Code.BADVERSION, path);
+                }
+                node.data = data;
+                node.version++;
+                Stat stat = new Stat();
+                stat.setVersion(node.version);
+                return stat;
+            }
+        }
+
+        private Node getNode(String path) throws KeeperException {
+            Node node = nodes.get(path);
+            if (node == null) {
+                throw KeeperException.create(KeeperException.Code.NONODE, path);
+            }
+            return node;
+        }
+    }
+
+    static class Node {
+
+        private byte[] data;
+        private int    version = 0;
+
+        public Node(byte[] data){
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.alibaba.otter.canal.meta;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
+import com.alibaba.otter.canal.common.zookeeper.ZookeeperPathUtils;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+@Ignore
+public class CompactZooKeeperMetaManagerTest extends AbstractMetaManagerTest {
+
+    private ZkClientx zkclientx = new ZkClientx(cluster1 + ";" + cluster2);
+
+    @Before
+    public void setUp() {
+        String path = ZookeeperPathUtils.getDestinationPath(destination);
+        zkclientx.deleteRecursive(path);
+    }
+
+    @After
+    public void tearDown() {
+        String path = ZookeeperPathUtils.getDestinationPath(destination);
+        zkclientx.deleteRecursive(path);
+    }
+
+    @Test
+    public void testSubscribeAll() {
+        CompactZooKeeperMetaManager metaManager = new CompactZooKeeperMetaManager();
+        metaManager.setZkClientx(zkclientx);
+        metaManager.start();
+        doSubscribeTest(metaManager);
+
+        // 重新构建一次，能获得上一次zk上的记录
+        CompactZooKeeperMetaManager metaManager2 = new CompactZooKeeperMetaManager();
+        metaManager2.setZkClientx(zkclientx);
+        metaManager2.start();
+
+        List<ClientIdentity> clients = metaManager2.listAllSubscribeInfo(destination);
+        Assert.assertEquals(2, clients.size());
+        metaManager.stop();
+        metaManager2.stop();
+    }
+
+    @Test
+    public void testBatchAll() {
+        CompactZooKeeperMetaManager metaManager = new CompactZooKeeperMetaManager();
+        metaManager.setZkClientx(zkclientx);
+        metaManager.start();
+        doBatchTest(metaManager);
+
+        Map<Long, PositionRange> lastRanges = metaManager.listAllBatchs(clientIdentity);
+        metaManager.stop();
+
+        // 停止时提交最后一次变更，重新构建后batch记录一致
+        CompactZooKeeperMetaManager metaManager2 = new CompactZooKeeperMetaManager();
+        metaManager2.setZkClientx(zkclientx);
+        metaManager2.start();
+        Assert.assertEquals(lastRanges, metaManager2.listAllBatchs(clientIdentity));
+
+        metaManager2.clearAllBatchs(clientIdentity);
+        Map<Long, PositionRange> ranges = metaManager2.listAllBatchs(clientIdentity);
+        Assert.assertEquals(0, ranges.size());
+        metaManager2.stop();
+    }
+
+    @Test
+    public void testCursorAll() {
+        CompactZooKeeperMetaManager metaManager = new CompactZooKeeperMetaManager();
+        metaManager.setZkClientx(zkclientx);
+        metaManager.start();
+        Position lastPosition = doCursorTest(metaManager);
+
+        sleep(1000L);
+        // 重新构建一次，能获得上一次zk上的记录
+        CompactZooKeeperMetaManager metaManager2 = new CompactZooKeeperMetaManager();
+        metaManager2.setZkClientx(zkclientx);
+        metaManager2.start();
+
+        Position position = metaManager2.getCursor(clientIdentity);
+        Assert.assertEquals(position, lastPosition);
+        metaManager.stop();
+        metaManager2.stop();
+    }
+
+    @Test
+    public void testLoadFromZooKeeperMetaManager() {
+        ZooKeeperMetaManager zooKeeperMetaManager = new ZooKeeperMetaManager();
+        zooKeeperMetaManager.setZkClientx(zkclientx);
+        zooKeeperMetaManager.start();
+        Position lastPosition = doCursorTest(zooKeeperMetaManager);
+
+        // 没有meta节点时从原有的cursor节点加载
+        CompactZooKeeperMetaManager metaManager = new CompactZooKeeperMetaManager();
+        metaManager.setZkClientx(zkclientx);
+        metaManager.start();
+        Assert.assertEquals(lastPosition, metaManager.getCursor(clientIdentity));
+        metaManager.stop();
+        zooKeeperMetaManager.stop();
+    }
+}
@@ -0,0 +1,143 @@
+package com.alibaba.otter.canal.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+
+/**
+ * 测试cursor日志的追加、回放以及崩溃后的尾部处理
+ *
+ * @version 1.1.4
+ */
+public class FileCursorJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("canal-meta", ".log");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        FileCursorJournal journal = FileCursorJournal.open(file, 0L);
+        Assert.assertTrue(journal.isEmpty());
+        journal.append((short) 1001, cursor("mysql-bin.000001", 4L, null));
+        journal.append((short) 1002, cursor("mysql-bin.000001", 120L, "uuid:1-5"));
+        journal.append((short) 1001, cursor("mysql-bin.000002", 4L, null));
+        journal.sync();
+        journal.close();
+
+        Map<Short, LogPosition> cursors = new HashMap<Short, LogPosition>();
+        Assert.assertEquals(file.length(), FileCursorJournal.replay(file, 0L, cursors));
+        Assert.assertEquals(2, cursors.size());
+        Assert.assertEquals(cursor("mysql-bin.000002", 4L, null), cursors.get((short) 1001));
+        Assert.assertEquals(cursor("mysql-bin.000001", 120L, "uuid:1-5"), cursors.get((short) 1002));
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        FileCursorJournal journal = FileCursorJournal.open(file, 0L);
+        journal.append((short) 1001, cursor("mysql-bin.000001", 4L, null));
+        journal.sync();
+        long end = journal.size();
+        journal.append((short) 1001, cursor("mysql-bin.000001", 200L, null));
+        journal.sync();
+        journal.close();
+
+        // 模拟崩溃时只写入了一半的记录
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        Map<Short, LogPosition> cursors = new HashMap<Short, LogPosition>();
+        Assert.assertEquals(end, FileCursorJournal.replay(file, 0L, cursors));
+        Assert.assertEquals(cursor("mysql-bin.000001", 4L, null), cursors.get((short) 1001));
+
+        // 重新打开后截掉不完整的尾部，继续追加
+        journal = FileCursorJournal.open(file, 0L);
+        Assert.assertEquals(end, file.length());
+        journal.append((short) 1001, cursor("mysql-bin.000001", 300L, null));
+        journal.sync();
+        journal.close();
+
+        cursors.clear();
+        FileCursorJournal.replay(file, 0L, cursors);
+        Assert.assertEquals(cursor("mysql-bin.000001", 300L, null), cursors.get((short) 1001));
+    }
+
+    @Test
+    public void testGeneration() throws IOException {
+        FileCursorJournal journal = FileCursorJournal.open(file, 1L);
+        journal.append((short) 1001, cursor("mysql-bin.000001", 4L, null));
+        journal.sync();
+        journal.close();
+
+        // generation不一致的日志被忽略
+        Map<Short, LogPosition> cursors = new HashMap<Short, LogPosition>();
+        Assert.assertEquals(-1L, FileCursorJournal.replay(file, 2L, cursors));
+        Assert.assertTrue(cursors.isEmpty());
+
+        journal = FileCursorJournal.open(file, 2L);
+        Assert.assertTrue(journal.isEmpty());
+        journal.reset(3L);
+        Assert.assertEquals(3L, journal.getGeneration());
+        journal.close();
+        Assert.assertEquals(journal.size(), FileCursorJournal.replay(file, 3L, cursors));
+        Assert.assertTrue(cursors.isEmpty());
+    }
+
+    @Test
+    public void testLargeRecord() throws IOException {
+        // 接近MAX_RECORD的多字节字符串
+        String largeGtid = repeat("中", 20000);
+        // 超过MAX_RECORD，不追加并且不抛出异常
+        String tooLargeGtid = repeat("uuid:1-5,", 10000);
+
+        FileCursorJournal journal = FileCursorJournal.open(file, 0L);
+        Assert.assertTrue(journal.append((short) 1001, cursor("mysql-bin.000001", 4L, largeGtid)));
+        Assert.assertFalse(journal.append((short) 1002, cursor("mysql-bin.000001", 4L, tooLargeGtid)));
+        journal.sync();
+        journal.close();
+
+        Map<Short, LogPosition> cursors = new HashMap<Short, LogPosition>();
+        Assert.assertEquals(file.length(), FileCursorJournal.replay(file, 0L, cursors));
+        Assert.assertEquals(1, cursors.size());
+        Assert.assertEquals(cursor("mysql-bin.000001", 4L, largeGtid), cursors.get((short) 1001));
+    }
+
+    private String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private LogPosition cursor(String journalName, Long position, String gtid) {
+        EntryPosition entryPosition = new EntryPosition(journalName, position, 1558000000000L, 1L);
+        entryPosition.setGtid(gtid);
+        LogPosition cursor = new LogPosition();
+        cursor.setPostion(entryPosition);
+        cursor.setIdentity(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), -1L));
+        return cursor;
+    }
+}
@@ -85,4 +85,35 @@ public class FileMixedMetaManagerTest extends AbstractMetaManagerTest {
         Assert.assertEquals(position, lastPosition);
         metaManager.stop();
     }
+
+    @Test
+    public void testCursorJournal() {
+        FileMixedMetaManager metaManager = new FileMixedMetaManager();
+        metaManager.setDataDirByFile(dataDir);
+        metaManager.setPeriod(100);
+        metaManager.start();
+
+        Position lastPosition = doCursorTest(metaManager);
+        sleep(1000L);
+
+        // 运行期间cursor只追加到meta.log，重新构建时回放日志获得最新的cursor
+        File journalFile = new File(new File(dataDir, destination), "meta.log");
+        Assert.assertTrue(journalFile.length() > 12);
+        FileMixedMetaManager metaManager2 = new FileMixedMetaManager();
+        metaManager2.setDataDirByFile(dataDir);
+        metaManager2.setPeriod(100);
+        metaManager2.start();
+        Assert.assertEquals(lastPosition, metaManager2.getCursor(clientIdentity));
+        metaManager2.stop();
+
+        // 停止时合并到meta.dat并清空meta.log
+        metaManager.stop();
+        Assert.assertEquals(12, journalFile.length());
+        FileMixedMetaManager metaManager3 = new FileMixedMetaManager();
+        metaManager3.setDataDirByFile(dataDir);
+        metaManager3.setPeriod(100);
+        metaManager3.start();
+        Assert.assertEquals(lastPosition, metaManager3.getCursor(clientIdentity));
+        metaManager3.stop();
+    }
 }
@@ -104,6 +104,7 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     protected Integer                                parallelThreadSize         = Runtime.getRuntime()
                                                                                     .availableProcessors() * 60 / 100;     // 60%的能力跑解析,剩余部分处理网络
     protected int                                    parallelBufferSize         = 256;                                     // 必须为2的幂
+    protected boolean                                parallelAdaptive           = false;                                   // 是否根据负载动态调整解析线程数
     protected MultiStageCoprocessor                  multiStageCoprocessor;
     protected ParserExceptionHandler                 parserExceptionHandler;
     protected long                                   serverId;
@@ -126,6 +127,9 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     protected void afterDump(ErosaConnection connection) {
     }
 
+    protected void afterPersistLogPosition(LogPosition position) {
+    }
+
     public void sendAlarm(String destination, String msg) {
         if (this.alarmHandler != null) {
             this.alarmHandler.sendAlarm(destination, msg);
@@ -149,6 +153,7 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
                 LogPosition position = buildLastTransactionPosition(transaction);
                 if (position != null) { // 可能position为空
                     logPositionManager.persistLogPosition(AbstractEventParser.this.destination, position);
+                    afterPersistLogPosition(position);
                 }
             }
         });
@@ -672,6 +677,14 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         this.parallelBufferSize = parallelBufferSize;
     }
 
+    public boolean isParallelAdaptive() {
+        return parallelAdaptive;
+    }
+
+    public void setParallelAdaptive(boolean parallelAdaptive) {
+        this.parallelAdaptive = parallelAdaptive;
+    }
+
     public ParserExceptionHandler getParserExceptionHandler() {
         return parserExceptionHandler;
     }
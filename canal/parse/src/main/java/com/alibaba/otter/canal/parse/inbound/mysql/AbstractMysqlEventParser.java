@@ -16,6 +16,7 @@ import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DefaultTableMetaTSDBFact
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.TableMetaTSDB;
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.TableMetaTSDBFactory;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
 
 public abstract class AbstractMysqlEventParser extends AbstractEventParser {
 
@@ -37,9 +38,12 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     protected boolean              filterRows                = false;
     protected boolean              filterTableError          = false;
     protected boolean              useDruidDdlFilter         = true;
+    protected boolean              typedColumnValue          = false;
     // instance received binlog bytes
     protected final AtomicLong     receivedBinlogBytes       = new AtomicLong(0L);
     private final AtomicLong       eventsPublishBlockingTime = new AtomicLong(0L);
+    // 当前dml解析的并行度
+    private final AtomicLong       parserParallelism         = new AtomicLong(0L);
 
     protected BinlogParser buildParser() {
         LogEventConvert convert = new LogEventConvert();
@@ -61,6 +65,7 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         convert.setFilterRows(filterRows);
         convert.setFilterTableError(filterTableError);
         convert.setUseDruidDdlFilter(useDruidDdlFilter);
+        convert.setTypedColumnValue(typedColumnValue);
         return convert;
     }
 
@@ -175,6 +180,11 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
             transactionBuffer,
             destination);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setParserParallelism(parserParallelism);
+        mysqlMultiStageCoprocessor.setAdaptive(parallelAdaptive);
+        if (eventSink instanceof EntryEventSink && ((EntryEventSink) eventSink).isRaw()) {
+            mysqlMultiStageCoprocessor.setEventSink((EntryEventSink) eventSink);
+        }
         return mysqlMultiStageCoprocessor;
     }
 
@@ -212,6 +222,10 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         this.filterTableError = filterTableError;
     }
 
+    public void setTypedColumnValue(boolean typedColumnValue) {
+        this.typedColumnValue = typedColumnValue;
+    }
+
     public boolean isUseDruidDdlFilter() {
         return useDruidDdlFilter;
     }
@@ -248,6 +262,10 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         return this.eventsPublishBlockingTime;
     }
 
+    public AtomicLong getParserParallelism() {
+        return this.parserParallelism;
+    }
+
     public AtomicLong getReceivedBinlogBytes() {
         return this.receivedBinlogBytes;
     }
@@ -3,12 +3,15 @@ package com.alibaba.otter.canal.parse.inbound.mysql;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.parse.exception.ServerIdNotMatchException;
@@ -16,11 +19,13 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.local.BinLogFileQueue;
+import com.alibaba.otter.canal.parse.inbound.mysql.local.BinLogFileReader;
 import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
 import com.taobao.tddl.dbsync.binlog.LogPosition;
+import com.taobao.tddl.dbsync.binlog.MappedFileLogFetcher;
 import com.taobao.tddl.dbsync.binlog.event.QueryLogEvent;
 
 /**
@@ -30,14 +35,17 @@ import com.taobao.tddl.dbsync.binlog.event.QueryLogEvent;
  */
 public class LocalBinLogConnection implements ErosaConnection {
 
-    private static final Logger logger     = LoggerFactory.getLogger(LocalBinLogConnection.class);
-    private BinLogFileQueue     binlogs    = null;
+    private static final Logger logger           = LoggerFactory.getLogger(LocalBinLogConnection.class);
+    private BinLogFileQueue     binlogs          = null;
     private boolean             needWait;
     private String              directory;
-    private int                 bufferSize = 16 * 1024;
-    private boolean             running    = false;
+    private int                 bufferSize       = 16 * 1024;
+    private boolean             running          = false;
     private long                serverId;
     private FileParserListener  parserListener;
+    private boolean             mmap             = false;     // 使用内存映射读取binlog文件
+    private boolean             prefetch         = false;     // 消费当前文件时提前解码下一个文件
+    private ExecutorService     prefetchExecutor = null;
 
     public LocalBinLogConnection(){
     }
@@ -52,6 +60,10 @@ public class LocalBinLogConnection implements ErosaConnection {
         if (this.binlogs == null) {
             this.binlogs = new BinLogFileQueue(this.directory);
         }
+        if (this.prefetch && this.prefetchExecutor == null) {
+            this.prefetchExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("LocalBinLogConnection-prefetch-"
+                                                                                         + this.directory));
+        }
         this.running = true;
     }
 
@@ -68,6 +80,10 @@ public class LocalBinLogConnection implements ErosaConnection {
             this.binlogs.destory();
         }
         this.binlogs = null;
+        if (this.prefetchExecutor != null) {
+            this.prefetchExecutor.shutdownNow();
+        }
+        this.prefetchExecutor = null;
         this.running = false;
     }
 
@@ -81,20 +97,14 @@ public class LocalBinLogConnection implements ErosaConnection {
     public void dump(String binlogfilename, Long binlogPosition, SinkFunction func) throws IOException {
         File current = new File(directory, binlogfilename);
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
-        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
-        LogContext context = new LogContext();
+        BinLogFileReader reader = openReader(current, binlogPosition);
+        BinLogFileReader nextReader = null;
         try {
-            fetcher.open(current, binlogPosition);
-            context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
+                nextReader = prefetchNextFile(current);
                 LogEvent event = null;
-                while (fetcher.fetch()) {
-                    event = decoder.decode(fetcher, context);
-                    if (event == null) {
-                        continue;
-                    }
+                while ((event = reader.next()) != null) {
                     if (serverId != 0 && event.getServerId() != serverId) {
                         throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
                     }
@@ -105,9 +115,16 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
                 }
 
-                fetcher.close(); // 关闭上一个文件
+                reader.close(); // 关闭上一个文件
                 parserFinish(current.getName());
                 if (needContinue) {// 读取下一个
+                    if (nextReader != null) {
+                        // 下一个文件已经在预读
+                        reader = nextReader;
+                        nextReader = null;
+                        current = reader.getFile();
+                        continue;
+                    }
 
                     File nextFile;
                     if (needWait) {
@@ -121,8 +138,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
 
                     current = nextFile;
-                    fetcher.open(current);
-                    context.setLogPosition(new LogPosition(nextFile.getName()));
+                    reader = openReader(current, 0L);
                 } else {
                     break;// 跳出
                 }
@@ -130,8 +146,9 @@ public class LocalBinLogConnection implements ErosaConnection {
         } catch (InterruptedException e) {
             logger.warn("LocalBinLogConnection dump interrupted");
         } finally {
-            if (fetcher != null) {
-                fetcher.close();
+            reader.close();
+            if (nextReader != null) {
+                nextReader.close();
             }
         }
     }
@@ -144,7 +161,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         String binlogFilename = null;
         long binlogFileOffset = 0;
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        FileLogFetcher fetcher = buildFetcher();
         LogDecoder decoder = new LogDecoder();
         decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
         decoder.handle(LogEvent.QUERY_EVENT);
@@ -226,20 +243,14 @@ public class LocalBinLogConnection implements ErosaConnection {
             throw new CanalParseException("binlog:" + binlogfilename + " is not found");
         }
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
-        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
-        LogContext context = new LogContext();
+        BinLogFileReader reader = openReader(current, binlogPosition);
+        BinLogFileReader nextReader = null;
         try {
-            fetcher.open(current, binlogPosition);
-            context.setLogPosition(new LogPosition(binlogfilename, binlogPosition));
             while (running) {
                 boolean needContinue = true;
+                nextReader = prefetchNextFile(current);
                 LogEvent event = null;
-                while (fetcher.fetch()) {
-                    event = decoder.decode(fetcher, context);
-                    if (event == null) {
-                        continue;
-                    }
+                while ((event = reader.next()) != null) {
                     if (serverId != 0 && event.getServerId() != serverId) {
                         throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
                     }
@@ -250,9 +261,17 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
                 }
 
-                fetcher.close(); // 关闭上一个文件
-                parserFinish(binlogfilename);
+                reader.close(); // 关闭上一个文件
+                parserFinish(current.getName());
                 if (needContinue) {// 读取下一个
+                    if (nextReader != null) {
+                        // 下一个文件已经在预读
+                        reader = nextReader;
+                        nextReader = null;
+                        current = reader.getFile();
+                        continue;
+                    }
+
                     File nextFile;
                     if (needWait) {
                         nextFile = binlogs.waitForNextFile(current);
@@ -265,8 +284,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                     }
 
                     current = nextFile;
-                    fetcher.open(current);
-                    binlogfilename = nextFile.getName();
+                    reader = openReader(current, 0L);
                 } else {
                     break;// 跳出
                 }
@@ -274,12 +292,44 @@ public class LocalBinLogConnection implements ErosaConnection {
         } catch (InterruptedException e) {
             logger.warn("LocalBinLogConnection dump interrupted");
         } finally {
-            if (fetcher != null) {
-                fetcher.close();
+            reader.close();
+            if (nextReader != null) {
+                nextReader.close();
             }
         }
     }
 
+    private FileLogFetcher buildFetcher() {
+        if (mmap) {
+            return new MappedFileLogFetcher(bufferSize);
+        } else {
+            return new FileLogFetcher(bufferSize);
+        }
+    }
+
+    private BinLogFileReader openReader(File file, long position) throws IOException {
+        BinLogFileReader reader = new BinLogFileReader(file, position, buildFetcher());
+        if (prefetchExecutor != null) {
+            reader.prefetch(prefetchExecutor);
+        }
+        return reader;
+    }
+
+    /**
+     * 预读模式下，如果下一个文件已经存在，提前开始解码
+     */
+    private BinLogFileReader prefetchNextFile(File current) throws IOException {
+        if (prefetchExecutor == null) {
+            return null;
+        }
+
+        File nextFile = binlogs.getNextFile(current);
+        if (nextFile == null) {
+            return null;
+        }
+        return openReader(nextFile, 0L);
+    }
+
     private void parserFinish(String fileName) {
         if (parserListener != null) {
             parserListener.onFinish(fileName);
@@ -295,7 +345,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         String binlogFilename = null;
         long binlogFileOffset = 0;
 
-        FileLogFetcher fetcher = new FileLogFetcher(bufferSize);
+        FileLogFetcher fetcher = buildFetcher();
         LogDecoder decoder = new LogDecoder();
         decoder.handle(LogEvent.FORMAT_DESCRIPTION_EVENT);
         decoder.handle(LogEvent.QUERY_EVENT);
@@ -376,6 +426,8 @@ public class LocalBinLogConnection implements ErosaConnection {
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setMmap(this.mmap);
+        connection.setPrefetch(this.prefetch);
         return connection;
     }
 
@@ -416,6 +468,22 @@ public class LocalBinLogConnection implements ErosaConnection {
         this.serverId = serverId;
     }
 
+    public boolean isMmap() {
+        return mmap;
+    }
+
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
     public void setParserListener(FileParserListener parserListener) {
         this.parserListener = parserListener;
     }
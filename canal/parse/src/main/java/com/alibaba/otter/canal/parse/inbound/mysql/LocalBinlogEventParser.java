@@ -32,6 +32,8 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
     protected String             directory;
     protected boolean            needWait   = false;
     protected int                bufferSize = 16 * 1024;
+    protected boolean            mmap       = false;    // 使用内存映射读取binlog文件
+    protected boolean            prefetch   = false;    // 消费当前文件时提前解码下一个文件
 
     public LocalBinlogEventParser(){
         // this.runningInfo = new AuthenticationInfo();
@@ -108,6 +110,8 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setMmap(this.mmap);
+        connection.setPrefetch(this.prefetch);
 
         return connection;
     }
@@ -172,6 +176,14 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         this.bufferSize = bufferSize;
     }
 
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
     public void setMasterPosition(EntryPosition masterPosition) {
         this.masterPosition = masterPosition;
     }
@@ -33,6 +33,7 @@ import com.alibaba.otter.canal.parse.inbound.ErosaConnection;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.DirectLogFetcher;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogBufferPool;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogContext;
@@ -57,6 +58,8 @@ public class MysqlConnection implements ErosaConnection {
     private int                 binlogChecksum = LogEvent.BINLOG_CHECKSUM_ALG_OFF;
     // dump binlog bytes, 暂不包括meta与TSDB
     private AtomicLong          receivedBinlogBytes;
+    // 并行解析模式下binlog接收的内存池，为null时每个数据包单独拷贝
+    private LogBufferPool       fetchBufferPool;
 
     public MysqlConnection(){
     }
@@ -229,12 +232,12 @@ public class MysqlConnection implements ErosaConnection {
         sendBinlogDump(binlogfilename, binlogPosition);
         ((MysqlMultiStageCoprocessor) coprocessor).setConnection(this);
         ((MysqlMultiStageCoprocessor) coprocessor).setBinlogChecksum(binlogChecksum);
-        DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize());
+        DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize(), fetchBufferPool);
         try {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                LogBuffer buffer = fetcher.slice();
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
@@ -257,12 +260,12 @@ public class MysqlConnection implements ErosaConnection {
         sendBinlogDumpGTID(gtidSet);
         ((MysqlMultiStageCoprocessor) coprocessor).setConnection(this);
         ((MysqlMultiStageCoprocessor) coprocessor).setBinlogChecksum(binlogChecksum);
-        DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize());
+        DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize(), fetchBufferPool);
         try {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                LogBuffer buffer = fetcher.slice();
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
@@ -361,6 +364,7 @@ public class MysqlConnection implements ErosaConnection {
         connection.setConnector(connector.fork());
         // set authInfo
         connection.setAuthInfo(authInfo);
+        connection.setFetchBufferPool(fetchBufferPool);
         return connection;
     }
 
@@ -678,6 +682,10 @@ public class MysqlConnection implements ErosaConnection {
         this.authInfo = authInfo;
     }
 
+    public void setFetchBufferPool(LogBufferPool fetchBufferPool) {
+        this.fetchBufferPool = fetchBufferPool;
+    }
+
     public void setReceivedBinlogBytes(AtomicLong receivedBinlogBytes) {
         this.receivedBinlogBytes = receivedBinlogBytes;
     }
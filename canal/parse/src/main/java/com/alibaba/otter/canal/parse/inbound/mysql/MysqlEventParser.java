@@ -1,7 +1,9 @@
 package com.alibaba.otter.canal.parse.inbound.mysql;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.HashMap;
@@ -24,9 +26,11 @@ import com.alibaba.otter.canal.parse.inbound.HeartBeatCallback;
 import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection.BinlogFormat;
 import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection.BinlogImage;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogBufferPool;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.TableMetaCache;
 import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMeta;
+import com.alibaba.otter.canal.parse.index.TimestampPositionIndex;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
@@ -46,30 +50,38 @@ import com.taobao.tddl.dbsync.binlog.LogEvent;
  */
 public class MysqlEventParser extends AbstractMysqlEventParser implements CanalEventParser, CanalHASwitchable {
 
-    private CanalHAController    haController                      = null;
+    private static final String    TIMESTAMP_INDEX_FILE              = "timestamp_%s_%d.idx";
+    private static final int       TIMESTAMP_INDEX_MAX_SIZE          = 100000;
+    private CanalHAController      haController                      = null;
 
-    private int                  defaultConnectionTimeoutInSeconds = 30;       // sotimeout
-    private int                  receiveBufferSize                 = 64 * 1024;
-    private int                  sendBufferSize                    = 64 * 1024;
+    private int                    defaultConnectionTimeoutInSeconds = 30;       // sotimeout
+    private int                    receiveBufferSize                 = 64 * 1024;
+    private int                    sendBufferSize                    = 64 * 1024;
+    private boolean                useFetchBufferPool                = false;    // 并行解析时binlog接收是否使用内存池
+    private LogBufferPool          fetchBufferPool;
     // 数据库信息
-    protected AuthenticationInfo masterInfo;                                   // 主库
-    protected AuthenticationInfo standbyInfo;                                  // 备库
+    protected AuthenticationInfo   masterInfo;                                   // 主库
+    protected AuthenticationInfo   standbyInfo;                                  // 备库
     // binlog信息
-    protected EntryPosition      masterPosition;
-    protected EntryPosition      standbyPosition;
-    private long                 slaveId;                                      // 链接到mysql的slave
+    protected EntryPosition        masterPosition;
+    protected EntryPosition        standbyPosition;
+    private long                   slaveId;                                      // 链接到mysql的slave
     // 心跳检查信息
-    private String               detectingSQL;                                 // 心跳sql
-    private MysqlConnection      metaConnection;                               // 查询meta信息的链接
-    private TableMetaCache       tableMetaCache;                               // 对应meta
-    private int                  fallbackIntervalInSeconds         = 60;       // 切换回退时间
-    private BinlogFormat[]       supportBinlogFormats;                         // 支持的binlogFormat,如果设置会执行强校验
-    private BinlogImage[]        supportBinlogImages;                          // 支持的binlogImage,如果设置会执行强校验
+    private String                 detectingSQL;                                 // 心跳sql
+    private MysqlConnection        metaConnection;                               // 查询meta信息的链接
+    private TableMetaCache         tableMetaCache;                               // 对应meta
+    private int                    fallbackIntervalInSeconds         = 60;       // 切换回退时间
+    private BinlogFormat[]         supportBinlogFormats;                         // 支持的binlogFormat,如果设置会执行强校验
+    private BinlogImage[]          supportBinlogImages;                          // 支持的binlogImage,如果设置会执行强校验
 
     // update by yishun.chen,特殊异常处理参数
-    private int                  dumpErrorCount                    = 0;        // binlogDump失败异常计数
-    private int                  dumpErrorCountThreshold           = 2;        // binlogDump失败异常计数阀值
-    private boolean              rdsOssMode                        = false;
+    private int                    dumpErrorCount                    = 0;        // binlogDump失败异常计数
+    private int                    dumpErrorCountThreshold           = 2;        // binlogDump失败异常计数阀值
+    private boolean                rdsOssMode                        = false;
+    private String                 timestampIndexDir;                            // 时间戳索引的存储目录，为空时不开启
+    private int                    timestampIndexIntervalInSeconds   = 60;       // 时间戳索引记录检查点的间隔
+    private TimestampPositionIndex timestampIndex;                               // 当前mysql地址对应的时间戳索引
+    private String                 timestampIndexAddress;
 
     protected ErosaConnection buildErosaConnection() {
         return buildMysqlConnection(this.runningInfo);
@@ -132,6 +144,15 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         }
     }
 
+    protected void afterPersistLogPosition(LogPosition position) {
+        if (position.getIdentity() != null) {
+            TimestampPositionIndex index = getTimestampIndex(position.getIdentity().getSourceAddress());
+            if (index != null) {
+                index.record(position.getPostion());
+            }
+        }
+    }
+
     protected void afterDump(ErosaConnection connection) {
         super.afterDump(connection);
 
@@ -321,6 +342,13 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         connection.getConnector().setSoTimeout(defaultConnectionTimeoutInSeconds * 1000);
         connection.setCharset(connectionCharset);
         connection.setReceivedBinlogBytes(receivedBinlogBytes);
+        if (useFetchBufferPool) {
+            // 内存池跨重连复用
+            if (fetchBufferPool == null) {
+                fetchBufferPool = new LogBufferPool();
+            }
+            connection.setFetchBufferPool(fetchBufferPool);
+        }
         // 随机生成slaveId
         if (this.slaveId <= 0) {
             this.slaveId = generateUniqueServerId();
@@ -577,6 +605,15 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         String maxBinlogFileName = endPosition.getJournalName();
         String minBinlogFileName = startPosition.getJournalName();
         logger.info("show master status to set search end condition:{} ", endPosition);
+        EntryPosition indexPosition = findByTimestampIndex(mysqlConnection,
+            startTimestamp,
+            endPosition,
+            minBinlogFileName);
+        if (indexPosition != null) {
+            logger.info("found and return:{} in findByStartTimeStamp operation with timestamp index.", indexPosition);
+            return indexPosition;
+        }
+
         String startSearchBinlogFile = endPosition.getJournalName();
         boolean shouldBreak = false;
         while (running && !shouldBreak) {
@@ -632,6 +669,65 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         return null;
     }
 
+    /**
+     * 基于时间戳索引找到最近的检查点，只从检查点开始扫描到指定的时间戳
+     */
+    private EntryPosition findByTimestampIndex(MysqlConnection mysqlConnection, Long startTimestamp,
+                                               EntryPosition endPosition, String minBinlogFileName) {
+        TimestampPositionIndex index = getTimestampIndex(mysqlConnection.getConnector().getAddress());
+        if (index == null) {
+            return null;
+        }
+
+        EntryPosition checkpoint = index.floor(startTimestamp);
+        if (checkpoint == null) {
+            return null;
+        }
+
+        // 检查点所在的binlog已经被删除，或者超过了当前的binlog位点(比如reset master)
+        if (TimestampPositionIndex.compareJournalName(checkpoint.getJournalName(), minBinlogFileName) < 0
+            || TimestampPositionIndex.comparePosition(checkpoint.getJournalName(),
+                checkpoint.getPosition(),
+                endPosition.getJournalName(),
+                endPosition.getPosition()) > 0) {
+            logger.warn("ignore timestamp index checkpoint:{}, binlog range is {} to {}",
+                new Object[] { checkpoint, minBinlogFileName, endPosition });
+            return null;
+        }
+
+        EntryPosition entryPosition = findAsPerTimestampInSpecificLogFile(mysqlConnection,
+            startTimestamp,
+            endPosition,
+            checkpoint.getJournalName(),
+            checkpoint.getPosition(),
+            false);
+        // 检查点之后没有更接近的事务位点，检查点本身就是一个事务位点
+        return entryPosition != null ? entryPosition : checkpoint;
+    }
+
+    /**
+     * 每个mysql地址使用单独的索引文件，主备切换后按照新的地址重新加载
+     */
+    private synchronized TimestampPositionIndex getTimestampIndex(InetSocketAddress address) {
+        if (StringUtils.isEmpty(timestampIndexDir) || timestampIndexIntervalInSeconds <= 0 || address == null) {
+            return null;
+        }
+
+        String indexAddress = address.getHostString() + ":" + address.getPort();
+        if (timestampIndex == null || !indexAddress.equals(timestampIndexAddress)) {
+            File dataDir = new File(timestampIndexDir);
+            if (!dataDir.exists()) {
+                dataDir.mkdirs();
+            }
+            String fileName = String.format(TIMESTAMP_INDEX_FILE, address.getHostString(), address.getPort());
+            timestampIndex = new TimestampPositionIndex(new File(dataDir, fileName),
+                timestampIndexIntervalInSeconds * 1000L,
+                TIMESTAMP_INDEX_MAX_SIZE);
+            timestampIndexAddress = indexAddress;
+        }
+        return timestampIndex;
+    }
+
     /**
      * 查询当前db的serverId信息
      */
@@ -738,12 +834,29 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
                                                               final EntryPosition endPosition,
                                                               final String searchBinlogFile,
                                                               final Boolean justForPositionTimestamp) {
+        return findAsPerTimestampInSpecificLogFile(mysqlConnection,
+            startTimestamp,
+            endPosition,
+            searchBinlogFile,
+            4L,
+            justForPositionTimestamp);
+    }
+
+    /**
+     * 从指定binlog的searchBinlogPosition开始查找，searchBinlogPosition必须是一个事务位点
+     */
+    private EntryPosition findAsPerTimestampInSpecificLogFile(MysqlConnection mysqlConnection,
+                                                              final Long startTimestamp,
+                                                              final EntryPosition endPosition,
+                                                              final String searchBinlogFile,
+                                                              final Long searchBinlogPosition,
+                                                              final Boolean justForPositionTimestamp) {
 
         final LogPosition logPosition = new LogPosition();
         try {
             mysqlConnection.reconnect();
             // 开始遍历文件
-            mysqlConnection.seek(searchBinlogFile, 4L, endPosition.getGtid(), new SinkFunction<LogEvent>() {
+            mysqlConnection.seek(searchBinlogFile, searchBinlogPosition, endPosition.getGtid(), new SinkFunction<LogEvent>() {
 
                 private LogPosition lastPosition;
 
@@ -807,7 +920,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
 
                         lastPosition = buildLastPosition(entry);
                     } catch (Throwable e) {
-                        processSinkError(e, lastPosition, searchBinlogFile, 4L);
+                        processSinkError(e, lastPosition, searchBinlogFile, searchBinlogPosition);
                     }
 
                     return running;
@@ -878,6 +991,18 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         this.sendBufferSize = sendBufferSize;
     }
 
+    public void setUseFetchBufferPool(boolean useFetchBufferPool) {
+        this.useFetchBufferPool = useFetchBufferPool;
+    }
+
+    public void setTimestampIndexDir(String timestampIndexDir) {
+        this.timestampIndexDir = timestampIndexDir;
+    }
+
+    public void setTimestampIndexIntervalInSeconds(int timestampIndexIntervalInSeconds) {
+        this.timestampIndexIntervalInSeconds = timestampIndexIntervalInSeconds;
+    }
+
     public void setMasterInfo(AuthenticationInfo masterInfo) {
         this.masterInfo = masterInfo;
     }
@@ -2,10 +2,14 @@ package com.alibaba.otter.canal.parse.inbound.mysql;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
 import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
@@ -15,7 +19,9 @@ import com.alibaba.otter.canal.parse.inbound.EventTransactionBuffer;
 import com.alibaba.otter.canal.parse.inbound.MultiStageCoprocessor;
 import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.PooledLogBuffer;
 import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
 import com.lmax.disruptor.BatchEventProcessor;
 import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.EventFactory;
@@ -26,8 +32,10 @@ import com.lmax.disruptor.LifecycleAware;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.SequenceGroup;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkerPool;
+import com.lmax.disruptor.util.Util;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
@@ -46,6 +54,8 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
  * 2. 事件基本解析 (单线程，事件类型、DDL解析构造TableMeta、维护位点信息)
  * 3. 事件深度解析 (多线程, DML事件数据的完整解析)
  * 4. 投递到store (单线程)
+ * 
+ * 开启adaptive之后，第3阶段的线程数会根据ringBuffer堆积情况和publish阻塞时间在[1, parserThreadCount]之间动态调整
  * </pre>
  * 
  * @author agapple 2018年7月3日 下午4:54:17
@@ -53,12 +63,15 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
  */
 public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implements MultiStageCoprocessor {
 
-    private static final int                  maxFullTimes = 10;
+    private static final Logger               logger                 = LoggerFactory.getLogger(MysqlMultiStageCoprocessor.class);
+    private static final int                  maxFullTimes           = 10;
+    private static final long                 adaptiveIntervalMillis = 5000L;                                                 // 并行度调整的检查间隔
     private LogEventConvert                   logEventConvert;
     private EventTransactionBuffer            transactionBuffer;
     private ErosaConnection                   connection;
 
     private int                               parserThreadCount;
+    private boolean                           adaptive               = false;
     private int                               ringBufferSize;
     private RingBuffer<MessageEvent>          disruptorMsgBuffer;
     private ExecutorService                   parserExecutor;
@@ -67,10 +80,16 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private volatile CanalParseException      exception;
     private AtomicLong                        eventsPublishBlockingTime;
     private GTIDSet                           gtidSet;
-    private WorkerPool<MessageEvent>          workerPool;
+    private volatile WorkerPool<MessageEvent> workerPool;
+    private SequenceGroup                     dmlParserSequences;
+    private AtomicLong                        parserParallelism      = new AtomicLong(0L);
+    private long                              lastAdjustTime;
+    private long                              lastBlockingTime;
     private BatchEventProcessor<MessageEvent> simpleParserStage;
     private BatchEventProcessor<MessageEvent> sinkStoreStage;
     private LogContext                        logContext;
+    private EntryEventSink                    eventSink;                                                                      // raw模式下在dml并行解析阶段预先序列化entry
+    private EntryEventSink.PreparedEvents     preparedEvents;                                                                 // 当前coprocessor预构造的Event，stop时丢弃
 
     public MysqlMultiStageCoprocessor(int ringBufferSize, int parserThreadCount, LogEventConvert logEventConvert,
                                       EventTransactionBuffer transactionBuffer, String destination){
@@ -85,6 +104,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     public void start() {
         super.start();
         this.exception = null;
+        if (eventSink != null) {
+            this.preparedEvents = eventSink.openPreparedEvents();
+        }
         this.disruptorMsgBuffer = RingBuffer.createSingleProducer(new MessageEventFactory(),
             ringBufferSize,
             new BlockingWaitStrategy());
@@ -105,20 +127,16 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         disruptorMsgBuffer.addGatingSequences(simpleParserStage.getSequence());
 
         // stage 3
-        SequenceBarrier dmlParserSequenceBarrier = disruptorMsgBuffer.newBarrier(simpleParserStage.getSequence());
-        WorkHandler<MessageEvent>[] workHandlers = new DmlParserStage[tc];
-        for (int i = 0; i < tc; i++) {
-            workHandlers[i] = new DmlParserStage();
+        workerPool = buildWorkerPool(tc);
+        // 通过SequenceGroup依赖stage 3，调整并行度时可以替换workerPool而不影响stage 4的barrier
+        // stage 4的位置一定不会超过stage 3，所以ringBuffer只需要gating在stage 4上即可
+        dmlParserSequences = new SequenceGroup();
+        for (Sequence sequence : workerPool.getWorkerSequences()) {
+            dmlParserSequences.add(sequence);
         }
-        workerPool = new WorkerPool<MessageEvent>(disruptorMsgBuffer,
-            dmlParserSequenceBarrier,
-            exceptionHandler,
-            workHandlers);
-        Sequence[] sequence = workerPool.getWorkerSequences();
-        disruptorMsgBuffer.addGatingSequences(sequence);
 
         // stage 4
-        SequenceBarrier sinkSequenceBarrier = disruptorMsgBuffer.newBarrier(sequence);
+        SequenceBarrier sinkSequenceBarrier = disruptorMsgBuffer.newBarrier(dmlParserSequences);
         sinkStoreStage = new BatchEventProcessor<MessageEvent>(disruptorMsgBuffer,
             sinkSequenceBarrier,
             new SinkStoreStage());
@@ -129,6 +147,23 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         stageExecutor.submit(simpleParserStage);
         stageExecutor.submit(sinkStoreStage);
         workerPool.start(parserExecutor);
+        parserParallelism.set(tc);
+        if (adaptive) {
+            lastAdjustTime = System.currentTimeMillis();
+            lastBlockingTime = eventsPublishBlockingTime.get();
+        }
+    }
+
+    private WorkerPool<MessageEvent> buildWorkerPool(int threadCount) {
+        SequenceBarrier dmlParserSequenceBarrier = disruptorMsgBuffer.newBarrier(simpleParserStage.getSequence());
+        WorkHandler<MessageEvent>[] workHandlers = new DmlParserStage[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workHandlers[i] = new DmlParserStage();
+        }
+        return new WorkerPool<MessageEvent>(disruptorMsgBuffer,
+            dmlParserSequenceBarrier,
+            new SimpleFatalExceptionHandler(),
+            workHandlers);
     }
 
     public void setBinlogChecksum(int binlogChecksum) {
@@ -139,6 +174,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     @Override
     public void stop() {
+        if (preparedEvents != null) {
+            // 只丢弃当前parser的预构造Event，还在执行的dml解析线程迟到的prepare会被忽略
+            preparedEvents.close();
+        }
         // fix bug #968，对于pool与
         workerPool.halt();
         simpleParserStage.halt();
@@ -183,53 +222,146 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     }
 
     private boolean publish(LogBuffer buffer, LogEvent event) {
-        if (!isStart()) {
-            if (exception != null) {
-                throw exception;
+        boolean published = false;
+        try {
+            if (!isStart()) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return false;
+            }
+
+            boolean interupted = false;
+            long blockingStart = 0L;
+            int fullTimes = 0;
+            do {
+                /**
+                 * 由于改为processor仅终止自身stage而不是stop，那么需要由incident标识coprocessor是否正常工作。
+                 * 让dump线程能够及时感知
+                 */
+                if (exception != null) {
+                    throw exception;
+                }
+                try {
+                    long next = disruptorMsgBuffer.tryNext();
+                    MessageEvent data = disruptorMsgBuffer.get(next);
+                    if (buffer != null) {
+                        data.setBuffer(buffer);
+                    } else {
+                        data.setEvent(event);
+                    }
+                    disruptorMsgBuffer.publish(next);
+                    published = true;
+                    if (fullTimes > 0) {
+                        eventsPublishBlockingTime.addAndGet(System.nanoTime() - blockingStart);
+                    }
+                    if (adaptive) {
+                        adjustParallelism();
+                    }
+                    break;
+                } catch (InsufficientCapacityException e) {
+                    if (fullTimes == 0) {
+                        blockingStart = System.nanoTime();
+                    }
+                    // park
+                    // LockSupport.parkNanos(1L);
+                    applyWait(++fullTimes);
+                    interupted = Thread.interrupted();
+                    if (fullTimes % 1000 == 0) {
+                        long nextStart = System.nanoTime();
+                        eventsPublishBlockingTime.addAndGet(nextStart - blockingStart);
+                        blockingStart = nextStart;
+                    }
+                }
+            } while (!interupted && isStart());
+            return isStart();
+        } finally {
+            if (!published && buffer instanceof PooledLogBuffer) {
+                // 没有投递到ringBuffer，由投递方归还接收数据包的内存
+                ((PooledLogBuffer) buffer).release();
             }
-            return false;
         }
+    }
+
+    /**
+     * 根据ringBuffer的堆积和publish阻塞时间调整dml解析的并行度，只在publish线程中调用
+     * 
+     * <pre>
+     * 1. 出现publish阻塞或者ringBuffer堆积超过3/4，并且堆积主要在dml解析阶段，线程数翻倍
+     * 2. 没有publish阻塞并且ringBuffer堆积低于1/4，线程数减一
+     * </pre>
+     */
+    private void adjustParallelism() {
+        long now = System.currentTimeMillis();
+        if (now - lastAdjustTime < adaptiveIntervalMillis) {
+            return;
+        }
+        lastAdjustTime = now;
+
+        long blockingTime = eventsPublishBlockingTime.get();
+        long blockingDelta = blockingTime - lastBlockingTime;
+        lastBlockingTime = blockingTime;
+
+        long cursor = disruptorMsgBuffer.getCursor();
+        long simpleParsed = simpleParserStage.getSequence().get();
+        long dmlParsed = dmlParserSequences.get();
+        long stored = sinkStoreStage.getSequence().get();
+        long occupancy = cursor - stored;
+
+        int current = (int) parserParallelism.get();
+        int max = parserThreadCount > 0 ? parserThreadCount : 1;
+        int target = current;
+        if ((blockingDelta > 0 || occupancy >= ringBufferSize * 3 / 4) && simpleParsed - dmlParsed > dmlParsed - stored) {
+            target = Math.min(current * 2, max);
+        } else if (blockingDelta == 0 && occupancy <= ringBufferSize / 4) {
+            target = Math.max(current - 1, 1);
+        }
+
+        if (target != current) {
+            resizeDmlParserStage(target);
+        }
+    }
 
-        boolean interupted = false;
-        long blockingStart = 0L;
-        int fullTimes = 0;
-        do {
-            /**
-             * 由于改为processor仅终止自身stage而不是stop，那么需要由incident标识coprocessor是否正常工作。
-             * 让dump线程能够及时感知
-             */
+    /**
+     * 替换stage 3的workerPool，先等待已发布的数据全部完成dml解析，保证stage 4的顺序不受影响
+     */
+    private void resizeDmlParserStage(int threadCount) {
+        WorkerPool<MessageEvent> oldPool = workerPool;
+        Sequence[] oldSequences = oldPool.getWorkerSequences();
+        // publish线程自身在等待，cursor不会再增长
+        while (disruptorMsgBuffer.getCursor() > Util.getMinimumSequence(oldSequences)) {
             if (exception != null) {
                 throw exception;
             }
-            try {
-                long next = disruptorMsgBuffer.tryNext();
-                MessageEvent data = disruptorMsgBuffer.get(next);
-                if (buffer != null) {
-                    data.setBuffer(buffer);
-                } else {
-                    data.setEvent(event);
-                }
-                disruptorMsgBuffer.publish(next);
-                if (fullTimes > 0) {
-                    eventsPublishBlockingTime.addAndGet(System.nanoTime() - blockingStart);
-                }
-                break;
-            } catch (InsufficientCapacityException e) {
-                if (fullTimes == 0) {
-                    blockingStart = System.nanoTime();
-                }
-                // park
-                // LockSupport.parkNanos(1L);
-                applyWait(++fullTimes);
-                interupted = Thread.interrupted();
-                if (fullTimes % 1000 == 0) {
-                    long nextStart = System.nanoTime();
-                    eventsPublishBlockingTime.addAndGet(nextStart - blockingStart);
-                    blockingStart = nextStart;
-                }
+            if (!isStart()) {
+                return;
             }
-        } while (!interupted && isStart());
-        return isStart();
+            LockSupport.parkNanos(1000L);
+        }
+        oldPool.halt();
+
+        WorkerPool<MessageEvent> newPool = buildWorkerPool(threadCount);
+        try {
+            newPool.start(parserExecutor);
+        } catch (RejectedExecutionException e) {
+            // 已经在stop
+            return;
+        }
+        // 先加入新的sequence再移除旧的，避免stage 4看到空的SequenceGroup
+        for (Sequence sequence : newPool.getWorkerSequences()) {
+            dmlParserSequences.add(sequence);
+        }
+        for (Sequence sequence : oldSequences) {
+            dmlParserSequences.remove(sequence);
+        }
+        workerPool = newPool;
+        if (!isStart()) {
+            newPool.halt();
+        }
+
+        logger.info("destination:{} adjust dml parser parallelism from {} to {}", new Object[] { destination,
+                parserParallelism.get(), threadCount });
+        parserParallelism.set(threadCount);
     }
 
     // 处理无数据的情况，避免空循环挂死
@@ -330,6 +462,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                             entry = logEventConvert.parseRowsEvent((RowsLogEvent) event.getEvent(), event.getTable());
                     }
 
+                    if (entry != null && preparedEvents != null) {
+                        preparedEvents.prepare(entry);
+                    }
                     event.setEntry(entry);
                 }
             } catch (Throwable e) {
@@ -365,6 +500,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 }
 
                 // clear for gc
+                if (event.getBuffer() instanceof PooledLogBuffer) {
+                    // 归还接收数据包的内存
+                    ((PooledLogBuffer) event.getBuffer()).release();
+                }
                 event.setBuffer(null);
                 event.setEvent(null);
                 event.setTable(null);
@@ -469,6 +608,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.transactionBuffer = transactionBuffer;
     }
 
+    public void setEventSink(EntryEventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     public void setConnection(ErosaConnection connection) {
         this.connection = connection;
     }
@@ -481,4 +624,12 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.gtidSet = gtidSet;
     }
 
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public void setParserParallelism(AtomicLong parserParallelism) {
+        this.parserParallelism = parserParallelism;
+    }
+
 }
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannel;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogFetcher;
 
 /**
@@ -44,6 +45,10 @@ public class DirectLogFetcher extends LogFetcher {
 
     private boolean               issemi                          = false;
 
+    // 不为null时直接读入池化的chunk，通过slice()零拷贝投递
+    private LogBufferPool         bufferPool;
+    private LogBufferPool.Chunk   chunk;
+
     // private BufferedInputStream input;
 
     public DirectLogFetcher(){
@@ -58,6 +63,11 @@ public class DirectLogFetcher extends LogFetcher {
         super(initialCapacity, growthFactor);
     }
 
+    public DirectLogFetcher(final int initialCapacity, LogBufferPool bufferPool){
+        super(initialCapacity, DEFAULT_GROWTH_FACTOR);
+        this.bufferPool = bufferPool;
+    }
+
     public void start(SocketChannel channel) throws IOException {
         this.channel = channel;
         String dbsemi = System.getProperty("db.semi");
@@ -73,6 +83,17 @@ public class DirectLogFetcher extends LogFetcher {
      */
     public boolean fetch() throws IOException {
         try {
+            if (bufferPool != null) {
+                // 从当前chunk未使用的位置开始接收
+                if (chunk == null) {
+                    chunk = bufferPool.allocate(NET_HEADER_SIZE);
+                }
+                buffer = chunk.getData();
+                origin = chunk.getWriteIndex();
+                position = origin;
+                limit = 0;
+            }
+
             // Fetching packet header from input.
             if (!fetch0(0, NET_HEADER_SIZE)) {
                 logger.warn("Reached end of input stream while fetching header");
@@ -95,10 +116,10 @@ public class DirectLogFetcher extends LogFetcher {
                     // Indicates an error, for example trying to fetch from
                     // wrong
                     // binlog position.
-                    position = NET_HEADER_SIZE + 1;
+                    position = origin + NET_HEADER_SIZE + 1;
                     final int errno = getInt16();
                     String sqlstate = forward(1).getFixString(SQLSTATE_LENGTH);
-                    String errmsg = getFixString(limit - position);
+                    String errmsg = getFixString(limit - position());
                     throw new IOException("Received error packet:" + " errno = " + errno + ", sqlstate = " + sqlstate
                                           + " errmsg = " + errmsg);
                 } else if (mark == 254) {
@@ -138,13 +159,14 @@ public class DirectLogFetcher extends LogFetcher {
             }
 
             // Preparing buffer variables to decoding.
+            final int base = (bufferPool != null) ? origin : 0;
             if (issemi) {
-                origin = NET_HEADER_SIZE + 3;
+                origin = base + NET_HEADER_SIZE + 3;
             } else {
-                origin = NET_HEADER_SIZE + 1;
+                origin = base + NET_HEADER_SIZE + 1;
             }
             position = origin;
-            limit -= origin;
+            limit -= origin - base;
             return true;
         } catch (SocketTimeoutException e) {
             close(); /* Do cleanup */
@@ -166,25 +188,68 @@ public class DirectLogFetcher extends LogFetcher {
     }
 
     private final boolean fetch0(final int off, final int len) throws IOException {
-        ensureCapacity(off + len);
+        if (bufferPool != null) {
+            ensurePooledCapacity(off + len);
+            channel.read(buffer, origin + off, len, READ_TIMEOUT_MILLISECONDS);
+        } else {
+            ensureCapacity(off + len);
 
-        // byte[] read = channel.read(len, READ_TIMEOUT_MILLISECONDS);
-        // System.arraycopy(read, 0, this.buffer, off, len);
+            // byte[] read = channel.read(len, READ_TIMEOUT_MILLISECONDS);
+            // System.arraycopy(read, 0, this.buffer, off, len);
 
-        channel.read(buffer, off, len, READ_TIMEOUT_MILLISECONDS);
+            channel.read(buffer, off, len, READ_TIMEOUT_MILLISECONDS);
+        }
         if (limit < off + len) {
             limit = off + len;
         }
         return true;
     }
 
+    /**
+     * 当前chunk剩余空间不足时切换到新的chunk，已经读取的部分拷贝过去
+     */
+    private final void ensurePooledCapacity(final int minCapacity) {
+        if (origin + minCapacity <= buffer.length) {
+            return;
+        }
+
+        int capacity = minCapacity;
+        if (minCapacity > bufferPool.getChunkSize()) {
+            // 超过16MB的包由多个续包拼接，按倍数扩容，避免每个续包都重新分配并拷贝已经读取的数据
+            capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * limit));
+        }
+        LogBufferPool.Chunk newChunk = bufferPool.allocate(capacity);
+        System.arraycopy(buffer, origin, newChunk.getData(), 0, limit);
+        chunk.release();
+        chunk = newChunk;
+        buffer = newChunk.getData();
+        origin = 0;
+        position = 0;
+    }
+
+    /**
+     * 返回当前数据包对应的LogBuffer，开启内存池时直接引用chunk不做拷贝，否则等同于duplicate()
+     */
+    public LogBuffer slice() {
+        if (bufferPool == null) {
+            return duplicate();
+        }
+
+        LogBuffer slice = new PooledLogBuffer(chunk, origin, limit);
+        chunk.setWriteIndex(origin + limit);
+        return slice;
+    }
+
     /**
      * {@inheritDoc}
      * 
      * @see com.taobao.tddl.dbsync.binlog.LogFetcher#close()
      */
     public void close() throws IOException {
-        // do nothing
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
     }
 
 }
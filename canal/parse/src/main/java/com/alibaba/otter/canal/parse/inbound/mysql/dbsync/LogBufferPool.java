@@ -0,0 +1,110 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * binlog网络接收的内存池，DirectLogFetcher直接将数据包读入chunk中，投递给解析器的LogBuffer只引用chunk的一段
+ *
+ * <pre>
+ * 1. chunk通过引用计数管理，fetcher持有一个引用，每个未释放的{@linkplain PooledLogBuffer}持有一个引用
+ * 2. 引用计数为0时归还到池中，超过maxIdleChunks直接丢弃交给gc
+ * 3. 超过chunkSize的大包单独分配，不进入池
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class LogBufferPool {
+
+    public static final int            DEFAULT_CHUNK_SIZE      = 1024 * 1024;
+    public static final int            DEFAULT_MAX_IDLE_CHUNKS = 16;
+
+    private final int                  chunkSize;
+    private final BlockingQueue<Chunk> idleChunks;
+
+    public LogBufferPool(){
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IDLE_CHUNKS);
+    }
+
+    public LogBufferPool(int chunkSize, int maxIdleChunks){
+        this.chunkSize = chunkSize;
+        this.idleChunks = new ArrayBlockingQueue<Chunk>(maxIdleChunks);
+    }
+
+    /**
+     * 分配一个至少可以容纳minCapacity字节的chunk，返回时引用计数为1
+     */
+    public Chunk allocate(int minCapacity) {
+        if (minCapacity > chunkSize) {
+            return new Chunk(new byte[minCapacity], null);
+        }
+
+        Chunk chunk = idleChunks.poll();
+        if (chunk == null) {
+            chunk = new Chunk(new byte[chunkSize], this);
+        }
+        chunk.reset();
+        return chunk;
+    }
+
+    private void recycle(Chunk chunk) {
+        idleChunks.offer(chunk);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getIdleChunks() {
+        return idleChunks.size();
+    }
+
+    /**
+     * 池中的一块连续内存，只有fetcher线程会写入writeIndex之后的区域
+     */
+    public static class Chunk {
+
+        private final byte[]        data;
+        private final LogBufferPool pool;
+        private final AtomicInteger refCnt = new AtomicInteger(0);
+        private int                 writeIndex;
+
+        private Chunk(byte[] data, LogBufferPool pool){
+            this.data = data;
+            this.pool = pool;
+            this.refCnt.set(1);
+        }
+
+        private void reset() {
+            writeIndex = 0;
+            refCnt.set(1);
+        }
+
+        public void retain() {
+            refCnt.incrementAndGet();
+        }
+
+        public void release() {
+            if (refCnt.decrementAndGet() == 0 && pool != null) {
+                pool.recycle(this);
+            }
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getWriteIndex() {
+            return writeIndex;
+        }
+
+        public void setWriteIndex(int writeIndex) {
+            this.writeIndex = writeIndex;
+        }
+
+        public int refCnt() {
+            return refCnt.get();
+        }
+    }
+}
@@ -38,6 +38,7 @@ import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
 import com.alibaba.otter.canal.protocol.CanalEntry.TransactionBegin;
 import com.alibaba.otter.canal.protocol.CanalEntry.TransactionEnd;
 import com.alibaba.otter.canal.protocol.CanalEntry.Type;
+import com.alibaba.otter.canal.protocol.TypedValueUtil;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
 import com.google.protobuf.ByteString;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
@@ -101,6 +102,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     // 新增rows过滤，用于仅订阅除rows以外的数据
     private boolean                     filterRows          = false;
     private boolean                     useDruidDdlFilter   = true;
+    // 数值和二进制类型使用Column.typedValue传输，避免格式化为文本
+    private boolean                     typedColumnValue    = false;
 
     public LogEventConvert(){
 
@@ -694,6 +697,13 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 }
             }
 
+            // 被字段过滤掉的列，直接按照type/meta跳过，不做解码
+            String columnName = fieldMeta != null ? fieldMeta.getColumnName() : (existOptionalMetaData ? info.name : null);
+            if (columnName != null && !needField(fieldList, blackFieldList, columnName)) {
+                buffer.skipValue(info.type, info.meta);
+                continue;
+            }
+
             Column.Builder columnBuilder = Column.newBuilder();
             if (fieldMeta != null) {
                 columnBuilder.setName(fieldMeta.getColumnName());
@@ -741,38 +751,39 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         if (isUnsigned && number.longValue() < 0) {
                             switch (buffer.getLength()) {
                                 case 1: /* MYSQL_TYPE_TINY */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(TINYINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    number = Integer.valueOf(TINYINT_MAX_VALUE + number.intValue());
                                     javaType = Types.SMALLINT; // 往上加一个量级
                                     break;
 
                                 case 2: /* MYSQL_TYPE_SHORT */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(SMALLINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    number = Integer.valueOf(SMALLINT_MAX_VALUE + number.intValue());
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 3: /* MYSQL_TYPE_INT24 */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(MEDIUMINT_MAX_VALUE
-                                                                                          + number.intValue())));
+                                    number = Integer.valueOf(MEDIUMINT_MAX_VALUE + number.intValue());
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 4: /* MYSQL_TYPE_LONG */
-                                    columnBuilder.setValue(String.valueOf(Long.valueOf(INTEGER_MAX_VALUE
-                                                                                       + number.longValue())));
+                                    number = Long.valueOf(INTEGER_MAX_VALUE + number.longValue());
                                     javaType = Types.BIGINT; // 往上加一个量级
                                     break;
 
                                 case 8: /* MYSQL_TYPE_LONGLONG */
-                                    columnBuilder.setValue(BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()))
-                                        .toString());
+                                    number = BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()));
                                     javaType = Types.DECIMAL; // 往上加一个量级，避免执行出错
                                     break;
                             }
-                        } else {
+                        }
+
+                        if (!typedColumnValue) {
                             // 对象为number类型，直接valueof即可
-                            columnBuilder.setValue(String.valueOf(value));
+                            columnBuilder.setValue(String.valueOf(number));
+                        } else if (number instanceof BigInteger) {
+                            columnBuilder.setTypedValue(TypedValueUtil.encodeDecimal(new BigDecimal((BigInteger) number)));
+                        } else {
+                            columnBuilder.setTypedValue(TypedValueUtil.encodeLong(number.longValue()));
                         }
 
                         if (isSingleBit && javaType == Types.TINYINT) {
@@ -781,14 +792,27 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         break;
                     case Types.REAL: // float
                     case Types.DOUBLE: // double
+                        if (typedColumnValue) {
+                            columnBuilder.setTypedValue(value instanceof Float ? TypedValueUtil.encodeFloat((Float) value)
+                                : TypedValueUtil.encodeDouble(((Number) value).doubleValue()));
+                            break;
+                        }
                         // 对象为number类型，直接valueof即可
                         columnBuilder.setValue(String.valueOf(value));
                         break;
                     case Types.BIT:// bit
+                        if (typedColumnValue && !(value instanceof BigInteger)) {
+                            columnBuilder.setTypedValue(TypedValueUtil.encodeLong(((Number) value).longValue()));
+                            break;
+                        }
                         // 对象为number类型
                         columnBuilder.setValue(String.valueOf(value));
                         break;
                     case Types.DECIMAL:
+                        if (typedColumnValue) {
+                            columnBuilder.setTypedValue(TypedValueUtil.encodeDecimal((BigDecimal) value));
+                            break;
+                        }
                         columnBuilder.setValue(((BigDecimal) value).toPlainString());
                         break;
                     case Types.TIMESTAMP:
@@ -812,6 +836,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         if (fieldMeta != null && isText(fieldMeta.getColumnType())) {
                             columnBuilder.setValue(new String((byte[]) value, charset));
                             javaType = Types.CLOB;
+                        } else if (typedColumnValue) {
+                            // 直接传输原始的byte数组
+                            columnBuilder.setTypedValue(ByteString.copyFrom((byte[]) value));
+                            javaType = Types.BLOB;
                         } else {
                             // byte数组，直接使用iso-8859-1保留对应编码，浪费内存
                             columnBuilder.setValue(new String((byte[]) value, ISO_8859_1));
@@ -834,6 +862,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             columnBuilder.setUpdated(isAfter
                                      && isUpdate(rowDataBuilder.getBeforeColumnsList(),
                                          columnBuilder.getIsNull() ? null : columnBuilder.getValue(),
+                                         columnBuilder.hasTypedValue() ? columnBuilder.getTypedValue() : null,
                                          i));
             if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
             	if (isAfter) {
@@ -919,7 +948,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         return headerBuilder.build();
     }
 
-    private boolean isUpdate(List<Column> bfColumns, String newValue, int index) {
+    private boolean isUpdate(List<Column> bfColumns, String newValue, ByteString newTypedValue, int index) {
         if (bfColumns == null) {
             throw new CanalParseException("ERROR ## the bfColumns is null");
         }
@@ -933,7 +962,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 if (column.getIsNull() && newValue == null) {
                     // 如果全是null
                     return false;
-                } else if (newValue != null && (!column.getIsNull() && column.getValue().equals(newValue))) {
+                } else if (newValue != null && !column.getIsNull() && newTypedValue != null
+                           && newTypedValue.equals(column.getTypedValue())) {
+                    // 二进制编码的字段值相等
+                    return false;
+                } else if (newValue != null && newTypedValue == null
+                           && (!column.getIsNull() && column.getValue().equals(newValue))) {
                     // fixed issue #135, old column is Null
                     // 如果不为null，并且相等
                     return false;
@@ -1073,6 +1107,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         this.filterTableError = filterTableError;
     }
 
+    public void setTypedColumnValue(boolean typedColumnValue) {
+        this.typedColumnValue = typedColumnValue;
+    }
+
     public void setFilterRows(boolean filterRows) {
         this.filterRows = filterRows;
     }
@@ -0,0 +1,31 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+
+/**
+ * 直接引用{@linkplain LogBufferPool.Chunk}内存的LogBuffer，不做数据拷贝，使用完之后需要调用release归还
+ *
+ * @version 1.1.4
+ */
+public class PooledLogBuffer extends LogBuffer {
+
+    private final LogBufferPool.Chunk chunk;
+    private final AtomicBoolean       released = new AtomicBoolean(false);
+
+    public PooledLogBuffer(LogBufferPool.Chunk chunk, final int origin, final int limit){
+        super(chunk.getData(), origin, limit);
+        this.chunk = chunk;
+        chunk.retain();
+    }
+
+    /**
+     * 释放对chunk的引用，重复调用忽略
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            chunk.release();
+        }
+    }
+}
@@ -2,11 +2,18 @@ package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.FieldPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
@@ -37,6 +44,7 @@ public class TableMetaCache {
     public static final String              COLUMN_KEY     = "COLUMN_KEY";
     public static final String              COLUMN_DEFAULT = "COLUMN_DEFAULT";
     public static final String              EXTRA          = "EXTRA";
+    private static final Logger             logger         = LoggerFactory.getLogger(TableMetaCache.class);
     private MysqlConnection                 connection;
     private boolean                         isOnRDS        = false;
     private boolean                         isOnTSDB       = false;
@@ -44,6 +52,9 @@ public class TableMetaCache {
     private TableMetaTSDB                   tableMetaTSDB;
     // 第一层tableId,第二层schema.table,解决tableId重复，对应多张表
     private LoadingCache<String, TableMeta> tableMetaDB;
+    // 已经从information_schema批量加载过的schema
+    private Set<String>                     loadedSchemas  = Collections
+                                                               .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     public TableMetaCache(MysqlConnection con, TableMetaTSDB tableMetaTSDB){
         this.connection = con;
@@ -82,6 +93,15 @@ public class TableMetaCache {
     }
 
     private synchronized TableMeta getTableMetaByDB(String fullname) throws IOException {
+        String[] fullnames = StringUtils.split(fullname, "`.`");
+        if (loadedSchemas.add(fullnames[0])) {
+            // 第一次访问该schema，一次性加载所有表结构，减少逐表查询的交互
+            TableMeta tableMeta = loadSchemaTableMetas(fullnames[0], fullnames[1]);
+            if (tableMeta != null) {
+                return tableMeta;
+            }
+        }
+
         try {
             ResultSetPacket packet = connection.query("show create table " + fullname);
             String[] names = StringUtils.split(fullname, "`.`");
@@ -97,6 +117,181 @@ public class TableMetaCache {
         }
     }
 
+    /**
+     * 从information_schema批量加载schema下所有表的结构放入缓存，查询失败时退化为逐表查询
+     *
+     * @return 返回table对应的结构，不存在时返回null
+     */
+    private TableMeta loadSchemaTableMetas(String schema, String table) {
+        Map<String, List<FieldMeta>> tableFields;
+        try {
+            String schemaName = StringUtils.replace(StringUtils.replace(schema, "\\", "\\\\"), "'", "''");
+            ResultSetPacket columns = connection.query("select TABLE_NAME," + COLUMN_NAME + "," + COLUMN_TYPE + ","
+                                                       + IS_NULLABLE + "," + COLUMN_DEFAULT + "," + EXTRA
+                                                       + " from information_schema.COLUMNS where TABLE_SCHEMA = '"
+                                                       + schemaName + "' order by TABLE_NAME, ORDINAL_POSITION");
+            ResultSetPacket indexes = connection.query("select TABLE_NAME,INDEX_NAME," + COLUMN_NAME
+                                                       + ",SUB_PART from information_schema.STATISTICS where TABLE_SCHEMA = '"
+                                                       + schemaName
+                                                       + "' and NON_UNIQUE = 0 order by TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX");
+            tableFields = parseTableMetaBySchema(schema, columns, indexes);
+        } catch (Throwable e) {
+            logger.warn("load table meta for schema:{} from information_schema failed, fetch table meta one by one",
+                schema,
+                e);
+            return null;
+        }
+
+        TableMeta result = null;
+        for (Map.Entry<String, List<FieldMeta>> entry : tableFields.entrySet()) {
+            TableMeta tableMeta = new TableMeta(schema, entry.getKey(), entry.getValue());
+            if (entry.getKey().equals(table)) {
+                result = tableMeta;
+            } else {
+                tableMetaDB.asMap().putIfAbsent(getFullName(schema, entry.getKey()), tableMeta);
+            }
+        }
+        logger.info("load {} table metas for schema:{} from information_schema", tableFields.size(), schema);
+        return result;
+    }
+
+    /**
+     * 处理information_schema的结果，还原成和show create table一致的建表语句后复用{@linkplain #parseTableMeta}的解析，
+     * 保证两种方式得到的FieldMeta相同，按照表名分组
+     */
+    public static Map<String, List<FieldMeta>> parseTableMetaBySchema(String schema, ResultSetPacket columns,
+                                                                      ResultSetPacket indexes) {
+        Map<String, String> ddls = buildCreateTableDDLs(columns, indexes);
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        for (String ddl : ddls.values()) {
+            memoryTableMeta.apply(DatabaseTableMeta.INIT_POSITION, schema, ddl, null);
+        }
+
+        Map<String, List<FieldMeta>> result = new LinkedHashMap<String, List<FieldMeta>>();
+        for (String table : ddls.keySet()) {
+            TableMeta tableMeta = memoryTableMeta.find(schema, table);
+            // 解析失败的表不放入缓存，访问时再逐表查询
+            if (tableMeta != null) {
+                result.put(table, tableMeta.getFields());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据information_schema.COLUMNS(TABLE_NAME,COLUMN_NAME,COLUMN_TYPE,IS_NULLABLE,COLUMN_DEFAULT,EXTRA)和
+     * information_schema.STATISTICS(TABLE_NAME,INDEX_NAME,COLUMN_NAME,SUB_PART，只包含主键和唯一索引)的结果，
+     * 按照show create table的格式拼出建表语句
+     */
+    public static Map<String, String> buildCreateTableDDLs(ResultSetPacket columns, ResultSetPacket indexes) {
+        Map<String, StringBuilder> tables = new LinkedHashMap<String, StringBuilder>();
+        List<String> values = columns.getFieldValues();
+        for (int i = 0; i + 6 <= values.size(); i += 6) {
+            StringBuilder ddl = tables.get(values.get(i));
+            if (ddl == null) {
+                ddl = new StringBuilder("CREATE TABLE ").append(quoteName(values.get(i))).append(" (");
+                tables.put(values.get(i), ddl);
+            } else {
+                ddl.append(',');
+            }
+
+            String columnType = values.get(i + 2);
+            ddl.append("\n  ").append(quoteName(values.get(i + 1))).append(' ').append(columnType);
+            if (!StringUtils.equalsIgnoreCase(values.get(i + 3), "YES")) {
+                ddl.append(" NOT NULL");
+            }
+            if (values.get(i + 4) != null) {
+                ddl.append(" DEFAULT ").append(quoteDefaultValue(columnType, values.get(i + 4), values.get(i + 5)));
+            }
+        }
+
+        // 按索引分组，只有主键和唯一索引会影响FieldMeta
+        Map<List<String>, List<String>> keys = new LinkedHashMap<List<String>, List<String>>();
+        values = indexes.getFieldValues();
+        for (int i = 0; i + 4 <= values.size(); i += 4) {
+            List<String> name = Arrays.asList(values.get(i), values.get(i + 1));
+            List<String> keyColumns = keys.get(name);
+            if (keyColumns == null) {
+                keyColumns = new ArrayList<String>();
+                keys.put(name, keyColumns);
+            }
+            String columnName = values.get(i + 2);
+            if (columnName == null) {
+                // 函数索引没有列名，show create table中的表达式无法还原
+                keyColumns.add(null);
+            } else if (values.get(i + 3) == null) {
+                keyColumns.add(quoteName(columnName));
+            } else {
+                // 前缀索引
+                keyColumns.add(quoteName(columnName) + "(" + values.get(i + 3) + ")");
+            }
+        }
+        for (Map.Entry<List<String>, List<String>> entry : keys.entrySet()) {
+            StringBuilder ddl = tables.get(entry.getKey().get(0));
+            if (ddl == null || entry.getValue().contains(null)) {
+                continue;
+            }
+
+            String indexName = entry.getKey().get(1);
+            ddl.append(",\n  ")
+                .append("PRIMARY".equals(indexName) ? "PRIMARY KEY" : "UNIQUE KEY " + quoteName(indexName))
+                .append(" (")
+                .append(StringUtils.join(entry.getValue(), ','))
+                .append(')');
+        }
+
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, StringBuilder> entry : tables.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().append("\n)").toString());
+        }
+        return result;
+    }
+
+    /**
+     * 和show create table输出的默认值保持一致：时间函数和bit值不加引号，表达式默认值加括号，其余按字符串转义
+     */
+    private static String quoteDefaultValue(String columnType, String defaultValue, String extra) {
+        if ((StringUtils.startsWithIgnoreCase(columnType, "timestamp") || StringUtils.startsWithIgnoreCase(columnType,
+            "datetime"))
+            && StringUtils.startsWithIgnoreCase(defaultValue, "CURRENT_TIMESTAMP")) {
+            return defaultValue;
+        }
+        if (StringUtils.startsWithIgnoreCase(columnType, "bit") && StringUtils.startsWithIgnoreCase(defaultValue, "b'")) {
+            return defaultValue;
+        }
+        if (StringUtils.containsIgnoreCase(extra, "DEFAULT_GENERATED")) {
+            return "(" + defaultValue + ")";
+        }
+
+        StringBuilder builder = new StringBuilder("'");
+        for (char c : defaultValue.toCharArray()) {
+            switch (c) {
+                case 0:
+                    builder.append("\\0");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\'':
+                    builder.append("''");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.append('\'').toString();
+    }
+
+    private static String quoteName(String name) {
+        return "`" + StringUtils.replace(name, "`", "``") + "`";
+    }
+
     public static List<FieldMeta> parseTableMeta(String schema, String table, ResultSetPacket packet) {
         if (packet.getFieldValues().size() > 1) {
             String createDDL = packet.getFieldValues().get(1);
@@ -159,32 +354,12 @@ public class TableMetaCache {
         return getTableMeta(schema, table, true, position);
     }
 
-    public synchronized TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
+    public TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
         TableMeta tableMeta = null;
         if (tableMetaTSDB != null) {
             tableMeta = tableMetaTSDB.find(schema, table);
             if (tableMeta == null) {
-                // 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
-                String fullName = getFullName(schema, table);
-                ResultSetPacket packet = null;
-                String createDDL = null;
-                try {
-                    try {
-                        packet = connection.query("show create table " + fullName);
-                    } catch (Exception e) {
-                        // 尝试做一次retry操作
-                        connection.reconnect();
-                        packet = connection.query("show create table " + fullName);
-                    }
-                    if (packet.getFieldValues().size() > 0) {
-                        createDDL = packet.getFieldValues().get(1);
-                    }
-                    // 强制覆盖掉内存值
-                    tableMetaTSDB.apply(position, schema, createDDL, "first");
-                    tableMeta = tableMetaTSDB.find(schema, table);
-                } catch (IOException e) {
-                    throw new CanalParseException("fetch failed by table meta:" + fullName, e);
-                }
+                return getTableMetaAndApply(schema, table, position);
             }
             return tableMeta;
         } else {
@@ -196,6 +371,37 @@ public class TableMetaCache {
         }
     }
 
+    /**
+     * 缓存中不存在时才需要加锁访问数据库，避免并发使用同一个链接
+     */
+    private synchronized TableMeta getTableMetaAndApply(String schema, String table, EntryPosition position) {
+        TableMeta tableMeta = tableMetaTSDB.find(schema, table);
+        if (tableMeta == null) {
+            // 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
+            String fullName = getFullName(schema, table);
+            ResultSetPacket packet = null;
+            String createDDL = null;
+            try {
+                try {
+                    packet = connection.query("show create table " + fullName);
+                } catch (Exception e) {
+                    // 尝试做一次retry操作
+                    connection.reconnect();
+                    packet = connection.query("show create table " + fullName);
+                }
+                if (packet.getFieldValues().size() > 0) {
+                    createDDL = packet.getFieldValues().get(1);
+                }
+                // 强制覆盖掉内存值
+                tableMetaTSDB.apply(position, schema, createDDL, "first");
+                tableMeta = tableMetaTSDB.find(schema, table);
+            } catch (IOException e) {
+                throw new CanalParseException("fetch failed by table meta:" + fullName, e);
+            }
+        }
+        return tableMeta;
+    }
+
     public void clearTableMeta(String schema, String table) {
         if (tableMetaTSDB != null) {
             // tsdb不需要做,会基于ddl sql自动清理
@@ -208,6 +414,7 @@ public class TableMetaCache {
         if (tableMetaTSDB != null) {
             // tsdb不需要做,会基于ddl sql自动清理
         } else {
+            loadedSchemas.remove(schema);
             for (String name : tableMetaDB.asMap().keySet()) {
                 if (StringUtils.startsWithIgnoreCase(name, schema + ".")) {
                     // removeNames.add(name);
@@ -221,6 +428,7 @@ public class TableMetaCache {
         if (tableMetaTSDB != null) {
             // tsdb不需要做,会基于ddl sql自动清理
         } else {
+            loadedSchemas.clear();
             tableMetaDB.invalidateAll();
         }
     }
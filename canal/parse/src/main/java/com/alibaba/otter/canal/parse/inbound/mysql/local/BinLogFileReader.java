@@ -0,0 +1,164 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogContext;
+import com.taobao.tddl.dbsync.binlog.LogDecoder;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.LogPosition;
+
+/**
+ * 按顺序读取单个binlog文件中的事件
+ *
+ * <pre>
+ * 1. 同步模式下，调用next()时直接从文件解码
+ * 2. 预读模式下，由后台线程解码整个文件，按批次放入有界队列，调用方消费当前文件时可以提前解码下一个文件
+ * 3. 每个文件使用独立的LogDecoder/LogContext，binlog文件以FORMAT_DESCRIPTION_EVENT开始，事务不会跨文件
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class BinLogFileReader {
+
+    private static final int              BATCH_SIZE = 256;
+    private static final int              QUEUE_SIZE = 64;
+    private static final List<LogEvent>   END        = new ArrayList<LogEvent>(0);
+
+    private final File                    file;
+    private final FileLogFetcher          fetcher;
+    private final LogDecoder              decoder;
+    private final LogContext              context;
+    private BlockingQueue<List<LogEvent>> queue;
+    private Iterator<LogEvent>            batch;
+    private volatile boolean              running    = true;
+    private volatile Throwable            error;
+    private boolean                       eof        = false;
+
+    public BinLogFileReader(File file, long position, FileLogFetcher fetcher) throws IOException{
+        this.file = file;
+        this.fetcher = fetcher;
+        this.decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+        this.context = new LogContext();
+        this.context.setLogPosition(new LogPosition(file.getName(), position));
+        fetcher.open(file, position);
+    }
+
+    /**
+     * 切换为预读模式，由executor中的线程提前解码整个文件
+     */
+    public void prefetch(ExecutorService executor) {
+        queue = new ArrayBlockingQueue<List<LogEvent>>(QUEUE_SIZE);
+        executor.execute(new Runnable() {
+
+            public void run() {
+                List<LogEvent> events = new ArrayList<LogEvent>(BATCH_SIZE);
+                try {
+                    LogEvent event = null;
+                    while (running && (event = decode()) != null) {
+                        events.add(event);
+                        if (events.size() >= BATCH_SIZE) {
+                            put(events);
+                            events = new ArrayList<LogEvent>(BATCH_SIZE);
+                        }
+                    }
+
+                    if (!events.isEmpty()) {
+                        put(events);
+                    }
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    closeFetcher();
+                    try {
+                        put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取下一个事件
+     *
+     * @return 文件读取完成时返回null
+     */
+    public LogEvent next() throws IOException, InterruptedException {
+        if (queue == null) {
+            return decode();
+        }
+
+        while (batch == null || !batch.hasNext()) {
+            if (eof) {
+                return null;
+            }
+
+            List<LogEvent> events = queue.take();
+            if (events == END) {
+                eof = true;
+                if (error != null) {
+                    if (error instanceof IOException) {
+                        throw (IOException) error;
+                    }
+                    throw new CanalParseException("decode binlog file : " + file.getName() + " failed", error);
+                }
+                return null;
+            }
+            batch = events.iterator();
+        }
+
+        return batch.next();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void close() {
+        running = false;
+        if (queue == null) {
+            closeFetcher();
+        } else {
+            // 唤醒阻塞在队列上的解码线程，由解码线程关闭文件
+            queue.clear();
+        }
+    }
+
+    private LogEvent decode() throws IOException {
+        while (fetcher.fetch()) {
+            LogEvent event = decoder.decode(fetcher, context);
+            if (event != null) {
+                return event;
+            }
+        }
+
+        return null;
+    }
+
+    private void put(List<LogEvent> events) throws InterruptedException {
+        while (!queue.offer(events, 100, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                queue.clear();
+            }
+        }
+    }
+
+    private void closeFetcher() {
+        try {
+            fetcher.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
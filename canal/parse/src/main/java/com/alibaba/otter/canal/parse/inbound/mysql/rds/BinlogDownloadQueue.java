@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -50,23 +51,37 @@ import com.alibaba.otter.canal.parse.inbound.mysql.rds.data.BinlogFile;
  */
 public class BinlogDownloadQueue {
 
-    private static final Logger             logger        = LoggerFactory.getLogger(BinlogDownloadQueue.class);
-    private static final int                TIMEOUT       = 10000;
-
-    private LinkedBlockingQueue<BinlogFile> downloadQueue = new LinkedBlockingQueue<BinlogFile>();
-    private LinkedBlockingQueue<Runnable>   taskQueue     = new LinkedBlockingQueue<Runnable>();
-    private LinkedList<BinlogFile>          binlogList;
-    private final int                       batchFileSize;
-    private Thread                          downloadThread;
-    public boolean                          running       = true;
-    private final String                    destDir;
-    private String                          hostId;
-    private int                             currentSize;
-    private String                          lastDownload;
+    private static final Logger               logger        = LoggerFactory.getLogger(BinlogDownloadQueue.class);
+    private static final int                  TIMEOUT       = 10000;
+    private static final String               TMP_SUFFIX    = ".tmp";
+
+    private LinkedBlockingQueue<DownloadTask> downloadQueue = new LinkedBlockingQueue<DownloadTask>();
+    private LinkedBlockingQueue<Runnable>     taskQueue     = new LinkedBlockingQueue<Runnable>();
+    private LinkedList<BinlogFile>            binlogList;
+    private final int                         batchFileSize;
+    private final int                         downloadThreadSize;
+    private List<Thread>                      downloadThreads;
+    public volatile boolean                   running       = true;
+    private final String                      destDir;
+    private String                            hostId;
+    private int                               currentSize;
+    private String                            lastDownload;
+    private long                              nextSequence  = 0;                                     // 下一个下载任务的序号
+    private long                              nextPublish   = 0;                                     // 下一个可以发布的下载任务序号
+    private final Object                      publishLock   = new Object();
 
     public BinlogDownloadQueue(List<BinlogFile> downloadQueue, int batchFileSize, String destDir) throws IOException{
+        this(downloadQueue, batchFileSize, 1, destDir);
+    }
+
+    /**
+     * @param downloadThreadSize 并行下载的线程数，下载完成的文件仍然按照顺序对解析可见
+     */
+    public BinlogDownloadQueue(List<BinlogFile> downloadQueue, int batchFileSize, int downloadThreadSize,
+                               String destDir) throws IOException{
         this.binlogList = new LinkedList(downloadQueue);
         this.batchFileSize = batchFileSize;
+        this.downloadThreadSize = Math.max(downloadThreadSize, 1);
         this.destDir = destDir;
         this.currentSize = 0;
         prepareBinlogList();
@@ -94,12 +109,16 @@ public class BinlogDownloadQueue {
     }
 
     public void silenceDownload() {
-        if (downloadThread != null) {
+        if (downloadThreads != null) {
             return;
         }
-        downloadThread = new Thread(new DownloadThread(), "download-" + destDir);
-        downloadThread.setDaemon(true);
-        downloadThread.start();
+        downloadThreads = new ArrayList<Thread>(downloadThreadSize);
+        for (int i = 0; i < downloadThreadSize; i++) {
+            Thread downloadThread = new Thread(new DownloadThread(), "download-" + destDir + "-" + i);
+            downloadThread.setDaemon(true);
+            downloadThread.start();
+            downloadThreads.add(downloadThread);
+        }
     }
 
     public BinlogFile tryOne() throws Throwable {
@@ -107,7 +126,7 @@ public class BinlogDownloadQueue {
         if (binlogFile == null) {
             throw new CanalParseException("download binlog is null");
         }
-        download(binlogFile);
+        renameFiles(download(binlogFile));
         hostId = binlogFile.getHostInstanceID();
         this.currentSize++;
         return binlogFile;
@@ -151,7 +170,7 @@ public class BinlogDownloadQueue {
             if (binlogFile == null) {
                 break;
             }
-            this.downloadQueue.put(binlogFile);
+            this.downloadQueue.put(new DownloadTask(nextSequence++, binlogFile));
             this.lastDownload = "mysql-bin." + binlogFile.getFileName();
             this.currentSize++;
         }
@@ -167,16 +186,51 @@ public class BinlogDownloadQueue {
         binlogList.clear();
         downloadQueue.clear();
         try {
-            downloadThread.interrupt();
-            downloadThread.join();// 等待其结束
+            if (downloadThreads != null) {
+                for (Thread downloadThread : downloadThreads) {
+                    downloadThread.interrupt();
+                }
+                for (Thread downloadThread : downloadThreads) {
+                    downloadThread.join();// 等待其结束
+                }
+            }
         } catch (InterruptedException e) {
             // ignore
         } finally {
-            downloadThread = null;
+            downloadThreads = null;
         }
     }
 
-    private void download(BinlogFile binlogFile) throws Throwable {
+    /**
+     * 按照下载任务的顺序发布文件，避免后面的文件先下载完成导致解析跳过前面的文件，tmpFiles为null代表下载被release中断
+     */
+    private void publish(DownloadTask task, List<File> tmpFiles) throws InterruptedException {
+        synchronized (publishLock) {
+            while (running && task.sequence != nextPublish) {
+                publishLock.wait(1000);
+            }
+
+            if (running && tmpFiles != null) {
+                renameFiles(tmpFiles);
+                nextPublish++;
+                publishLock.notifyAll();
+            }
+        }
+    }
+
+    private static void renameFiles(List<File> tmpFiles) {
+        for (File tmpFile : tmpFiles) {
+            String name = tmpFile.getName();
+            tmpFile.renameTo(new File(tmpFile.getParentFile(), name.substring(0, name.length() - TMP_SUFFIX.length())));
+        }
+    }
+
+    /**
+     * 下载binlog文件到临时文件
+     * 
+     * @return 下载完成的临时文件
+     */
+    private List<File> download(BinlogFile binlogFile) throws Throwable {
         String downloadLink = binlogFile.getDownloadLink();
         String fileName = binlogFile.getFileName();
 
@@ -218,10 +272,11 @@ public class BinlogDownloadQueue {
         if (statusCode != HttpResponseStatus.OK.code()) {
             throw new RuntimeException("download failed , url:" + downloadLink + " , statusCode:" + statusCode);
         }
-        saveFile(new File(destDir), "mysql-bin." + fileName, response);
+        return saveFile(new File(destDir), "mysql-bin." + fileName, response);
     }
 
-    private static void saveFile(File parentFile, String fileName, HttpResponse response) throws IOException {
+    private static List<File> saveFile(File parentFile, String fileName, HttpResponse response) throws IOException {
+        List<File> tmpFiles = new ArrayList<File>();
         InputStream is = response.getEntity().getContent();
         long totalSize = Long.parseLong(response.getFirstHeader("Content-Length").getValue());
         if (response.getFirstHeader("Content-Disposition") != null) {
@@ -237,7 +292,7 @@ public class BinlogDownloadQueue {
                 TarArchiveEntry tarArchiveEntry = null;
                 while ((tarArchiveEntry = tais.getNextTarEntry()) != null) {
                     String name = tarArchiveEntry.getName();
-                    File tarFile = new File(parentFile, name + ".tmp");
+                    File tarFile = new File(parentFile, name + TMP_SUFFIX);
                     logger.info("start to download file " + tarFile.getName());
                     if (tarFile.exists()) {
                         tarFile.delete();
@@ -251,14 +306,14 @@ public class BinlogDownloadQueue {
                             bos.write(buffer, 0, read);
                         }
                         logger.info("download file " + tarFile.getName() + " end!");
-                        tarFile.renameTo(new File(parentFile, name));
+                        tmpFiles.add(tarFile);
                     } finally {
                         IOUtils.closeQuietly(bos);
                     }
                 }
                 tais.close();
             } else {
-                File file = new File(parentFile, fileName + ".tmp");
+                File file = new File(parentFile, fileName + TMP_SUFFIX);
                 if (file.exists()) {
                     file.delete();
                 }
@@ -288,11 +343,12 @@ public class BinlogDownloadQueue {
                 } finally {
                     IOUtils.closeQuietly(fos);
                 }
-                file.renameTo(new File(parentFile, fileName));
+                tmpFiles.add(file);
             }
         } finally {
             IOUtils.closeQuietly(fos);
         }
+        return tmpFiles;
     }
 
     public void execute(Runnable runnable) throws InterruptedException {
@@ -304,14 +360,17 @@ public class BinlogDownloadQueue {
         @Override
         public void run() {
             while (running) {
-                BinlogFile binlogFile = null;
+                DownloadTask task = null;
                 try {
-                    binlogFile = downloadQueue.poll(5000, TimeUnit.MILLISECONDS);
-                    if (binlogFile != null) {
+                    task = downloadQueue.poll(5000, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        BinlogFile binlogFile = task.binlogFile;
+                        List<File> tmpFiles = null;
                         int retry = 1;
-                        while (true) {
+                        // release之后不再重试，interrupt之后parkNanos会立即返回
+                        while (running) {
                             try {
-                                download(binlogFile);
+                                tmpFiles = download(binlogFile);
                                 break;
                             } catch (Throwable e) {
                                 if (retry % 10 == 0) {
@@ -335,6 +394,7 @@ public class BinlogDownloadQueue {
                                 }
                             }
                         }
+                        publish(task, tmpFiles);
                     }
 
                     Runnable runnable = taskQueue.poll(5000, TimeUnit.MILLISECONDS);
@@ -348,4 +408,15 @@ public class BinlogDownloadQueue {
 
         }
     }
+
+    private static class DownloadTask {
+
+        private final long       sequence;
+        private final BinlogFile binlogFile;
+
+        public DownloadTask(long sequence, BinlogFile binlogFile){
+            this.sequence = sequence;
+            this.binlogFile = binlogFile;
+        }
+    }
 }
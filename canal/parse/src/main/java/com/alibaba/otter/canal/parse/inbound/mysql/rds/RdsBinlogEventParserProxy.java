@@ -28,6 +28,9 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
     private String                    instanceId;                                             // rds实例id
     private String                    directory;                                              // binlog目录
     private int                       batchFileSize             = 4;                          // 最多下载的binlog文件数量
+    private int                       downloadThreadSize        = 1;                          // 并行下载binlog文件的线程数
+    private boolean                   binlogFileMmap            = false;                      // 使用内存映射读取binlog文件
+    private boolean                   binlogFilePrefetch        = false;                      // 提前解码下一个binlog文件
 
     private RdsLocalBinlogEventParser rdsLocalBinlogEventParser = null;
     private ExecutorService           executorService           = Executors.newSingleThreadExecutor(new ThreadFactory() {
@@ -64,6 +67,7 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setFilterQueryDml(this.filterQueryDml);
             rdsLocalBinlogEventParser.setFilterRows(this.filterRows);
             rdsLocalBinlogEventParser.setFilterTableError(this.filterTableError);
+            rdsLocalBinlogEventParser.setTypedColumnValue(this.typedColumnValue);
             // rdsLocalBinlogEventParser.setIsGTIDMode(this.isGTIDMode);
             rdsLocalBinlogEventParser.setMasterInfo(this.masterInfo);
             rdsLocalBinlogEventParser.setEventFilter(this.eventFilter);
@@ -76,9 +80,13 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setEventSink(eventSink);
             rdsLocalBinlogEventParser.setDirectory(directory);
             rdsLocalBinlogEventParser.setBatchFileSize(batchFileSize);
+            rdsLocalBinlogEventParser.setDownloadThreadSize(downloadThreadSize);
+            rdsLocalBinlogEventParser.setMmap(binlogFileMmap);
+            rdsLocalBinlogEventParser.setPrefetch(binlogFilePrefetch);
             rdsLocalBinlogEventParser.setParallel(this.parallel);
             rdsLocalBinlogEventParser.setParallelBufferSize(this.parallelBufferSize);
             rdsLocalBinlogEventParser.setParallelThreadSize(this.parallelThreadSize);
+            rdsLocalBinlogEventParser.setParallelAdaptive(this.parallelAdaptive);
             rdsLocalBinlogEventParser.setFinishListener(new RdsLocalBinlogEventParser.ParseFinishListener() {
 
                 @Override
@@ -174,4 +182,16 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
         this.batchFileSize = batchFileSize;
     }
 
+    public void setDownloadThreadSize(int downloadThreadSize) {
+        this.downloadThreadSize = downloadThreadSize;
+    }
+
+    public void setBinlogFileMmap(boolean binlogFileMmap) {
+        this.binlogFileMmap = binlogFileMmap;
+    }
+
+    public void setBinlogFilePrefetch(boolean binlogFilePrefetch) {
+        this.binlogFilePrefetch = binlogFilePrefetch;
+    }
+
 }
@@ -1,10 +1,16 @@
 package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -14,8 +20,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -24,7 +34,7 @@ import org.slf4j.MDC;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
-import com.alibaba.fastsql.sql.repository.Schema;
+import com.alibaba.fastjson.TypeReference;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
@@ -52,6 +62,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private static Logger                   logger              = LoggerFactory.getLogger(DatabaseTableMeta.class);
     private static Pattern                  pattern             = Pattern.compile("Duplicate entry '.*' for key '*'");
     private static Pattern                  h2Pattern           = Pattern.compile("Unique index or primary key violation");
+    // 按表存储并压缩的快照数据前缀，没有前缀的为老版本按schema存储的明文快照
+    private static final String             SNAPSHOT_GZIP       = "gzip:";
     private static ScheduledExecutorService scheduler           = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
 
                                                                     @Override
@@ -73,6 +85,10 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     private Map<String, List<String>>       fieldBlackFilterMap = new HashMap<String, List<String>>();
     private EntryPosition                   lastPosition;
     private boolean                         hasNewDdl;
+    // 上一次快照之后发生过变更的表，生成快照时只对比这些表
+    private Set<String>                     changedTables       = Collections
+                                                                    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean                changedAll          = true;
     private MetaHistoryDAO                  metaHistoryDAO;
     private MetaSnapshotDAO                 metaSnapshotDAO;
     private int                             snapshotInterval    = 24;
@@ -156,6 +172,14 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             if (memoryTableMeta.apply(position, schema, ddl, extra)) {
                 this.lastPosition = position;
                 this.hasNewDdl = true;
+                for (DdlResult ddlResult : DruidDdlParser.parse(ddl, schema)) {
+                    for (DdlResult item = ddlResult; item != null; item = item.getRenameTableResult()) {
+                        markChanged(item.getSchemaName(), item.getTableName());
+                        if (item.getOriTableName() != null) {
+                            markChanged(item.getOriSchemaName(), item.getOriTableName());
+                        }
+                    }
+                }
                 // 同步每次变更给远程做历史记录
                 return applyHistoryToDB(position, schema, ddl, extra);
             } else {
@@ -173,6 +197,9 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         boolean flag = false;
         EntryPosition snapshotPosition = buildMemFromSnapshot(position);
         if (snapshotPosition != null) {
+            // 快照中的表生成时已经对比过，只需要关注之后变更的表
+            changedTables.clear();
+            changedAll = false;
             applyHistoryOnMemory(snapshotPosition, position);
             flag = true;
         }
@@ -290,7 +317,9 @@ public class DatabaseTableMeta implements TableMetaTSDB {
      */
     private boolean applySnapshotToDB(EntryPosition position, boolean init) {
         // 获取一份快照
-        Map<String, String> schemaDdls = null;
+        Map<String, Map<String, String>> tableDdls = null;
+        Set<String> changed = null;
+        boolean all = false;
         lock.readLock().lock();
         try {
             if (!init && !hasNewDdl) {
@@ -298,26 +327,32 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 return false;
             }
             this.hasNewDdl = false;
-            schemaDdls = memoryTableMeta.snapshot();
+            tableDdls = memoryTableMeta.snapshotTables();
+            all = init || changedAll;
+            changed = new HashSet<String>(changedTables);
+            changedAll = false;
+            changedTables.clear();
         } finally {
             lock.readLock().unlock();
         }
 
         MemoryTableMeta tmpMemoryTableMeta = new MemoryTableMeta();
-        for (Map.Entry<String, String> entry : schemaDdls.entrySet()) {
-            tmpMemoryTableMeta.apply(position, entry.getKey(), entry.getValue(), null);
-        }
+        tmpMemoryTableMeta.applySnapshot(tableDdls);
 
-        // 基于临时内存对象进行对比
+        // 基于临时内存对象进行对比，只对比上一次快照之后变更过的表
         boolean compareAll = true;
-        for (Schema schema : tmpMemoryTableMeta.getRepository().getSchemas()) {
-            for (String table : schema.showTables()) {
+        for (Map.Entry<String, Map<String, String>> entry : tableDdls.entrySet()) {
+            String schema = entry.getKey();
+            for (String table : entry.getValue().keySet()) {
                 String fullName = schema + "." + table;
+                if (!all && !changed.contains(fullName.toLowerCase())) {
+                    continue;
+                }
                 if (blackFilter == null || !blackFilter.filter(fullName)) {
                     if (filter == null || filter.filter(fullName)) {
                         // issue : https://github.com/alibaba/canal/issues/1168
                         // 在生成snapshot时重新过滤一遍
-                        if (!compareTableMetaDbAndMemory(connection, tmpMemoryTableMeta, schema.getName(), table)) {
+                        if (!compareTableMetaDbAndMemory(connection, tmpMemoryTableMeta, schema, table)) {
                             compareAll = false;
                         }
                     }
@@ -332,7 +367,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             content.put("binlogOffest", String.valueOf(position.getPosition()));
             content.put("binlogMasterId", String.valueOf(position.getServerId()));
             content.put("binlogTimestamp", String.valueOf(position.getTimestamp()));
-            content.put("data", JSON.toJSONString(schemaDdls));
+            content.put("data", encodeSnapshot(tableDdls));
             if (content.isEmpty()) {
                 throw new RuntimeException("apply failed caused by content is empty in applySnapshotToDB");
             }
@@ -351,6 +386,9 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             }
             return true;
         } else {
+            // 下一次快照时重新对比
+            changedTables.addAll(changed);
+            changedAll |= all;
             logger.error("compare failed , check log");
         }
         return false;
@@ -413,8 +451,14 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 binlogOffest == null ? 0l : binlogOffest,
                 binlogTimestamp == null ? 0l : binlogTimestamp,
                 Long.valueOf(binlogMasterId == null ? "-2" : binlogMasterId));
-            // data存储为Map<String,String>，每个分库一套建表
             String sqlData = snapshotDO.getData();
+            if (StringUtils.startsWith(sqlData, SNAPSHOT_GZIP)) {
+                // 按表存储的快照，只在用到的时候才解析建表语句
+                memoryTableMeta.applySnapshot(decodeSnapshot(sqlData));
+                return snapshotPosition;
+            }
+
+            // data存储为Map<String,String>，每个分库一套建表
             JSONObject jsonObj = JSON.parseObject(sqlData);
             for (Map.Entry entry : jsonObj.entrySet()) {
                 // 记录到内存
@@ -465,6 +509,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 if (!memoryTableMeta.apply(snapshotPosition, useSchema, sqlData, null)) {
                     return false;
                 }
+                markChanged(metaHistoryDO.getSqlSchema(), metaHistoryDO.getSqlTable());
 
             }
 
@@ -474,6 +519,49 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         }
     }
 
+    private void markChanged(String schema, String table) {
+        if (StringUtils.isEmpty(schema) || StringUtils.isEmpty(table)) {
+            // 无法确定变更的表，比如drop database，下一次快照时全部对比
+            changedAll = true;
+        } else {
+            changedTables.add((schema + "." + table).toLowerCase());
+        }
+    }
+
+    /**
+     * 快照数据按照Map<schema, Map<table, ddl>>生成json，gzip压缩后base64编码
+     */
+    public static String encodeSnapshot(Map<String, Map<String, String>> tableDdls) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GZIPOutputStream output = new GZIPOutputStream(bytes);
+            try {
+                output.write(JSON.toJSONString(tableDdls).getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+            return SNAPSHOT_GZIP + Base64.encodeBase64String(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+    }
+
+    public static Map<String, Map<String, String>> decodeSnapshot(String data) {
+        byte[] bytes = Base64.decodeBase64(data.substring(SNAPSHOT_GZIP.length()));
+        try {
+            GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return JSON.parseObject(IOUtils.toString(input, "UTF-8"),
+                    new TypeReference<Map<String, Map<String, String>>>() {
+                    });
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new CanalParseException(e);
+        }
+    }
+
     private String getFullName(String schema, String table) {
         StringBuilder builder = new StringBuilder();
         return builder.append('`')
@@ -1,9 +1,11 @@
 package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
@@ -37,7 +39,9 @@ import com.alibaba.fastsql.sql.repository.SchemaRepository;
 import com.alibaba.fastsql.util.JdbcConstants;
 import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DdlResult;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DruidDdlParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
 
 /**
@@ -48,9 +52,12 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
  */
 public class MemoryTableMeta implements TableMetaTSDB {
 
-    private Logger                       logger     = LoggerFactory.getLogger(MemoryTableMeta.class);
-    private Map<List<String>, TableMeta> tableMetas = new ConcurrentHashMap<List<String>, TableMeta>();
-    private SchemaRepository             repository = new SchemaRepository(JdbcConstants.MYSQL);
+    private Logger                           logger      = LoggerFactory.getLogger(MemoryTableMeta.class);
+    private Map<List<String>, TableMeta>     tableMetas  = new ConcurrentHashMap<List<String>, TableMeta>();
+    private SchemaRepository                 repository  = new SchemaRepository(JdbcConstants.MYSQL);
+    // 快照中还未解析的建表语句，第一层schema，第二层table，名字忽略大小写
+    private Map<String, Map<String, String>> pendingDdls = new TreeMap<String, Map<String, String>>(
+                                                             String.CASE_INSENSITIVE_ORDER);
 
     public MemoryTableMeta(){
     }
@@ -68,6 +75,11 @@ public class MemoryTableMeta implements TableMetaTSDB {
     public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
         tableMetas.clear();
         synchronized (this) {
+            if (!pendingDdls.isEmpty()) {
+                // 先解析ddl涉及到的快照表
+                applyPendingByDdl(schema, ddl);
+            }
+
             if (StringUtils.isNotEmpty(schema)) {
                 repository.setDefaultSchema(schema);
             }
@@ -104,6 +116,7 @@ public class MemoryTableMeta implements TableMetaTSDB {
             synchronized (this) {
                 tableMeta = tableMetas.get(keys);
                 if (tableMeta == null) {
+                    applyPendingTable(schema, table);
                     Schema schemaRep = repository.findSchema(schema);
                     if (schemaRep == null) {
                         return null;
@@ -143,17 +156,129 @@ public class MemoryTableMeta implements TableMetaTSDB {
 
     public Map<String, String> snapshot() {
         Map<String, String> schemaDdls = new HashMap<String, String>();
+        for (Map.Entry<String, Map<String, String>> entry : snapshotTables().entrySet()) {
+            StringBuilder data = new StringBuilder(4 * 1024);
+            for (String ddl : entry.getValue().values()) {
+                data.append(ddl).append("; \n");
+            }
+            schemaDdls.put(entry.getKey(), data.toString());
+        }
+
+        return schemaDdls;
+    }
+
+    /**
+     * 按表生成快照，第一层schema，第二层table，未解析过的快照表直接使用原始的建表语句
+     */
+    public synchronized Map<String, Map<String, String>> snapshotTables() {
+        Map<String, Map<String, String>> tableDdls = new TreeMap<String, Map<String, String>>(
+            String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, Map<String, String>> entry : pendingDdls.entrySet()) {
+            Map<String, String> tables = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            tables.putAll(entry.getValue());
+            tableDdls.put(entry.getKey(), tables);
+        }
+
         for (Schema schema : repository.getSchemas()) {
-            StringBuffer data = new StringBuffer(4 * 1024);
+            Map<String, String> tables = tableDdls.get(schema.getName());
+            if (tables == null) {
+                tables = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                tableDdls.put(schema.getName(), tables);
+            }
             for (String table : schema.showTables()) {
                 SchemaObject schemaObject = schema.findTable(table);
+                StringBuilder data = new StringBuilder(256);
                 schemaObject.getStatement().output(data);
-                data.append("; \n");
+                tables.put(table, data.toString());
             }
-            schemaDdls.put(schema.getName(), data.toString());
         }
 
-        return schemaDdls;
+        return tableDdls;
+    }
+
+    /**
+     * 加载按表生成的快照，建表语句在第一次访问该表或者ddl涉及该表时才会解析
+     */
+    public synchronized void applySnapshot(Map<String, Map<String, String>> tableDdls) {
+        tableMetas.clear();
+        for (Map.Entry<String, Map<String, String>> entry : tableDdls.entrySet()) {
+            Map<String, String> tables = pendingDdls.get(entry.getKey());
+            if (tables == null) {
+                tables = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                pendingDdls.put(entry.getKey(), tables);
+            }
+            tables.putAll(entry.getValue());
+        }
+    }
+
+    /**
+     * 解析ddl涉及到的快照表，无法确定涉及哪些表时解析整个schema或者全部的快照
+     */
+    private void applyPendingByDdl(String schema, String ddl) {
+        List<DdlResult> results;
+        try {
+            results = DruidDdlParser.parse(ddl, schema);
+        } catch (Throwable e) {
+            results = Arrays.asList(new DdlResult());
+        }
+
+        for (DdlResult result : results) {
+            for (DdlResult item = result; item != null; item = item.getRenameTableResult()) {
+                if (item.getType() == EventType.QUERY || StringUtils.isEmpty(item.getTableName())) {
+                    if (StringUtils.isEmpty(item.getSchemaName())) {
+                        for (String name : new ArrayList<String>(pendingDdls.keySet())) {
+                            applyPendingTable(name, null);
+                        }
+                    } else {
+                        applyPendingTable(item.getSchemaName(), null);
+                    }
+                } else if (item.getType() == EventType.CREATE
+                           && (StringUtils.containsIgnoreCase(ddl, " like ") || StringUtils.containsIgnoreCase(ddl,
+                               " select "))) {
+                    // create table ... like/select 依赖其他表
+                    applyPendingTable(item.getSchemaName(), null);
+                } else {
+                    applyPendingTable(item.getSchemaName(), item.getTableName());
+                    applyPendingTable(item.getOriSchemaName(), item.getOriTableName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析一张快照表，table为null时解析整个schema
+     */
+    private void applyPendingTable(String schema, String table) {
+        if (schema == null) {
+            return;
+        }
+        Map<String, String> tables = pendingDdls.get(schema);
+        if (tables == null) {
+            return;
+        }
+
+        List<String> ddls = new ArrayList<String>();
+        if (table == null) {
+            ddls.addAll(tables.values());
+            tables.clear();
+        } else {
+            String ddl = tables.remove(table);
+            if (ddl != null) {
+                ddls.add(ddl);
+            }
+        }
+        if (tables.isEmpty()) {
+            pendingDdls.remove(schema);
+        }
+
+        for (String ddl : ddls) {
+            repository.setDefaultSchema(schema);
+            try {
+                repository.console(ddl);
+            } catch (Throwable e) {
+                logger.warn("parse faield : " + ddl, e);
+            }
+        }
     }
 
     private TableMeta parse(SQLCreateTableStatement statement) {
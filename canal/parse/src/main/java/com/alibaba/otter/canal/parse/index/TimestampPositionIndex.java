@@ -0,0 +1,210 @@
+package com.alibaba.otter.canal.parse.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+/**
+ * 基于文件的binlog时间戳稀疏索引，解析过程中按照固定的时间间隔记录事务位点，按时间查找位点时二分定位最近的检查点
+ *
+ * <pre>
+ * 1. 每个mysql地址使用一个索引文件，每行记录一个检查点：timestamp,journalName,position,serverId
+ * 2. 检查点按照时间戳和binlog位点严格递增，新的检查点追加写入文件
+ * 3. 时间前进但binlog位点后退时(比如reset master)清空之前的检查点，超过上限后丢弃最老的一半并重写文件
+ * 4. 索引只用于加速查找，读写异常时只打印日志
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class TimestampPositionIndex {
+
+    private static final Logger     logger      = LoggerFactory.getLogger(TimestampPositionIndex.class);
+    private static final Charset    charset     = Charset.forName("UTF-8");
+    private static final String     SEPARATOR   = ",";
+
+    private final File              dataFile;
+    private final long              intervalInMillis;
+    private final int               maxSize;
+    private final List<Checkpoint>  checkpoints = new ArrayList<Checkpoint>();
+
+    public TimestampPositionIndex(File dataFile, long intervalInMillis, int maxSize){
+        this.dataFile = dataFile;
+        this.intervalInMillis = intervalInMillis;
+        this.maxSize = maxSize;
+        load();
+    }
+
+    /**
+     * 记录一个事务位点，距离上一个检查点不足间隔时间时忽略
+     */
+    public synchronized void record(EntryPosition position) {
+        if (position == null || StringUtils.isEmpty(position.getJournalName()) || position.getPosition() == null
+            || position.getTimestamp() == null || position.getTimestamp() <= 0) {
+            return;
+        }
+
+        Checkpoint checkpoint = new Checkpoint(position.getTimestamp(),
+            position.getJournalName(),
+            position.getPosition(),
+            position.getServerId());
+        if (!checkpoints.isEmpty()) {
+            Checkpoint last = checkpoints.get(checkpoints.size() - 1);
+            if (checkpoint.timestamp - last.timestamp < intervalInMillis) {
+                return;
+            }
+
+            if (comparePosition(checkpoint.journalName, checkpoint.position, last.journalName, last.position) <= 0) {
+                // binlog被重置，之前的位点不再有效
+                logger.warn("binlog position {} is before timestamp index checkpoint {}, reset the index",
+                    checkpoint,
+                    last);
+                checkpoints.clear();
+                checkpoints.add(checkpoint);
+                rewrite();
+                return;
+            }
+        }
+
+        checkpoints.add(checkpoint);
+        if (checkpoints.size() > maxSize) {
+            checkpoints.subList(0, checkpoints.size() / 2).clear();
+            rewrite();
+        } else {
+            try {
+                FileUtils.writeStringToFile(dataFile, checkpoint.toString() + "\n", charset.name(), true);
+            } catch (IOException e) {
+                logger.warn("write timestamp index to file : {} failed", dataFile.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * 查找时间戳严格小于timestamp的最后一个检查点
+     *
+     * @return 没有合适的检查点时返回null
+     */
+    public synchronized EntryPosition floor(long timestamp) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpoints.get(mid).timestamp < timestamp) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (found < 0) {
+            return null;
+        }
+        Checkpoint checkpoint = checkpoints.get(found);
+        return new EntryPosition(checkpoint.journalName,
+            checkpoint.position,
+            checkpoint.timestamp,
+            checkpoint.serverId);
+    }
+
+    public synchronized int size() {
+        return checkpoints.size();
+    }
+
+    /**
+     * 比较两个binlog位点的先后，文件名按照序号比较
+     */
+    public static int comparePosition(String journalName1, long position1, String journalName2, long position2) {
+        int result = compareJournalName(journalName1, journalName2);
+        if (result != 0) {
+            return result;
+        }
+        return position1 < position2 ? -1 : (position1 == position2 ? 0 : 1);
+    }
+
+    public static int compareJournalName(String journalName1, String journalName2) {
+        try {
+            long seq1 = Long.parseLong(journalName1.substring(journalName1.lastIndexOf(".") + 1));
+            long seq2 = Long.parseLong(journalName2.substring(journalName2.lastIndexOf(".") + 1));
+            return seq1 < seq2 ? -1 : (seq1 == seq2 ? 0 : 1);
+        } catch (NumberFormatException e) {
+            return journalName1.compareTo(journalName2);
+        }
+    }
+
+    private void load() {
+        if (!dataFile.exists()) {
+            return;
+        }
+
+        try {
+            for (String line : FileUtils.readLines(dataFile, charset.name())) {
+                Checkpoint checkpoint = Checkpoint.parse(line);
+                if (checkpoint != null) {
+                    checkpoints.add(checkpoint);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("read timestamp index from file : {} failed", dataFile.getPath(), e);
+            checkpoints.clear();
+        }
+    }
+
+    private void rewrite() {
+        List<String> lines = new ArrayList<String>(checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+            lines.add(checkpoint.toString());
+        }
+
+        try {
+            FileUtils.writeLines(dataFile, charset.name(), lines);
+        } catch (IOException e) {
+            logger.warn("write timestamp index to file : {} failed", dataFile.getPath(), e);
+        }
+    }
+
+    private static class Checkpoint {
+
+        private final long   timestamp;
+        private final String journalName;
+        private final long   position;
+        private final Long   serverId;
+
+        public Checkpoint(long timestamp, String journalName, long position, Long serverId){
+            this.timestamp = timestamp;
+            this.journalName = journalName;
+            this.position = position;
+            this.serverId = serverId;
+        }
+
+        public static Checkpoint parse(String line) {
+            String[] fields = StringUtils.split(line, SEPARATOR);
+            if (fields == null || fields.length != 4) {
+                return null;
+            }
+
+            try {
+                return new Checkpoint(Long.parseLong(fields[0]),
+                    fields[1],
+                    Long.parseLong(fields[2]),
+                    "null".equals(fields[3]) ? null : Long.valueOf(fields[3]));
+            } catch (NumberFormatException e) {
+                // 忽略写了一半的记录
+                return null;
+            }
+        }
+
+        public String toString() {
+            return timestamp + SEPARATOR + journalName + SEPARATOR + position + SEPARATOR + serverId;
+        }
+    }
+}
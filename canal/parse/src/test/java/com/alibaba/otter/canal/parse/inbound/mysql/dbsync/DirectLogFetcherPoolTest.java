@@ -0,0 +1,260 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.driver.mysql.socket.SocketChannel;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlMultiStageCoprocessor;
+import com.taobao.tddl.dbsync.binlog.LogBuffer;
+
+/**
+ * 测试DirectLogFetcher使用内存池时的零拷贝接收
+ *
+ * @version 1.1.4
+ */
+public class DirectLogFetcherPoolTest {
+
+    @Test
+    public void testSliceAcrossChunks() throws IOException {
+        int count = 100;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            writePacket(out, i, 100 + i);
+        }
+
+        // chunk只能放下少量数据包，覆盖切换chunk的场景
+        LogBufferPool pool = new LogBufferPool(1024, 4);
+        DirectLogFetcher fetcher = new DirectLogFetcher(1024, pool);
+        fetcher.start(new BytesSocketChannel(out.toByteArray()));
+
+        List<LogBuffer> buffers = new ArrayList<LogBuffer>();
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(fetcher.fetch());
+            LogBuffer buffer = fetcher.slice();
+            fetcher.consume(fetcher.limit());
+            Assert.assertTrue(buffer instanceof PooledLogBuffer);
+            buffers.add(buffer);
+        }
+
+        // 未释放之前，后续的接收不会覆盖之前的数据
+        for (int i = 0; i < count; i++) {
+            assertPacket(buffers.get(i), i, 100 + i);
+        }
+
+        for (LogBuffer buffer : buffers) {
+            ((PooledLogBuffer) buffer).release();
+        }
+        fetcher.close();
+        Assert.assertTrue(pool.getIdleChunks() > 0);
+    }
+
+    @Test
+    public void testLargePacket() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePacket(out, 1, 4000);
+        writePacket(out, 2, 10);
+
+        LogBufferPool pool = new LogBufferPool(1024, 4);
+        DirectLogFetcher fetcher = new DirectLogFetcher(1024, pool);
+        fetcher.start(new BytesSocketChannel(out.toByteArray()));
+
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer large = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer small = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+
+        assertPacket(large, 1, 4000);
+        assertPacket(small, 2, 10);
+        ((PooledLogBuffer) large).release();
+        ((PooledLogBuffer) small).release();
+        fetcher.close();
+    }
+
+    @Test
+    public void testMultiPacket() throws IOException {
+        // 3个16MB的续包加上一个结尾包
+        int[] lengths = { DirectLogFetcher.MAX_PACKET_LENGTH, DirectLogFetcher.MAX_PACKET_LENGTH,
+                DirectLogFetcher.MAX_PACKET_LENGTH, 10 };
+        final AtomicInteger largeAllocations = new AtomicInteger();
+        LogBufferPool pool = new LogBufferPool(1024, 4) {
+
+            public Chunk allocate(int minCapacity) {
+                if (minCapacity > getChunkSize()) {
+                    largeAllocations.incrementAndGet();
+                }
+                return super.allocate(minCapacity);
+            }
+        };
+        DirectLogFetcher fetcher = new DirectLogFetcher(1024, pool);
+        fetcher.start(new MultiPacketSocketChannel(lengths));
+
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer buffer = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+        int size = 3 * DirectLogFetcher.MAX_PACKET_LENGTH + 10 - 1;
+        Assert.assertEquals(size, buffer.limit());
+        int[] samples = { 0, 1, DirectLogFetcher.MAX_PACKET_LENGTH - 2, DirectLogFetcher.MAX_PACKET_LENGTH - 1,
+                DirectLogFetcher.MAX_PACKET_LENGTH, 2 * DirectLogFetcher.MAX_PACKET_LENGTH, size - 1 };
+        for (int index : samples) {
+            Assert.assertEquals(index & 0xff, buffer.getUint8(index));
+        }
+        // 按倍数扩容，不会每个续包都重新分配
+        Assert.assertEquals(3, largeAllocations.get());
+
+        ((PooledLogBuffer) buffer).release();
+        fetcher.close();
+    }
+
+    @Test
+    public void testReleaseWhenPublishFailed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePacket(out, 1, 100);
+
+        LogBufferPool pool = new LogBufferPool(1024, 4);
+        DirectLogFetcher fetcher = new DirectLogFetcher(1024, pool);
+        fetcher.start(new BytesSocketChannel(out.toByteArray()));
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer buffer = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+
+        // 没有启动的coprocessor投递失败，由coprocessor归还数据包的引用
+        MysqlMultiStageCoprocessor coprocessor = new MysqlMultiStageCoprocessor(16, 1, null, null, "test");
+        Assert.assertFalse(coprocessor.publish(buffer));
+        fetcher.close();
+        Assert.assertEquals(1, pool.getIdleChunks());
+    }
+
+    @Test
+    public void testWithoutPool() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePacket(out, 1, 100);
+        writePacket(out, 2, 200);
+
+        DirectLogFetcher fetcher = new DirectLogFetcher(1024);
+        fetcher.start(new BytesSocketChannel(out.toByteArray()));
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer first = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+        Assert.assertTrue(fetcher.fetch());
+        LogBuffer second = fetcher.slice();
+        fetcher.consume(fetcher.limit());
+
+        Assert.assertFalse(first instanceof PooledLogBuffer);
+        assertPacket(first, 1, 100);
+        assertPacket(second, 2, 200);
+        fetcher.close();
+    }
+
+    /**
+     * 写入一个ok数据包，内容为len个字节的seed
+     */
+    private void writePacket(ByteArrayOutputStream out, int seed, int len) {
+        int netlen = len + 1;
+        out.write(netlen & 0xff);
+        out.write((netlen >>> 8) & 0xff);
+        out.write((netlen >>> 16) & 0xff);
+        out.write(seed & 0xff);
+        out.write(0); // ok mark
+        for (int i = 0; i < len; i++) {
+            out.write(seed & 0xff);
+        }
+    }
+
+    private void assertPacket(LogBuffer buffer, int seed, int len) {
+        Assert.assertEquals(len, buffer.limit());
+        for (int i = 0; i < len; i++) {
+            Assert.assertEquals(seed & 0xff, buffer.getUint8(i));
+        }
+    }
+
+    /**
+     * 按照给定的包长度生成数据包，第一个包带ok mark，之后的数据按照在拼接结果中的下标填充
+     */
+    private static class MultiPacketSocketChannel extends BytesSocketChannel {
+
+        private final int[] lengths;
+        private int         packet = 0;
+        private int         offset = -4;  // 负数代表正在读取包头
+        private int         index  = 0;
+
+        public MultiPacketSocketChannel(int[] lengths){
+            super(new byte[0]);
+            this.lengths = lengths;
+        }
+
+        public void read(byte[] data, int off, int len, int timeout) throws IOException {
+            for (int i = 0; i < len; i++) {
+                if (packet >= lengths.length) {
+                    throw new EOFException();
+                }
+                int netlen = lengths[packet];
+                if (offset < 0) {
+                    int headerIndex = offset + 4;
+                    data[off + i] = (byte) (headerIndex < 3 ? netlen >>> (8 * headerIndex) : packet);
+                } else if (packet == 0 && offset == 0) {
+                    data[off + i] = 0; // ok mark
+                } else {
+                    data[off + i] = (byte) (index++);
+                }
+                if (++offset == netlen) {
+                    packet++;
+                    offset = -4;
+                }
+            }
+        }
+    }
+
+    private static class BytesSocketChannel implements SocketChannel {
+
+        private final ByteArrayInputStream input;
+
+        public BytesSocketChannel(byte[] data){
+            this.input = new ByteArrayInputStream(data);
+        }
+
+        public void write(byte[]... buf) throws IOException {
+        }
+
+        public byte[] read(int readSize) throws IOException {
+            byte[] data = new byte[readSize];
+            read(data, 0, readSize, 0);
+            return data;
+        }
+
+        public byte[] read(int readSize, int timeout) throws IOException {
+            return read(readSize);
+        }
+
+        public void read(byte[] data, int off, int len, int timeout) throws IOException {
+            if (input.read(data, off, len) < len) {
+                throw new EOFException();
+            }
+        }
+
+        public boolean isConnected() {
+            return true;
+        }
+
+        public SocketAddress getRemoteSocketAddress() {
+            return null;
+        }
+
+        public SocketAddress getLocalSocketAddress() {
+            return null;
+        }
+
+        public void close() {
+        }
+    }
+}
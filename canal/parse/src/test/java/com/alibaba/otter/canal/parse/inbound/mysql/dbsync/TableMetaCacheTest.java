@@ -0,0 +1,107 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.dbsync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
+import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+
+/**
+ * 对比information_schema批量加载和show create table得到的FieldMeta
+ *
+ * @version 1.1.4
+ */
+public class TableMetaCacheTest {
+
+    private static final String USER_DDL  = "CREATE TABLE `user` (\n"
+                                            + "  `id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,\n"
+                                            + "  `name` varchar(32) NOT NULL DEFAULT 'a''b\\\\c',\n"
+                                            + "  `age` int(11) DEFAULT NULL,\n"
+                                            + "  `code` char(8) CHARACTER SET utf8mb4 NOT NULL COMMENT 'code',\n"
+                                            + "  `flag` bit(1) NOT NULL DEFAULT b'1',\n"
+                                            + "  `score` decimal(10,2) DEFAULT '0.00',\n"
+                                            + "  `gmt_create` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n"
+                                            + "  `status` enum('a','b') NOT NULL DEFAULT 'a',\n"
+                                            + "  PRIMARY KEY (`id`),\n"
+                                            + "  UNIQUE KEY `uk_code` (`code`,`name`),\n"
+                                            + "  KEY `idx_age` (`age`)\n"
+                                            + ") ENGINE=InnoDB DEFAULT CHARSET=utf8";
+
+    private static final String ORDER_DDL = "CREATE TABLE `order` (\n"
+                                            + "  `order_id` int(10) unsigned zerofill NOT NULL,\n"
+                                            + "  `user_id` bigint(20) DEFAULT '0',\n"
+                                            + "  `remark` text,\n"
+                                            + "  UNIQUE KEY `uk_order` (`order_id`),\n"
+                                            + "  KEY `idx_user` (`user_id`)\n"
+                                            + ") ENGINE=InnoDB DEFAULT CHARSET=utf8";
+
+    @Test
+    public void testSameAsShowCreate() {
+        ResultSetPacket columns = packet("order", "order_id", "int(10) unsigned zerofill", "NO", null, "",
+            "order", "user_id", "bigint(20)", "YES", "0", "",
+            "order", "remark", "text", "YES", null, "",
+            "user", "id", "bigint(20) unsigned", "NO", null, "auto_increment",
+            "user", "name", "varchar(32)", "NO", "a'b\\c", "",
+            "user", "age", "int(11)", "YES", null, "",
+            "user", "code", "char(8)", "NO", null, "",
+            "user", "flag", "bit(1)", "NO", "b'1'", "",
+            "user", "score", "decimal(10,2)", "YES", "0.00", "",
+            "user", "gmt_create", "timestamp", "NO", "CURRENT_TIMESTAMP", "DEFAULT_GENERATED",
+            "user", "status", "enum('a','b')", "NO", "a", "");
+        // 只查询主键和唯一索引
+        ResultSetPacket indexes = packet("order", "uk_order", "order_id", null,
+            "user", "PRIMARY", "id", null,
+            "user", "uk_code", "code", null,
+            "user", "uk_code", "name", null);
+
+        Map<String, List<FieldMeta>> tables = TableMetaCache.parseTableMetaBySchema("test", columns, indexes);
+        Assert.assertEquals(Arrays.asList("order", "user"), new ArrayList<String>(tables.keySet()));
+        assertSame(TableMetaCache.parseTableMeta("test", "user", packet("user", USER_DDL)), tables.get("user"));
+        assertSame(TableMetaCache.parseTableMeta("test", "order", packet("order", ORDER_DDL)), tables.get("order"));
+
+        List<FieldMeta> user = tables.get("user");
+        Assert.assertTrue(user.get(0).isKey());
+        Assert.assertTrue(user.get(0).isUnsigned());
+        Assert.assertTrue(user.get(1).isUnique());
+        Assert.assertTrue(user.get(3).isUnique());
+        Assert.assertTrue(user.get(2).isNullable());
+        Assert.assertNull(user.get(2).getDefaultValue());
+        Assert.assertEquals("0.00", user.get(5).getDefaultValue());
+        Assert.assertEquals("CURRENT_TIMESTAMP", user.get(6).getDefaultValue());
+    }
+
+    @Test
+    public void testBuildCreateTableDDLs() {
+        ResultSetPacket columns = packet("t`1", "c", "varchar(8)", "NO", "x\n'y", "",
+            "t`1", "d", "int(11)", "YES", "1", "");
+        ResultSetPacket indexes = packet("t`1", "PRIMARY", "c", "4",
+            // 函数索引无法还原，忽略
+            "t`1", "uk_expr", null, null);
+
+        Map<String, String> ddls = TableMetaCache.buildCreateTableDDLs(columns, indexes);
+        Assert.assertEquals("CREATE TABLE `t``1` (\n"
+                            + "  `c` varchar(8) NOT NULL DEFAULT 'x\\n''y',\n"
+                            + "  `d` int(11) DEFAULT '1',\n"
+                            + "  PRIMARY KEY (`c`(4))\n"
+                            + ")",
+            ddls.get("t`1"));
+    }
+
+    private void assertSame(List<FieldMeta> expected, List<FieldMeta> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    private ResultSetPacket packet(String... values) {
+        ResultSetPacket packet = new ResultSetPacket();
+        packet.setFieldValues(new ArrayList<String>(Arrays.asList(values)));
+        return packet;
+    }
+}
@@ -0,0 +1,77 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.local;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.FileLogFetcher;
+import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.MappedFileLogFetcher;
+
+/**
+ * 测试预读模式和同步模式读取的事件一致
+ *
+ * @version 1.1.4
+ */
+public class BinLogFileReaderTest {
+
+    private File            directory;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("dummy.txt");
+        directory = new File(new File(url.getFile()).getParent(), "binlog");
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        for (String name : new String[] { "mysql-bin.000001", "mysql-bin.000002" }) {
+            File file = new File(directory, name);
+            List<String> expected = read(new BinLogFileReader(file, 0L, new FileLogFetcher(1024)));
+            Assert.assertFalse(expected.isEmpty());
+
+            BinLogFileReader reader = new BinLogFileReader(file, 0L, new MappedFileLogFetcher(1024, 4096));
+            reader.prefetch(executor);
+            Assert.assertEquals(expected, read(reader));
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        BinLogFileReader reader = new BinLogFileReader(new File(directory, "mysql-bin.000001"),
+            0L,
+            new FileLogFetcher(1024));
+        reader.prefetch(executor);
+        Assert.assertNotNull(reader.next());
+        reader.close();
+    }
+
+    private List<String> read(BinLogFileReader reader) throws Exception {
+        List<String> events = new ArrayList<String>();
+        try {
+            LogEvent event = null;
+            while ((event = reader.next()) != null) {
+                events.add(event.getHeader().getType() + ":" + event.getLogPos());
+            }
+            Assert.assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+}
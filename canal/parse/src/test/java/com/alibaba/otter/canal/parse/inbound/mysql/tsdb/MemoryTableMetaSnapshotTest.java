@@ -0,0 +1,47 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+
+/**
+ * 测试按表生成的快照，以及快照加载后按需解析
+ *
+ * @version 1.1.4
+ */
+public class MemoryTableMetaSnapshotTest {
+
+    @Test
+    public void testSnapshotTables() {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.apply(null, "test", "create table t1(id int primary key, name varchar(32))", null);
+        memoryTableMeta.apply(null, "test", "create table t2(id bigint primary key)", null);
+        memoryTableMeta.apply(null, "test2", "create table t3(id int primary key)", null);
+
+        String data = DatabaseTableMeta.encodeSnapshot(memoryTableMeta.snapshotTables());
+        Map<String, Map<String, String>> tableDdls = DatabaseTableMeta.decodeSnapshot(data);
+        Assert.assertEquals(2, tableDdls.size());
+        Assert.assertEquals(2, tableDdls.get("test").size());
+
+        MemoryTableMeta snapshotTableMeta = new MemoryTableMeta();
+        snapshotTableMeta.applySnapshot(tableDdls);
+        snapshotTableMeta.apply(null, "test", "alter table t1 add column age int", null);
+        snapshotTableMeta.apply(null, "test", "rename table t2 to t4", null);
+
+        TableMeta meta = snapshotTableMeta.find("test", "t1");
+        Assert.assertEquals(3, meta.getFields().size());
+        Assert.assertTrue(meta.getFieldMetaByName("id").isKey());
+        Assert.assertNull(snapshotTableMeta.find("test", "t2"));
+        Assert.assertEquals("bigint", snapshotTableMeta.find("test", "t4").getFields().get(0).getColumnType());
+
+        // 未解析的表直接使用快照中的建表语句
+        Map<String, Map<String, String>> result = snapshotTableMeta.snapshotTables();
+        Assert.assertEquals(2, result.get("test").size());
+        Assert.assertTrue(result.get("test").containsKey("t4"));
+        Assert.assertEquals(tableDdls.get("test2").get("t3"), result.get("test2").get("t3"));
+        Assert.assertNotNull(snapshotTableMeta.find("TEST2", "T3"));
+    }
+}
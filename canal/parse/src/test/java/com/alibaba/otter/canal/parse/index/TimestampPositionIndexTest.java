@@ -0,0 +1,78 @@
+package com.alibaba.otter.canal.parse.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+
+/**
+ * 测试时间戳索引的记录、二分查找以及重新加载
+ *
+ * @version 1.1.4
+ */
+public class TimestampPositionIndexTest {
+
+    private static final String tmp      = System.getProperty("java.io.tmpdir", "/tmp");
+    private static final File   dataFile = new File(tmp, "canal_timestamp_index_test.idx");
+
+    @Before
+    @After
+    public void clean() {
+        FileUtils.deleteQuietly(dataFile);
+    }
+
+    @Test
+    public void testRecordAndFloor() {
+        TimestampPositionIndex index = new TimestampPositionIndex(dataFile, 1000, 100);
+        index.record(new EntryPosition("mysql-bin.000001", 100L, 10000L, 1L));
+        // 不足间隔时间，忽略
+        index.record(new EntryPosition("mysql-bin.000001", 200L, 10500L, 1L));
+        index.record(new EntryPosition("mysql-bin.000001", 300L, 11000L, 1L));
+        index.record(new EntryPosition("mysql-bin.000002", 4L, 13000L, 1L));
+        // 时间回退，忽略
+        index.record(new EntryPosition("mysql-bin.000001", 300L, 9000L, 1L));
+        Assert.assertEquals(3, index.size());
+
+        Assert.assertNull(index.floor(10000L));
+        Assert.assertEquals(Long.valueOf(100L), index.floor(10001L).getPosition());
+        Assert.assertEquals(Long.valueOf(300L), index.floor(13000L).getPosition());
+        EntryPosition position = index.floor(Long.MAX_VALUE);
+        Assert.assertEquals("mysql-bin.000002", position.getJournalName());
+        Assert.assertEquals(Long.valueOf(13000L), position.getTimestamp());
+
+        // 重新加载
+        index = new TimestampPositionIndex(dataFile, 1000, 100);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(Long.valueOf(300L), index.floor(12000L).getPosition());
+    }
+
+    @Test
+    public void testResetAndTruncate() throws IOException {
+        TimestampPositionIndex index = new TimestampPositionIndex(dataFile, 1000, 10);
+        for (int i = 1; i <= 11; i++) {
+            index.record(new EntryPosition("mysql-bin.000001", i * 100L, i * 1000L, 1L));
+        }
+        Assert.assertEquals(6, index.size());
+        Assert.assertNull(index.floor(6000L));
+        Assert.assertEquals(6, FileUtils.readLines(dataFile).size());
+
+        // binlog被重置
+        index.record(new EntryPosition("mysql-bin.000001", 4L, 20000L, 1L));
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(Long.valueOf(4L), index.floor(30000L).getPosition());
+        Assert.assertEquals(1, new TimestampPositionIndex(dataFile, 1000, 10).size());
+    }
+
+    @Test
+    public void testCompareJournalName() {
+        Assert.assertTrue(TimestampPositionIndex.compareJournalName("mysql-bin.000009", "mysql-bin.000010") < 0);
+        Assert.assertTrue(TimestampPositionIndex.compareJournalName("mysql-bin.999999", "mysql-bin.1000000") < 0);
+        Assert.assertEquals(0, TimestampPositionIndex.comparePosition("mysql-bin.000001", 4, "mysql-bin.000001", 4));
+    }
+}
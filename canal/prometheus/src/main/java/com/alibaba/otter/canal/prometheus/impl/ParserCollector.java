@@ -33,11 +33,13 @@ public class ParserCollector extends Collector implements InstanceRegistry {
     private static final String                              PUBLISH_BLOCKING      = "canal_instance_publish_blocking_time";
     private static final String                              RECEIVED_BINLOG       = "canal_instance_received_binlog_bytes";
     private static final String                              PARSER_MODE           = "canal_instance_parser_mode";
+    private static final String                              PARSER_PARALLELISM    = "canal_instance_parser_parallelism";
     private static final String                              MODE_LABEL            = "parallel";
     private static final String                              PARSER_LABEL          = "parser";
     private static final String                              PUBLISH_BLOCKING_HELP = "Publish blocking time of dump thread in milliseconds";
     private static final String                              RECEIVED_BINLOG_HELP  = "Received binlog bytes";
     private static final String                              MODE_HELP             = "Parser mode(parallel/serial) of instance";
+    private static final String                              PARALLELISM_HELP      = "Current thread number of parallel DML parser";
     private final List<String>                               modeLabels            = Arrays.asList(DEST, MODE_LABEL);
     private final List<String>                               parserLabels          = Arrays.asList(DEST, PARSER_LABEL);
     private final ConcurrentMap<String, ParserMetricsHolder> instances             = new ConcurrentHashMap<>();
@@ -61,15 +63,17 @@ public class ParserCollector extends Collector implements InstanceRegistry {
                 MODE_HELP, modeLabels);
         CounterMetricFamily blockingCounter = new CounterMetricFamily(PUBLISH_BLOCKING,
                 PUBLISH_BLOCKING_HELP, parserLabels);
+        GaugeMetricFamily parallelismGauge = new GaugeMetricFamily(PARSER_PARALLELISM,
+                PARALLELISM_HELP, parserLabels);
         for (ParserMetricsHolder emh : instances.values()) {
             if (emh instanceof GroupParserMetricsHolder) {
                 GroupParserMetricsHolder group = (GroupParserMetricsHolder) emh;
                 for (ParserMetricsHolder semh :  group.holders) {
-                    singleCollect(bytesCounter, blockingCounter, modeGauge, semh);
+                    singleCollect(bytesCounter, blockingCounter, modeGauge, parallelismGauge, semh);
                 }
             }
             else {
-                singleCollect(bytesCounter, blockingCounter, modeGauge, emh);
+                singleCollect(bytesCounter, blockingCounter, modeGauge, parallelismGauge, emh);
             }
         }
         mfs.add(bytesCounter);
@@ -77,12 +81,16 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         if (!blockingCounter.samples.isEmpty()) {
             mfs.add(blockingCounter);
         }
+        if (!parallelismGauge.samples.isEmpty()) {
+            mfs.add(parallelismGauge);
+        }
         return mfs;
     }
 
-    private void singleCollect(CounterMetricFamily bytesCounter, CounterMetricFamily blockingCounter, GaugeMetricFamily modeGauge, ParserMetricsHolder holder) {
+    private void singleCollect(CounterMetricFamily bytesCounter, CounterMetricFamily blockingCounter, GaugeMetricFamily modeGauge, GaugeMetricFamily parallelismGauge, ParserMetricsHolder holder) {
         if (holder.isParallel) {
             blockingCounter.addMetric(holder.parserLabelValues, (holder.eventsPublishBlockingTime.doubleValue() / NANO_PER_MILLI));
+            parallelismGauge.addMetric(holder.parserLabelValues, holder.parserParallelism.doubleValue());
         }
         modeGauge.addMetric(holder.modeLabelValues, 1);
         bytesCounter.addMetric(holder.parserLabelValues, holder.receivedBinlogBytes.doubleValue());
@@ -113,9 +121,11 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         holder.modeLabelValues = Arrays.asList(destination, Boolean.toString(parser.isParallel()));
         holder.eventsPublishBlockingTime = parser.getEventsPublishBlockingTime();
         holder.receivedBinlogBytes = parser.getReceivedBinlogBytes();
+        holder.parserParallelism = parser.getParserParallelism();
         holder.isParallel = parser.isParallel();
         Preconditions.checkNotNull(holder.eventsPublishBlockingTime);
         Preconditions.checkNotNull(holder.receivedBinlogBytes);
+        Preconditions.checkNotNull(holder.parserParallelism);
         return holder;
     }
 
@@ -147,6 +157,7 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         // metrics for single parser
         private AtomicLong   receivedBinlogBytes;
         private AtomicLong   eventsPublishBlockingTime;
+        private AtomicLong   parserParallelism;
         // parser mode
         private boolean      isParallel;
     }
@@ -3,7 +3,7 @@ package com.alibaba.otter.canal.prometheus.impl;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.prometheus.InstanceRegistry;
 import com.alibaba.otter.canal.store.CanalEventStore;
-import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
 import com.alibaba.otter.canal.store.model.BatchMode;
 import com.google.common.base.Preconditions;
 import io.prometheus.client.Collector;
@@ -52,7 +52,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
     private static final String                             GET_ROWS_HELP    = "Got table rows of canal instance";
     private static final String                             ACK_ROWS_HELP    = "Acked table rows of canal instance";
     private final ConcurrentMap<String, StoreMetricsHolder> instances        = new ConcurrentHashMap<String, StoreMetricsHolder>();
-    private final List<String>                              storeLabelsList  = Arrays.asList(DEST, "batchMode", "size");
+    private final List<String>                              storeLabelsList  = Arrays.asList(DEST, "batchMode", "size", "segments");
 
     private StoreCollector() {}
 
@@ -137,28 +137,32 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         final String destination = instance.getDestination();
         StoreMetricsHolder holder = new StoreMetricsHolder();
         CanalEventStore store = instance.getEventStore();
-        if (!(store instanceof MemoryEventStoreWithBuffer)) {
-            throw new IllegalArgumentException("EventStore must be MemoryEventStoreWithBuffer");
+        if (!(store instanceof CanalStoreMetrics)) {
+            throw new IllegalArgumentException("EventStore must implement CanalStoreMetrics");
         }
-        MemoryEventStoreWithBuffer memStore = (MemoryEventStoreWithBuffer) store;
-        holder.batchMode = memStore.getBatchMode();
-        holder.putSeq = memStore.getPutSequence();
-        holder.ackSeq = memStore.getAckSequence();
+        CanalStoreMetrics storeMetrics = (CanalStoreMetrics) store;
+        holder.batchMode = storeMetrics.getBatchMode();
+        holder.putSeq = storeMetrics.getPutSequence();
+        holder.ackSeq = storeMetrics.getAckSequence();
+        holder.size = storeMetrics.getCapacityEvents();
+        holder.segments = storeMetrics.getSegmentCount();
+        holder.putExecTime = storeMetrics.getPutExecTime();
+        holder.getExecTime = storeMetrics.getGetExecTime();
+        holder.ackExecTime = storeMetrics.getAckExecTime();
+        holder.putTableRows = storeMetrics.getPutTableRows();
+        holder.getTableRows = storeMetrics.getGetTableRows();
+        holder.ackTableRows = storeMetrics.getAckTableRows();
+        holder.putMemSize = storeMetrics.getPutMemSize();
+        holder.ackMemSize = storeMetrics.getAckMemSize();
         holder.destLabelValues = Collections.singletonList(destination);
-        holder.size = memStore.getBufferSize();
-        holder.storeLabelValues = Arrays.asList(destination, holder.batchMode.name(), Integer.toString(holder.size));
-        holder.putExecTime = memStore.getPutExecTime();
-        holder.getExecTime = memStore.getGetExecTime();
-        holder.ackExecTime = memStore.getAckExecTime();
-        holder.putTableRows = memStore.getPutTableRows();
-        holder.getTableRows = memStore.getGetTableRows();
-        holder.ackTableRows = memStore.getAckTableRows();
+        holder.storeLabelValues = Arrays.asList(destination,
+            holder.batchMode.name(),
+            Integer.toString(holder.size),
+            Integer.toString(holder.segments));
         Preconditions.checkNotNull(holder.batchMode);
         Preconditions.checkNotNull(holder.putSeq);
         Preconditions.checkNotNull(holder.ackSeq);
         if (holder.batchMode.isMemSize()) {
-            holder.putMemSize = memStore.getPutMemSize();
-            holder.ackMemSize = memStore.getAckMemSize();
             Preconditions.checkNotNull(holder.putMemSize);
             Preconditions.checkNotNull(holder.ackMemSize);
         }
@@ -187,6 +191,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         private AtomicLong   getTableRows;
         private AtomicLong   ackTableRows;
         private int          size;
+        private int          segments;
         private List<String> destLabelValues;
         private List<String> storeLabelValues;
     }
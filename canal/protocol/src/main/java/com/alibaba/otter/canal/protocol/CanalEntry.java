@@ -4102,6 +4102,23 @@ public final class CanalEntry {
      */
     com.google.protobuf.ByteString
         getMysqlTypeBytes();
+
+    /**
+     * <code>optional bytes typedValue = 11;</code>
+     *
+     * <pre>
+     ** 按照sqlType编码的二进制字段值，设置后value为空 *
+     * </pre>
+     */
+    boolean hasTypedValue();
+    /**
+     * <code>optional bytes typedValue = 11;</code>
+     *
+     * <pre>
+     ** 按照sqlType编码的二进制字段值，设置后value为空 *
+     * </pre>
+     */
+    com.google.protobuf.ByteString getTypedValue();
   }
   /**
    * Protobuf type {@code com.alibaba.otter.canal.protocol.Column}
@@ -4215,6 +4232,11 @@ public final class CanalEntry {
               mysqlType_ = bs;
               break;
             }
+            case 90: {
+              bitField0_ |= 0x00000200;
+              typedValue_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -4613,6 +4635,29 @@ public final class CanalEntry {
       }
     }
 
+    public static final int TYPEDVALUE_FIELD_NUMBER = 11;
+    private com.google.protobuf.ByteString typedValue_;
+    /**
+     * <code>optional bytes typedValue = 11;</code>
+     *
+     * <pre>
+     ** 按照sqlType编码的二进制字段值，设置后value为空 *
+     * </pre>
+     */
+    public boolean hasTypedValue() {
+      return ((bitField0_ & 0x00000200) == 0x00000200);
+    }
+    /**
+     * <code>optional bytes typedValue = 11;</code>
+     *
+     * <pre>
+     ** 按照sqlType编码的二进制字段值，设置后value为空 *
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getTypedValue() {
+      return typedValue_;
+    }
+
     private void initFields() {
       index_ = 0;
       sqlType_ = 0;
@@ -4624,6 +4669,7 @@ public final class CanalEntry {
       value_ = "";
       length_ = 0;
       mysqlType_ = "";
+      typedValue_ = com.google.protobuf.ByteString.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -4668,6 +4714,9 @@ public final class CanalEntry {
       if (((bitField0_ & 0x00000100) == 0x00000100)) {
         output.writeBytes(10, getMysqlTypeBytes());
       }
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        output.writeBytes(11, typedValue_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -4717,6 +4766,10 @@ public final class CanalEntry {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(10, getMysqlTypeBytes());
       }
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(11, typedValue_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -4863,6 +4916,8 @@ public final class CanalEntry {
         bitField0_ = (bitField0_ & ~0x00000100);
         mysqlType_ = "";
         bitField0_ = (bitField0_ & ~0x00000200);
+        typedValue_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000400);
         return this;
       }
 
@@ -4936,6 +4991,10 @@ public final class CanalEntry {
           to_bitField0_ |= 0x00000100;
         }
         result.mysqlType_ = mysqlType_;
+        if (((from_bitField0_ & 0x00000400) == 0x00000400)) {
+          to_bitField0_ |= 0x00000200;
+        }
+        result.typedValue_ = typedValue_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -5011,6 +5070,9 @@ public final class CanalEntry {
           mysqlType_ = other.mysqlType_;
           onChanged();
         }
+        if (other.hasTypedValue()) {
+          setTypedValue(other.getTypedValue());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -5938,6 +6000,57 @@ public final class CanalEntry {
         return this;
       }
 
+      private com.google.protobuf.ByteString typedValue_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes typedValue = 11;</code>
+       *
+       * <pre>
+       ** 按照sqlType编码的二进制字段值，设置后value为空 *
+       * </pre>
+       */
+      public boolean hasTypedValue() {
+        return ((bitField0_ & 0x00000400) == 0x00000400);
+      }
+      /**
+       * <code>optional bytes typedValue = 11;</code>
+       *
+       * <pre>
+       ** 按照sqlType编码的二进制字段值，设置后value为空 *
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getTypedValue() {
+        return typedValue_;
+      }
+      /**
+       * <code>optional bytes typedValue = 11;</code>
+       *
+       * <pre>
+       ** 按照sqlType编码的二进制字段值，设置后value为空 *
+       * </pre>
+       */
+      public Builder setTypedValue(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000400;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes typedValue = 11;</code>
+       *
+       * <pre>
+       ** 按照sqlType编码的二进制字段值，设置后value为空 *
+       * </pre>
+       */
+      public Builder clearTypedValue() {
+        bitField0_ = (bitField0_ & ~0x00000400);
+        typedValue_ = getDefaultInstance().getTypedValue();
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:com.alibaba.otter.canal.protocol.Column)
     }
 
@@ -12737,12 +12850,13 @@ public final class CanalEntry {
       "F\n\teventType\030\013 \001(\0162+.com.alibaba.otter.c" +
       "anal.protocol.EventType:\006UPDATE\0225\n\005props" +
       "\030\014 \003(\0132&.com.alibaba.otter.canal.protoco" +
-      "l.Pair\022\014\n\004gtid\030\r \001(\t\"\326\001\n\006Column\022\r\n\005index" +
+      "l.Pair\022\014\n\004gtid\030\r \001(\t\"\352\001\n\006Column\022\r\n\005index" +
       "\030\001 \001(\005\022\017\n\007sqlType\030\002 \001(\005\022\014\n\004name\030\003 \001(\t\022\r\n" +
       "\005isKey\030\004 \001(\010\022\017\n\007updated\030\005 \001(\010\022\025\n\006isNull\030" +
       "\006 \001(\010:\005false\0225\n\005props\030\007 \003(\0132&.com.alibab" +
       "a.otter.canal.protocol.Pair\022\r\n\005value\030\010 \001",
-      "(\t\022\016\n\006length\030\t \001(\005\022\021\n\tmysqlType\030\n \001(\t\"\301\001" +
+      "(\t\022\016\n\006length\030\t \001(\005\022\021\n\tmysqlType\030\n \001(\t\022\022\n\ntypedV" +
+      "alue\030\013 \001(\014\"\301\001" +
       "\n\007RowData\022?\n\rbeforeColumns\030\001 \003(\0132(.com.a" +
       "libaba.otter.canal.protocol.Column\022>\n\014af" +
       "terColumns\030\002 \003(\0132(.com.alibaba.otter.can" +
@@ -12802,7 +12916,7 @@ public final class CanalEntry {
     internal_static_com_alibaba_otter_canal_protocol_Column_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_Column_descriptor,
-        new String[] { "Index", "SqlType", "Name", "IsKey", "Updated", "IsNull", "Props", "Value", "Length", "MysqlType", });
+        new String[] { "Index", "SqlType", "Name", "IsKey", "Updated", "IsNull", "Props", "Value", "Length", "MysqlType", "TypedValue", });
     internal_static_com_alibaba_otter_canal_protocol_RowData_descriptor =
       getDescriptor().getMessageTypes().get(3);
     internal_static_com_alibaba_otter_canal_protocol_RowData_fieldAccessorTable = new
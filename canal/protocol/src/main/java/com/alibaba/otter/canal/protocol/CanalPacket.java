@@ -39,6 +39,10 @@ public final class CanalPacket {
      * <code>LZF = 4;</code>
      */
     LZF(4),
+    /**
+     * <code>LZ4 = 5;</code>
+     */
+    LZ4(5),
     UNRECOGNIZED(-1),
     ;
 
@@ -62,6 +66,10 @@ public final class CanalPacket {
      * <code>LZF = 4;</code>
      */
     public static final int LZF_VALUE = 4;
+    /**
+     * <code>LZ4 = 5;</code>
+     */
+    public static final int LZ4_VALUE = 5;
 
 
     public final int getNumber() {
@@ -87,6 +95,7 @@ public final class CanalPacket {
         case 2: return ZLIB;
         case 3: return GZIP;
         case 4: return LZF;
+        case 5: return LZ4;
         default: return null;
       }
     }
@@ -208,6 +217,14 @@ public final class CanalPacket {
      * <code>CLIENTROLLBACK = 12;</code>
      */
     CLIENTROLLBACK(12),
+    /**
+     * <pre>
+     * 流式订阅，body为Get，server按照window推送MESSAGES，client通过CLIENTACK归还额度
+     * </pre>
+     *
+     * <code>STREAM = 13;</code>
+     */
+    STREAM(13),
     UNRECOGNIZED(-1),
     ;
 
@@ -275,6 +292,14 @@ public final class CanalPacket {
      * <code>CLIENTROLLBACK = 12;</code>
      */
     public static final int CLIENTROLLBACK_VALUE = 12;
+    /**
+     * <pre>
+     * 流式订阅，body为Get，server按照window推送MESSAGES，client通过CLIENTACK归还额度
+     * </pre>
+     *
+     * <code>STREAM = 13;</code>
+     */
+    public static final int STREAM_VALUE = 13;
 
 
     public final int getNumber() {
@@ -308,6 +333,7 @@ public final class CanalPacket {
         case 10: return DUMP;
         case 11: return HEARTBEAT;
         case 12: return CLIENTROLLBACK;
+        case 13: return STREAM;
         default: return null;
       }
     }
@@ -7418,6 +7444,15 @@ public final class CanalPacket {
      */
     boolean getAutoAck();
 
+    /**
+     * <pre>
+     * STREAM时未ack的batch数上限，0代表停止推送
+     * </pre>
+     *
+     * <code>int32 window = 7;</code>
+     */
+    int getWindow();
+
     public com.alibaba.otter.canal.protocol.CanalPacket.Get.TimeoutPresentCase getTimeoutPresentCase();
 
     public com.alibaba.otter.canal.protocol.CanalPacket.Get.UnitPresentCase getUnitPresentCase();
@@ -7444,6 +7479,7 @@ public final class CanalPacket {
       destination_ = "";
       clientId_ = "";
       fetchSize_ = 0;
+      window_ = 0;
     }
 
     @java.lang.Override
@@ -7502,6 +7538,11 @@ public final class CanalPacket {
               autoAckPresent_ = input.readBool();
               break;
             }
+            case 56: {
+
+              window_ = input.readInt32();
+              break;
+            }
             default: {
               if (!parseUnknownFieldProto3(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -7764,6 +7805,19 @@ public final class CanalPacket {
       return false;
     }
 
+    public static final int WINDOW_FIELD_NUMBER = 7;
+    private int window_;
+    /**
+     * <pre>
+     * STREAM时未ack的batch数上限，0代表停止推送
+     * </pre>
+     *
+     * <code>int32 window = 7;</code>
+     */
+    public int getWindow() {
+      return window_;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -7799,6 +7853,9 @@ public final class CanalPacket {
         output.writeBool(
             6, (boolean)((java.lang.Boolean) autoAckPresent_));
       }
+      if (window_ != 0) {
+        output.writeInt32(7, window_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -7833,6 +7890,10 @@ public final class CanalPacket {
           .computeBoolSize(
               6, (boolean)((java.lang.Boolean) autoAckPresent_));
       }
+      if (window_ != 0) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(7, window_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -7855,6 +7916,8 @@ public final class CanalPacket {
           .equals(other.getClientId());
       result = result && (getFetchSize()
           == other.getFetchSize());
+      result = result && (getWindow()
+          == other.getWindow());
       result = result && getTimeoutPresentCase().equals(
           other.getTimeoutPresentCase());
       if (!result) return false;
@@ -7905,6 +7968,8 @@ public final class CanalPacket {
       hash = (53 * hash) + getClientId().hashCode();
       hash = (37 * hash) + FETCH_SIZE_FIELD_NUMBER;
       hash = (53 * hash) + getFetchSize();
+      hash = (37 * hash) + WINDOW_FIELD_NUMBER;
+      hash = (53 * hash) + getWindow();
       switch (timeoutPresentCase_) {
         case 4:
           hash = (37 * hash) + TIMEOUT_FIELD_NUMBER;
@@ -8074,6 +8139,8 @@ public final class CanalPacket {
 
         fetchSize_ = 0;
 
+        window_ = 0;
+
         timeoutPresentCase_ = 0;
         timeoutPresent_ = null;
         unitPresentCase_ = 0;
@@ -8109,6 +8176,7 @@ public final class CanalPacket {
         result.destination_ = destination_;
         result.clientId_ = clientId_;
         result.fetchSize_ = fetchSize_;
+        result.window_ = window_;
         if (timeoutPresentCase_ == 4) {
           result.timeoutPresent_ = timeoutPresent_;
         }
@@ -8180,6 +8248,9 @@ public final class CanalPacket {
         if (other.getFetchSize() != 0) {
           setFetchSize(other.getFetchSize());
         }
+        if (other.getWindow() != 0) {
+          setWindow(other.getWindow());
+        }
         switch (other.getTimeoutPresentCase()) {
           case TIMEOUT: {
             setTimeout(other.getTimeout());
@@ -8570,6 +8641,44 @@ public final class CanalPacket {
         }
         return this;
       }
+
+      private int window_ ;
+      /**
+       * <pre>
+       * STREAM时未ack的batch数上限，0代表停止推送
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public int getWindow() {
+        return window_;
+      }
+      /**
+       * <pre>
+       * STREAM时未ack的batch数上限，0代表停止推送
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public Builder setWindow(int value) {
+        
+        window_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * STREAM时未ack的batch数上限，0代表停止推送
+       * </pre>
+       *
+       * <code>int32 window = 7;</code>
+       */
+      public Builder clearWindow() {
+        
+        window_ = 0;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -10881,25 +10990,25 @@ public final class CanalPacket {
       "t_id\030\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003\"=\n\003Sub\022\023\n\013d" +
       "estination\030\001 \001(\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006f" +
       "ilter\030\007 \001(\t\"?\n\005Unsub\022\023\n\013destination\030\001 \001(" +
-      "\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006filter\030\007 \001(\t\"\257\001\n" +
+      "\t\022\021\n\tclient_id\030\002 \001(\t\022\016\n\006filter\030\007 \001(\t\"\277\001\n" +
       "\003Get\022\023\n\013destination\030\001 \001(\t\022\021\n\tclient_id\030\002" +
       " \001(\t\022\022\n\nfetch_size\030\003 \001(\005\022\021\n\007timeout\030\004 \001(" +
-      "\003H\000\022\016\n\004unit\030\005 \001(\005H\001\022\022\n\010auto_ack\030\006 \001(\010H\002B" +
-      "\021\n\017timeout_presentB\016\n\014unit_presentB\022\n\020au" +
+      "\003H\000\022\016\n\004unit\030\005 \001(\005H\001\022\022\n\010auto_ack\030\006 \001(\010H\002" +
+      "\022\016\n\006window\030\007 \001(\005B\021\n\017timeout_presentB\016\n\014unit_presentB\022\n\020au" +
       "to_ack_present\".\n\010Messages\022\020\n\010batch_id\030\001" +
       " \001(\003\022\020\n\010messages\030\002 \003(\014\"S\n\004Dump\022\017\n\007journa" +
       "l\030\001 \001(\t\022\020\n\010position\030\002 \001(\003\022\023\n\ttimestamp\030\003" +
       " \001(\003H\000B\023\n\021timestamp_present\"J\n\016ClientRol" +
       "lback\022\023\n\013destination\030\001 \001(\t\022\021\n\tclient_id\030" +
-      "\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003*U\n\013Compression\022\037" +
+      "\002 \001(\t\022\020\n\010batch_id\030\003 \001(\003*^\n\013Compression\022\037" +
       "\n\033COMPRESSIONCOMPATIBLEPROTO2\020\000\022\010\n\004NONE\020" +
-      "\001\022\010\n\004ZLIB\020\002\022\010\n\004GZIP\020\003\022\007\n\003LZF\020\004*\346\001\n\nPacke" +
+      "\001\022\010\n\004ZLIB\020\002\022\010\n\004GZIP\020\003\022\007\n\003LZF\020\004\022\007\n\003LZ4\020\005*\362\001\n\nPacke" +
       "tType\022\037\n\033PACKAGETYPECOMPATIBLEPROTO2\020\000\022\r" +
       "\n\tHANDSHAKE\020\001\022\030\n\024CLIENTAUTHENTICATION\020\002\022" +
       "\007\n\003ACK\020\003\022\020\n\014SUBSCRIPTION\020\004\022\022\n\016UNSUBSCRIP" +
       "TION\020\005\022\007\n\003GET\020\006\022\014\n\010MESSAGES\020\007\022\r\n\tCLIENTA" +
       "CK\020\010\022\014\n\010SHUTDOWN\020\t\022\010\n\004DUMP\020\n\022\r\n\tHEARTBEA" +
-      "T\020\013\022\022\n\016CLIENTROLLBACK\020\014B1\n com.alibaba.o" +
+      "T\020\013\022\022\n\016CLIENTROLLBACK\020\014\022\n\n\006STREAM\020\rB1\n com.alibaba.o" +
       "tter.canal.protocolB\013CanalPacketH\001b\006prot" +
       "o3"
     };
@@ -10968,7 +11077,7 @@ public final class CanalPacket {
     internal_static_com_alibaba_otter_canal_protocol_Get_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_alibaba_otter_canal_protocol_Get_descriptor,
-        new java.lang.String[] { "Destination", "ClientId", "FetchSize", "Timeout", "Unit", "AutoAck", "TimeoutPresent", "UnitPresent", "AutoAckPresent", });
+        new java.lang.String[] { "Destination", "ClientId", "FetchSize", "Timeout", "Unit", "AutoAck", "Window", "TimeoutPresent", "UnitPresent", "AutoAckPresent", });
     internal_static_com_alibaba_otter_canal_protocol_Messages_descriptor =
       getDescriptor().getMessageTypes().get(9);
     internal_static_com_alibaba_otter_canal_protocol_Messages_fieldAccessorTable = new
@@ -0,0 +1,120 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.alibaba.otter.canal.protocol.exception.CanalProtocolException;
+import com.google.protobuf.ByteString;
+
+/**
+ * canal网络协议中packet body的压缩/解压
+ *
+ * <pre>
+ * 1. server在handshake中通过supported_compressions声明优先使用的压缩方式
+ * 2. client在CLIENTAUTHENTICATION包的compression中声明期望的压缩方式，body本身不压缩
+ * 3. server只对MESSAGES包做压缩，是否压缩以每个packet的compression为准，body较小时不压缩
+ * 4. LZ4使用标准的lz4 frame格式，压缩比低于ZLIB，但压缩/解压的cpu开销小很多，适合带宽充足的场景
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class CompressionUtil {
+
+    /**
+     * server在handshake中声明的压缩方式
+     */
+    public static final Compression PREFERRED   = Compression.ZLIB;
+
+    private static final int        BUFFER_SIZE = 8192;
+
+    public static boolean isCompressed(Compression compression) {
+        return compression != null && compression != Compression.NONE
+               && compression != Compression.COMPRESSIONCOMPATIBLEPROTO2;
+    }
+
+    /**
+     * 当前版本可以处理的压缩方式，LZF暂不支持
+     */
+    public static boolean isSupported(Compression compression) {
+        return compression == Compression.ZLIB || compression == Compression.GZIP || compression == Compression.LZ4;
+    }
+
+    public static ByteString compress(Compression compression, byte[] data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+            OutputStream output;
+            Deflater deflater = null;
+            switch (compression) {
+                case ZLIB:
+                    // 压缩比和cpu开销折中，优先保证吞吐
+                    deflater = new Deflater(Deflater.BEST_SPEED);
+                    output = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE);
+                    break;
+                case GZIP:
+                    output = new GZIPOutputStream(bytes, BUFFER_SIZE);
+                    break;
+                case LZ4:
+                    output = new LZ4FrameOutputStream(bytes);
+                    break;
+                default:
+                    throw new CanalProtocolException("unsupported compression : " + compression);
+            }
+
+            try {
+                output.write(data);
+                output.close();
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+            return ByteString.copyFrom(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new CanalProtocolException("compress failed with " + compression, e);
+        }
+    }
+
+    public static ByteString decompress(Compression compression, ByteString data) throws IOException {
+        if (!isCompressed(compression)) {
+            return data;
+        }
+
+        InputStream input;
+        Inflater inflater = null;
+        switch (compression) {
+            case ZLIB:
+                inflater = new Inflater();
+                input = new InflaterInputStream(data.newInput(), inflater, BUFFER_SIZE);
+                break;
+            case GZIP:
+                input = new GZIPInputStream(data.newInput(), BUFFER_SIZE);
+                break;
+            case LZ4:
+                input = new LZ4FrameInputStream(data.newInput());
+                break;
+            default:
+                throw new CanalProtocolException("compression is not supported in this connector : " + compression);
+        }
+
+        try {
+            return ByteString.readFrom(input);
+        } finally {
+            input.close();
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.sql.Types;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.google.protobuf.ByteString;
+
+/**
+ * Column.typedValue的二进制编码，按照Column.sqlType决定格式，避免数值类型在server端格式化为文本再由下游解析
+ *
+ * <pre>
+ * 1. TINYINT/SMALLINT/INTEGER/BIGINT/BIT : 大端补码，去掉前导的符号字节，1~8个字节
+ * 2. REAL : 4字节float，DOUBLE : 8字节double
+ * 3. DECIMAL : 1字节scale + 大端补码的unscaled value
+ * 4. BLOB : 原始的字节数组
+ * 5. 其余类型(文本、时间等)不做编码，仍然使用Column.value
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class TypedValueUtil {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * 判断对应的sqlType是否支持二进制编码
+     */
+    public static boolean isSupported(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.BIT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.BLOB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isTyped(Column column) {
+        return column.hasTypedValue();
+    }
+
+    public static ByteString encodeLong(long value) {
+        int length = 8;
+        // 去掉和符号位相同的前导字节
+        while (length > 1) {
+            long high = value >> ((length - 1) * 8 - 1);
+            if (high != 0 && high != -1) {
+                break;
+            }
+            length--;
+        }
+
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>= 8;
+        }
+        return ByteString.copyFrom(bytes);
+    }
+
+    public static ByteString encodeFloat(float value) {
+        int bits = Float.floatToIntBits(value);
+        return ByteString.copyFrom(new byte[] { (byte) (bits >> 24), (byte) (bits >> 16), (byte) (bits >> 8),
+                (byte) bits });
+    }
+
+    public static ByteString encodeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) bits;
+            bits >>= 8;
+        }
+        return ByteString.copyFrom(bytes);
+    }
+
+    public static ByteString encodeDecimal(BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        byte[] bytes = new byte[unscaled.length + 1];
+        bytes[0] = (byte) value.scale();
+        System.arraycopy(unscaled, 0, bytes, 1, unscaled.length);
+        return ByteString.copyFrom(bytes);
+    }
+
+    /**
+     * 按照sqlType解码，整数类型返回Long，REAL返回Float，DOUBLE返回Double，DECIMAL返回BigDecimal，BLOB返回byte[]
+     *
+     * @return 没有二进制编码的字段返回Column.value
+     */
+    public static Object getObject(Column column) {
+        if (!column.hasTypedValue()) {
+            return column.getValue();
+        }
+
+        ByteString bytes = column.getTypedValue();
+        switch (column.getSqlType()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.BIT:
+                return decodeLong(bytes);
+            case Types.REAL:
+                return Float.intBitsToFloat((int) decodeBits(bytes));
+            case Types.DOUBLE:
+                return Double.longBitsToDouble(decodeBits(bytes));
+            case Types.DECIMAL:
+                return new BigDecimal(new BigInteger(bytes.substring(1).toByteArray()), bytes.byteAt(0));
+            case Types.BLOB:
+                return bytes.toByteArray();
+            default:
+                throw new IllegalArgumentException("unsupported typed value for sqlType : " + column.getSqlType());
+        }
+    }
+
+    /**
+     * 获取字段的文本值，和未开启二进制编码时Column.value的格式一致
+     */
+    public static String getString(Column column) {
+        if (!column.hasTypedValue()) {
+            return column.getValue();
+        }
+
+        if (column.getSqlType() == Types.BLOB) {
+            // 和Column.value保持一致，使用iso-8859-1保留原始字节
+            return column.getTypedValue().toString(ISO_8859_1);
+        }
+        Object value = getObject(column);
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return String.valueOf(value);
+    }
+
+    private static long decodeLong(ByteString bytes) {
+        // 第一个字节带符号扩展
+        long value = bytes.byteAt(0);
+        for (int i = 1; i < bytes.size(); i++) {
+            value = (value << 8) | (bytes.byteAt(i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static long decodeBits(ByteString bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes.size(); i++) {
+            value = (value << 8) | (bytes.byteAt(i) & 0xFF);
+        }
+        return value;
+    }
+}
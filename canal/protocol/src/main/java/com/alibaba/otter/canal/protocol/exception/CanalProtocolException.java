@@ -0,0 +1,34 @@
+package com.alibaba.otter.canal.protocol.exception;
+
+import com.alibaba.otter.canal.common.CanalException;
+
+/**
+ * canal网络协议处理异常，client和server共用，比如packet body的压缩/解压失败
+ *
+ * @version 1.1.4
+ */
+public class CanalProtocolException extends CanalException {
+
+    private static final long serialVersionUID = 2913724839182350157L;
+
+    public CanalProtocolException(String errorCode){
+        super(errorCode);
+    }
+
+    public CanalProtocolException(String errorCode, Throwable cause){
+        super(errorCode, cause);
+    }
+
+    public CanalProtocolException(String errorCode, String errorDesc){
+        super(errorCode + ":" + errorDesc);
+    }
+
+    public CanalProtocolException(String errorCode, String errorDesc, Throwable cause){
+        super(errorCode + ":" + errorDesc, cause);
+    }
+
+    public CanalProtocolException(Throwable cause){
+        super(cause);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.sql.Types;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.WireFormat;
+
+/**
+ * 测试Column.typedValue(field 11)的序列化，以及生成代码与内嵌descriptor一致
+ *
+ * @version 1.1.4
+ */
+public class ColumnTypedValueTest {
+
+    @Test
+    public void testTypedValueRoundTrip() throws Exception {
+        ByteString typedValue = TypedValueUtil.encodeLong(-129L);
+        Column column = column().setSqlType(Types.BIGINT).setTypedValue(typedValue).build();
+        Assert.assertTrue(column.hasTypedValue());
+
+        Column parsed = Column.parseFrom(column.toByteArray());
+        Assert.assertTrue(parsed.hasTypedValue());
+        Assert.assertEquals(typedValue, parsed.getTypedValue());
+        Assert.assertFalse(parsed.hasValue());
+        Assert.assertEquals(column, parsed);
+        Assert.assertEquals(column.getSerializedSize(), parsed.getSerializedSize());
+
+        // 嵌套在RowData中同样保留
+        RowData rowData = RowData.newBuilder().addAfterColumns(column).build();
+        Assert.assertEquals(column, RowData.parseFrom(rowData.toByteString()).getAfterColumns(0));
+    }
+
+    @Test
+    public void testEmptyTypedValue() throws Exception {
+        // 空的blob也需要和未设置区分开
+        Column column = column().setSqlType(Types.BLOB).setTypedValue(ByteString.EMPTY).build();
+        Column parsed = Column.parseFrom(column.toByteArray());
+        Assert.assertTrue(parsed.hasTypedValue());
+        Assert.assertTrue(parsed.getTypedValue().isEmpty());
+    }
+
+    @Test
+    public void testWithoutTypedValue() throws Exception {
+        Column column = column().setSqlType(Types.INTEGER).setValue("123").build();
+        Assert.assertFalse(column.hasTypedValue());
+
+        byte[] bytes = column.toByteArray();
+        Column parsed = Column.parseFrom(bytes);
+        Assert.assertFalse(parsed.hasTypedValue());
+        Assert.assertEquals(ByteString.EMPTY, parsed.getTypedValue());
+        Assert.assertEquals("123", parsed.getValue());
+        Assert.assertEquals(column, parsed);
+
+        // 未设置时不输出field 11，旧版本的客户端看到的字节不变
+        CodedInputStream input = CodedInputStream.newInstance(bytes);
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            Assert.assertNotEquals(Column.TYPEDVALUE_FIELD_NUMBER, WireFormat.getTagFieldNumber(tag));
+            input.skipField(tag);
+        }
+
+        // clear之后恢复为未设置
+        Column cleared = column().setTypedValue(ByteString.copyFromUtf8("x")).clearTypedValue().build();
+        Assert.assertFalse(cleared.hasTypedValue());
+        Assert.assertFalse(Column.parseFrom(cleared.toByteArray()).hasTypedValue());
+    }
+
+    @Test
+    public void testMergeFrom() {
+        ByteString typedValue = TypedValueUtil.encodeDouble(1.5d);
+        Column typed = column().setSqlType(Types.DOUBLE).setTypedValue(typedValue).build();
+        Assert.assertEquals(typedValue, column().mergeFrom(typed).build().getTypedValue());
+
+        // 没有设置typedValue的消息不会覆盖已有的值
+        Column untyped = Column.newBuilder().setIndex(0).build();
+        Assert.assertEquals(typedValue, Column.newBuilder(typed).mergeFrom(untyped).build().getTypedValue());
+    }
+
+    @Test
+    public void testDescriptor() throws Exception {
+        // 手工维护的生成代码需要和内嵌的descriptor一致，反射和DynamicMessage依赖descriptor
+        FieldDescriptor field = Column.getDescriptor().findFieldByNumber(Column.TYPEDVALUE_FIELD_NUMBER);
+        Assert.assertNotNull(field);
+        Assert.assertEquals("typedValue", field.getName());
+        Assert.assertEquals(FieldDescriptor.Type.BYTES, field.getType());
+        Assert.assertFalse(field.isRepeated());
+        Assert.assertEquals(field, Column.getDescriptor().findFieldByName("typedValue"));
+
+        ByteString typedValue = TypedValueUtil.encodeLong(Long.MAX_VALUE);
+        Column column = column().setSqlType(Types.BIGINT).setTypedValue(typedValue).build();
+        Assert.assertTrue(column.hasField(field));
+        Assert.assertEquals(typedValue, column.getField(field));
+        Assert.assertFalse(Column.getDefaultInstance().hasField(field));
+
+        DynamicMessage dynamic = DynamicMessage.parseFrom(Column.getDescriptor(), column.toByteArray());
+        Assert.assertTrue(dynamic.getUnknownFields().asMap().isEmpty());
+        Assert.assertEquals(typedValue, dynamic.getField(field));
+        Assert.assertEquals(column.toByteString(), dynamic.toByteString());
+
+        Column built = Column.newBuilder().setField(field, typedValue).build();
+        Assert.assertEquals(typedValue, built.getTypedValue());
+    }
+
+    private Column.Builder column() {
+        return Column.newBuilder()
+            .setIndex(1)
+            .setName("id")
+            .setIsKey(true)
+            .setUpdated(false)
+            .setIsNull(false)
+            .setMysqlType("bigint(20)");
+    }
+}
@@ -0,0 +1,45 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
+import com.alibaba.otter.canal.protocol.exception.CanalProtocolException;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试各压缩方式压缩后可以还原，不支持的压缩方式抛出协议异常
+ *
+ * @version 1.1.4
+ */
+public class CompressionUtilTest {
+
+    @Test
+    public void testCompressAndDecompress() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.append("insert into db1.t1 values(").append(i).append(", 'name").append(i).append("');");
+        }
+        byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (Compression compression : new Compression[] { Compression.ZLIB, Compression.GZIP, Compression.LZ4 }) {
+            Assert.assertTrue(CompressionUtil.isSupported(compression));
+            ByteString compressed = CompressionUtil.compress(compression, data);
+            Assert.assertTrue(compression.name(), compressed.size() < data.length);
+            ByteString decompressed = CompressionUtil.decompress(compression, compressed);
+            Assert.assertEquals(compression.name(), ByteString.copyFrom(data), decompressed);
+        }
+
+        // 不压缩时原样返回
+        ByteString raw = ByteString.copyFrom(data);
+        Assert.assertSame(raw, CompressionUtil.decompress(Compression.NONE, raw));
+    }
+
+    @Test(expected = CanalProtocolException.class)
+    public void testUnsupported() {
+        Assert.assertFalse(CompressionUtil.isSupported(Compression.LZF));
+        CompressionUtil.compress(Compression.LZF, new byte[16]);
+    }
+}
@@ -0,0 +1,132 @@
+package com.alibaba.otter.canal.protocol;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试各sqlType的二进制编码和解码，getString与未开启编码时Column.value的文本一致
+ *
+ * @version 1.1.4
+ */
+public class TypedValueUtilTest {
+
+    @Test
+    public void testIsSupported() {
+        int[] supported = { Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.BIT, Types.REAL,
+                Types.DOUBLE, Types.DECIMAL, Types.BLOB };
+        for (int sqlType : supported) {
+            Assert.assertTrue(TypedValueUtil.isSupported(sqlType));
+        }
+        int[] unsupported = { Types.VARCHAR, Types.CLOB, Types.DATE, Types.TIME, Types.TIMESTAMP, Types.BINARY };
+        for (int sqlType : unsupported) {
+            Assert.assertFalse(TypedValueUtil.isSupported(sqlType));
+        }
+    }
+
+    @Test
+    public void testLong() {
+        long[] values = { 0L, 1L, -1L, 127L, 128L, -128L, -129L, 255L, 256L, 32767L, -32768L, 65535L,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, 4294967295L, Long.MAX_VALUE, Long.MIN_VALUE };
+        int[] sqlTypes = { Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.BIT };
+        for (int sqlType : sqlTypes) {
+            for (long value : values) {
+                Column column = typed(sqlType, TypedValueUtil.encodeLong(value));
+                Assert.assertEquals(value, TypedValueUtil.getObject(column));
+                Assert.assertEquals(String.valueOf(value), TypedValueUtil.getString(column));
+            }
+        }
+
+        // 去掉前导的符号字节
+        Assert.assertEquals(1, TypedValueUtil.encodeLong(0L).size());
+        Assert.assertEquals(1, TypedValueUtil.encodeLong(-128L).size());
+        Assert.assertEquals(2, TypedValueUtil.encodeLong(128L).size());
+        Assert.assertEquals(2, TypedValueUtil.encodeLong(-129L).size());
+        Assert.assertEquals(8, TypedValueUtil.encodeLong(Long.MIN_VALUE).size());
+    }
+
+    @Test
+    public void testFloat() {
+        float[] values = { 0f, -0f, 1.5f, -3.25f, Float.MAX_VALUE, Float.MIN_VALUE, Float.NaN,
+                Float.POSITIVE_INFINITY };
+        for (float value : values) {
+            Column column = typed(Types.REAL, TypedValueUtil.encodeFloat(value));
+            Assert.assertEquals(4, column.getTypedValue().size());
+            Assert.assertEquals(Float.valueOf(value), TypedValueUtil.getObject(column));
+            Assert.assertEquals(String.valueOf(value), TypedValueUtil.getString(column));
+        }
+    }
+
+    @Test
+    public void testDouble() {
+        double[] values = { 0d, -0d, 0.1d, -123456.789d, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN,
+                Double.NEGATIVE_INFINITY };
+        for (double value : values) {
+            Column column = typed(Types.DOUBLE, TypedValueUtil.encodeDouble(value));
+            Assert.assertEquals(8, column.getTypedValue().size());
+            Assert.assertEquals(Double.valueOf(value), TypedValueUtil.getObject(column));
+            Assert.assertEquals(String.valueOf(value), TypedValueUtil.getString(column));
+        }
+    }
+
+    @Test
+    public void testDecimal() {
+        String[] values = { "0", "0.00", "1", "-1", "123.4500", "-0.001", "99999999999999999999999999.999999",
+                "18446744073709551615", "-18446744073709551616" };
+        for (String text : values) {
+            BigDecimal value = new BigDecimal(text);
+            Column column = typed(Types.DECIMAL, TypedValueUtil.encodeDecimal(value));
+            BigDecimal decoded = (BigDecimal) TypedValueUtil.getObject(column);
+            // scale保持不变
+            Assert.assertEquals(value, decoded);
+            Assert.assertEquals(value.toPlainString(), TypedValueUtil.getString(column));
+        }
+    }
+
+    @Test
+    public void testBlob() {
+        byte[] value = new byte[256];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        Column column = typed(Types.BLOB, ByteString.copyFrom(value));
+        Assert.assertArrayEquals(value, (byte[]) TypedValueUtil.getObject(column));
+        // 和未开启编码时一样使用iso-8859-1
+        Assert.assertEquals(new String(value, StandardCharsets.ISO_8859_1),
+            TypedValueUtil.getString(column));
+
+        Column empty = typed(Types.BLOB, ByteString.EMPTY);
+        Assert.assertTrue(TypedValueUtil.isTyped(empty));
+        Assert.assertEquals(0, ((byte[]) TypedValueUtil.getObject(empty)).length);
+        Assert.assertEquals("", TypedValueUtil.getString(empty));
+    }
+
+    @Test
+    public void testUntyped() {
+        Column column = Column.newBuilder().setSqlType(Types.INTEGER).setValue("123").build();
+        Assert.assertFalse(TypedValueUtil.isTyped(column));
+        Assert.assertEquals("123", TypedValueUtil.getObject(column));
+        Assert.assertEquals("123", TypedValueUtil.getString(column));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupported() {
+        TypedValueUtil.getObject(typed(Types.VARCHAR, ByteString.copyFromUtf8("abc")));
+    }
+
+    private Column typed(int sqlType, ByteString typedValue) {
+        Column column = Column.newBuilder().setSqlType(sqlType).setTypedValue(typedValue).build();
+        // 经过序列化之后再解码
+        try {
+            return Column.parseFrom(column.toByteArray());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.alibaba.otter.canal.common;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -16,6 +20,7 @@ import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
 import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.TypedValueUtil;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
@@ -102,6 +107,31 @@ public class MQMessageUtils {
                                                                                  }
                                                                              });
 
+    // 每个库表名匹配pkHash规则的结果缓存，避免每条entry重复做正则匹配
+    @SuppressWarnings("deprecation")
+    private static Map<String, Map<String, HashMode>>    partitionHashModes = MigrateMap.makeComputingMap(new MapMaker().softValues(),
+                                                                               new Function<String, Map<String, HashMode>>() {
+
+                                                                                   public Map<String, HashMode> apply(String pkHashConfigs) {
+                                                                                       return new MapMaker().makeMap();
+                                                                                   }
+                                                                               });
+
+    // 每个库表名匹配动态topic规则的结果缓存
+    @SuppressWarnings("deprecation")
+    private static Map<String, Map<String, Set<String>>> matchedTopics      = MigrateMap.makeComputingMap(new MapMaker().softValues(),
+                                                                               new Function<String, Map<String, Set<String>>>() {
+
+                                                                                   public Map<String, Set<String>> apply(String dynamicTopicConfigs) {
+                                                                                       return new MapMaker().makeMap();
+                                                                                   }
+                                                                               });
+
+    private static final HashMode                        NOT_MATCH          = new HashMode();
+
+    // 并行处理时每个子任务最少处理的entry数
+    private static final int                             PARALLEL_THRESHOLD = 8;
+
     /**
      * 按 schema 或者 schema+table 将 message 分配到对应topic
      *
@@ -167,100 +197,43 @@ public class MQMessageUtils {
      * @param pkHashConfigs 分区库表主键正则表达式
      * @return 分区message数组
      */
-    @SuppressWarnings("unchecked")
     public static Message[] messagePartition(Message message, Integer partitionsNum, String pkHashConfigs) {
+        return messagePartition(message, partitionsNum, pkHashConfigs, null);
+    }
+
+    /**
+     * 将 message 分区，pool不为null时entry的解析和hash计算并行处理，结果按entry原有顺序合并，保证每个分区内的顺序
+     *
+     * @param partitionsNum 分区数
+     * @param pkHashConfigs 分区库表主键正则表达式
+     * @param pool 并行处理的线程池，为null时串行处理
+     * @return 分区message数组
+     */
+    @SuppressWarnings("unchecked")
+    public static Message[] messagePartition(Message message, Integer partitionsNum, final String pkHashConfigs,
+                                             ForkJoinPool pool) {
         if (partitionsNum == null) {
             partitionsNum = 1;
         }
+        final int partitions = partitionsNum;
         Message[] partitionMessages = new Message[partitionsNum];
         List<Entry>[] partitionEntries = new List[partitionsNum];
         for (int i = 0; i < partitionsNum; i++) {
             partitionEntries[i] = new ArrayList<>();
         }
 
-        List<CanalEntry.Entry> entries;
-        if (message.isRaw()) {
-            List<ByteString> rawEntries = message.getRawEntries();
-            entries = new ArrayList<>(rawEntries.size());
-            for (ByteString byteString : rawEntries) {
-                Entry entry;
-                try {
-                    entry = Entry.parseFrom(byteString);
-                } catch (InvalidProtocolBufferException e) {
-                    throw new RuntimeException(e);
-                }
-                entries.add(entry);
-            }
-        } else {
-            entries = message.getEntries();
-        }
-
-        for (Entry entry : entries) {
-            CanalEntry.RowChange rowChange;
-            try {
-                rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
-            } catch (Exception e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
+        List<List<PartitionEntry>> results = parallelMap(getEntrySources(message),
+            new Function<Object, List<PartitionEntry>>() {
 
-            if (rowChange.getIsDdl()) {
-                partitionEntries[0].add(entry);
-            } else {
-                if (rowChange.getRowDatasList() != null && !rowChange.getRowDatasList().isEmpty()) {
-                    String database = entry.getHeader().getSchemaName();
-                    String table = entry.getHeader().getTableName();
-                    HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
-                    if (hashMode == null) {
-                        // 如果都没有匹配，发送到第一个分区
-                        partitionEntries[0].add(entry);
-                    } else if (hashMode.tableHash) {
-                        int hashCode = table.hashCode();
-                        int pkHash = Math.abs(hashCode) % partitionsNum;
-                        pkHash = Math.abs(pkHash);
-                        // tableHash not need split entry message
-                        partitionEntries[pkHash].add(entry);
-                    } else {
-                        for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
-                            int hashCode = database.hashCode();
-                            CanalEntry.EventType eventType = rowChange.getEventType();
-                            List<CanalEntry.Column> columns = null;
-                            if (eventType == CanalEntry.EventType.DELETE) {
-                                columns = rowData.getBeforeColumnsList();
-                            } else {
-                                columns = rowData.getAfterColumnsList();
-                            }
-
-                            if (hashMode.autoPkHash) {
-                                // isEmpty use default pkNames
-                                for (CanalEntry.Column column : columns) {
-                                    if (column.getIsKey()) {
-                                        hashCode = hashCode ^ column.getValue().hashCode();
-                                    }
-                                }
-                            } else {
-                                for (CanalEntry.Column column : columns) {
-                                    if (checkPkNamesHasContain(hashMode.pkNames, column.getName())) {
-                                        hashCode = hashCode ^ column.getValue().hashCode();
-                                    }
-                                }
-                            }
-
-                            int pkHash = Math.abs(hashCode) % partitionsNum;
-                            pkHash = Math.abs(pkHash);
-                            // build new entry
-                            Entry.Builder builder = Entry.newBuilder(entry);
-                            RowChange.Builder rowChangeBuilder = RowChange.newBuilder(rowChange);
-                            rowChangeBuilder.clearRowDatas();
-                            rowChangeBuilder.addRowDatas(rowData);
-                            builder.clearStoreValue();
-                            builder.setStoreValue(rowChangeBuilder.build().toByteString());
-                            partitionEntries[pkHash].add(builder.build());
-                        }
-                    }
-                } else {
-                    // 针对stmt/mixed binlog格式的query事件
-                    partitionEntries[0].add(entry);
+                public List<PartitionEntry> apply(Object source) {
+                    return partitionEntry(toEntry(source), partitions, pkHashConfigs);
                 }
+            },
+            pool);
+
+        for (List<PartitionEntry> result : results) {
+            for (PartitionEntry partitionEntry : result) {
+                partitionEntries[partitionEntry.partition].add(partitionEntry.entry);
             }
         }
 
@@ -274,6 +247,80 @@ public class MQMessageUtils {
         return partitionMessages;
     }
 
+    /**
+     * 计算单个entry的分区，按主键hash时拆分为每行一个entry
+     */
+    private static List<PartitionEntry> partitionEntry(Entry entry, int partitionsNum, String pkHashConfigs) {
+        CanalEntry.RowChange rowChange;
+        try {
+            rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        if (rowChange.getIsDdl()) {
+            return Collections.singletonList(new PartitionEntry(0, entry));
+        }
+
+        if (rowChange.getRowDatasList() == null || rowChange.getRowDatasList().isEmpty()) {
+            // 针对stmt/mixed binlog格式的query事件
+            return Collections.singletonList(new PartitionEntry(0, entry));
+        }
+
+        String database = entry.getHeader().getSchemaName();
+        String table = entry.getHeader().getTableName();
+        HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
+        if (hashMode == null) {
+            // 如果都没有匹配，发送到第一个分区
+            return Collections.singletonList(new PartitionEntry(0, entry));
+        } else if (hashMode.tableHash) {
+            int hashCode = table.hashCode();
+            int pkHash = Math.abs(hashCode) % partitionsNum;
+            pkHash = Math.abs(pkHash);
+            // tableHash not need split entry message
+            return Collections.singletonList(new PartitionEntry(pkHash, entry));
+        }
+
+        List<PartitionEntry> result = new ArrayList<>(rowChange.getRowDatasCount());
+        for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
+            int hashCode = database.hashCode();
+            CanalEntry.EventType eventType = rowChange.getEventType();
+            List<CanalEntry.Column> columns = null;
+            if (eventType == CanalEntry.EventType.DELETE) {
+                columns = rowData.getBeforeColumnsList();
+            } else {
+                columns = rowData.getAfterColumnsList();
+            }
+
+            if (hashMode.autoPkHash) {
+                // isEmpty use default pkNames
+                for (CanalEntry.Column column : columns) {
+                    if (column.getIsKey()) {
+                        hashCode = hashCode ^ TypedValueUtil.getString(column).hashCode();
+                    }
+                }
+            } else {
+                for (CanalEntry.Column column : columns) {
+                    if (checkPkNamesHasContain(hashMode.pkNames, column.getName())) {
+                        hashCode = hashCode ^ TypedValueUtil.getString(column).hashCode();
+                    }
+                }
+            }
+
+            int pkHash = Math.abs(hashCode) % partitionsNum;
+            pkHash = Math.abs(pkHash);
+            // build new entry
+            Entry.Builder builder = Entry.newBuilder(entry);
+            RowChange.Builder rowChangeBuilder = RowChange.newBuilder(rowChange);
+            rowChangeBuilder.clearRowDatas();
+            rowChangeBuilder.addRowDatas(rowData);
+            builder.clearStoreValue();
+            builder.setStoreValue(rowChangeBuilder.build().toByteString());
+            result.add(new PartitionEntry(pkHash, builder.build()));
+        }
+        return result;
+    }
+
     /**
      * 将Message转换为FlatMessage
      *
@@ -281,130 +328,145 @@ public class MQMessageUtils {
      * @return FlatMessage列表
      */
     public static List<FlatMessage> messageConverter(Message message) {
+        return messageConverter(message, null);
+    }
+
+    /**
+     * 将Message转换为FlatMessage，pool不为null时并行转换，返回结果保持entry原有顺序
+     *
+     * @param message 原生message
+     * @param pool 并行处理的线程池，为null时串行处理
+     * @return FlatMessage列表
+     */
+    public static List<FlatMessage> messageConverter(final Message message, ForkJoinPool pool) {
         try {
             if (message == null) {
                 return null;
             }
 
-            List<FlatMessage> flatMessages = new ArrayList<>();
-            List<CanalEntry.Entry> entrys = null;
-            if (message.isRaw()) {
-                List<ByteString> rawEntries = message.getRawEntries();
-                entrys = new ArrayList<CanalEntry.Entry>(rawEntries.size());
-                for (ByteString byteString : rawEntries) {
-                    CanalEntry.Entry entry = CanalEntry.Entry.parseFrom(byteString);
-                    entrys.add(entry);
+            List<FlatMessage> results = parallelMap(getEntrySources(message), new Function<Object, FlatMessage>() {
+
+                public FlatMessage apply(Object source) {
+                    return entryConverter(toEntry(source), message.getId());
+                }
+            }, pool);
+
+            List<FlatMessage> flatMessages = new ArrayList<>(results.size());
+            for (FlatMessage flatMessage : results) {
+                if (flatMessage != null) {
+                    flatMessages.add(flatMessage);
                 }
-            } else {
-                entrys = message.getEntries();
             }
+            return flatMessages;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 将单个entry转换为FlatMessage，事务头尾返回null
+     */
+    private static FlatMessage entryConverter(CanalEntry.Entry entry, long messageId) {
+        if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN
+            || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+            return null;
+        }
+
+        CanalEntry.RowChange rowChange;
+        try {
+            rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
+        } catch (Exception e) {
+            throw new RuntimeException("ERROR ## parser of eromanga-event has an error , data:"
+                                       + entry.toString(), e);
+        }
 
-            for (CanalEntry.Entry entry : entrys) {
-                if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN
-                    || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND) {
+        CanalEntry.EventType eventType = rowChange.getEventType();
+
+        FlatMessage flatMessage = new FlatMessage(messageId);
+        flatMessage.setDatabase(entry.getHeader().getSchemaName());
+        flatMessage.setTable(entry.getHeader().getTableName());
+        flatMessage.setIsDdl(rowChange.getIsDdl());
+        flatMessage.setType(eventType.toString());
+        flatMessage.setEs(entry.getHeader().getExecuteTime());
+        flatMessage.setTs(System.currentTimeMillis());
+        flatMessage.setSql(rowChange.getSql());
+
+        if (!rowChange.getIsDdl()) {
+            Map<String, Integer> sqlType = new LinkedHashMap<>();
+            Map<String, String> mysqlType = new LinkedHashMap<>();
+            List<Map<String, String>> data = new ArrayList<>();
+            List<Map<String, String>> old = new ArrayList<>();
+
+            Set<String> updateSet = new HashSet<>();
+            boolean hasInitPkNames = false;
+            for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
+                if (eventType != CanalEntry.EventType.INSERT && eventType != CanalEntry.EventType.UPDATE
+                    && eventType != CanalEntry.EventType.DELETE) {
                     continue;
                 }
 
-                CanalEntry.RowChange rowChange;
-                try {
-                    rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
-                } catch (Exception e) {
-                    throw new RuntimeException("ERROR ## parser of eromanga-event has an error , data:"
-                                               + entry.toString(), e);
-                }
+                Map<String, String> row = new LinkedHashMap<>();
+                List<CanalEntry.Column> columns;
 
-                CanalEntry.EventType eventType = rowChange.getEventType();
-
-                FlatMessage flatMessage = new FlatMessage(message.getId());
-                flatMessages.add(flatMessage);
-                flatMessage.setDatabase(entry.getHeader().getSchemaName());
-                flatMessage.setTable(entry.getHeader().getTableName());
-                flatMessage.setIsDdl(rowChange.getIsDdl());
-                flatMessage.setType(eventType.toString());
-                flatMessage.setEs(entry.getHeader().getExecuteTime());
-                flatMessage.setTs(System.currentTimeMillis());
-                flatMessage.setSql(rowChange.getSql());
-
-                if (!rowChange.getIsDdl()) {
-                    Map<String, Integer> sqlType = new LinkedHashMap<>();
-                    Map<String, String> mysqlType = new LinkedHashMap<>();
-                    List<Map<String, String>> data = new ArrayList<>();
-                    List<Map<String, String>> old = new ArrayList<>();
-
-                    Set<String> updateSet = new HashSet<>();
-                    boolean hasInitPkNames = false;
-                    for (CanalEntry.RowData rowData : rowChange.getRowDatasList()) {
-                        if (eventType != CanalEntry.EventType.INSERT && eventType != CanalEntry.EventType.UPDATE
-                            && eventType != CanalEntry.EventType.DELETE) {
-                            continue;
-                        }
+                if (eventType == CanalEntry.EventType.DELETE) {
+                    columns = rowData.getBeforeColumnsList();
+                } else {
+                    columns = rowData.getAfterColumnsList();
+                }
 
-                        Map<String, String> row = new LinkedHashMap<>();
-                        List<CanalEntry.Column> columns;
+                for (CanalEntry.Column column : columns) {
+                    if (!hasInitPkNames && column.getIsKey()) {
+                        flatMessage.addPkName(column.getName());
+                    }
+                    sqlType.put(column.getName(), column.getSqlType());
+                    mysqlType.put(column.getName(), column.getMysqlType());
+                    if (column.getIsNull()) {
+                        row.put(column.getName(), null);
+                    } else {
+                        row.put(column.getName(), TypedValueUtil.getString(column));
+                    }
+                    // 获取update为true的字段
+                    if (column.getUpdated()) {
+                        updateSet.add(column.getName());
+                    }
+                }
 
-                        if (eventType == CanalEntry.EventType.DELETE) {
-                            columns = rowData.getBeforeColumnsList();
-                        } else {
-                            columns = rowData.getAfterColumnsList();
-                        }
+                hasInitPkNames = true;
+                if (!row.isEmpty()) {
+                    data.add(row);
+                }
 
-                        for (CanalEntry.Column column : columns) {
-                            if (!hasInitPkNames && column.getIsKey()) {
-                                flatMessage.addPkName(column.getName());
-                            }
-                            sqlType.put(column.getName(), column.getSqlType());
-                            mysqlType.put(column.getName(), column.getMysqlType());
+                if (eventType == CanalEntry.EventType.UPDATE) {
+                    Map<String, String> rowOld = new LinkedHashMap<>();
+                    for (CanalEntry.Column column : rowData.getBeforeColumnsList()) {
+                        if (updateSet.contains(column.getName())) {
                             if (column.getIsNull()) {
-                                row.put(column.getName(), null);
+                                rowOld.put(column.getName(), null);
                             } else {
-                                row.put(column.getName(), column.getValue());
-                            }
-                            // 获取update为true的字段
-                            if (column.getUpdated()) {
-                                updateSet.add(column.getName());
-                            }
-                        }
-
-                        hasInitPkNames = true;
-                        if (!row.isEmpty()) {
-                            data.add(row);
-                        }
-
-                        if (eventType == CanalEntry.EventType.UPDATE) {
-                            Map<String, String> rowOld = new LinkedHashMap<>();
-                            for (CanalEntry.Column column : rowData.getBeforeColumnsList()) {
-                                if (updateSet.contains(column.getName())) {
-                                    if (column.getIsNull()) {
-                                        rowOld.put(column.getName(), null);
-                                    } else {
-                                        rowOld.put(column.getName(), column.getValue());
-                                    }
-                                }
-                            }
-                            // update操作将记录修改前的值
-                            if (!rowOld.isEmpty()) {
-                                old.add(rowOld);
+                                rowOld.put(column.getName(), TypedValueUtil.getString(column));
                             }
                         }
                     }
-                    if (!sqlType.isEmpty()) {
-                        flatMessage.setSqlType(sqlType);
-                    }
-                    if (!mysqlType.isEmpty()) {
-                        flatMessage.setMysqlType(mysqlType);
-                    }
-                    if (!data.isEmpty()) {
-                        flatMessage.setData(data);
-                    }
-                    if (!old.isEmpty()) {
-                        flatMessage.setOld(old);
+                    // update操作将记录修改前的值
+                    if (!rowOld.isEmpty()) {
+                        old.add(rowOld);
                     }
                 }
             }
-            return flatMessages;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            if (!sqlType.isEmpty()) {
+                flatMessage.setSqlType(sqlType);
+            }
+            if (!mysqlType.isEmpty()) {
+                flatMessage.setMysqlType(mysqlType);
+            }
+            if (!data.isEmpty()) {
+                flatMessage.setData(data);
+            }
+            if (!old.isEmpty()) {
+                flatMessage.setOld(old);
+            }
         }
+        return flatMessage;
     }
 
     /**
@@ -508,6 +570,16 @@ public class MQMessageUtils {
             return null;
         }
 
+        Map<String, HashMode> hashModes = partitionHashModes.get(pkHashConfigs);
+        HashMode hashMode = hashModes.get(name);
+        if (hashMode == null) {
+            hashMode = matchPartitionHashColumns(name, pkHashConfigs);
+            hashModes.put(name, hashMode != null ? hashMode : NOT_MATCH);
+        }
+        return hashMode != NOT_MATCH ? hashMode : null;
+    }
+
+    private static HashMode matchPartitionHashColumns(String name, String pkHashConfigs) {
         List<PartitionData> datas = partitionDatas.get(pkHashConfigs);
         for (PartitionData data : datas) {
             if (data.simpleName != null) {
@@ -525,6 +597,17 @@ public class MQMessageUtils {
     }
 
     private static Set<String> matchTopics(String name, String dynamicTopicConfigs) {
+        Map<String, Set<String>> topicsMap = matchedTopics.get(dynamicTopicConfigs);
+        Set<String> topics = topicsMap.get(name);
+        if (topics == null) {
+            topics = doMatchTopics(name, dynamicTopicConfigs);
+            topics = topics != null ? Collections.unmodifiableSet(topics) : Collections.<String> emptySet();
+            topicsMap.put(name, topics);
+        }
+        return topics.isEmpty() ? null : topics;
+    }
+
+    private static Set<String> doMatchTopics(String name, String dynamicTopicConfigs) {
         String[] router = StringUtils.split(StringUtils.replace(dynamicTopicConfigs, ",", ";"), ";");
         Set<String> topics = new HashSet<>();
         for (String item : router) {
@@ -586,6 +669,44 @@ public class MQMessageUtils {
                 '^' });
     }
 
+    /**
+     * 按顺序对list中的每个元素执行function，pool不为null且元素足够多时拆分为多个子任务并行执行，返回结果与list的顺序一致
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> List<R> parallelMap(List<T> list, Function<T, R> function, ForkJoinPool pool) {
+        if (pool == null || list.size() < PARALLEL_THRESHOLD * 2) {
+            List<R> results = new ArrayList<>(list.size());
+            for (T t : list) {
+                results.add(function.apply(t));
+            }
+            return results;
+        }
+
+        Object[] results = new Object[list.size()];
+        pool.invoke(new MapAction<>(list, function, results, 0, list.size()));
+        return (List<R>) Arrays.asList(results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> getEntrySources(Message message) {
+        if (message.isRaw()) {
+            return (List<Object>) (List<?>) message.getRawEntries();
+        } else {
+            return (List<Object>) (List<?>) message.getEntries();
+        }
+    }
+
+    private static Entry toEntry(Object source) {
+        if (source instanceof ByteString) {
+            try {
+                return Entry.parseFrom((ByteString) source);
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return (Entry) source;
+    }
+
     private static void put2MapMessage(Map<String, Message> messageMap, Long messageId, String topicName,
                                        CanalEntry.Entry entry) {
         Message message = messageMap.get(topicName);
@@ -610,6 +731,49 @@ public class MQMessageUtils {
         public List<String> pkNames    = Lists.newArrayList();
     }
 
+    private static class PartitionEntry {
+
+        private final int   partition;
+        private final Entry entry;
+
+        public PartitionEntry(int partition, Entry entry){
+            this.partition = partition;
+            this.entry = entry;
+        }
+    }
+
+    private static class MapAction<T, R> extends RecursiveAction {
+
+        private static final long    serialVersionUID = 1L;
+
+        private final List<T>        list;
+        private final Function<T, R> function;
+        private final Object[]       results;
+        private final int            start;
+        private final int            end;
+
+        public MapAction(List<T> list, Function<T, R> function, Object[] results, int start, int end){
+            this.list = list;
+            this.function = function;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    results[i] = function.apply(list.get(i));
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new MapAction<>(list, function, results, start, middle),
+                    new MapAction<>(list, function, results, middle, end));
+            }
+        }
+    }
+
     public static class DynamicTopicData {
 
         public String             simpleName;
@@ -20,6 +20,8 @@ public class MQProperties {
     private String     producerGroup          = "Canal-Producer";
     private int        canalBatchSize         = 50;
     private Long       canalGetTimeout        = 100L;
+    private int        maxInFlightBatches     = 1;               // 同时在途未确认的batch数，大于1时开启异步流水线发送
+    private int        parallelThreadSize     = 1;               // 分区hash和flatMessage转换的并行线程数，大于1时开启并行处理
     private boolean    flatMessage            = true;
     private String     compressionType        = "none";
     private String     acks                   = "all";
@@ -148,6 +150,22 @@ public class MQProperties {
         this.canalGetTimeout = canalGetTimeout;
     }
 
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    public int getParallelThreadSize() {
+        return parallelThreadSize;
+    }
+
+    public void setParallelThreadSize(int parallelThreadSize) {
+        this.parallelThreadSize = parallelThreadSize;
+    }
+
     public boolean getFlatMessage() {
         return flatMessage;
     }
@@ -281,8 +299,8 @@ public class MQProperties {
         return "MQProperties{" + "servers='" + servers + '\'' + ", retries=" + retries + ", batchSize=" + batchSize
                + ", lingerMs=" + lingerMs + ", maxRequestSize=" + maxRequestSize + ", bufferMemory=" + bufferMemory
                + ", filterTransactionEntry=" + filterTransactionEntry + ", producerGroup='" + producerGroup + '\''
-               + ", canalBatchSize=" + canalBatchSize + ", canalGetTimeout=" + canalGetTimeout + ", flatMessage="
-               + flatMessage + ", compressionType='" + compressionType + '\'' + ", acks='" + acks + '\''
+               + ", canalBatchSize=" + canalBatchSize + ", canalGetTimeout=" + canalGetTimeout + ", maxInFlightBatches="
+               + maxInFlightBatches + ", parallelThreadSize=" + parallelThreadSize + ", flatMessage=" + flatMessage + ", compressionType='" + compressionType + '\'' + ", acks='" + acks + '\''
                + ", aliyunAccessKey='" + aliyunAccessKey + '\'' + ", aliyunSecretKey='" + aliyunSecretKey + '\''
                + ", properties=" + properties + ", enableMessageTrace=" + enableMessageTrace + ", accessChannel='"
                + accessChannel + '\'' + ", customizedTraceTopic='" + customizedTraceTopic + '\'' + ", namespace='"
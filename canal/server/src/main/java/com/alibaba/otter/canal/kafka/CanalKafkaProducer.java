@@ -6,12 +6,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +27,7 @@ import com.alibaba.otter.canal.common.MQProperties;
 import com.alibaba.otter.canal.protocol.FlatMessage;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.spi.CanalMQProducer;
+import com.google.common.base.Function;
 
 /**
  * kafka producer 主操作类
@@ -37,6 +42,7 @@ public class CanalKafkaProducer implements CanalMQProducer {
     private Producer<String, Message> producer;
     private Producer<String, String>  producer2;                                                 // 用于扁平message的数据投递
     private MQProperties              kafkaProperties;
+    private ForkJoinPool              parallelPool;                                              // 分区hash和flatMessage转换的并行线程池
 
     @Override
     public void init(MQProperties kafkaProperties) {
@@ -73,6 +79,10 @@ public class CanalKafkaProducer implements CanalMQProducer {
             }
         }
 
+        if (kafkaProperties.getParallelThreadSize() > 1) {
+            parallelPool = new ForkJoinPool(kafkaProperties.getParallelThreadSize());
+        }
+
         if (!kafkaProperties.getFlatMessage()) {
             properties.put("value.serializer", MessageSerializer.class.getName());
             producer = new KafkaProducer<String, Message>(properties);
@@ -92,6 +102,9 @@ public class CanalKafkaProducer implements CanalMQProducer {
             if (producer2 != null) {
                 producer2.close();
             }
+            if (parallelPool != null) {
+                parallelPool.shutdownNow();
+            }
         } catch (Throwable e) {
             logger.warn("##something goes wrong when stopping kafka producer:", e);
         } finally {
@@ -101,6 +114,11 @@ public class CanalKafkaProducer implements CanalMQProducer {
 
     @Override
     public void send(MQProperties.CanalDestination canalDestination, Message message, Callback callback) {
+        if (kafkaProperties.getMaxInFlightBatches() > 1) {
+            sendAsync(canalDestination, message, callback);
+            return;
+        }
+
         try {
             if (!StringUtils.isEmpty(canalDestination.getDynamicTopic())) {
                 // 动态topic
@@ -126,14 +144,55 @@ public class CanalKafkaProducer implements CanalMQProducer {
         }
     }
 
+    /**
+     * 流水线模式，所有record异步发送不做flush，全部发送成功后回调commit，任意一个失败回调rollback
+     */
+    private void sendAsync(MQProperties.CanalDestination canalDestination, Message message, Callback callback) {
+        BatchCallback batchCallback = new BatchCallback(callback);
+        try {
+            List<ProducerRecord> records = new ArrayList<ProducerRecord>();
+            if (!StringUtils.isEmpty(canalDestination.getDynamicTopic())) {
+                // 动态topic
+                Map<String, Message> messageMap = MQMessageUtils.messageTopics(message,
+                    canalDestination.getTopic(),
+                    canalDestination.getDynamicTopic());
+
+                for (Map.Entry<String, Message> entry : messageMap.entrySet()) {
+                    send(canalDestination, entry.getKey(), entry.getValue(), records);
+                }
+            } else {
+                send(canalDestination, canalDestination.getTopic(), message, records);
+            }
+
+            Producer producerTmp = kafkaProperties.getFlatMessage() ? producer2 : producer;
+            batchCallback.expect(records.size());
+            // 同一个分区内的record按照send的顺序投递，配合max.in.flight.requests.per.connection=1保证顺序
+            for (ProducerRecord record : records) {
+                producerTmp.send(record, batchCallback);
+            }
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+            batchCallback.fail();
+        }
+    }
+
     private void send(MQProperties.CanalDestination canalDestination, String topicName, Message message)
                                                                                                         throws Exception {
+        send(canalDestination, topicName, message, null);
+    }
+
+    /**
+     * asyncRecords不为null时只构造record，由调用方异步发送
+     */
+    private void send(final MQProperties.CanalDestination canalDestination, final String topicName, Message message,
+                      List<ProducerRecord> asyncRecords) throws Exception {
         if (!kafkaProperties.getFlatMessage()) {
             List<ProducerRecord> records = new ArrayList<ProducerRecord>();
             if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
                 Message[] messages = MQMessageUtils.messagePartition(message,
                     canalDestination.getPartitionsNum(),
-                    canalDestination.getPartitionHash());
+                    canalDestination.getPartitionHash(),
+                    parallelPool);
                 int length = messages.length;
                 for (int i = 0; i < length; i++) {
                     Message messagePartition = messages[i];
@@ -146,41 +205,62 @@ public class CanalKafkaProducer implements CanalMQProducer {
                 records.add(new ProducerRecord<String, Message>(topicName, partition, null, message));
             }
 
-            produce(topicName, records, false);
+            if (asyncRecords != null) {
+                asyncRecords.addAll(records);
+            } else {
+                produce(topicName, records, false);
+            }
         } else {
             // 发送扁平数据json
-            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(message);
-            List<ProducerRecord> records = new ArrayList<ProducerRecord>();
+            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(message, parallelPool);
             if (flatMessages != null) {
-                for (FlatMessage flatMessage : flatMessages) {
-                    if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
-                        FlatMessage[] partitionFlatMessage = MQMessageUtils.messagePartition(flatMessage,
-                            canalDestination.getPartitionsNum(),
-                            canalDestination.getPartitionHash());
-                        int length = partitionFlatMessage.length;
-                        for (int i = 0; i < length; i++) {
-                            FlatMessage flatMessagePart = partitionFlatMessage[i];
-                            if (flatMessagePart != null) {
-                                records.add(new ProducerRecord<String, String>(topicName,
-                                    i,
-                                    null,
-                                    JSON.toJSONString(flatMessagePart, SerializerFeature.WriteMapNullValue)));
-                            }
+                // 分区hash和json序列化并行处理，结果保持flatMessage原有的顺序
+                List<List<ProducerRecord>> recordsList = MQMessageUtils.parallelMap(flatMessages,
+                    new Function<FlatMessage, List<ProducerRecord>>() {
+
+                        public List<ProducerRecord> apply(FlatMessage flatMessage) {
+                            return buildFlatRecords(canalDestination, topicName, flatMessage);
                         }
+                    },
+                    parallelPool);
+
+                for (List<ProducerRecord> records : recordsList) {
+                    if (asyncRecords != null) {
+                        asyncRecords.addAll(records);
                     } else {
-                        final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
-                        records.add(new ProducerRecord<String, String>(topicName,
-                            partition,
-                            null,
-                            JSON.toJSONString(flatMessage, SerializerFeature.WriteMapNullValue)));
+                        // 每条记录需要flush
+                        produce(topicName, records, true);
                     }
+                }
+            }
+        }
+    }
 
-                    // 每条记录需要flush
-                    produce(topicName, records, true);
-                    records.clear();
+    private List<ProducerRecord> buildFlatRecords(MQProperties.CanalDestination canalDestination, String topicName,
+                                                  FlatMessage flatMessage) {
+        List<ProducerRecord> records = new ArrayList<ProducerRecord>();
+        if (canalDestination.getPartitionHash() != null && !canalDestination.getPartitionHash().isEmpty()) {
+            FlatMessage[] partitionFlatMessage = MQMessageUtils.messagePartition(flatMessage,
+                canalDestination.getPartitionsNum(),
+                canalDestination.getPartitionHash());
+            int length = partitionFlatMessage.length;
+            for (int i = 0; i < length; i++) {
+                FlatMessage flatMessagePart = partitionFlatMessage[i];
+                if (flatMessagePart != null) {
+                    records.add(new ProducerRecord<String, String>(topicName,
+                        i,
+                        null,
+                        JSON.toJSONString(flatMessagePart, SerializerFeature.WriteMapNullValue)));
                 }
             }
+        } else {
+            final int partition = canalDestination.getPartition() != null ? canalDestination.getPartition() : 0;
+            records.add(new ProducerRecord<String, String>(topicName,
+                partition,
+                null,
+                JSON.toJSONString(flatMessage, SerializerFeature.WriteMapNullValue)));
         }
+        return records;
     }
 
     private void produce(String topicName, List<ProducerRecord> records, boolean flatMessage) {
@@ -218,4 +298,52 @@ public class CanalKafkaProducer implements CanalMQProducer {
         }
     }
 
+    /**
+     * 汇总一个batch内所有record的发送结果，只回调一次commit或rollback
+     */
+    private static class BatchCallback implements org.apache.kafka.clients.producer.Callback {
+
+        private final Callback      callback;
+        private final AtomicInteger remaining = new AtomicInteger(0);
+        private final AtomicBoolean done      = new AtomicBoolean(false);
+
+        public BatchCallback(Callback callback){
+            this.callback = callback;
+        }
+
+        /**
+         * 发送之前设置需要等待的record数量
+         */
+        public void expect(int count) {
+            remaining.set(count);
+            if (count == 0) {
+                finish(true);
+            }
+        }
+
+        public void fail() {
+            finish(false);
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            if (exception != null) {
+                logger.error(exception.getMessage(), exception);
+                finish(false);
+            } else if (remaining.decrementAndGet() == 0) {
+                finish(true);
+            }
+        }
+
+        private void finish(boolean success) {
+            if (done.compareAndSet(false, true)) {
+                if (success) {
+                    callback.commit();
+                } else {
+                    callback.rollback();
+                }
+            }
+        }
+    }
+
 }
@@ -2,6 +2,7 @@ package com.alibaba.otter.canal.rocketmq;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.rocketmq.acl.common.AclClientRPCHook;
@@ -33,6 +34,7 @@ public class CanalRocketMQProducer implements CanalMQProducer {
     private static final Logger logger               = LoggerFactory.getLogger(CanalRocketMQProducer.class);
     private DefaultMQProducer   defaultMQProducer;
     private MQProperties        mqProperties;
+    private ForkJoinPool        parallelPool;
     private static final String CLOUD_ACCESS_CHANNEL = "cloud";
 
     @Override
@@ -60,6 +62,9 @@ public class CanalRocketMQProducer implements CanalMQProducer {
         defaultMQProducer.setNamesrvAddr(rocketMQProperties.getServers());
         defaultMQProducer.setRetryTimesWhenSendFailed(rocketMQProperties.getRetries());
         defaultMQProducer.setVipChannelEnabled(false);
+        if (mqProperties.getParallelThreadSize() > 1) {
+            parallelPool = new ForkJoinPool(mqProperties.getParallelThreadSize());
+        }
         logger.info("##Start RocketMQ producer##");
         try {
             defaultMQProducer.start();
@@ -99,7 +104,8 @@ public class CanalRocketMQProducer implements CanalMQProducer {
                 if (destination.getPartitionHash() != null && !destination.getPartitionHash().isEmpty()) {
                     com.alibaba.otter.canal.protocol.Message[] messages = MQMessageUtils.messagePartition(data,
                         destination.getPartitionsNum(),
-                        destination.getPartitionHash());
+                        destination.getPartitionHash(),
+                        parallelPool);
                     int length = messages.length;
                     for (int i = 0; i < length; i++) {
                         com.alibaba.otter.canal.protocol.Message dataPartition = messages[i];
@@ -138,7 +144,7 @@ public class CanalRocketMQProducer implements CanalMQProducer {
                 throw e;
             }
         } else {
-            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(data);
+            List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(data, parallelPool);
             if (flatMessages != null) {
                 for (FlatMessage flatMessage : flatMessages) {
                     if (destination.getPartitionHash() != null && !destination.getPartitionHash().isEmpty()) {
@@ -212,5 +218,8 @@ public class CanalRocketMQProducer implements CanalMQProducer {
     public void stop() {
         logger.info("## Stop RocketMQ producer##");
         this.defaultMQProducer.shutdown();
+        if (parallelPool != null) {
+            parallelPool.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,187 @@
+package com.alibaba.otter.canal.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MQ流水线发送时的在途batch窗口
+ *
+ * <pre>
+ * 1. batch按照getWithoutAck返回的顺序加入窗口，MQ的回调可以乱序完成
+ * 2. 只有从最老的batch开始连续完成的部分才能被ack，保证ack严格按照batchId顺序
+ * 3. 出现失败后不再接收新的batch，等待在途batch全部返回后，由调用方从最老的失败batch开始rollback重放
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class CanalMQAckWindow {
+
+    private enum State {
+        PENDING, COMMITTED, FAILED
+    }
+
+    private final int              maxInFlight;
+    private final Map<Long, State> batches = new LinkedHashMap<Long, State>();
+    private final ReentrantLock    lock    = new ReentrantLock();
+    private final Condition        changed = lock.newCondition();
+    private int                    pending = 0;
+    private boolean                failed  = false;
+
+    public CanalMQAckWindow(int maxInFlight){
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : 1;
+    }
+
+    /**
+     * 等待窗口有空位，或者有可以ack/rollback的batch
+     *
+     * @return true代表可以继续获取新的batch
+     */
+    public boolean awaitSlot(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            for (;;) {
+                if (failed || isHeadCommitted()) {
+                    return false;
+                }
+                if (batches.size() < maxInFlight) {
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待所有在途的batch返回结果
+     */
+    public boolean awaitCompleted(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (pending > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void add(long batchId) {
+        lock.lock();
+        try {
+            batches.put(batchId, State.PENDING);
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * MQ发送成功的回调
+     */
+    public void commit(long batchId) {
+        complete(batchId, State.COMMITTED);
+    }
+
+    /**
+     * MQ发送失败的回调
+     */
+    public void rollback(long batchId) {
+        complete(batchId, State.FAILED);
+    }
+
+    private void complete(long batchId, State state) {
+        lock.lock();
+        try {
+            if (batches.get(batchId) == State.PENDING) {
+                batches.put(batchId, state);
+                pending--;
+                if (state == State.FAILED) {
+                    failed = true;
+                }
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按顺序取出从最老的batch开始连续发送成功的batchId，取出之后从窗口中移除
+     */
+    public List<Long> pollCommitted() {
+        lock.lock();
+        try {
+            List<Long> result = new ArrayList<Long>();
+            Iterator<Map.Entry<Long, State>> iterator = batches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, State> entry = iterator.next();
+                if (entry.getValue() != State.COMMITTED) {
+                    break;
+                }
+                result.add(entry.getKey());
+                iterator.remove();
+            }
+            if (!result.isEmpty()) {
+                changed.signalAll();
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isFailed() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * rollback之后清空窗口，后续回调全部忽略
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            batches.clear();
+            pending = 0;
+            failed = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return batches.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isHeadCommitted() {
+        Iterator<State> iterator = batches.values().iterator();
+        return iterator.hasNext() && iterator.next() == State.COMMITTED;
+    }
+}
@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.server;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -163,6 +164,11 @@ public class CanalMQStarter {
                 canalServer.subscribe(clientIdentity);
                 logger.info("## the MQ producer: {} is running now ......", destination);
 
+                if (properties.getMaxInFlightBatches() > 1) {
+                    pipelinedWorker(clientIdentity, canalDestination, destinationRunning);
+                    continue;
+                }
+
                 Long getTimeout = properties.getCanalGetTimeout();
                 int getBatchSize = properties.getCanalBatchSize();
                 while (running && destinationRunning.get()) {
@@ -210,6 +216,89 @@ public class CanalMQStarter {
         }
     }
 
+    /**
+     * 流水线模式，最多maxInFlightBatches个batch同时在途，MQ回调完成后按照batchId顺序ack
+     */
+    private void pipelinedWorker(final ClientIdentity clientIdentity,
+                                 MQProperties.CanalDestination canalDestination,
+                                 AtomicBoolean destinationRunning) throws InterruptedException {
+        Long getTimeout = properties.getCanalGetTimeout();
+        int getBatchSize = properties.getCanalBatchSize();
+        final CanalMQAckWindow window = new CanalMQAckWindow(properties.getMaxInFlightBatches());
+        try {
+            doPipelinedWork(clientIdentity, canalDestination, destinationRunning, window, getTimeout, getBatchSize);
+        } catch (RuntimeException e) {
+            // 放弃当前窗口中所有未ack的batch，重新订阅后从最后一次ack的位置重放
+            window.clear();
+            canalServer.rollback(clientIdentity);
+            throw e;
+        }
+    }
+
+    private void doPipelinedWork(ClientIdentity clientIdentity, MQProperties.CanalDestination canalDestination,
+                                 AtomicBoolean destinationRunning, final CanalMQAckWindow window, Long getTimeout,
+                                 int getBatchSize) throws InterruptedException {
+        while (running && destinationRunning.get()) {
+            ackCommitted(clientIdentity, window);
+            if (window.isFailed()) {
+                // 等待在途的batch全部返回，失败点之前的batch按顺序ack之后，从最老的失败batch开始重放
+                if (!window.awaitCompleted(100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                ackCommitted(clientIdentity, window);
+                canalServer.rollback(clientIdentity);
+                window.clear();
+                continue;
+            }
+
+            if (!window.awaitSlot(100, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+
+            Message message;
+            if (getTimeout != null && getTimeout > 0) {
+                message = canalServer.getWithoutAck(clientIdentity, getBatchSize, getTimeout, TimeUnit.MILLISECONDS);
+            } else {
+                message = canalServer.getWithoutAck(clientIdentity, getBatchSize);
+            }
+
+            final long batchId = message.getId();
+            int size = message.isRaw() ? message.getRawEntries().size() : message.getEntries().size();
+            if (batchId == -1 || size == 0) {
+                if (window.size() == 0) {
+                    Thread.sleep(100);
+                }
+                continue;
+            }
+
+            window.add(batchId);
+            try {
+                canalMQProducer.send(canalDestination, message, new CanalMQProducer.Callback() {
+
+                    @Override
+                    public void commit() {
+                        window.commit(batchId);
+                    }
+
+                    @Override
+                    public void rollback() {
+                        window.rollback(batchId);
+                    }
+                }); // 发送message到topic
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                window.rollback(batchId);
+            }
+        }
+    }
+
+    private void ackCommitted(ClientIdentity clientIdentity, CanalMQAckWindow window) {
+        List<Long> batchIds = window.pollCommitted();
+        for (Long batchId : batchIds) {
+            canalServer.ack(clientIdentity, batchId); // 提交确认
+        }
+    }
+
     private class CanalMQRunnable implements Runnable {
 
         private String destination;
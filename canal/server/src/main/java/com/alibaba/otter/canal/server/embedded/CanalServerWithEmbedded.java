@@ -32,7 +32,8 @@ import com.alibaba.otter.canal.spi.CanalMetricsProvider;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import com.alibaba.otter.canal.spi.NopCanalMetricsService;
 import com.alibaba.otter.canal.store.CanalEventStore;
-import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.CanalFanoutEventStore;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
 import com.google.common.base.Function;
@@ -50,14 +51,15 @@ import com.google.protobuf.ByteString;
  */
 public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements CanalServer, CanalService {
 
-    private static final Logger        logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
-    private Map<String, CanalInstance> canalInstances;
+    private static final Logger         logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
+    private Map<String, CanalInstance>  canalInstances;
+    private Map<ClientIdentity, Object> clientMutexes;                                                  // 每个订阅者的同步对象
     // private Map<ClientIdentity, Position> lastRollbackPostions;
-    private CanalInstanceGenerator     canalInstanceGenerator;
-    private int                        metricsPort;
-    private CanalMetricsService        metrics = NopCanalMetricsService.NOP;
-    private String                     user;
-    private String                     passwd;
+    private CanalInstanceGenerator      canalInstanceGenerator;
+    private int                         metricsPort;
+    private CanalMetricsService         metrics = NopCanalMetricsService.NOP;
+    private String                      user;
+    private String                      passwd;
 
     private static class SingletonHolder {
 
@@ -86,6 +88,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 }
             });
 
+            clientMutexes = MigrateMap.makeComputingMap(new Function<ClientIdentity, Object>() {
+
+                public Object apply(ClientIdentity clientIdentity) {
+                    return new Object();
+                }
+            });
+
             // lastRollbackPostions = new MapMaker().makeMap();
         }
     }
@@ -184,10 +193,14 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
 
         canalInstance.getMetaManager().subscribe(clientIdentity); // 执行一下meta订阅
-
         Position position = canalInstance.getMetaManager().getCursor(clientIdentity);
+        if (canalInstance.getEventStore() instanceof CanalFanoutEventStore) {
+            // 执行一下store订阅，按meta中的cursor定位
+            ((CanalFanoutEventStore) canalInstance.getEventStore()).subscribe(clientIdentity, position);
+        }
+
         if (position == null) {
-            position = canalInstance.getEventStore().getFirstPosition();// 获取一下store中的第一条
+            position = getFirstPosition(canalInstance.getEventStore(), clientIdentity);// 获取一下store中的第一条
             if (position != null) {
                 canalInstance.getMetaManager().updateCursor(clientIdentity, position); // 更新一下cursor
             }
@@ -207,6 +220,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     public void unsubscribe(ClientIdentity clientIdentity) throws CanalServerException {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         canalInstance.getMetaManager().unsubscribe(clientIdentity); // 执行一下meta订阅
+        if (canalInstance.getEventStore() instanceof CanalFanoutEventStore) {
+            ((CanalFanoutEventStore) canalInstance.getEventStore()).unsubscribe(clientIdentity); // 释放该订阅者占用的数据
+        }
 
         logger.info("unsubscribe successfully, {}", clientIdentity);
     }
@@ -250,7 +266,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkStart(clientIdentity.getDestination());
         checkSubscribe(clientIdentity);
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        synchronized (getMutex(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
@@ -262,7 +278,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
 
             Events<Event> events = null;
             Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
-            events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+            events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
 
             if (CollectionUtils.isEmpty(events.getEvents())) {
                 logger.debug("get successfully, clientId:{} batchSize:{} but result is null",
@@ -338,20 +354,20 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkSubscribe(clientIdentity);
 
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        synchronized (getMutex(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
             Events<Event> events = null;
             if (positionRanges != null) { // 存在流数据
-                events = getEvents(canalInstance.getEventStore(), positionRanges.getStart(), batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(), clientIdentity, positionRanges.getStart(), batchSize, timeout, unit);
             } else {// ack后第一次获取
                 Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
                 if (start == null) { // 第一次，还没有过ack记录，则获取当前store中的第一条
-                    start = canalInstance.getEventStore().getFirstPosition();
+                    start = getFirstPosition(canalInstance.getEventStore(), clientIdentity);
                 }
 
-                events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
             }
 
             if (CollectionUtils.isEmpty(events.getEvents())) {
@@ -459,7 +475,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
 
         // 可定时清理数据
-        canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        if (canalInstance.getEventStore() instanceof CanalFanoutEventStore) {
+            ((CanalFanoutEventStore) canalInstance.getEventStore()).ack(clientIdentity,
+                positionRanges.getEnd(),
+                positionRanges.getEndSeq());
+        } else {
+            canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        }
     }
 
     /**
@@ -475,11 +497,11 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             return;
         }
 
-        synchronized (canalInstance) {
+        synchronized (getMutex(canalInstance, clientIdentity)) {
             // 清除batch信息
             canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
             // rollback eventStore中的状态信息
-            canalInstance.getEventStore().rollback();
+            rollback(canalInstance.getEventStore(), clientIdentity);
             logger.info("rollback successfully, clientId:{}", new Object[] { clientIdentity.getClientId() });
         }
     }
@@ -497,7 +519,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         if (!hasSubscribe) {
             return;
         }
-        synchronized (canalInstance) {
+        synchronized (getMutex(canalInstance, clientIdentity)) {
             // 清除batch信息
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().removeBatch(clientIdentity,
                 batchId);
@@ -510,8 +532,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             // lastRollbackPostions.put(clientIdentity,
             // positionRanges.getEnd());// 记录一下最后rollback的位置
             // TODO 后续rollback到指定的batchId位置
-            canalInstance.getEventStore().rollback();// rollback
-                                                     // eventStore中的状态信息
+            rollback(canalInstance.getEventStore(), clientIdentity);// rollback
+                                                                    // eventStore中的状态信息
             logger.info("rollback successfully, clientId:{} batchId:{} position:{}",
                 clientIdentity.getClientId(),
                 batchId,
@@ -528,8 +550,12 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     /**
      * 根据不同的参数，选择不同的方式获取数据
      */
-    private Events<Event> getEvents(CanalEventStore eventStore, Position start, int batchSize, Long timeout,
-                                    TimeUnit unit) {
+    private Events<Event> getEvents(CanalEventStore eventStore, ClientIdentity clientIdentity, Position start,
+                                    int batchSize, Long timeout, TimeUnit unit) {
+        if (eventStore instanceof CanalFanoutEventStore) {
+            return getEvents((CanalFanoutEventStore<Event>) eventStore, clientIdentity, start, batchSize, timeout, unit);
+        }
+
         if (timeout == null) {
             return eventStore.tryGet(start, batchSize);
         } else {
@@ -545,6 +571,53 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    /**
+     * 多订阅者的store，按照clientIdentity独立获取数据
+     */
+    private Events<Event> getEvents(CanalFanoutEventStore<Event> eventStore, ClientIdentity clientIdentity,
+                                    Position start, int batchSize, Long timeout, TimeUnit unit) {
+        if (timeout == null) {
+            return eventStore.tryGet(clientIdentity, start, batchSize);
+        } else {
+            try {
+                if (timeout <= 0) {
+                    return eventStore.get(clientIdentity, start, batchSize);
+                } else {
+                    return eventStore.get(clientIdentity, start, batchSize, timeout, unit);
+                }
+            } catch (Exception e) {
+                throw new CanalServerException(e);
+            }
+        }
+    }
+
+    /**
+     * meta获取和数据获取需要保证顺序的同步对象，fanout store中每个订阅者的cursor相互独立，只需要按订阅者同步，不同订阅者可以并发获取
+     */
+    private Object getMutex(CanalInstance canalInstance, ClientIdentity clientIdentity) {
+        if (canalInstance.getEventStore() instanceof CanalFanoutEventStore) {
+            return clientMutexes.get(clientIdentity);
+        }
+
+        return canalInstance;
+    }
+
+    private Position getFirstPosition(CanalEventStore eventStore, ClientIdentity clientIdentity) {
+        if (eventStore instanceof CanalFanoutEventStore) {
+            return ((CanalFanoutEventStore) eventStore).getFirstPosition(clientIdentity);
+        }
+
+        return eventStore.getFirstPosition();
+    }
+
+    private void rollback(CanalEventStore eventStore, ClientIdentity clientIdentity) {
+        if (eventStore instanceof CanalFanoutEventStore) {
+            ((CanalFanoutEventStore) eventStore).rollback(clientIdentity);
+        } else {
+            eventStore.rollback();
+        }
+    }
+
     private void checkSubscribe(ClientIdentity clientIdentity) {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         boolean hasSubscribe = canalInstance.getMetaManager().hasSubscribe(clientIdentity);
@@ -582,8 +655,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     }
 
     private boolean isRaw(CanalEventStore eventStore) {
-        if (eventStore instanceof MemoryEventStoreWithBuffer) {
-            return ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        if (eventStore instanceof CanalStoreMetrics) {
+            return ((CanalStoreMetrics) eventStore).isRaw();
         }
 
         return true;
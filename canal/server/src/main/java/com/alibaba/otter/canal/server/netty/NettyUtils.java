@@ -1,5 +1,6 @@
 package com.alibaba.otter.canal.server.netty;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
@@ -19,6 +20,10 @@ import org.slf4j.LoggerFactory;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Ack;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
 
 public class NettyUtils {
 
@@ -50,6 +55,83 @@ public class NettyUtils {
         }
     }
 
+    /**
+     * 写出{@linkplain #messagesPacket}构造的数据包，packet中已经包含了header
+     */
+    public static void writePacket(Channel channel, ChannelBuffer packet, ChannelFutureListener channelFutureListner) {
+        if (channelFutureListner == null) {
+            Channels.write(channel, packet);
+        } else {
+            Channels.write(channel, packet).addListener(channelFutureListner);
+        }
+    }
+
+    /**
+     * 计算Messages序列化后的大小
+     */
+    public static int computeMessagesSize(long batchId, List<ByteString> messages) {
+        int size = CodedOutputStream.computeInt64Size(1, batchId);
+        for (ByteString message : messages) {
+            size += CodedOutputStream.computeBytesSize(2, message);
+        }
+        return size;
+    }
+
+    /**
+     * 构造包含header的MESSAGES包，每个message直接引用ByteString的内存，不再拷贝到一个完整的byte[]中
+     *
+     * <pre>
+     * 1. header、Packet/Messages的字段头写入一个小数组
+     * 2. 所有message的tag+length写入一个共享的小数组，按照偏移量切分
+     * 3. 以上数组和message的内存按顺序组装为CompositeChannelBuffer
+     * </pre>
+     */
+    public static ChannelBuffer messagesPacket(long batchId, List<ByteString> messages) throws IOException {
+        int messagesSize = computeMessagesSize(batchId, messages);
+        int headSize = CodedOutputStream.computeInt32Size(2, VERSION)
+                       + CodedOutputStream.computeEnumSize(3, PacketType.MESSAGES.getNumber())
+                       + CodedOutputStream.computeTagSize(5)
+                       + CodedOutputStream.computeRawVarint32Size(messagesSize)
+                       + CodedOutputStream.computeInt64Size(1, batchId);
+        int packetSize = headSize - CodedOutputStream.computeInt64Size(1, batchId) + messagesSize;
+
+        byte[] head = new byte[HEADER_LENGTH + headSize];
+        ByteBuffer.wrap(head).order(ByteOrder.BIG_ENDIAN).putInt(packetSize);
+        CodedOutputStream output = CodedOutputStream.newInstance(head, HEADER_LENGTH, headSize);
+        output.writeInt32(2, VERSION);
+        output.writeEnum(3, PacketType.MESSAGES.getNumber());
+        output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeRawVarint32(messagesSize);
+        output.writeInt64(1, batchId);
+        output.checkNoSpaceLeft();
+
+        int prefixSize = 0;
+        for (ByteString message : messages) {
+            prefixSize += CodedOutputStream.computeTagSize(2) + CodedOutputStream.computeRawVarint32Size(message.size());
+        }
+        byte[] prefixes = new byte[prefixSize];
+        output = CodedOutputStream.newInstance(prefixes);
+
+        List<ChannelBuffer> components = new ArrayList<ChannelBuffer>(messages.size() * 2 + 1);
+        components.add(ChannelBuffers.wrappedBuffer(head));
+        int offset = 0;
+        for (ByteString message : messages) {
+            output.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(message.size());
+            int length = prefixSize - output.spaceLeft() - offset;
+            components.add(ChannelBuffers.wrappedBuffer(prefixes, offset, length));
+            offset += length;
+            // 只读的ByteBuffer直接引用ByteString内部的数组
+            for (ByteBuffer buffer : message.asReadOnlyByteBufferList()) {
+                if (buffer.hasRemaining()) {
+                    components.add(ChannelBuffers.wrappedBuffer(buffer.order(ByteOrder.BIG_ENDIAN)));
+                }
+            }
+        }
+        output.checkNoSpaceLeft();
+        return new CompositeChannelBuffer(ByteOrder.BIG_ENDIAN, components);
+    }
+
     public static void ack(Channel channel, ChannelFutureListener channelFutureListner) {
         write(channel,
             Packet.newBuilder()
@@ -20,8 +20,10 @@ import org.slf4j.helpers.MessageFormatter;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitor;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningMonitors;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientAuth;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.CompressionUtil;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 
@@ -86,6 +88,13 @@ public class ClientAuthenticationHandler extends SimpleChannelHandler {
                         MDC.remove("destination");
                     }
                 }
+                // client在认证包中声明期望的压缩方式，不支持的压缩方式按照不压缩处理
+                Compression compression = packet.getCompression();
+                if (!CompressionUtil.isSupported(compression)) {
+                    compression = Compression.NONE;
+                }
+                SessionHandler sessionHandler = (SessionHandler) ctx.getPipeline().get(SessionHandler.class.getName());
+                sessionHandler.setCompression(compression);
                 // 鉴权一次性，暂不统计
                 NettyUtils.ack(ctx.getChannel(), new ChannelFutureListener() {
 
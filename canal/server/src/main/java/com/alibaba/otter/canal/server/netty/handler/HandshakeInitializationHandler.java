@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.Handshake;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CompressionUtil;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.google.protobuf.ByteString;
 
@@ -42,7 +43,11 @@ public class HandshakeInitializationHandler extends SimpleChannelHandler {
         byte[] body = Packet.newBuilder()
             .setType(CanalPacket.PacketType.HANDSHAKE)
             .setVersion(NettyUtils.VERSION)
-            .setBody(Handshake.newBuilder().setSeeds(ByteString.copyFrom(seed)).build().toByteString())
+            .setBody(Handshake.newBuilder()
+                .setSeeds(ByteString.copyFrom(seed))
+                .setSupportedCompressions(CompressionUtil.PREFERRED)
+                .build()
+                .toByteString())
             .build()
             .toByteArray();
 
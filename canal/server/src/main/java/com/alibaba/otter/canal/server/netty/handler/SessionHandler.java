@@ -1,11 +1,15 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -23,25 +27,33 @@ import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
 import com.alibaba.otter.canal.protocol.CanalPacket;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientAck;
 import com.alibaba.otter.canal.protocol.CanalPacket.ClientRollback;
+import com.alibaba.otter.canal.protocol.CanalPacket.Compression;
 import com.alibaba.otter.canal.protocol.CanalPacket.Get;
-import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
 import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
 import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
 import com.alibaba.otter.canal.protocol.CanalPacket.Sub;
 import com.alibaba.otter.canal.protocol.CanalPacket.Unsub;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.CompressionUtil;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.listener.ChannelFutureAggregator;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
-import com.google.protobuf.WireFormat;
 
 public class SessionHandler extends SimpleChannelHandler {
 
-    private static final Logger     logger = LoggerFactory.getLogger(SessionHandler.class);
+    private static final Logger     logger              = LoggerFactory.getLogger(SessionHandler.class);
+    // 数据量较小时压缩收益不明显，直接发送
+    private static final int        MIN_COMPRESS_SIZE   = 1024;
+    // STREAM没有设置timeout时，空闲状态下推送空batch的间隔，单位ms
+    private static final long       STREAM_IDLE_TIMEOUT = 1000L;
     private CanalServerWithEmbedded embeddedServer;
+    private Compression             compression         = Compression.NONE;
+    private final Object            streamLock          = new Object();
+    private StreamTask              streamTask;                           // 当前链接上的流式推送
+    private int                     inflightBatches     = 0;              // 已经推送但还未ack的batch数
 
     public SessionHandler(){
     }
@@ -154,86 +166,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         }
                         // }
 
-                        if (message.getId() != -1 && message.isRaw()) {
-                            List<ByteString> rowEntries = message.getRawEntries();
-                            // message size
-                            int messageSize = 0;
-                            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
-
-                            int dataSize = 0;
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                dataSize += com.google.protobuf.CodedOutputStream.computeBytesSizeNoTag(rowEntries.get(i));
-                            }
-                            messageSize += dataSize;
-                            messageSize += 1 * rowEntries.size();
-                            // packet size
-                            int size = 0;
-                            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
-                                PacketType.MESSAGES.getNumber());
-                            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
-                                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
-                                    + messageSize;
-                            // recyle bytes
-                            // ByteBuffer byteBuffer = (ByteBuffer)
-                            // ctx.getAttachment();
-                            // if (byteBuffer != null && size <=
-                            // byteBuffer.capacity()) {
-                            // byteBuffer.clear();
-                            // } else {
-                            // byteBuffer =
-                            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
-                            // ctx.setAttachment(byteBuffer);
-                            // }
-                            // CodedOutputStream output =
-                            // CodedOutputStream.newInstance(byteBuffer);
-                            byte[] body = new byte[size];
-                            CodedOutputStream output = CodedOutputStream.newInstance(body);
-                            output.writeEnum(3, PacketType.MESSAGES.getNumber());
-
-                            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                            output.writeRawVarint32(messageSize);
-                            // message
-                            output.writeInt64(1, message.getId());
-                            for (int i = 0; i < rowEntries.size(); i++) {
-                                output.writeBytes(2, rowEntries.get(i));
-                            }
-                            output.checkNoSpaceLeft();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));
-
-                            // output.flush();
-                            // byteBuffer.flip();
-                            // NettyUtils.write(ctx.getChannel(), byteBuffer,
-                            // null);
-                        } else {
-                            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
-
-                            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                            messageBuilder.setBatchId(message.getId());
-                            if (message.getId() != -1) {
-                                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
-                                    messageBuilder.addAllMessages(message.getRawEntries());
-                                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
-                                    for (Entry entry : message.getEntries()) {
-                                        messageBuilder.addMessages(entry.toByteString());
-                                    }
-                                }
-                            }
-                            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
-                                .build()
-                                .toByteArray();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));// 输出数据
-                        }
+                        writeMessages(ctx.getChannel(), get, packet.getType(), message, start);
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", get.toString()).getMessage());
@@ -267,6 +200,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         } else {
                             clientIdentity = new ClientIdentity(ack.getDestination(), Short.valueOf(ack.getClientId()));
                             embeddedServer.ack(clientIdentity, ack.getBatchId());
+                            releaseStreamCredit();
                             new ChannelFutureAggregator(ack.getDestination(),
                                 ack,
                                 packet.getType(),
@@ -293,11 +227,20 @@ public class SessionHandler extends SimpleChannelHandler {
                         && StringUtils.isNotEmpty(rollback.getClientId())) {
                         clientIdentity = new ClientIdentity(rollback.getDestination(),
                             Short.valueOf(rollback.getClientId()));
-                        if (rollback.getBatchId() == 0L) {
+                        // 流式订阅时先停止推送，回滚后写出ACK作为分界，client丢弃分界之前推送的batch
+                        Get streaming = stopStream(true);
+                        if (rollback.getBatchId() == 0L || streaming != null) {
                             embeddedServer.rollback(clientIdentity);// 回滚所有批次
                         } else {
                             embeddedServer.rollback(clientIdentity, rollback.getBatchId()); // 只回滚单个批次
                         }
+                        if (streaming != null) {
+                            synchronized (streamLock) {
+                                inflightBatches = 0;
+                            }
+                            NettyUtils.write(ctx.getChannel(), NettyUtils.ackPacket(), null);
+                            startStream(ctx.getChannel(), clientIdentity, streaming);
+                        }
                         new ChannelFutureAggregator(rollback.getDestination(),
                             rollback,
                             packet.getType(),
@@ -317,6 +260,41 @@ public class SessionHandler extends SimpleChannelHandler {
                                 (short) 401));
                     }
                     break;
+                case STREAM:
+                    Get stream = CanalPacket.Get.parseFrom(packet.getBody());
+                    if (StringUtils.isNotEmpty(stream.getDestination())
+                        && StringUtils.isNotEmpty(stream.getClientId())) {
+                        clientIdentity = new ClientIdentity(stream.getDestination(),
+                            Short.valueOf(stream.getClientId()));
+                        MDC.put("destination", clientIdentity.getDestination());
+                        // 旧的推送已经拿到的batch都在ACK之前写出，参数变化时不需要回滚
+                        if (stopStream(true) == null || stream.getWindow() <= 0) {
+                            synchronized (streamLock) {
+                                inflightBatches = 0;
+                            }
+                        }
+                        byte[] ackBytes = NettyUtils.ackPacket();
+                        NettyUtils.write(ctx.getChannel(), ackBytes, new ChannelFutureAggregator(stream.getDestination(),
+                            stream,
+                            packet.getType(),
+                            ackBytes.length,
+                            System.nanoTime() - start));
+                        if (stream.getWindow() > 0) {
+                            startStream(ctx.getChannel(), clientIdentity, stream);
+                        }
+                    } else {
+                        byte[] errorBytes = NettyUtils.errorPacket(401,
+                            MessageFormatter.format("destination or clientId is null", stream.toString()).getMessage());
+                        NettyUtils.write(ctx.getChannel(),
+                            errorBytes,
+                            new ChannelFutureAggregator(stream.getDestination(),
+                                stream,
+                                packet.getType(),
+                                errorBytes.length,
+                                System.nanoTime() - start,
+                                (short) 401));
+                    }
+                    break;
                 default:
                     byte[] errorBytes = NettyUtils.errorPacket(400,
                         MessageFormatter.format("packet type={} is NOT supported!", packet.getType()).getMessage());
@@ -347,6 +325,7 @@ public class SessionHandler extends SimpleChannelHandler {
     }
 
     public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        stopStream(false);
         // logger.info("remove binding subscription value object if any...");
         // ClientIdentity clientIdentity = (ClientIdentity) ctx.getAttachment();
         // // 如果唯一的订阅者都取消了订阅，直接关闭服务，针对内部版本模式下可以减少资源浪费
@@ -386,8 +365,193 @@ public class SessionHandler extends SimpleChannelHandler {
         }
     }
 
+    /**
+     * 构造MESSAGES包并写出，GET的应答和STREAM的推送共用
+     */
+    private void writeMessages(Channel channel, Get get, PacketType type, Message message, long start)
+                                                                                                     throws IOException {
+        List<ByteString> messages = Collections.emptyList();
+        if (message.getId() != -1) {
+            if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
+                messages = message.getRawEntries();
+            } else if (!CollectionUtils.isEmpty(message.getEntries())) {
+                messages = new ArrayList<ByteString>(message.getEntries().size());
+                for (Entry entry : message.getEntries()) {
+                    messages.add(entry.toByteString());
+                }
+            }
+        }
+
+        int messagesSize = NettyUtils.computeMessagesSize(message.getId(), messages);
+        if (isCompress(messagesSize)) {
+            byte[] body = compressMessages(message.getId(), messages, messagesSize);
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                type,
+                body.length,
+                System.nanoTime() - start,
+                message.getId() == -1));
+        } else {
+            // 直接引用message的内存组装数据包，避免拷贝出完整的body
+            ChannelBuffer body = NettyUtils.messagesPacket(message.getId(), messages);
+            NettyUtils.writePacket(channel,
+                body,
+                new ChannelFutureAggregator(get.getDestination(),
+                    get,
+                    type,
+                    body.readableBytes() - NettyUtils.HEADER_LENGTH,
+                    System.nanoTime() - start,
+                    message.getId() == -1));// 输出数据
+        }
+    }
+
+    private void startStream(Channel channel, ClientIdentity clientIdentity, Get stream) {
+        StreamTask task = new StreamTask(channel, clientIdentity, stream);
+        Thread thread = new Thread(task, "canal-stream-" + clientIdentity.getDestination() + "-"
+                                         + clientIdentity.getClientId());
+        thread.setDaemon(true);
+        synchronized (streamLock) {
+            streamTask = task;
+            task.thread = thread;
+        }
+        thread.start();
+    }
+
+    /**
+     * 停止当前链接上的推送
+     *
+     * @param wait 是否等待推送线程退出，退出前已经拿到的batch会写出
+     * @return 被停止的流式订阅参数，没有推送时返回null
+     */
+    private Get stopStream(boolean wait) throws InterruptedException {
+        StreamTask task;
+        synchronized (streamLock) {
+            task = streamTask;
+            if (task == null) {
+                return null;
+            }
+            streamTask = null;
+            task.running = false;
+            streamLock.notifyAll();
+        }
+        if (wait && task.thread != Thread.currentThread()) {
+            task.thread.join();
+        }
+        return task.stream;
+    }
+
+    private void releaseStreamCredit() {
+        synchronized (streamLock) {
+            if (inflightBatches > 0) {
+                inflightBatches--;
+                streamLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 按照client给出的window推送数据，未ack的batch达到window时等待CLIENTACK归还额度
+     */
+    private class StreamTask implements Runnable {
+
+        private final Channel        channel;
+        private final ClientIdentity clientIdentity;
+        private final Get            stream;
+        private volatile boolean     running = true;
+        private Thread               thread;
+
+        public StreamTask(Channel channel, ClientIdentity clientIdentity, Get stream){
+            this.channel = channel;
+            this.clientIdentity = clientIdentity;
+            this.stream = stream;
+        }
+
+        public void run() {
+            MDC.put("destination", clientIdentity.getDestination());
+            // 没有数据或者没有额度时按timeout推送空batch，client的getWithoutAck才能返回
+            long timeout = stream.getTimeout() > 0 ? stream.getTimeout() : STREAM_IDLE_TIMEOUT;
+            TimeUnit unit = stream.getTimeout() > 0 ? convertTimeUnit(stream.getUnit()) : TimeUnit.MILLISECONDS;
+            try {
+                while (running && channel.isConnected()) {
+                    long start = System.nanoTime();
+                    boolean hasCredit;
+                    synchronized (streamLock) {
+                        long deadline = start + unit.toNanos(timeout);
+                        long remaining;
+                        while (running && inflightBatches >= stream.getWindow()
+                               && (remaining = deadline - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(streamLock, remaining);
+                        }
+                        hasCredit = inflightBatches < stream.getWindow();
+                    }
+                    if (!running) {
+                        break;
+                    }
+
+                    Message message;
+                    if (hasCredit) {
+                        message = embeddedServer.getWithoutAck(clientIdentity, stream.getFetchSize(), timeout, unit);
+                    } else {
+                        message = new Message(-1);
+                    }
+                    if (message.getId() != -1) {
+                        synchronized (streamLock) {
+                            inflightBatches++;
+                        }
+                    }
+                    // 已经分配的batch必须写出，停止推送时client会在分界之前读到它
+                    writeMessages(channel, stream, PacketType.STREAM, message, start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                logger.error("stream to channel:{} failed, exception={}", channel, ExceptionUtils.getStackTrace(e));
+                synchronized (streamLock) {
+                    if (streamTask == this) {
+                        streamTask = null;
+                    }
+                }
+                byte[] errorBytes = NettyUtils.errorPacket(400,
+                    MessageFormatter.format("something goes wrong with channel:{}, exception={}",
+                        channel,
+                        ExceptionUtils.getStackTrace(e)).getMessage());
+                NettyUtils.write(channel, errorBytes, null);
+            } finally {
+                MDC.remove("destination");
+            }
+        }
+    }
+
+    private boolean isCompress(int messageSize) {
+        return CompressionUtil.isCompressed(compression) && messageSize >= MIN_COMPRESS_SIZE;
+    }
+
+    /**
+     * 压缩Messages的序列化结果，并构造MESSAGES包
+     */
+    private byte[] compressMessages(long batchId, List<ByteString> messages, int messagesSize) throws IOException {
+        byte[] data = new byte[messagesSize];
+        CodedOutputStream output = CodedOutputStream.newInstance(data);
+        output.writeInt64(1, batchId);
+        for (ByteString message : messages) {
+            output.writeBytes(2, message);
+        }
+        output.checkNoSpaceLeft();
+        return CanalPacket.Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setVersion(NettyUtils.VERSION)
+            .setCompression(compression)
+            .setBody(CompressionUtil.compress(compression, data))
+            .build()
+            .toByteArray();
+    }
+
     public void setEmbeddedServer(CanalServerWithEmbedded embeddedServer) {
         this.embeddedServer = embeddedServer;
     }
 
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
 }
@@ -0,0 +1,200 @@
+package com.alibaba.otter.canal.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+/**
+ * 对比并行和串行处理的分区及扁平化结果，并行处理不能改变每个分区内的数据和顺序
+ *
+ * @version 1.1.4
+ */
+public class MQMessageUtilsTest {
+
+    private static final String PARTITION_HASH = "db1.t1:id,db1.t2:$pk$,db2\\..*";
+    private static final String DYNAMIC_TOPIC  = "topic1:db1\\..*,db2.t3";
+    private static final int    PARTITIONS     = 5;
+
+    private ForkJoinPool        pool           = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testPartitionHash() {
+        for (boolean raw : new boolean[] { false, true }) {
+            Message message = buildMessage(1L, raw);
+            int used = 0;
+            for (Message partition : MQMessageUtils.messagePartition(message, PARTITIONS, PARTITION_HASH, pool)) {
+                used += partition != null ? 1 : 0;
+            }
+            // 数据确实被分散到多个分区
+            Assert.assertTrue(used > 1);
+            assertSamePartition(message);
+            assertSameFlat(message);
+        }
+    }
+
+    @Test
+    public void testDynamicTopic() {
+        for (boolean raw : new boolean[] { false, true }) {
+            Map<String, Message> messages = MQMessageUtils.messageTopics(buildMessage(2L, raw),
+                "default",
+                DYNAMIC_TOPIC);
+            Assert.assertEquals(3, messages.size());
+            for (String topic : Arrays.asList("topic1", "db2.t3", "default")) {
+                Message message = messages.get(topic);
+                Assert.assertNotNull(topic, message);
+                assertSamePartition(message);
+                assertSameFlat(message);
+            }
+        }
+    }
+
+    private void assertSamePartition(Message message) {
+        Message[] expected = MQMessageUtils.messagePartition(message, PARTITIONS, PARTITION_HASH, null);
+        Message[] actual = MQMessageUtils.messagePartition(message, PARTITIONS, PARTITION_HASH, pool);
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] == null) {
+                Assert.assertNull(actual[i]);
+            } else {
+                Assert.assertEquals(expected[i].getId(), actual[i].getId());
+                Assert.assertEquals(expected[i].getEntries(), actual[i].getEntries());
+            }
+        }
+    }
+
+    private void assertSameFlat(Message message) {
+        List<FlatMessage> expected = MQMessageUtils.messageConverter(message, null);
+        List<FlatMessage> actual = MQMessageUtils.messageConverter(message, pool);
+        Assert.assertEquals(toJson(expected), toJson(actual));
+
+        for (int i = 0; i < expected.size(); i++) {
+            FlatMessage[] expectedPartitions = MQMessageUtils.messagePartition(expected.get(i),
+                PARTITIONS,
+                PARTITION_HASH);
+            FlatMessage[] actualPartitions = MQMessageUtils.messagePartition(actual.get(i),
+                PARTITIONS,
+                PARTITION_HASH);
+            Assert.assertEquals(toJson(Arrays.asList(expectedPartitions)), toJson(Arrays.asList(actualPartitions)));
+        }
+    }
+
+    private String toJson(List<FlatMessage> flatMessages) {
+        for (FlatMessage flatMessage : flatMessages) {
+            if (flatMessage != null) {
+                // ts为转换时的系统时间
+                flatMessage.setTs(0L);
+            }
+        }
+        return JSON.toJSONString(flatMessages, SerializerFeature.WriteMapNullValue);
+    }
+
+    /**
+     * 构造多个事务，包含按主键、按表hash以及没有匹配分区规则的表，entry数超过并行处理的阈值
+     */
+    private Message buildMessage(long id, boolean raw) {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(transaction(EntryType.TRANSACTIONBEGIN));
+            entries.add(rowEntry("db1", "t1", EventType.INSERT, i * 3, i * 3 + 1, i * 3 + 2));
+            entries.add(rowEntry("db1", "t2", EventType.UPDATE, i, i + 100));
+            entries.add(rowEntry("db2", "t3", EventType.DELETE, i));
+            entries.add(rowEntry("db3", "t4", EventType.INSERT, i));
+            if (i % 3 == 0) {
+                entries.add(ddlEntry("db1", "t1"));
+            }
+            entries.add(transaction(EntryType.TRANSACTIONEND));
+        }
+
+        if (!raw) {
+            return new Message(id, entries);
+        }
+        List<ByteString> rawEntries = new ArrayList<ByteString>();
+        for (Entry entry : entries) {
+            rawEntries.add(entry.toByteString());
+        }
+        return new Message(id, true, rawEntries);
+    }
+
+    private Entry transaction(EntryType entryType) {
+        return Entry.newBuilder()
+            .setEntryType(entryType)
+            .setHeader(Header.newBuilder().setExecuteTime(1L))
+            .setStoreValue(ByteString.EMPTY)
+            .build();
+    }
+
+    private Entry ddlEntry(String schema, String table) {
+        RowChange rowChange = RowChange.newBuilder()
+            .setEventType(EventType.ALTER)
+            .setIsDdl(true)
+            .setSql("alter table " + table + " add column c int")
+            .build();
+        return Entry.newBuilder()
+            .setEntryType(EntryType.ROWDATA)
+            .setHeader(Header.newBuilder()
+                .setSchemaName(schema)
+                .setTableName(table)
+                .setEventType(EventType.ALTER)
+                .setExecuteTime(1L))
+            .setStoreValue(rowChange.toByteString())
+            .build();
+    }
+
+    private Entry rowEntry(String schema, String table, EventType eventType, int... ids) {
+        RowChange.Builder rowChange = RowChange.newBuilder().setEventType(eventType);
+        for (int id : ids) {
+            List<Column> columns = Arrays.asList(column("id", String.valueOf(id), true),
+                column("name", "name" + id, false));
+            RowData.Builder rowData = RowData.newBuilder();
+            if (eventType == EventType.DELETE) {
+                rowData.addAllBeforeColumns(columns);
+            } else {
+                rowData.addAllAfterColumns(columns);
+            }
+            rowChange.addRowDatas(rowData);
+        }
+        return Entry.newBuilder()
+            .setEntryType(EntryType.ROWDATA)
+            .setHeader(Header.newBuilder()
+                .setSchemaName(schema)
+                .setTableName(table)
+                .setEventType(eventType)
+                .setExecuteTime(1L))
+            .setStoreValue(rowChange.build().toByteString())
+            .build();
+    }
+
+    private Column column(String name, String value, boolean key) {
+        return Column.newBuilder()
+            .setName(name)
+            .setValue(value)
+            .setIsKey(key)
+            .setSqlType(key ? 4 : 12)
+            .setMysqlType(key ? "int(11)" : "varchar(32)")
+            .build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.alibaba.otter.canal.server;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 测试流水线发送时的ack顺序
+ *
+ * @version 1.1.4
+ */
+public class CanalMQAckWindowTest {
+
+    @Test
+    public void testAckInOrder() throws InterruptedException {
+        CanalMQAckWindow window = new CanalMQAckWindow(3);
+        window.add(1L);
+        window.add(2L);
+        window.add(3L);
+        Assert.assertFalse(window.awaitSlot(10, TimeUnit.MILLISECONDS));
+
+        // 乱序完成，只有连续完成的部分可以ack
+        window.commit(3L);
+        window.commit(2L);
+        Assert.assertTrue(window.pollCommitted().isEmpty());
+        window.commit(1L);
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), window.pollCommitted());
+        Assert.assertEquals(0, window.size());
+        Assert.assertTrue(window.awaitSlot(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRollbackFromOldestFailed() throws InterruptedException {
+        CanalMQAckWindow window = new CanalMQAckWindow(4);
+        window.add(1L);
+        window.add(2L);
+        window.add(3L);
+        window.add(4L);
+
+        window.rollback(2L);
+        Assert.assertTrue(window.isFailed());
+        Assert.assertFalse(window.awaitSlot(10, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(window.awaitCompleted(10, TimeUnit.MILLISECONDS));
+
+        window.commit(1L);
+        window.commit(3L);
+        window.commit(4L);
+        Assert.assertTrue(window.awaitCompleted(10, TimeUnit.MILLISECONDS));
+        // 失败batch之前的可以ack，之后的需要重放
+        Assert.assertEquals(Arrays.asList(1L), window.pollCommitted());
+        window.clear();
+        Assert.assertFalse(window.isFailed());
+        Assert.assertEquals(0, window.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.alibaba.otter.canal.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalPacket.Messages;
+import com.alibaba.otter.canal.protocol.CanalPacket.Packet;
+import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
+import com.alibaba.otter.canal.server.netty.NettyUtils;
+import com.google.protobuf.ByteString;
+
+/**
+ * 测试组装的MESSAGES包和protobuf序列化的结果一致
+ *
+ * @version 1.1.4
+ */
+public class NettyUtilsTest {
+
+    @Test
+    public void testMessagesPacket() throws IOException {
+        List<ByteString> messages = new ArrayList<ByteString>();
+        for (int i = 0; i < 10; i++) {
+            Entry entry = Entry.newBuilder()
+                .setHeader(Header.newBuilder().setLogfileName("mysql-bin.000001").setLogfileOffset(1024 * i).build())
+                .setEntryType(EntryType.ROWDATA)
+                .setStoreValue(ByteString.copyFromUtf8(new String(new char[i * 100]).replace('\0', 'a')))
+                .build();
+            messages.add(entry.toByteString());
+        }
+        // rope结构的ByteString
+        messages.add(messages.get(1).concat(messages.get(2)));
+
+        assertPacket(3, messages);
+        assertPacket(-1, Collections.<ByteString> emptyList());
+    }
+
+    private void assertPacket(long batchId, List<ByteString> messages) throws IOException {
+        ChannelBuffer buffer = NettyUtils.messagesPacket(batchId, messages);
+        Assert.assertEquals(buffer.readableBytes() - NettyUtils.HEADER_LENGTH, buffer.readInt());
+        byte[] data = new byte[buffer.readableBytes()];
+        buffer.readBytes(data);
+
+        byte[] expected = Packet.newBuilder()
+            .setType(PacketType.MESSAGES)
+            .setVersion(NettyUtils.VERSION)
+            .setBody(Messages.newBuilder().setBatchId(batchId).addAllMessages(messages).build().toByteString())
+            .build()
+            .toByteArray();
+        Assert.assertArrayEquals(expected, data);
+
+        Messages result = Messages.parseFrom(Packet.parseFrom(data).getBody());
+        Assert.assertEquals(batchId, result.getBatchId());
+        Assert.assertEquals(messages, result.getMessagesList());
+    }
+}
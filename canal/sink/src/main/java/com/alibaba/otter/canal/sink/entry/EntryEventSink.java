@@ -3,6 +3,10 @@ package com.alibaba.otter.canal.sink.entry;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
@@ -20,7 +24,7 @@ import com.alibaba.otter.canal.sink.CanalEventDownStreamHandler;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.sink.exception.CanalSinkException;
 import com.alibaba.otter.canal.store.CanalEventStore;
-import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
 import com.alibaba.otter.canal.store.model.Event;
 
 /**
@@ -31,20 +35,22 @@ import com.alibaba.otter.canal.store.model.Event;
  */
 public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry>> implements CanalEventSink<List<CanalEntry.Entry>> {
 
-    private static final Logger    logger                        = LoggerFactory.getLogger(EntryEventSink.class);
-    private static final int       maxFullTimes                  = 10;
-    private CanalEventStore<Event> eventStore;
-    protected boolean              filterTransactionEntry        = false;                                        // 是否需要尽可能过滤事务头/尾
-    protected boolean              filterEmtryTransactionEntry   = true;                                         // 是否需要过滤空的事务头/尾
-    protected long                 emptyTransactionInterval      = 5 * 1000;                                     // 空的事务输出的频率
-    protected long                 emptyTransctionThresold       = 8192;                                         // 超过8192个事务头，输出一个
-
-    protected volatile long        lastTransactionTimestamp      = 0L;
-    protected AtomicLong           lastTransactionCount          = new AtomicLong(0L);
-    protected volatile long        lastEmptyTransactionTimestamp = 0L;
-    protected AtomicLong           lastEmptyTransactionCount     = new AtomicLong(0L);
-    protected AtomicLong           eventsSinkBlockingTime        = new AtomicLong(0L);
-    protected boolean              raw;
+    private static final Logger              logger                        = LoggerFactory.getLogger(EntryEventSink.class);
+    private static final int                 maxFullTimes                  = 10;
+    private CanalEventStore<Event>           eventStore;
+    protected boolean                        filterTransactionEntry        = false;                                        // 是否需要尽可能过滤事务头/尾
+    protected boolean                        filterEmtryTransactionEntry   = true;                                         // 是否需要过滤空的事务头/尾
+    protected long                           emptyTransactionInterval      = 5 * 1000;                                     // 空的事务输出的频率
+    protected long                           emptyTransctionThresold       = 8192;                                         // 超过8192个事务头，输出一个
+
+    protected volatile long                  lastTransactionTimestamp      = 0L;
+    protected AtomicLong                     lastTransactionCount          = new AtomicLong(0L);
+    protected volatile long                  lastEmptyTransactionTimestamp = 0L;
+    protected AtomicLong                     lastEmptyTransactionCount     = new AtomicLong(0L);
+    protected AtomicLong                     eventsSinkBlockingTime        = new AtomicLong(0L);
+    protected boolean                        raw;
+    // parser并行阶段提前构造的raw Event，每个parser的coprocessor持有独立的作用域，group模式下互不影响
+    protected Set<PreparedEvents>            preparedEvents                = new CopyOnWriteArraySet<PreparedEvents>();
 
     public EntryEventSink(){
         addHandler(new HeartBeatEntryEventHandler());
@@ -54,8 +60,8 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         super.start();
         Assert.notNull(eventStore);
 
-        if (eventStore instanceof MemoryEventStoreWithBuffer) {
-            this.raw = ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        if (eventStore instanceof CanalStoreMetrics) {
+            this.raw = ((CanalStoreMetrics) eventStore).isRaw();
         }
 
         for (CanalEventDownStreamHandler handler : getHandlers()) {
@@ -67,6 +73,9 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
     public void stop() {
         super.stop();
+        for (PreparedEvents prepared : preparedEvents) {
+            prepared.close();
+        }
 
         for (CanalEventDownStreamHandler handler : getHandlers()) {
             if (handler.isStart()) {
@@ -75,6 +84,23 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         }
     }
 
+    /**
+     * raw模式下在parser的并行解析线程中提前构造Event，将entry的protobuf序列化移出单线程的sink，sinkData时直接复用
+     *
+     * <pre>
+     * 由parser的coprocessor在启动时打开，停止时close，只丢弃当前parser未消费的Event
+     * </pre>
+     */
+    public PreparedEvents openPreparedEvents() {
+        PreparedEvents prepared = new PreparedEvents();
+        preparedEvents.add(prepared);
+        return prepared;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
     public boolean filter(List<Entry> event, InetSocketAddress remoteAddress, String destination) {
 
         return false;
@@ -92,6 +118,7 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         boolean hasHeartBeat = false;
         List<Event> events = new ArrayList<Event>();
         for (CanalEntry.Entry entry : entrys) {
+            Event prepared = removePrepared(entry);
             if (!doFilter(entry)) {
                 continue;
             }
@@ -111,7 +138,13 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
             hasRowData |= (entry.getEntryType() == EntryType.ROWDATA);
             hasHeartBeat |= (entry.getEntryType() == EntryType.HEARTBEAT);
-            Event event = new Event(new LogIdentity(remoteAddress, -1L), entry, raw);
+            Event event = null;
+            if (prepared != null) {
+                event = prepared;
+                event.setLogIdentity(new LogIdentity(remoteAddress, -1L));
+            } else {
+                event = new Event(new LogIdentity(remoteAddress, -1L), entry, raw);
+            }
             events.add(event);
         }
 
@@ -136,6 +169,20 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         }
     }
 
+    private Event removePrepared(CanalEntry.Entry entry) {
+        if (entry.getEntryType() != EntryType.ROWDATA) {
+            return null;
+        }
+
+        for (PreparedEvents prepared : preparedEvents) {
+            Event event = prepared.remove(entry);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
     protected boolean doFilter(CanalEntry.Entry entry) {
         if (filter != null && entry.getEntryType() == EntryType.ROWDATA) {
             String name = getSchemaNameAndTableName(entry);
@@ -227,4 +274,62 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         return eventsSinkBlockingTime;
     }
 
+    /**
+     * 一个parser预构造的Event，close之后丢弃未消费的Event，并且不再接收并行解析线程迟到的Event
+     */
+    public class PreparedEvents {
+
+        private final ConcurrentMap<EntryKey, Event> events = new ConcurrentHashMap<EntryKey, Event>();
+        private volatile boolean                     closed = false;
+
+        public void prepare(CanalEntry.Entry entry) {
+            if (closed || !raw || entry.getEntryType() != EntryType.ROWDATA) {
+                return;
+            }
+
+            EntryKey key = new EntryKey(entry);
+            events.put(key, new Event(null, entry, true));
+            if (closed) {
+                // 和close并发时，put可能发生在clear之后，需要自行清理
+                events.remove(key);
+            }
+        }
+
+        Event remove(CanalEntry.Entry entry) {
+            return events.isEmpty() ? null : events.remove(new EntryKey(entry));
+        }
+
+        public void close() {
+            closed = true;
+            preparedEvents.remove(this);
+            events.clear();
+        }
+
+        public int size() {
+            return events.size();
+        }
+    }
+
+    /**
+     * 按照对象引用比较entry，避免protobuf的equals/hashCode遍历整个消息
+     */
+    protected static class EntryKey {
+
+        private final CanalEntry.Entry entry;
+
+        public EntryKey(CanalEntry.Entry entry){
+            this.entry = entry;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(entry);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof EntryKey && ((EntryKey) obj).entry == entry;
+        }
+    }
+
 }
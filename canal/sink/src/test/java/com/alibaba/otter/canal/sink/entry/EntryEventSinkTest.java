@@ -0,0 +1,98 @@
+package com.alibaba.otter.canal.sink.entry;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink.PreparedEvents;
+import com.alibaba.otter.canal.sink.stub.DummyEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 测试预构造Event的作用域：一个parser重启只丢弃自己的Event，close之后迟到的prepare被忽略
+ *
+ * @version 1.1.4
+ */
+public class EntryEventSinkTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+    private final List<Event>       stored  = new ArrayList<Event>();
+    private EntryEventSink          eventSink;
+
+    @Before
+    public void setUp() {
+        eventSink = new EntryEventSink();
+        eventSink.setEventStore(new DummyEventStore() {
+
+            public boolean tryPut(List<Event> datas) throws CanalStoreException {
+                stored.addAll(datas);
+                return true;
+            }
+        });
+        eventSink.start();
+        eventSink.raw = true;
+    }
+
+    @After
+    public void tearDown() {
+        eventSink.stop();
+    }
+
+    @Test
+    public void testCloseOnlyDiscardsOwnEvents() throws Exception {
+        PreparedEvents first = eventSink.openPreparedEvents();
+        PreparedEvents second = eventSink.openPreparedEvents();
+        Entry firstEntry = buildEntry(100L);
+        Entry secondEntry = buildEntry(200L);
+        first.prepare(firstEntry);
+        second.prepare(secondEntry);
+
+        // 第一个parser重启
+        first.close();
+        Assert.assertEquals(0, first.size());
+        Assert.assertEquals(1, second.size());
+
+        // 第二个parser的Event正常被sink复用
+        Assert.assertTrue(eventSink.sink(Arrays.asList(secondEntry), address, "example"));
+        Assert.assertEquals(0, second.size());
+        Assert.assertEquals(1, stored.size());
+        Assert.assertEquals(200L, stored.get(0).getPosition());
+        Assert.assertNotNull(stored.get(0).getLogIdentity());
+
+        // 被丢弃的Event在sink时重新构造
+        Assert.assertTrue(eventSink.sink(Arrays.asList(firstEntry), address, "example"));
+        Assert.assertEquals(2, stored.size());
+        Assert.assertEquals(100L, stored.get(1).getPosition());
+    }
+
+    @Test
+    public void testIgnoreLatePrepare() {
+        PreparedEvents prepared = eventSink.openPreparedEvents();
+        prepared.close();
+        // close之后dml解析线程迟到的prepare
+        prepared.prepare(buildEntry(300L));
+        Assert.assertEquals(0, prepared.size());
+        Assert.assertTrue(eventSink.preparedEvents.isEmpty());
+    }
+
+    private static Entry buildEntry(long offset) {
+        Header header = Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(offset)
+            .setExecuteTime(System.currentTimeMillis())
+            .setSchemaName("db1")
+            .setTableName("t1")
+            .build();
+        return Entry.newBuilder().setEntryType(EntryType.ROWDATA).setHeader(header).build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.alibaba.otter.canal.store;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 支持多个订阅者共享同一份数据的store，每个{@linkplain ClientIdentity}维护独立的get/ack位置
+ *
+ * <pre>
+ * 不带ClientIdentity的{@linkplain CanalEventStore}接口等价于使用一个默认的订阅者
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public interface CanalFanoutEventStore<T> extends CanalEventStore<T> {
+
+    /**
+     * 增加一个订阅者，从当前store中最老的未ack数据开始消费，重复订阅忽略
+     */
+    void subscribe(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 增加一个订阅者，从position(meta中记录的cursor)之后开始消费，position为null时等同于{@linkplain #subscribe(ClientIdentity)}
+     * 
+     * <pre>
+     * 已经存在的订阅者忽略position，position对应的数据已经被其他订阅者释放时抛出异常
+     * </pre>
+     */
+    void subscribe(ClientIdentity clientIdentity, Position position) throws CanalStoreException;
+
+    /**
+     * 取消订阅，释放该订阅者占用的数据
+     */
+    void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 获取指定数量的数据
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException,
+                                                                                 CanalStoreException;
+
+    /**
+     * 获取指定数量的数据，有超时控制
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit)
+                                                                                                            throws InterruptedException,
+                                                                                                            CanalStoreException;
+
+    /**
+     * 根据指定位置，获取一个指定大小的数据
+     */
+    Events<T> tryGet(ClientIdentity clientIdentity, Position start, int batchSize) throws CanalStoreException;
+
+    /**
+     * 获取该订阅者第一条数据的position，如果没有数据返回null
+     */
+    Position getFirstPosition(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 删除该订阅者{@linkplain Position}之前的数据
+     */
+    void ack(ClientIdentity clientIdentity, Position position, Long seqId) throws CanalStoreException;
+
+    /**
+     * 出错时执行回滚操作(未提交ack的所有状态信息重新归位，减少出错时数据全部重来的成本)
+     */
+    void rollback(ClientIdentity clientIdentity) throws CanalStoreException;
+}
@@ -0,0 +1,50 @@
+package com.alibaba.otter.canal.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.otter.canal.store.model.BatchMode;
+
+/**
+ * store的运行信息，sink/server根据raw决定数据格式，监控基于这些计数采集指标
+ *
+ * @version 1.1.4
+ */
+public interface CanalStoreMetrics {
+
+    /**
+     * 是否直接存储binlog的原始数据
+     */
+    boolean isRaw();
+
+    BatchMode getBatchMode();
+
+    /**
+     * store可容纳的event个数，即内存store的buffer大小；文件store不按event个数限制，返回-1
+     */
+    int getCapacityEvents();
+
+    /**
+     * store最多保留的segment文件个数，只有文件store有效，内存store返回0
+     */
+    int getSegmentCount();
+
+    AtomicLong getPutSequence();
+
+    AtomicLong getAckSequence();
+
+    AtomicLong getPutMemSize();
+
+    AtomicLong getAckMemSize();
+
+    AtomicLong getPutExecTime();
+
+    AtomicLong getGetExecTime();
+
+    AtomicLong getAckExecTime();
+
+    AtomicLong getPutTableRows();
+
+    AtomicLong getGetTableRows();
+
+    AtomicLong getAckTableRows();
+}
@@ -0,0 +1,256 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * {@linkplain Event}在segment文件中的二进制编解码
+ *
+ * <pre>
+ * 格式: [int 记录长度][long sequence][event元数据][int payload长度][payload]
+ * payload为entry序列化之后的raw bytes，解码时可以选择跳过，只读取元数据用于ack位点匹配
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class EventCodec {
+
+    private static final Charset UTF8         = Charset.forName("UTF-8");
+    private static final int     FIXED_LENGTH = 8 + 8 + 8 + 8 + 8 + 4 + 4 + 4 + 1;
+
+    /**
+     * 获取需要落盘的entry数据，raw模式直接复用rawEntry
+     */
+    public static ByteString payload(Event event) {
+        if (event.getRawEntry() != null) {
+            return event.getRawEntry();
+        } else if (event.getEntry() != null) {
+            return event.getEntry().toByteString();
+        } else {
+            return ByteString.EMPTY;
+        }
+    }
+
+    /**
+     * 计算一条记录(包含长度前缀)占用的字节数
+     */
+    public static int sizeOf(Event event, ByteString payload) {
+        int size = 4 + FIXED_LENGTH;
+        size += sizeOf(event.getJournalName());
+        size += sizeOf(event.getGtid());
+        LogIdentity identity = event.getLogIdentity();
+        if (identity != null) {
+            InetSocketAddress address = identity.getSourceAddress();
+            size += 1;
+            if (address != null) {
+                size += sizeOf(address.getHostString()) + 4;
+                size += 4 + (address.getAddress() != null ? address.getAddress().getAddress().length : 0);
+            }
+            size += 8;
+        }
+        size += 4 + payload.size();
+        return size;
+    }
+
+    /**
+     * 将event写入到target的offset位置，返回写入的字节数
+     */
+    public static int encode(Event event, ByteString payload, long sequence, ByteBuffer target, int offset) {
+        int length = sizeOf(event, payload);
+        int pos = offset;
+        target.putInt(pos, length - 4);
+        pos += 4;
+        target.putLong(pos, sequence);
+        pos += 8;
+        target.putLong(pos, event.getExecuteTime());
+        pos += 8;
+        target.putLong(pos, event.getPosition());
+        pos += 8;
+        target.putLong(pos, event.getServerId());
+        pos += 8;
+        target.putLong(pos, event.getRawLength());
+        pos += 8;
+        target.putInt(pos, event.getRowsCount());
+        pos += 4;
+        target.putInt(pos, event.getEntryType() != null ? event.getEntryType().getNumber() : -1);
+        pos += 4;
+        target.putInt(pos, event.getEventType() != null ? event.getEventType().getNumber() : -1);
+        pos += 4;
+        target.put(pos, (byte) (event.getLogIdentity() != null ? 1 : 0));
+        pos += 1;
+        pos = writeString(target, pos, event.getJournalName());
+        pos = writeString(target, pos, event.getGtid());
+
+        LogIdentity identity = event.getLogIdentity();
+        if (identity != null) {
+            InetSocketAddress address = identity.getSourceAddress();
+            target.put(pos, (byte) (address != null ? 1 : 0));
+            pos += 1;
+            if (address != null) {
+                pos = writeString(target, pos, address.getHostString());
+                target.putInt(pos, address.getPort());
+                pos += 4;
+                byte[] ip = address.getAddress() != null ? address.getAddress().getAddress() : new byte[0];
+                pos = writeBytes(target, pos, ip);
+            }
+            target.putLong(pos, identity.getSlaveId() != null ? identity.getSlaveId() : -1L);
+            pos += 8;
+        }
+
+        target.putInt(pos, payload.size());
+        pos += 4;
+        ByteBuffer dest = target.duplicate();
+        ((Buffer) dest).position(pos);
+        payload.copyTo(dest);
+        return length;
+    }
+
+    /**
+     * 读取offset位置记录的总长度(包含长度前缀)
+     */
+    public static int recordLength(ByteBuffer source, int offset) {
+        return source.getInt(offset) + 4;
+    }
+
+    /**
+     * 读取offset位置记录的sequence
+     */
+    public static long readSequence(ByteBuffer source, int offset) {
+        return source.getLong(offset + 4);
+    }
+
+    /**
+     * 解码offset位置的event
+     *
+     * @param withPayload 是否需要解析entry数据，ack位点匹配时只需要元数据
+     * @param raw 是否以rawEntry的方式返回entry数据
+     */
+    public static Event decode(ByteBuffer source, int offset, boolean withPayload, boolean raw) {
+        int pos = offset + 4 + 8;
+        Event event = new Event();
+        event.setExecuteTime(source.getLong(pos));
+        pos += 8;
+        event.setPosition(source.getLong(pos));
+        pos += 8;
+        event.setServerId(source.getLong(pos));
+        pos += 8;
+        event.setRawLength(source.getLong(pos));
+        pos += 8;
+        event.setRowsCount(source.getInt(pos));
+        pos += 4;
+        int entryType = source.getInt(pos);
+        event.setEntryType(entryType >= 0 ? EntryType.valueOf(entryType) : null);
+        pos += 4;
+        int eventType = source.getInt(pos);
+        event.setEventType(eventType >= 0 ? EventType.valueOf(eventType) : null);
+        pos += 4;
+        boolean hasIdentity = source.get(pos) == 1;
+        pos += 1;
+
+        byte[] journalName = readBytes(source, pos);
+        pos += 4 + (journalName != null ? journalName.length : 0);
+        event.setJournalName(journalName != null ? new String(journalName, UTF8) : null);
+        byte[] gtid = readBytes(source, pos);
+        pos += 4 + (gtid != null ? gtid.length : 0);
+        event.setGtid(gtid != null ? new String(gtid, UTF8) : null);
+
+        if (hasIdentity) {
+            LogIdentity identity = new LogIdentity();
+            boolean hasAddress = source.get(pos) == 1;
+            pos += 1;
+            if (hasAddress) {
+                byte[] host = readBytes(source, pos);
+                pos += 4 + (host != null ? host.length : 0);
+                int port = source.getInt(pos);
+                pos += 4;
+                byte[] ip = readBytes(source, pos);
+                pos += 4 + ip.length;
+                identity.setSourceAddress(createAddress(host != null ? new String(host, UTF8) : null, ip, port));
+            }
+            long slaveId = source.getLong(pos);
+            pos += 8;
+            identity.setSlaveId(slaveId != -1L ? slaveId : null);
+            event.setLogIdentity(identity);
+        }
+
+        if (withPayload) {
+            int size = source.getInt(pos);
+            pos += 4;
+            ByteBuffer slice = source.duplicate();
+            ((Buffer) slice).position(pos);
+            ((Buffer) slice).limit(pos + size);
+            ByteString payload = ByteString.copyFrom(slice);
+            if (raw) {
+                event.setRawEntry(payload);
+            } else {
+                try {
+                    event.setEntry(CanalEntry.Entry.parseFrom(payload));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new CanalStoreException(e);
+                }
+            }
+        }
+        return event;
+    }
+
+    private static int sizeOf(String value) {
+        return 4 + (value != null ? value.getBytes(UTF8).length : 0);
+    }
+
+    private static int writeString(ByteBuffer target, int pos, String value) {
+        if (value == null) {
+            target.putInt(pos, -1);
+            return pos + 4;
+        }
+
+        return writeBytes(target, pos, value.getBytes(UTF8));
+    }
+
+    private static int writeBytes(ByteBuffer target, int pos, byte[] value) {
+        target.putInt(pos, value.length);
+        pos += 4;
+        for (int i = 0; i < value.length; i++) {
+            target.put(pos + i, value[i]);
+        }
+        return pos + value.length;
+    }
+
+    private static byte[] readBytes(ByteBuffer source, int pos) {
+        int length = source.getInt(pos);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = source.get(pos + 4 + i);
+        }
+        return value;
+    }
+
+    private static InetSocketAddress createAddress(String host, byte[] ip, int port) {
+        if (ip.length == 0) {
+            return InetSocketAddress.createUnresolved(host, port);
+        }
+
+        try {
+            // 直接基于ip构造，避免反查dns
+            return new InetSocketAddress(InetAddress.getByAddress(host, ip), port);
+        } catch (UnknownHostException e) {
+            return InetSocketAddress.createUnresolved(host, port);
+        }
+    }
+}
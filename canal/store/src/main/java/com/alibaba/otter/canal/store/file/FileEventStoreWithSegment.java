@@ -0,0 +1,807 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.google.protobuf.ByteString;
+
+/**
+ * 基于磁盘segment文件构建的store，适用于消费端长时间落后的场景
+ *
+ * <pre>
+ * 1. put操作将event序列化后追加到mmap的segment文件中，写满segmentSize之后滚动到下一个segment
+ * 2. get/ack/rollback和{@linkplain com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer}一样基于sequence，
+ *    通过segment的稀疏索引定位到具体的记录，顺序get时直接复用上一次读取的offset
+ * 3. ack之后，已经被完全ack的segment会被删除(包括scavenge调用cleanUntil)
+ * 4. 只有segment数量达到maxSegmentCount时put才会阻塞，此时才会反压到parser
+ *
+ * 注意：store中的数据不做重启恢复，启动时会清理残留的segment文件，重启后parser会从meta中记录的ack位点重新dump
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class FileEventStoreWithSegment extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge, CanalStoreMetrics {
+
+    private static final long            INIT_SEQUENCE   = -1;
+    private String                       dataDir;
+    private int                          segmentSize     = 64 * 1024 * 1024;                // 单个segment文件的大小，默认64MB
+    private int                          maxSegmentCount = 256;                             // 最多保留的segment数量，默认最多16GB
+    private int                          indexInterval   = 64;                              // 每隔多少条记录生成一个索引点
+    private int                          bufferMemUnit   = 1024;                            // memsize的单位，默认为1kb大小
+    private File                         storeDir;
+    private TreeMap<Long, LogSegment>    segments        = new TreeMap<Long, LogSegment>();
+    private LogSegment                   activeSegment;
+    private SegmentCursor                getCursor       = new SegmentCursor();
+    private SegmentCursor                ackCursor       = new SegmentCursor();
+    private Event                        lastPutEvent;                                      // 最后一次put的event，只保留元数据
+    private Event                        lastAckEvent;                                      // 最后一次ack的event，只保留元数据
+
+    // 记录下put/get/ack操作的三个下标
+    private AtomicLong                   putSequence     = new AtomicLong(INIT_SEQUENCE);   // 代表当前put操作最后一次写操作发生的位置
+    private AtomicLong                   getSequence     = new AtomicLong(INIT_SEQUENCE);   // 代表当前get操作读取的最后一条的位置
+    private AtomicLong                   ackSequence     = new AtomicLong(INIT_SEQUENCE);   // 代表当前ack操作的最后一条的位置
+
+    // 记录下put/get/ack操作的三个memsize大小
+    private AtomicLong                   putMemSize      = new AtomicLong(0);
+    private AtomicLong                   getMemSize      = new AtomicLong(0);
+    private AtomicLong                   ackMemSize      = new AtomicLong(0);
+
+    // 记录下put/get/ack操作的三个execTime
+    private AtomicLong                   putExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                   getExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                   ackExecTime     = new AtomicLong(System.currentTimeMillis());
+
+    // 记录下put/get/ack操作的三个table rows
+    private AtomicLong                   putTableRows    = new AtomicLong(0);
+    private AtomicLong                   getTableRows    = new AtomicLong(0);
+    private AtomicLong                   ackTableRows    = new AtomicLong(0);
+
+    // 阻塞put/get操作控制信号
+    private ReentrantLock                lock            = new ReentrantLock();
+    private Condition                    notFull         = lock.newCondition();
+    private Condition                    notEmpty        = lock.newCondition();
+
+    private BatchMode                    batchMode       = BatchMode.ITEMSIZE;
+    private boolean                      ddlIsolation    = false;
+    private boolean                      raw             = true;                            // 针对entry是否开启raw模式
+
+    public void start() throws CanalStoreException {
+        super.start();
+        if (StringUtils.isBlank(dataDir)) {
+            throw new IllegalArgumentException("dataDir must not be empty");
+        }
+
+        storeDir = StringUtils.isBlank(destination) ? new File(dataDir) : new File(dataDir, destination);
+        try {
+            // 启动时清理残留的segment，数据由parser从ack位点重新dump
+            if (storeDir.exists()) {
+                for (File file : storeDir.listFiles()) {
+                    if (file.getName().endsWith(LogSegment.FILE_SUFFIX)) {
+                        FileUtils.forceDelete(file);
+                    }
+                }
+            } else {
+                FileUtils.forceMkdir(storeDir);
+            }
+        } catch (IOException e) {
+            throw new CanalStoreException("init store dir failed: " + storeDir.getPath(), e);
+        }
+    }
+
+    public void stop() throws CanalStoreException {
+        super.stop();
+
+        cleanAll();
+    }
+
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            List<ByteString> payloads = payloads(data);
+            try {
+                while (!checkFreeSpace(data, payloads)) { // 检查是否有空位
+                    notFull.await(); // wait until not full
+                }
+            } catch (InterruptedException ie) {
+                notFull.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+            doPut(data, payloads);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            List<ByteString> payloads = payloads(data);
+            for (;;) {
+                if (checkFreeSpace(data, payloads)) {
+                    doPut(data, payloads);
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                try {
+                    nanos = notFull.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notFull.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            List<ByteString> payloads = payloads(data);
+            if (!checkFreeSpace(data, payloads)) {
+                return false;
+            } else {
+                doPut(data, payloads);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Arrays.asList(data));
+    }
+
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Arrays.asList(data), timeout, unit);
+    }
+
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Arrays.asList(data));
+    }
+
+    /**
+     * 执行具体的put操作
+     */
+    private void doPut(List<Event> data, List<ByteString> payloads) {
+        long current = putSequence.get();
+        long size = 0;
+        for (int i = 0; i < data.size(); i++) {
+            Event event = data.get(i);
+            ByteString payload = payloads.get(i);
+            int length = EventCodec.sizeOf(event, payload);
+            if (activeSegment == null || !activeSegment.hasRemaining(length)) {
+                rollSegment(current + 1, length);
+            }
+
+            activeSegment.append(event, payload, ++current);
+            size += calculateSize(event);
+        }
+
+        lastPutEvent = metadata(data.get(data.size() - 1));
+        putSequence.set(current);
+        putMemSize.getAndAdd(size);
+        profiling(data, OP.PUT);
+        // tell other threads that store is not empty
+        notEmpty.signal();
+    }
+
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkUnGetSlotAt((LogPosition) start, batchSize))
+                    notEmpty.await();
+            } catch (InterruptedException ie) {
+                notEmpty.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                                        CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    return doGet(start, batchSize);
+                }
+
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(start, batchSize);
+                }
+
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+
+        long current = getSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        long end = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            next = next + 1;
+        }
+
+        if (current >= maxAbleSequence) {
+            return new Events<Event>();
+        }
+
+        Events<Event> result = new Events<Event>();
+        List<Event> entrys = result.getEvents();
+        long memsize = 0;
+        if (batchMode.isItemSize()) {
+            end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
+            // 提取数据并返回
+            for (; next <= end; next++) {
+                Event event = read(getCursor, next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                }
+            }
+        } else {
+            long maxMemSize = batchSize * bufferMemUnit;
+            for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
+                // 永远保证可以取出第一条的记录，避免死锁
+                Event event = read(getCursor, next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                    memsize += calculateSize(event);
+                    end = next;// 记录end位点
+                }
+            }
+
+        }
+
+        PositionRange<LogPosition> range = new PositionRange<LogPosition>();
+        result.setPositionRange(range);
+
+        range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
+        range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1)));
+        range.setEndSeq(end);
+        // 记录一下是否存在可以被ack的点
+
+        for (int i = entrys.size() - 1; i >= 0; i--) {
+            Event event = entrys.get(i);
+            // GTID模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtid之后的next,如果在事务头就记录了会丢这最后一个事务
+            if ((CanalEntry.EntryType.TRANSACTIONBEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtid()))
+                || CanalEntry.EntryType.TRANSACTIONEND == event.getEntryType() || isDdl(event.getEventType())) {
+                // 将事务头/尾设置可被为ack的点
+                range.setAck(CanalEventUtils.createPosition(event));
+                break;
+            }
+        }
+
+        getSequence.set(end);
+        getMemSize.addAndGet(memsize);
+        profiling(result.getEvents(), OP.GET);
+        return result;
+    }
+
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long firstSeqeuence = ackSequence.get();
+            if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
+                // 没有ack过数据
+                Event event = read(ackCursor, firstSeqeuence + 1, false); // 最后一次ack为-1，需要移动到下一条,included
+                                                                          // = false
+                return CanalEventUtils.createPosition(event, false);
+            } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence <= putSequence.get()) {
+                // 最后一次ack的位置数据,需要移动到下一条,included = false
+                return CanalEventUtils.createPosition(lastAckEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long latestSequence = putSequence.get();
+            if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+                // 最后一次写入的数据，最后一条未消费的数据
+                return CanalEventUtils.createPosition(lastPutEvent, true);
+            } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+                // ack已经追上了put操作，included = false
+                return CanalEventUtils.createPosition(lastPutEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long sequence = ackSequence.get();
+            long maxSequence = getSequence.get();
+
+            long memsize = 0;
+            long localExecTime = 0L;
+            int deltaRows = 0;
+            if (seqId > 0) {
+                maxSequence = seqId;
+            }
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                // ack只需要元数据，不解析entry
+                Event event = read(ackCursor, next, false);
+                if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                    localExecTime = event.getExecuteTime();
+                }
+                deltaRows += event.getRowsCount();
+                memsize += calculateSize(event);
+                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    // 找到对应的position，更新ack seq
+                    ackSequence.set(next);
+                    ackMemSize.addAndGet(memsize);
+                    lastAckEvent = event;
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+
+                    // 回收已经完全ack的segment
+                    reclaimSegments(next);
+                    notFull.signal();
+                    return;
+                }
+            }
+
+            // 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getSequence.set(ackSequence.get());
+            getMemSize.set(ackMemSize.get());
+            getCursor.reset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            putSequence.set(INIT_SEQUENCE);
+            getSequence.set(INIT_SEQUENCE);
+            ackSequence.set(INIT_SEQUENCE);
+
+            putMemSize.set(0);
+            getMemSize.set(0);
+            ackMemSize.set(0);
+
+            for (LogSegment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            activeSegment = null;
+            lastPutEvent = null;
+            lastAckEvent = null;
+            getCursor.reset();
+            ackCursor.reset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =================== helper method =================
+
+    /**
+     * 读取sequence对应的event，顺序读取时复用cursor记录的offset，避免走索引查找
+     */
+    private Event read(SegmentCursor cursor, long sequence, boolean withPayload) {
+        LogSegment segment = cursor.segment;
+        int offset = cursor.offset;
+        if (segment == null || cursor.sequence != sequence) {
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(sequence);
+            segment = entry != null ? entry.getValue() : null;
+            offset = segment != null ? segment.lookup(sequence) : -1;
+            if (offset < 0) {
+                throw new CanalStoreException("sequence:" + sequence + " not found in store");
+            }
+        }
+
+        Event event = segment.read(offset, withPayload, raw);
+        if (sequence < segment.getLastSequence()) {
+            cursor.segment = segment;
+            cursor.offset = segment.next(offset);
+            cursor.sequence = sequence + 1;
+        } else {
+            // 当前segment已经读完，下一次重新定位
+            cursor.reset();
+        }
+        return event;
+    }
+
+    private void rollSegment(long baseSequence, int length) {
+        activeSegment = new LogSegment(storeDir, baseSequence, Math.max(segmentSize, length), indexInterval);
+        segments.put(baseSequence, activeSegment);
+    }
+
+    /**
+     * 删除所有记录都已经被ack的segment，当前写入的segment不删除
+     */
+    private void reclaimSegments(long ackSequence) {
+        Iterator<LogSegment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            LogSegment segment = iterator.next();
+            if (segment == activeSegment || segment.getLastSequence() > ackSequence) {
+                break;
+            }
+
+            if (getCursor.segment == segment) {
+                getCursor.reset();
+            }
+            if (ackCursor.segment == segment) {
+                ackCursor.reset();
+            }
+            iterator.remove();
+            segment.delete();
+        }
+    }
+
+    private List<ByteString> payloads(List<Event> data) {
+        ByteString[] payloads = new ByteString[data.size()];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = EventCodec.payload(data.get(i));
+        }
+        return Arrays.asList(payloads);
+    }
+
+    /**
+     * 查询是否有足够的磁盘空间，只有需要滚动出新的segment并且segment数量已经达到上限时才认为已满
+     */
+    private boolean checkFreeSpace(List<Event> data, List<ByteString> payloads) {
+        int freeSegments = maxSegmentCount - segments.size();
+        long remaining = activeSegment != null ? activeSegment.remaining() : 0;
+        for (int i = 0; i < data.size(); i++) {
+            int length = EventCodec.sizeOf(data.get(i), payloads.get(i));
+            if (length > remaining) {
+                if (freeSegments <= 0) {
+                    return false;
+                }
+
+                freeSegments--;
+                remaining = Math.max(segmentSize, length);
+            }
+            remaining -= length;
+        }
+        return true;
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;// 少一条数据
+            }
+
+            if (current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence) {
+                return true;
+            } else {
+                return false;
+            }
+        } else {
+            // 处理内存大小判断
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+
+            if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 只保留位点相关的元数据，避免lastPutEvent持有entry数据
+     */
+    private Event metadata(Event event) {
+        Event result = new Event();
+        result.setLogIdentity(event.getLogIdentity());
+        result.setEntryType(event.getEntryType());
+        result.setEventType(event.getEventType());
+        result.setExecuteTime(event.getExecuteTime());
+        result.setJournalName(event.getJournalName());
+        result.setPosition(event.getPosition());
+        result.setServerId(event.getServerId());
+        result.setGtid(event.getGtid());
+        result.setRawLength(event.getRawLength());
+        result.setRowsCount(event.getRowsCount());
+        return result;
+    }
+
+    private long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    private boolean isDdl(EventType type) {
+        return type == EventType.ALTER || type == EventType.CREATE || type == EventType.ERASE
+               || type == EventType.RENAME || type == EventType.TRUNCATE || type == EventType.CINDEX
+               || type == EventType.DINDEX;
+    }
+
+    private void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum OP {
+        PUT, GET
+    }
+
+    /**
+     * 顺序读取的位置缓存
+     */
+    private static class SegmentCursor {
+
+        private long       sequence = INIT_SEQUENCE;
+        private LogSegment segment;
+        private int        offset;
+
+        private void reset() {
+            sequence = INIT_SEQUENCE;
+            segment = null;
+            offset = 0;
+        }
+    }
+
+    // ================ setter / getter ==================
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public void setMaxSegmentCount(int maxSegmentCount) {
+        this.maxSegmentCount = maxSegmentCount;
+    }
+
+    public void setIndexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    public int getMaxSegmentCount() {
+        return maxSegmentCount;
+    }
+
+    public void setBufferMemUnit(int bufferMemUnit) {
+        this.bufferMemUnit = bufferMemUnit;
+    }
+
+    public void setBatchMode(BatchMode batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    public void setDdlIsolation(boolean ddlIsolation) {
+        this.ddlIsolation = ddlIsolation;
+    }
+
+    public int getCapacityEvents() {
+        return -1;
+    }
+
+    public int getSegmentCount() {
+        return maxSegmentCount;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public AtomicLong getPutSequence() {
+        return putSequence;
+    }
+
+    public AtomicLong getAckSequence() {
+        return ackSequence;
+    }
+
+    public AtomicLong getPutMemSize() {
+        return putMemSize;
+    }
+
+    public AtomicLong getAckMemSize() {
+        return ackMemSize;
+    }
+
+    public BatchMode getBatchMode() {
+        return batchMode;
+    }
+
+    public AtomicLong getPutExecTime() {
+        return putExecTime;
+    }
+
+    public AtomicLong getGetExecTime() {
+        return getExecTime;
+    }
+
+    public AtomicLong getAckExecTime() {
+        return ackExecTime;
+    }
+
+    public AtomicLong getPutTableRows() {
+        return putTableRows;
+    }
+
+    public AtomicLong getGetTableRows() {
+        return getTableRows;
+    }
+
+    public AtomicLong getAckTableRows() {
+        return ackTableRows;
+    }
+
+}
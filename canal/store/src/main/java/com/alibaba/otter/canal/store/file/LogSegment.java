@@ -0,0 +1,163 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.MappedBufferUtils;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+
+/**
+ * 基于mmap的event日志文件，文件名为第一条记录的sequence
+ *
+ * <pre>
+ * 1. 只支持顺序追加，每indexInterval条记录生成一个稀疏索引(sequence -> offset)
+ * 2. 查找时先二分定位到不大于目标sequence的索引点，再顺序扫描
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class LogSegment {
+
+    private static final Logger    logger         = LoggerFactory.getLogger(LogSegment.class);
+    public static final String     FILE_SUFFIX    = ".log";
+
+    private final File             file;
+    private final long             baseSequence;
+    private final int              indexInterval;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    private volatile long          lastSequence;
+    private volatile int           writePosition  = 0;
+    // 稀疏索引，indexSequences和indexOffsets一一对应
+    private long[]                 indexSequences = new long[16];
+    private int[]                  indexOffsets   = new int[16];
+    private int                    indexSize      = 0;
+
+    public LogSegment(File dir, long baseSequence, int capacity, int indexInterval){
+        this.file = new File(dir, String.format("%020d", baseSequence) + FILE_SUFFIX);
+        this.baseSequence = baseSequence;
+        this.lastSequence = baseSequence - 1;
+        this.indexInterval = indexInterval;
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new CanalStoreException("create segment failed: " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * 检查剩余空间是否可以写入size字节
+     */
+    public boolean hasRemaining(int size) {
+        return remaining() >= size;
+    }
+
+    /**
+     * 剩余可写入的字节数
+     */
+    public int remaining() {
+        return buffer.capacity() - writePosition;
+    }
+
+    /**
+     * 追加一条记录，调用方需要保证sequence连续并且空间足够
+     */
+    public void append(Event event, ByteString payload, long sequence) {
+        if ((sequence - baseSequence) % indexInterval == 0) {
+            addIndex(sequence, writePosition);
+        }
+
+        int length = EventCodec.encode(event, payload, sequence, buffer, writePosition);
+        writePosition += length;
+        lastSequence = sequence;
+    }
+
+    /**
+     * 查找sequence对应记录的offset，不存在返回-1
+     */
+    public int lookup(long sequence) {
+        if (sequence < baseSequence || sequence > lastSequence) {
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(indexSequences, 0, indexSize, sequence);
+        if (index < 0) {
+            index = -index - 2; // 不大于sequence的最近一个索引点
+        }
+
+        int offset = indexOffsets[index];
+        while (offset < writePosition) {
+            if (EventCodec.readSequence(buffer, offset) == sequence) {
+                return offset;
+            }
+            offset += EventCodec.recordLength(buffer, offset);
+        }
+        return -1;
+    }
+
+    /**
+     * 解析offset位置的event
+     */
+    public Event read(int offset, boolean withPayload, boolean raw) {
+        return EventCodec.decode(buffer, offset, withPayload, raw);
+    }
+
+    /**
+     * 返回offset位置之后下一条记录的offset
+     */
+    public int next(int offset) {
+        return offset + EventCodec.recordLength(buffer, offset);
+    }
+
+    /**
+     * 删除segment，调用方需要保证之后不再读写
+     */
+    public void delete() {
+        // 先显式释放映射，否则要等到gc回收buffer之后才真正释放磁盘空间，windows下文件也无法删除
+        MappedBufferUtils.unmap(buffer);
+        IOUtils.closeQuietly(raf);
+        if (!file.delete()) {
+            logger.warn("delete segment failed: {}", file.getPath());
+        }
+    }
+
+    private void addIndex(long sequence, int offset) {
+        if (indexSize == indexSequences.length) {
+            indexSequences = Arrays.copyOf(indexSequences, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+
+        indexSequences[indexSize] = sequence;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+
+    public long getBaseSequence() {
+        return baseSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getWritePosition() {
+        return writePosition;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+}
@@ -17,6 +17,7 @@ import com.alibaba.otter.canal.protocol.position.PositionRange;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
 import com.alibaba.otter.canal.store.CanalEventStore;
 import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
 import com.alibaba.otter.canal.store.CanalStoreScavenge;
 import com.alibaba.otter.canal.store.helper.CanalEventUtils;
 import com.alibaba.otter.canal.store.model.BatchMode;
@@ -35,7 +36,7 @@ import com.alibaba.otter.canal.store.model.Events;
  * @author jianghang 2012-6-20 上午09:46:31
  * @version 1.0.0
  */
-public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge {
+public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge, CanalStoreMetrics {
 
     private static final long INIT_SEQUENCE = -1;
     private int               bufferSize    = 16 * 1024;
@@ -648,6 +649,14 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         this.ddlIsolation = ddlIsolation;
     }
 
+    public int getCapacityEvents() {
+        return bufferSize;
+    }
+
+    public int getSegmentCount() {
+        return 0;
+    }
+
     public boolean isRaw() {
         return raw;
     }
@@ -0,0 +1,980 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.EntryPosition;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalFanoutEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 多订阅者共享一个RingBuffer的memory store
+ *
+ * <pre>
+ * 1. 每个ClientIdentity维护独立的getSequence/ackSequence，互不影响
+ * 2. put只和所有订阅者中最小的ackSequence比较，最慢的订阅者ack之后slot才会被复用
+ * 3. 同一个destination的多个消费端(比如MQ投递 + tcp客户端)共用一个instance，binlog只需要dump/解析一次
+ * 4. 启动时按metaManager中的订阅关系和cursor预先注册订阅者，避免尚未连接的订阅者的数据被其他订阅者ack之后释放
+ * 5. 订阅者按meta中记录的cursor定位，跳过cursor之前已经ack的数据，cursor对应的数据已经被释放时直接报错，不会静默跳过数据
+ * 6. 预先注册的订阅者超过subscriberTimeout一直没有连接时，在store写满时移除，避免阻塞其他订阅者
+ * 7. 不带ClientIdentity的get/ack/rollback使用默认订阅者，getFirstPosition/cleanUntil不会创建默认订阅者
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class MemoryEventStoreWithFanout extends AbstractCanalStoreScavenge implements CanalFanoutEventStore<Event>, CanalStoreScavenge, CanalStoreMetrics {
+
+    private static final Logger                   logger             = LoggerFactory.getLogger(MemoryEventStoreWithFanout.class);
+    private static final long                     INIT_SEQUENCE      = -1;
+    // 存在未连接的订阅者时，阻塞put的最长等待时间，用于及时检查订阅者是否超时
+    private static final long                     DETACHED_CHECK_MS  = 1000;
+    // 不带ClientIdentity的接口使用的订阅者
+    private static final ClientIdentity           DEFAULT_SUBSCRIBER = new ClientIdentity("", (short) 0);
+    private int                                   bufferSize         = 16 * 1024;
+    private int                                   bufferMemUnit      = 1024;                                    // memsize的单位，默认为1kb大小
+    private long                                  subscriberTimeout  = 30 * 60 * 1000L;                         // 预先注册的订阅者等待连接的时间，<=0代表一直等待
+    private int                                   indexMask;
+    private Event[]                               entries;
+    private Map<ClientIdentity, SubscriberCursor> cursors            = new HashMap<ClientIdentity, SubscriberCursor>();
+
+    private AtomicLong                            putSequence        = new AtomicLong(INIT_SEQUENCE);           // 代表当前put操作最后一次写操作发生的位置
+    private AtomicLong                            floorSequence      = new AtomicLong(INIT_SEQUENCE);           // 代表所有订阅者中最小的ack位置
+    private AtomicLong                            putMemSize         = new AtomicLong(0);
+    private AtomicLong                            floorMemSize       = new AtomicLong(0);
+
+    // 记录下put/get/ack操作的三个execTime
+    private AtomicLong                            putExecTime        = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                            getExecTime        = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                            ackExecTime        = new AtomicLong(System.currentTimeMillis());
+
+    // 记录下put/get/ack操作的三个table rows
+    private AtomicLong                            putTableRows       = new AtomicLong(0);
+    private AtomicLong                            getTableRows       = new AtomicLong(0);
+    private AtomicLong                            ackTableRows       = new AtomicLong(0);
+
+    // 阻塞put/get操作控制信号
+    private ReentrantLock                         lock               = new ReentrantLock();
+    private Condition                             notFull            = lock.newCondition();
+    private Condition                             notEmpty           = lock.newCondition();
+
+    private BatchMode                             batchMode          = BatchMode.ITEMSIZE;
+    private boolean                               ddlIsolation       = false;
+    private boolean                               raw                = true;                                    // 针对entry是否开启raw模式
+
+    public MemoryEventStoreWithFanout(){
+
+    }
+
+    public MemoryEventStoreWithFanout(BatchMode batchMode){
+        this.batchMode = batchMode;
+    }
+
+    public void start() throws CanalStoreException {
+        super.start();
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+
+        indexMask = bufferSize - 1;
+        entries = new Event[bufferSize];
+
+        // 预先注册已有的订阅者，保证最慢的订阅者连接之前数据不会被释放
+        if (canalMetaManager != null && canalMetaManager.isStart() && destination != null) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                for (ClientIdentity clientIdentity : canalMetaManager.listAllSubscribeInfo(destination)) {
+                    // 按meta中的cursor定位，连接之前已经ack的数据不会限制floor
+                    SubscriberCursor cursor = seekCursor(clientIdentity,
+                        (LogPosition) canalMetaManager.getCursor(clientIdentity));
+                    cursor.attached = false;
+                    cursors.put(clientIdentity, cursor);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void stop() throws CanalStoreException {
+        super.stop();
+
+        cleanAll();
+    }
+
+    public void subscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        subscribe(clientIdentity, null);
+    }
+
+    public void subscribe(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getCursor(clientIdentity, (LogPosition) position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (cursors.remove(clientIdentity) != null) {
+                updateFloor();
+                notFull.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkFreeSlotAt(putSequence.get() + data.size())) { // 检查是否有空位
+                    if (hasDetached()) {
+                        // 定期唤醒，检查未连接的订阅者是否超时
+                        notFull.await(DETACHED_CHECK_MS, TimeUnit.MILLISECONDS);
+                    } else {
+                        notFull.await(); // wait until not full
+                    }
+                }
+            } catch (InterruptedException ie) {
+                notFull.signal(); // propagate to non-interrupted thread
+                throw ie;
+            }
+            doPut(data);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (checkFreeSlotAt(putSequence.get() + data.size())) {
+                    doPut(data);
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                try {
+                    long waitNanos = hasDetached() ? Math.min(nanos,
+                        TimeUnit.MILLISECONDS.toNanos(DETACHED_CHECK_MS)) : nanos;
+                    nanos -= waitNanos - notFull.awaitNanos(waitNanos);
+                } catch (InterruptedException ie) {
+                    notFull.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!checkFreeSlotAt(putSequence.get() + data.size())) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Arrays.asList(data));
+    }
+
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Arrays.asList(data), timeout, unit);
+    }
+
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Arrays.asList(data));
+    }
+
+    /**
+     * 执行具体的put操作
+     */
+    private void doPut(List<Event> data) {
+        long current = putSequence.get();
+        long end = current + data.size();
+
+        // 先写数据，再更新对应的cursor
+        for (long next = current + 1; next <= end; next++) {
+            entries[getIndex(next)] = data.get((int) (next - current - 1));
+        }
+
+        putSequence.set(end);
+
+        // 还在定位的订阅者跳过cursor之前已经ack的数据
+        boolean seeked = false;
+        for (SubscriberCursor cursor : cursors.values()) {
+            if (cursor.seeking) {
+                skipAcked(cursor);
+                seeked = true;
+            }
+        }
+        if (seeked) {
+            updateFloor();
+        }
+
+        // 记录一下gets memsize信息，方便快速检索
+        if (batchMode.isMemSize()) {
+            long size = 0;
+            for (Event event : data) {
+                size += calculateSize(event);
+            }
+
+            putMemSize.getAndAdd(size);
+        }
+        profiling(data, OP.PUT);
+        // 多个订阅者可能同时在等待，需要全部唤醒
+        notEmpty.signalAll();
+    }
+
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        return get(DEFAULT_SUBSCRIBER, start, batchSize);
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize)
+                                                                                          throws InterruptedException,
+                                                                                          CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            SubscriberCursor cursor = getCursor(clientIdentity, (LogPosition) start);
+            while (!checkUnGetSlotAt(cursor, (LogPosition) start, batchSize)) {
+                notEmpty.await();
+            }
+
+            return doGet(cursor, start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                                        CanalStoreException {
+        return get(DEFAULT_SUBSCRIBER, start, batchSize, timeout, unit);
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit)
+                                                                                                                       throws InterruptedException,
+                                                                                                                       CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            SubscriberCursor cursor = getCursor(clientIdentity, (LogPosition) start);
+            for (;;) {
+                if (checkUnGetSlotAt(cursor, (LogPosition) start, batchSize)) {
+                    return doGet(cursor, start, batchSize);
+                }
+
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(cursor, start, batchSize);
+                }
+
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        return tryGet(DEFAULT_SUBSCRIBER, start, batchSize);
+    }
+
+    public Events<Event> tryGet(ClientIdentity clientIdentity, Position start, int batchSize)
+                                                                                             throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(getCursor(clientIdentity, (LogPosition) start), start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(SubscriberCursor cursor, Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+
+        long current = cursor.getSequence;
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        long end = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            next = next + 1;
+        }
+
+        if (current >= maxAbleSequence) {
+            return new Events<Event>();
+        }
+
+        Events<Event> result = new Events<Event>();
+        List<Event> entrys = result.getEvents();
+        long memsize = 0;
+        if (batchMode.isItemSize()) {
+            end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
+            // 提取数据并返回
+            for (; next <= end; next++) {
+                Event event = entries[getIndex(next)];
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                }
+            }
+        } else {
+            long maxMemSize = batchSize * bufferMemUnit;
+            for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
+                // 永远保证可以取出第一条的记录，避免死锁
+                Event event = entries[getIndex(next)];
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entrys.size() == 0) {
+                        entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entrys.add(event);
+                    memsize += calculateSize(event);
+                    end = next;// 记录end位点
+                }
+            }
+
+        }
+
+        PositionRange<LogPosition> range = new PositionRange<LogPosition>();
+        result.setPositionRange(range);
+
+        range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
+        range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1)));
+        range.setEndSeq(end);
+        // 记录一下是否存在可以被ack的点
+
+        for (int i = entrys.size() - 1; i >= 0; i--) {
+            Event event = entrys.get(i);
+            // GTID模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtid之后的next,如果在事务头就记录了会丢这最后一个事务
+            if ((CanalEntry.EntryType.TRANSACTIONBEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtid()))
+                || CanalEntry.EntryType.TRANSACTIONEND == event.getEntryType() || isDdl(event.getEventType())) {
+                // 将事务头/尾设置可被为ack的点
+                range.setAck(CanalEventUtils.createPosition(event));
+                break;
+            }
+        }
+
+        cursor.getSequence = end;
+        cursor.getMemSize += memsize;
+        profiling(result.getEvents(), OP.GET);
+        return result;
+    }
+
+    /**
+     * 所有订阅者中第一条未ack数据的position，不会创建默认订阅者
+     */
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return getFirstPosition(floorSequence.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LogPosition getFirstPosition(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return getFirstPosition(getCursor(clientIdentity, null).ackSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private LogPosition getFirstPosition(long firstSeqeuence) {
+        if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < putSequence.get()) {
+            // 没有ack过数据，需要移动到下一条,included = false
+            Event event = entries[getIndex(firstSeqeuence + 1)];
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence <= putSequence.get()) {
+            // 最后一次ack的位置数据,需要移动到下一条,included = false
+            Event event = entries[getIndex(firstSeqeuence)];
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long latestSequence = putSequence.get();
+            if (latestSequence > INIT_SEQUENCE && latestSequence != floorSequence.get()) {
+                Event event = entries[getIndex(latestSequence)]; // 最后一次写入的数据，最后一条未消费的数据
+                return CanalEventUtils.createPosition(event, true);
+            } else if (latestSequence > INIT_SEQUENCE && latestSequence == floorSequence.get()) {
+                // 所有订阅者的ack都已经追上了put操作，included = false
+                Event event = entries[getIndex(latestSequence)];
+                return CanalEventUtils.createPosition(event, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(Position position) throws CanalStoreException {
+        ack(DEFAULT_SUBSCRIBER, position, -1L);
+    }
+
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        ack(DEFAULT_SUBSCRIBER, position, seqId);
+    }
+
+    /**
+     * scavenge按所有订阅者中最小的cursor触发，各订阅者已经通过ack独立释放数据，这里只处理默认订阅者
+     */
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!cursors.containsKey(DEFAULT_SUBSCRIBER)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        ack(DEFAULT_SUBSCRIBER, position, -1L);
+    }
+
+    public void ack(ClientIdentity clientIdentity, Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = getCursor(clientIdentity, null);
+            long sequence = cursor.ackSequence;
+            long maxSequence = cursor.getSequence;
+
+            long memsize = 0;
+            long localExecTime = 0L;
+            int deltaRows = 0;
+            if (seqId > 0) {
+                maxSequence = seqId;
+            }
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                Event event = entries[getIndex(next)];
+                if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                    localExecTime = event.getExecuteTime();
+                }
+                deltaRows += event.getRowsCount();
+                memsize += calculateSize(event);
+                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    // 找到对应的position，更新ack seq
+                    cursor.ackSequence = next;
+                    cursor.ackMemSize += memsize;
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+
+                    // 最慢的订阅者ack之后，才能释放对应的slot
+                    updateFloor();
+                    notFull.signal();
+                    return;
+                }
+            }
+
+            // 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        rollback(DEFAULT_SUBSCRIBER);
+    }
+
+    public void rollback(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = getCursor(clientIdentity, null);
+            cursor.getSequence = cursor.ackSequence;
+            cursor.getMemSize = cursor.ackMemSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            putSequence.set(INIT_SEQUENCE);
+            floorSequence.set(INIT_SEQUENCE);
+            putMemSize.set(0);
+            floorMemSize.set(0);
+            cursors.clear();
+            entries = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =================== helper method =================
+
+    /**
+     * 获取订阅者的位置信息，不存在时按start定位，start为null时从当前最小的ack位置开始
+     */
+    private SubscriberCursor getCursor(ClientIdentity clientIdentity, LogPosition start) {
+        SubscriberCursor cursor = cursors.get(clientIdentity);
+        if (cursor == null) {
+            cursor = seekCursor(clientIdentity, start);
+            cursors.put(clientIdentity, cursor);
+        } else if (!cursor.attached) {
+            cursor = attach(clientIdentity, cursor, start);
+        }
+        return cursor;
+    }
+
+    /**
+     * 预先注册的订阅者第一次连接，还没有消费过数据时按订阅时的cursor重新定位，start为null时沿用meta中的cursor
+     */
+    private SubscriberCursor attach(ClientIdentity clientIdentity, SubscriberCursor cursor, LogPosition start) {
+        if (start == null || cursor.getSequence != cursor.ackSequence) {
+            cursor.attached = true;
+            return cursor;
+        }
+
+        SubscriberCursor seeked = seekCursor(clientIdentity, start);
+        cursors.put(clientIdentity, seeked);
+        updateFloor();
+        notFull.signalAll();
+        return seeked;
+    }
+
+    /**
+     * 从floor开始定位start对应的数据，作为订阅者的ack位置，store中还没有start之后的数据时在put时继续定位
+     */
+    private SubscriberCursor seekCursor(ClientIdentity clientIdentity, LogPosition start) {
+        SubscriberCursor cursor = new SubscriberCursor();
+        long floor = floorSequence.get();
+        cursor.getSequence = cursor.ackSequence = floor;
+        cursor.getMemSize = cursor.ackMemSize = floorMemSize.get();
+        cursor.registerTime = System.currentTimeMillis();
+        if (start == null || start.getPostion() == null || start.getPostion().getTimestamp() == null) {
+            return cursor;
+        }
+
+        // floor位置的数据已经被所有订阅者ack，start早于它说明中间的数据已经被释放
+        if (floor > INIT_SEQUENCE) {
+            Event floorEvent = entries[getIndex(floor)];
+            if (!CanalEventUtils.checkPosition(floorEvent, start) && isBefore(start, floorEvent)) {
+                throw new CanalStoreException(String.format("%s position %s has been released by other subscribers, first position in store is %s",
+                    clientIdentity,
+                    start,
+                    CanalEventUtils.createPosition(floorEvent)));
+            }
+        }
+
+        cursor.start = start;
+        cursor.seeking = true;
+        skipAcked(cursor);
+        return cursor;
+    }
+
+    /**
+     * 跳过start及之前的数据，遇到start之后的数据时定位完成
+     */
+    private void skipAcked(SubscriberCursor cursor) {
+        while (cursor.seeking && cursor.ackSequence < putSequence.get()) {
+            Event event = entries[getIndex(cursor.ackSequence + 1)];
+            boolean matched = CanalEventUtils.checkPosition(event, cursor.start);
+            if (!matched && isBefore(cursor.start, event)) {
+                cursor.seeking = false;
+                break;
+            }
+
+            cursor.ackSequence++;
+            cursor.ackMemSize += calculateSize(event);
+            cursor.getSequence = cursor.ackSequence;
+            cursor.getMemSize = cursor.ackMemSize;
+            if (matched) {
+                cursor.seeking = false;
+            }
+        }
+    }
+
+    private boolean hasDetached() {
+        if (subscriberTimeout <= 0) {
+            return false;
+        }
+
+        for (SubscriberCursor cursor : cursors.values()) {
+            if (!cursor.attached) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 移除超过subscriberTimeout一直没有连接的预先注册订阅者
+     */
+    private boolean evictDetached() {
+        if (subscriberTimeout <= 0) {
+            return false;
+        }
+
+        boolean evicted = false;
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<ClientIdentity, SubscriberCursor>> iterator = cursors.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ClientIdentity, SubscriberCursor> entry = iterator.next();
+            SubscriberCursor cursor = entry.getValue();
+            if (!cursor.attached && now - cursor.registerTime >= subscriberTimeout) {
+                logger.warn("subscriber {} hasn't connected in {} ms after the store started, release the data held by it",
+                    entry.getKey(),
+                    subscriberTimeout);
+                iterator.remove();
+                evicted = true;
+            }
+        }
+
+        if (evicted) {
+            updateFloor();
+        }
+        return evicted;
+    }
+
+    private boolean isBefore(LogPosition start, Event event) {
+        EntryPosition position = start.getPostion();
+        if (StringUtils.isBlank(position.getJournalName()) || position.getPosition() == null
+            || StringUtils.isBlank(event.getJournalName())) {
+            return position.getTimestamp() != null && position.getTimestamp() < event.getExecuteTime();
+        }
+
+        int val = position.getJournalName().compareTo(event.getJournalName());
+        return val < 0 || (val == 0 && position.getPosition() < event.getPosition());
+    }
+
+    /**
+     * 重新计算所有订阅者中最小的ack位置，并释放已经被所有订阅者ack的内存
+     */
+    private void updateFloor() {
+        SubscriberCursor slowest = null;
+        for (SubscriberCursor cursor : cursors.values()) {
+            if (slowest == null || cursor.ackSequence < slowest.ackSequence) {
+                slowest = cursor;
+            }
+        }
+
+        if (slowest == null || slowest.ackSequence <= floorSequence.get()) {
+            return;
+        }
+
+        long oldFloor = floorSequence.get();
+        long newFloor = slowest.ackSequence;
+        if (batchMode.isMemSize()) {
+            // 尝试清空buffer中的内存，将ack之前的内存全部释放掉
+            for (long index = oldFloor + 1; index < newFloor; index++) {
+                entries[getIndex(index)] = null;
+            }
+
+            // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
+            // ack清理的时候只处理entry=null，释放内存
+            Event lastEvent = entries[getIndex(newFloor)];
+            lastEvent.setEntry(null);
+            lastEvent.setRawEntry(null);
+        }
+
+        floorMemSize.set(slowest.ackMemSize);
+        floorSequence.set(newFloor);
+    }
+
+    /**
+     * 查询是否有空位
+     */
+    private boolean checkFreeSlotAt(final long sequence) {
+        final long wrapPoint = sequence - bufferSize;
+        if (wrapPoint > floorSequence.get()) { // 刚好追上最慢的订阅者一轮
+            if (evictDetached()) {
+                return checkFreeSlotAt(sequence);
+            }
+            return false;
+        } else {
+            // 在bufferSize模式上，再增加memSize控制
+            if (batchMode.isMemSize()) {
+                final long memsize = putMemSize.get() - floorMemSize.get();
+                if (memsize < bufferSize * bufferMemUnit) {
+                    return true;
+                } else if (evictDetached()) {
+                    return checkFreeSlotAt(sequence);
+                } else {
+                    return false;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(SubscriberCursor cursor, LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = cursor.getSequence;
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;// 少一条数据
+            }
+
+            if (current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence) {
+                return true;
+            } else {
+                return false;
+            }
+        } else {
+            // 处理内存大小判断
+            long currentSize = cursor.getMemSize;
+            long maxAbleSize = putMemSize.get();
+
+            if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    private int getIndex(long sequcnce) {
+        return (int) sequcnce & indexMask;
+    }
+
+    private boolean isDdl(EventType type) {
+        return type == EventType.ALTER || type == EventType.CREATE || type == EventType.ERASE
+               || type == EventType.RENAME || type == EventType.TRUNCATE || type == EventType.CINDEX
+               || type == EventType.DINDEX;
+    }
+
+    private void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum OP {
+        PUT, GET
+    }
+
+    /**
+     * 订阅者的get/ack位置，只在lock中访问
+     */
+    private static class SubscriberCursor {
+
+        private long        getSequence;
+        private long        ackSequence;
+        private long        getMemSize;
+        private long        ackMemSize;
+        private LogPosition start;             // 定位使用的cursor
+        private boolean     seeking  = false;  // store中还没有start之后的数据，继续跳过已经ack的数据
+        private boolean     attached = true;   // 预先注册的订阅者在连接之前为false
+        private long        registerTime;
+    }
+
+    // ================ setter / getter ==================
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setBufferMemUnit(int bufferMemUnit) {
+        this.bufferMemUnit = bufferMemUnit;
+    }
+
+    public void setSubscriberTimeout(long subscriberTimeout) {
+        this.subscriberTimeout = subscriberTimeout;
+    }
+
+    public void setBatchMode(BatchMode batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    public void setDdlIsolation(boolean ddlIsolation) {
+        this.ddlIsolation = ddlIsolation;
+    }
+
+    public int getCapacityEvents() {
+        return bufferSize;
+    }
+
+    public int getSegmentCount() {
+        return 0;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public AtomicLong getPutSequence() {
+        return putSequence;
+    }
+
+    /**
+     * 所有订阅者中最小的ack位置
+     */
+    public AtomicLong getAckSequence() {
+        return floorSequence;
+    }
+
+    public AtomicLong getPutMemSize() {
+        return putMemSize;
+    }
+
+    public AtomicLong getAckMemSize() {
+        return floorMemSize;
+    }
+
+    public BatchMode getBatchMode() {
+        return batchMode;
+    }
+
+    public AtomicLong getPutExecTime() {
+        return putExecTime;
+    }
+
+    public AtomicLong getGetExecTime() {
+        return getExecTime;
+    }
+
+    public AtomicLong getAckExecTime() {
+        return ackExecTime;
+    }
+
+    public AtomicLong getPutTableRows() {
+        return putTableRows;
+    }
+
+    public AtomicLong getGetTableRows() {
+        return getTableRows;
+    }
+
+    public AtomicLong getAckTableRows() {
+        return ackTableRows;
+    }
+
+}
@@ -0,0 +1,732 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.position.LogPosition;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.protocol.position.PositionRange;
+import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.CanalStoreMetrics;
+import com.alibaba.otter.canal.store.CanalStoreScavenge;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 基于sequence barrier构建的无锁memory store，参考disruptor的sequence机制
+ *
+ * <pre>
+ * 和{@linkplain MemoryEventStoreWithBuffer}的区别：
+ * 1. put/get/ack不再共用一把ReentrantLock，各自只通过CAS推进自己的sequence
+ *   a. put操作先通过claimSequence抢占空位，写完数据后按claim顺序发布putSequence
+ *   b. get操作读取(getSequence, putSequence]区间的数据，通过CAS推进getSequence，失败则重试
+ *   c. ack操作读取(ackSequence, getSequence]区间的数据，通过CAS推进ackSequence，失败则重试
+ * 2. 阻塞等待采用spin -> yield -> park的退避方式，不再依赖notFull/notEmpty两个Condition
+ *
+ * 其余的语义(batchMode/ddlIsolation/raw/位点计算)和MemoryEventStoreWithBuffer保持一致
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+public class MemoryEventStoreWithSequenceBarrier extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge, CanalStoreMetrics {
+
+    private static final long           INIT_SEQUENCE   = -1;
+    private static final long           CLAIM_FAILED    = Long.MIN_VALUE;
+    private static final int            DEFAULT_RETRIES = 200;
+    private int                         bufferSize      = 16 * 1024;
+    private int                         bufferMemUnit   = 1024;                             // memsize的单位，默认为1kb大小
+    private long                        parkNanos       = 100 * 1000L;                      // 退避到park阶段时每次休眠的时间
+    private int                         indexMask;
+    private AtomicReferenceArray<Event> entries;
+
+    // put操作的抢占下标，多个put并发时按claim的顺序依次发布putSequence
+    private AtomicLong                  claimSequence   = new AtomicLong(INIT_SEQUENCE);
+    // 记录下put/get/ack操作的三个下标
+    private AtomicLong                  putSequence     = new AtomicLong(INIT_SEQUENCE);    // 代表当前put操作最后一次写操作发生的位置
+    private AtomicLong                  getSequence     = new AtomicLong(INIT_SEQUENCE);    // 代表当前get操作读取的最后一条的位置
+    private AtomicLong                  ackSequence     = new AtomicLong(INIT_SEQUENCE);    // 代表当前ack操作的最后一条的位置
+
+    // 记录下put/get/ack操作的三个memsize大小
+    private AtomicLong                  putMemSize      = new AtomicLong(0);
+    private AtomicLong                  getMemSize      = new AtomicLong(0);
+    private AtomicLong                  ackMemSize      = new AtomicLong(0);
+
+    // 记录下put/get/ack操作的三个execTime
+    private AtomicLong                  putExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                  getExecTime     = new AtomicLong(System.currentTimeMillis());
+    private AtomicLong                  ackExecTime     = new AtomicLong(System.currentTimeMillis());
+
+    // 记录下put/get/ack操作的三个table rows
+    private AtomicLong                  putTableRows    = new AtomicLong(0);
+    private AtomicLong                  getTableRows    = new AtomicLong(0);
+    private AtomicLong                  ackTableRows    = new AtomicLong(0);
+
+    private BatchMode                   batchMode       = BatchMode.ITEMSIZE;               // 默认为内存大小模式
+    private boolean                     ddlIsolation    = false;
+    private boolean                     raw             = true;                             // 针对entry是否开启raw模式
+
+    public MemoryEventStoreWithSequenceBarrier(){
+
+    }
+
+    public MemoryEventStoreWithSequenceBarrier(BatchMode batchMode){
+        this.batchMode = batchMode;
+    }
+
+    public void start() throws CanalStoreException {
+        super.start();
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+
+        indexMask = bufferSize - 1;
+        entries = new AtomicReferenceArray<Event>(bufferSize);
+    }
+
+    public void stop() throws CanalStoreException {
+        super.stop();
+
+        cleanAll();
+    }
+
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+
+        int counter = DEFAULT_RETRIES;
+        long current;
+        while ((current = tryClaim(data.size())) == CLAIM_FAILED) { // 检查是否有空位
+            counter = applyWaitMethod(counter); // wait until not full
+        }
+
+        doPut(current, data);
+    }
+
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = DEFAULT_RETRIES;
+        for (;;) {
+            long current = tryClaim(data.size());
+            if (current != CLAIM_FAILED) {
+                doPut(current, data);
+                return true;
+            }
+
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+
+            counter = applyWaitMethod(counter);
+        }
+    }
+
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+
+        long current = tryClaim(data.size());
+        if (current == CLAIM_FAILED) {
+            return false;
+        } else {
+            doPut(current, data);
+            return true;
+        }
+    }
+
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Arrays.asList(data));
+    }
+
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Arrays.asList(data), timeout, unit);
+    }
+
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Arrays.asList(data));
+    }
+
+    /**
+     * 尝试抢占size个空位，返回抢占前的claim下标，没有空位时返回CLAIM_FAILED
+     */
+    private long tryClaim(int size) {
+        for (;;) {
+            long current = claimSequence.get();
+            long next = current + size;
+            if (!checkFreeSlotAt(next)) {
+                return CLAIM_FAILED;
+            }
+
+            if (claimSequence.compareAndSet(current, next)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 执行具体的put操作
+     */
+    private void doPut(long current, List<Event> data) {
+        long end = current + data.size();
+
+        // 先写数据，再发布对应的cursor，putSequence的volatile写保证get请求可见时数据已经写入
+        for (long next = current + 1; next <= end; next++) {
+            entries.lazySet(getIndex(next), data.get((int) (next - current - 1)));
+        }
+
+        // 记录一下gets memsize信息，方便快速检索
+        if (batchMode.isMemSize()) {
+            long size = 0;
+            for (Event event : data) {
+                size += calculateSize(event);
+            }
+
+            putMemSize.getAndAdd(size);
+        }
+
+        // 按照claim的顺序发布，等待前一个put完成发布
+        while (putSequence.get() != current) {
+            Thread.yield();
+        }
+        putSequence.set(end);
+        profiling(data, OP.PUT);
+    }
+
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        int counter = DEFAULT_RETRIES;
+        for (;;) {
+            if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                Events<Event> result = doGet(start, batchSize);
+                if (!result.getEvents().isEmpty()) {
+                    return result;
+                }
+            }
+
+            counter = applyWaitMethod(counter);
+        }
+    }
+
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
+                                                                                        CanalStoreException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = DEFAULT_RETRIES;
+        for (;;) {
+            if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                Events<Event> result = doGet(start, batchSize);
+                if (!result.getEvents().isEmpty()) {
+                    return result;
+                }
+            }
+
+            if (deadline - System.nanoTime() <= 0) {
+                // 如果时间到了，有多少取多少
+                return doGet(start, batchSize);
+            }
+
+            counter = applyWaitMethod(counter);
+        }
+    }
+
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        return doGet(start, batchSize);
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+
+        retry: for (;;) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            long end = current;
+            // 如果startPosition为null，说明是第一次，默认+1处理
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;
+            }
+
+            if (current >= maxAbleSequence) {
+                return new Events<Event>();
+            }
+
+            Events<Event> result = new Events<Event>();
+            List<Event> entrys = result.getEvents();
+            long memsize = 0;
+            if (batchMode.isItemSize()) {
+                end = (next + batchSize - 1) < maxAbleSequence ? (next + batchSize - 1) : maxAbleSequence;
+                // 提取数据并返回
+                for (; next <= end; next++) {
+                    Event event = entries.get(getIndex(next));
+                    if (event == null) {
+                        // 并发ack已经释放了该slot，说明getSequence已经变化，重新读取
+                        continue retry;
+                    }
+                    if (ddlIsolation && isDdl(event.getEventType())) {
+                        // 如果是ddl隔离，直接返回
+                        if (entrys.size() == 0) {
+                            entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                            end = next; // 更新end为当前
+                        } else {
+                            // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                            end = next - 1; // next-1一定大于current，不需要判断
+                        }
+                        break;
+                    } else {
+                        entrys.add(event);
+                    }
+                }
+            } else {
+                long maxMemSize = batchSize * bufferMemUnit;
+                for (; memsize <= maxMemSize && next <= maxAbleSequence; next++) {
+                    // 永远保证可以取出第一条的记录，避免死锁
+                    Event event = entries.get(getIndex(next));
+                    if (event == null) {
+                        // 并发ack已经释放了该slot，说明getSequence已经变化，重新读取
+                        continue retry;
+                    }
+                    if (ddlIsolation && isDdl(event.getEventType())) {
+                        // 如果是ddl隔离，直接返回
+                        if (entrys.size() == 0) {
+                            entrys.add(event);// 如果没有DML事件，加入当前的DDL事件
+                            end = next; // 更新end为当前
+                        } else {
+                            // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                            end = next - 1; // next-1一定大于current，不需要判断
+                        }
+                        break;
+                    } else {
+                        entrys.add(event);
+                        memsize += calculateSize(event);
+                        end = next;// 记录end位点
+                    }
+                }
+
+            }
+
+            // 先抢占getSequence，抢占失败说明有其他get并发，重新读取
+            if (!getSequence.compareAndSet(current, end)) {
+                continue retry;
+            }
+
+            PositionRange<LogPosition> range = new PositionRange<LogPosition>();
+            result.setPositionRange(range);
+
+            range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
+            range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1)));
+            range.setEndSeq(end);
+            // 记录一下是否存在可以被ack的点
+
+            for (int i = entrys.size() - 1; i >= 0; i--) {
+                Event event = entrys.get(i);
+                // GTID模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtid之后的next,如果在事务头就记录了会丢这最后一个事务
+                if ((CanalEntry.EntryType.TRANSACTIONBEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtid()))
+                    || CanalEntry.EntryType.TRANSACTIONEND == event.getEntryType() || isDdl(event.getEventType())) {
+                    // 将事务头/尾设置可被为ack的点
+                    range.setAck(CanalEventUtils.createPosition(event));
+                    break;
+                }
+            }
+
+            getMemSize.addAndGet(memsize);
+            profiling(result.getEvents(), OP.GET);
+            return result;
+        }
+    }
+
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        for (;;) {
+            long firstSeqeuence = ackSequence.get();
+            long latestSequence = putSequence.get();
+            if (firstSeqeuence == INIT_SEQUENCE && firstSeqeuence < latestSequence) {
+                // 没有ack过数据
+                Event event = entries.get(getIndex(firstSeqeuence + 1)); // 最后一次ack为-1，需要移动到下一条,included
+                                                                         // = false
+                if (event == null) {
+                    // 并发ack正在释放slot，等待ackSequence发布之后重新读取
+                    Thread.yield();
+                    continue;
+                }
+                return CanalEventUtils.createPosition(event, false);
+            } else if (firstSeqeuence > INIT_SEQUENCE && firstSeqeuence <= latestSequence) {
+                // ack未追上put操作，或者已经追上(store中没有数据)
+                Event event = entries.get(getIndex(firstSeqeuence)); // 最后一次ack的位置数据,需要移动到下一条,included
+                                                                     // = false
+                return CanalEventUtils.createPosition(event, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        }
+    }
+
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        long latestSequence = putSequence.get();
+        if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+            Event event = entries.get(getIndex(latestSequence)); // 最后一次写入的数据，最后一条未消费的数据
+            return CanalEventUtils.createPosition(event, true);
+        } else if (latestSequence > INIT_SEQUENCE) {
+            // ack已经追上了put操作
+            Event event = entries.get(getIndex(latestSequence)); // 最后一次写入的数据，included
+                                                                 // = false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    public void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        retry: for (;;) {
+            long sequence = ackSequence.get();
+            long maxSequence = getSequence.get();
+
+            long memsize = 0;
+            // ack没有list，但有已存在的foreach，还是节省一下list的开销
+            long localExecTime = 0L;
+            int deltaRows = 0;
+            if (seqId > 0) {
+                maxSequence = seqId;
+            }
+            // 记录查找过程中读到的event，释放slot时只清理这些event
+            List<Event> scanned = batchMode.isMemSize() ? new ArrayList<Event>() : null;
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                Event event = entries.get(getIndex(next));
+                if (event == null) {
+                    // 并发ack已经释放了该slot，重新查找
+                    continue retry;
+                }
+                if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                    localExecTime = event.getExecuteTime();
+                }
+                deltaRows += event.getRowsCount();
+                memsize += calculateSize(event);
+                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    // 找到对应的position，先释放slot再发布ackSequence
+                    // 发布之后put才能复用这些slot，此时置为null不会误删新写入的event
+                    if (scanned != null) {
+                        for (int i = 0; i < scanned.size(); i++) {
+                            entries.compareAndSet(getIndex(sequence + 1 + i), scanned.get(i), null);
+                        }
+                    }
+
+                    if (!ackSequence.compareAndSet(sequence, next)) {
+                        // 有其他ack并发推进了ackSequence，恢复仍未被ack的slot后重新查找
+                        if (scanned != null) {
+                            long acked = ackSequence.get();
+                            for (int i = 0; i < scanned.size(); i++) {
+                                if (sequence + 1 + i > acked) {
+                                    entries.compareAndSet(getIndex(sequence + 1 + i), null, scanned.get(i));
+                                }
+                            }
+                        }
+                        continue retry;
+                    }
+
+                    if (batchMode.isMemSize()) {
+                        ackMemSize.addAndGet(memsize);
+                        // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
+                        // ack清理的时候只处理entry=null，释放内存
+                        event.setEntry(null);
+                        event.setRawEntry(null);
+                    }
+
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+                    return;
+                }
+
+                if (scanned != null) {
+                    scanned.add(event);
+                }
+            }
+
+            if (ackSequence.get() != sequence) {
+                // 查找过程中ackSequence被并发推进，重新查找
+                continue;
+            }
+
+            // 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        }
+    }
+
+    public void rollback() throws CanalStoreException {
+        // 和get/ack一样通过CAS推进getSequence，直到getSequence和并发推进后的ackSequence一致
+        for (;;) {
+            long current = getSequence.get();
+            long ack = ackSequence.get();
+            long ackMem = ackMemSize.get();
+            if (getSequence.compareAndSet(current, ack)) {
+                getMemSize.set(ackMem);
+                if (ackSequence.get() == ack) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public void cleanAll() throws CanalStoreException {
+        claimSequence.set(INIT_SEQUENCE);
+        putSequence.set(INIT_SEQUENCE);
+        getSequence.set(INIT_SEQUENCE);
+        ackSequence.set(INIT_SEQUENCE);
+
+        putMemSize.set(0);
+        getMemSize.set(0);
+        ackMemSize.set(0);
+        entries = null;
+    }
+
+    // =================== helper method =================
+
+    private long getMinimumGetOrAck() {
+        long get = getSequence.get();
+        long ack = ackSequence.get();
+        return ack <= get ? ack : get;
+    }
+
+    /**
+     * 查询是否有空位
+     */
+    private boolean checkFreeSlotAt(final long sequence) {
+        final long wrapPoint = sequence - bufferSize;
+        final long minPoint = getMinimumGetOrAck();
+        if (wrapPoint > minPoint) { // 刚好追上一轮
+            return false;
+        } else {
+            // 在bufferSize模式上，再增加memSize控制
+            if (batchMode.isMemSize()) {
+                final long memsize = putMemSize.get() - ackMemSize.get();
+                if (memsize < bufferSize * bufferMemUnit) {
+                    return true;
+                } else {
+                    return false;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            if (startPosition == null || !startPosition.getPostion().isIncluded()) { // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+                next = next + 1;// 少一条数据
+            }
+
+            if (current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence) {
+                return true;
+            } else {
+                return false;
+            }
+        } else {
+            // 处理内存大小判断
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+
+            if (maxAbleSize - currentSize >= batchSize * bufferMemUnit) {
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 参考disruptor的SleepingWaitStrategy，先自旋，再yield，最后park
+     */
+    private int applyWaitMethod(int counter) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (counter > DEFAULT_RETRIES / 2) {
+            --counter;
+        } else if (counter > 0) {
+            --counter;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+
+        return counter;
+    }
+
+    private long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    private int getIndex(long sequcnce) {
+        return (int) sequcnce & indexMask;
+    }
+
+    private boolean isDdl(EventType type) {
+        return type == EventType.ALTER || type == EventType.CREATE || type == EventType.ERASE
+               || type == EventType.RENAME || type == EventType.TRUNCATE || type == EventType.CINDEX
+               || type == EventType.DINDEX;
+    }
+
+    private void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            case ACK:
+                ackTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    ackExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum OP {
+        PUT, GET, ACK
+    }
+
+    // ================ setter / getter ==================
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setBufferMemUnit(int bufferMemUnit) {
+        this.bufferMemUnit = bufferMemUnit;
+    }
+
+    public void setParkNanos(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    public void setBatchMode(BatchMode batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    public void setDdlIsolation(boolean ddlIsolation) {
+        this.ddlIsolation = ddlIsolation;
+    }
+
+    public int getCapacityEvents() {
+        return bufferSize;
+    }
+
+    public int getSegmentCount() {
+        return 0;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public void setRaw(boolean raw) {
+        this.raw = raw;
+    }
+
+    public AtomicLong getPutSequence() {
+        return putSequence;
+    }
+
+    public AtomicLong getAckSequence() {
+        return ackSequence;
+    }
+
+    public AtomicLong getPutMemSize() {
+        return putMemSize;
+    }
+
+    public AtomicLong getAckMemSize() {
+        return ackMemSize;
+    }
+
+    public BatchMode getBatchMode() {
+        return batchMode;
+    }
+
+    public AtomicLong getPutExecTime() {
+        return putExecTime;
+    }
+
+    public AtomicLong getGetExecTime() {
+        return getExecTime;
+    }
+
+    public AtomicLong getAckExecTime() {
+        return ackExecTime;
+    }
+
+    public AtomicLong getPutTableRows() {
+        return putTableRows;
+    }
+
+    public AtomicLong getGetTableRows() {
+        return getTableRows;
+    }
+
+    public AtomicLong getAckTableRows() {
+        return ackTableRows;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.alibaba.otter.canal.store.file;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.buffer.MemoryEventStoreBase;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试基于segment文件的put / get / ack / rollback操作
+ *
+ * @version 1.1.4
+ */
+public class FileEventStoreWithSegmentTest extends MemoryEventStoreBase {
+
+    private File                      dataDir;
+    private FileEventStoreWithSegment eventStore;
+
+    @Before
+    public void setUp() {
+        dataDir = new File(System.getProperty("java.io.tmpdir", "/tmp"), "canal_file_store");
+        eventStore = new FileEventStoreWithSegment();
+        eventStore.setDataDir(dataDir.getPath());
+        eventStore.setDestination("example");
+        // 每个segment只能放下少量记录，方便测试滚动和回收
+        eventStore.setSegmentSize(4 * 1024);
+        eventStore.setIndexInterval(4);
+        eventStore.setMaxSegmentCount(4);
+        eventStore.start();
+    }
+
+    @After
+    public void tearDown() {
+        eventStore.stop();
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    @Test
+    public void testPutGetAck() {
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Position lastest = eventStore.getLatestPosition();
+        Assert.assertEquals(first, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(lastest, CanalEventUtils.createPosition(buildEvent("1", 1L, count)));
+
+        Events<Event> entrys = eventStore.tryGet(first, count);
+        Assert.assertEquals(count, entrys.getEvents().size());
+        for (int i = 0; i < count; i++) {
+            Event event = entrys.getEvents().get(i);
+            Assert.assertEquals(1L + i, event.getExecuteTime());
+            Assert.assertEquals(buildEvent("1", 1L, 1L + i).getRawEntry(), event.getRawEntry());
+            Assert.assertEquals(buildEvent("1", 1L, 1L).getLogIdentity(), event.getLogIdentity());
+        }
+
+        eventStore.ack(entrys.getPositionRange().getEnd(), entrys.getPositionRange().getEndSeq());
+        Assert.assertEquals(lastest, eventStore.getFirstPosition());
+    }
+
+    @Test
+    public void testRollbackAcrossSegments() {
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Events<Event> entrys1 = eventStore.tryGet(first, 10);
+        eventStore.ack(entrys1.getPositionRange().getEnd());
+
+        Events<Event> entrys2 = eventStore.tryGet(first, 50);
+        Assert.assertEquals(50, entrys2.getEvents().size());
+        eventStore.rollback();
+
+        Events<Event> entrys3 = eventStore.tryGet(first, 50);
+        Assert.assertEquals(entrys2.getPositionRange().getStart(), entrys3.getPositionRange().getStart());
+        Assert.assertEquals(entrys2.getPositionRange().getEnd(), entrys3.getPositionRange().getEnd());
+        Assert.assertEquals(11L, entrys3.getEvents().get(0).getExecuteTime());
+    }
+
+    @Test
+    public void testFullAndReclaim() {
+        int count = 0;
+        while (eventStore.tryPut(buildEvent("1", 1L, 1L + count))) {
+            count++;
+        }
+        Assert.assertTrue(count > 0);
+        Assert.assertEquals(4, dataDir.listFiles()[0].listFiles().length);
+
+        Position first = eventStore.getFirstPosition();
+        Events<Event> entrys = eventStore.tryGet(first, count);
+        Assert.assertEquals(count, entrys.getEvents().size());
+        eventStore.cleanUntil(entrys.getPositionRange().getEnd());
+
+        // 除了当前写入的segment，其余都已经被回收
+        Assert.assertEquals(1, dataDir.listFiles()[0].listFiles().length);
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + count)));
+    }
+}
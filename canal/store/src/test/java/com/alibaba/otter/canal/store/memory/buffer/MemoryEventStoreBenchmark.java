@@ -0,0 +1,149 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithSequenceBarrier;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 对比MemoryEventStoreWithBuffer和MemoryEventStoreWithSequenceBarrier在1个put线程 + N个get/ack线程下的吞吐
+ *
+ * <pre>
+ * 运行方式：直接执行main方法，readers1/readers4/readers16三个group分别对应1/4/16个并发reader
+ * 每个group内的线程数通过GroupThreads注解固定，不依赖threadGroups按方法名排序分配线程
+ * </pre>
+ *
+ * @version 1.1.4
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryEventStoreBenchmark extends MemoryEventStoreBase {
+
+    private static final int       BUFFER_SIZE = 16 * 1024;
+    private static final int       BATCH_SIZE  = 64;
+
+    @Param({ "buffer", "sequenceBarrier" })
+    public String                  storeType;
+
+    private CanalEventStore<Event> eventStore;
+    private Event[]                events;
+    private final AtomicLong       putIndex    = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("buffer".equals(storeType)) {
+            MemoryEventStoreWithBuffer store = new MemoryEventStoreWithBuffer();
+            store.setBufferSize(BUFFER_SIZE);
+            store.start();
+            eventStore = store;
+        } else {
+            MemoryEventStoreWithSequenceBarrier store = new MemoryEventStoreWithSequenceBarrier();
+            store.setBufferSize(BUFFER_SIZE);
+            store.start();
+            eventStore = store;
+        }
+
+        // 预先构造好event，避免protobuf的序列化开销影响结果
+        events = new Event[BUFFER_SIZE];
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            events[i] = buildEvent("mysql-bin.000001", 4L + i, 1L + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventStore.stop();
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public boolean put1() {
+        return put();
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public int getAndAck1() {
+        return getAndAck();
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(1)
+    public boolean put4() {
+        return put();
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(4)
+    public int getAndAck4() {
+        return getAndAck();
+    }
+
+    @Benchmark
+    @Group("readers16")
+    @GroupThreads(1)
+    public boolean put16() {
+        return put();
+    }
+
+    @Benchmark
+    @Group("readers16")
+    @GroupThreads(16)
+    public int getAndAck16() {
+        return getAndAck();
+    }
+
+    private boolean put() {
+        return eventStore.tryPut(events[(int) (putIndex.getAndIncrement() & (BUFFER_SIZE - 1))]);
+    }
+
+    private int getAndAck() {
+        Events<Event> entrys = eventStore.tryGet(null, BATCH_SIZE);
+        if (!entrys.getEvents().isEmpty()) {
+            try {
+                eventStore.ack(entrys.getPositionRange().getEnd(), entrys.getPositionRange().getEndSeq());
+            } catch (CanalStoreException e) {
+                // 其他reader已经ack到更大的位置
+            }
+        }
+        return entrys.getEvents().size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(MemoryEventStoreBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,265 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.meta.MemoryMetaManager;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithFanout;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试多订阅者的独立get / ack / rollback操作
+ *
+ * @version 1.1.4
+ */
+public class MemoryEventStoreWithFanoutTest extends MemoryEventStoreBase {
+
+    private static final ClientIdentity CLIENT_A = new ClientIdentity("example", (short) 1001);
+    private static final ClientIdentity CLIENT_B = new ClientIdentity("example", (short) 1002);
+
+    @Test
+    public void testIndependentGet() {
+        int bufferSize = 16;
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+        eventStore.subscribe(CLIENT_B);
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Assert.assertEquals(first, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(first, eventStore.getFirstPosition(CLIENT_B));
+
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        Assert.assertEquals(bufferSize, entrysA.getEvents().size());
+        // A已经取完，不影响B
+        Assert.assertTrue(eventStore.tryGet(CLIENT_A, first, bufferSize).getEvents().isEmpty());
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, first, bufferSize / 2);
+        Assert.assertEquals(bufferSize / 2, entrysB.getEvents().size());
+        Assert.assertEquals(entrysA.getPositionRange().getStart(), entrysB.getPositionRange().getStart());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testReclaimAtSlowestAck() {
+        int bufferSize = 16;
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+        eventStore.subscribe(CLIENT_B);
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        eventStore.ack(CLIENT_A, entrysA.getPositionRange().getEnd(), entrysA.getPositionRange().getEndSeq());
+        // B还没有ack，依旧不能写入
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+        Assert.assertEquals(-1L, eventStore.getAckSequence().get());
+
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, first, 4);
+        eventStore.ack(CLIENT_B, entrysB.getPositionRange().getEnd(), entrysB.getPositionRange().getEndSeq());
+        Assert.assertEquals(3L, eventStore.getAckSequence().get());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize + 4)));
+
+        // B取消订阅之后，只受A的限制
+        eventStore.unsubscribe(CLIENT_B);
+        Assert.assertEquals(bufferSize - 1L, eventStore.getAckSequence().get());
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize + 4)));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testIndependentRollback() {
+        int bufferSize = 16;
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+        eventStore.subscribe(CLIENT_B);
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Events<Event> entrysA1 = eventStore.tryGet(CLIENT_A, first, 2);
+        eventStore.ack(CLIENT_A, entrysA1.getPositionRange().getEnd(), entrysA1.getPositionRange().getEndSeq());
+        Events<Event> entrysA2 = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, first, bufferSize);
+        Assert.assertEquals(bufferSize / 2, entrysB.getEvents().size());
+
+        eventStore.rollback(CLIENT_A);
+        Events<Event> entrysA3 = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        Assert.assertEquals(entrysA2.getPositionRange().getStart(), entrysA3.getPositionRange().getStart());
+        Assert.assertEquals(entrysA2.getPositionRange().getEnd(), entrysA3.getPositionRange().getEnd());
+        // A的rollback不影响B
+        Assert.assertTrue(eventStore.tryGet(CLIENT_B, first, bufferSize).getEvents().isEmpty());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testLaggingAndReconnectSubscriber() {
+        int bufferSize = 16;
+        ClientIdentity clientC = new ClientIdentity("example", (short) 1003);
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+        eventStore.subscribe(CLIENT_B);
+        eventStore.subscribe(clientC); // C一直没有消费，限制住floor
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        eventStore.ack(CLIENT_A, entrysA.getPositionRange().getEnd(), entrysA.getPositionRange().getEndSeq());
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, first, 4);
+        eventStore.ack(CLIENT_B, entrysB.getPositionRange().getEnd(), entrysB.getPositionRange().getEndSeq());
+        Position cursorB = entrysB.getPositionRange().getEnd();
+
+        // B断开之后按meta中的cursor重新订阅，从cursor之后继续消费
+        eventStore.unsubscribe(CLIENT_B);
+        eventStore.subscribe(CLIENT_B, cursorB);
+        Events<Event> entrysB2 = eventStore.tryGet(CLIENT_B, cursorB, bufferSize);
+        Assert.assertEquals(bufferSize / 2 - 4, entrysB2.getEvents().size());
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 5L, 5L)), entrysB2.getPositionRange()
+            .getStart());
+
+        // C取消订阅之后，A/B的ack推进了floor，B的旧cursor对应的数据已经被释放
+        eventStore.ack(CLIENT_B, entrysB2.getPositionRange().getEnd(), entrysB2.getPositionRange().getEndSeq());
+        eventStore.unsubscribe(clientC);
+        eventStore.unsubscribe(CLIENT_B);
+        try {
+            eventStore.subscribe(CLIENT_B, cursorB);
+            Assert.fail("released position should not be skipped silently");
+        } catch (CanalStoreException e) {
+            // expected
+        }
+        eventStore.stop();
+    }
+
+    @Test
+    public void testPreRegisterFromMeta() {
+        int bufferSize = 16;
+        MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+        metaManager.subscribe(CLIENT_B);
+
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.setDestination("example");
+        eventStore.setCanalMetaManager(metaManager);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+
+        // B还没有连接，A的ack不能释放数据
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        eventStore.ack(CLIENT_A, entrysA.getPositionRange().getEnd(), entrysA.getPositionRange().getEndSeq());
+        Assert.assertEquals(-1L, eventStore.getAckSequence().get());
+
+        eventStore.subscribe(CLIENT_B, null);
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, eventStore.getFirstPosition(CLIENT_B), bufferSize);
+        Assert.assertEquals(bufferSize / 2, entrysB.getEvents().size());
+        eventStore.stop();
+        metaManager.stop();
+    }
+
+    @Test
+    public void testRestartWithDifferentCursors() {
+        int bufferSize = 16;
+        MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+        metaManager.subscribe(CLIENT_A);
+        metaManager.subscribe(CLIENT_B);
+        // 重启之前A ack到3，B ack到6，parser从最慢的A之后开始dump
+        Position cursorA = CanalEventUtils.createPosition(buildEvent("1", 3L, 3L));
+        Position cursorB = CanalEventUtils.createPosition(buildEvent("1", 6L, 6L));
+        metaManager.updateCursor(CLIENT_A, cursorA);
+        metaManager.updateCursor(CLIENT_B, cursorB);
+
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.setDestination("example");
+        eventStore.setCanalMetaManager(metaManager);
+        eventStore.start();
+
+        for (int i = 4; i <= 10; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", i, i)));
+        }
+        // B还没有连接，已经ack过的4~6不会被A以外的订阅者限制
+        Assert.assertEquals(-1L, eventStore.getAckSequence().get());
+
+        eventStore.subscribe(CLIENT_B, cursorB);
+        eventStore.subscribe(CLIENT_A, cursorA);
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, cursorA, bufferSize);
+        Assert.assertEquals(7, entrysA.getEvents().size());
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 4L, 4L)), entrysA.getPositionRange()
+            .getStart());
+        // B从自己的cursor之后继续，不会重复消费已经ack的数据
+        Events<Event> entrysB = eventStore.tryGet(CLIENT_B, cursorB, bufferSize);
+        Assert.assertEquals(4, entrysB.getEvents().size());
+        Assert.assertEquals(CanalEventUtils.createPosition(buildEvent("1", 7L, 7L)), entrysB.getPositionRange()
+            .getStart());
+
+        eventStore.ack(CLIENT_A, entrysA.getPositionRange().getEnd(), entrysA.getPositionRange().getEndSeq());
+        eventStore.ack(CLIENT_B, entrysB.getPositionRange().getEnd(), entrysB.getPositionRange().getEndSeq());
+        Assert.assertEquals(6L, eventStore.getAckSequence().get());
+        eventStore.stop();
+        metaManager.stop();
+    }
+
+    @Test
+    public void testEvictDetachedSubscriber() {
+        int bufferSize = 16;
+        MemoryMetaManager metaManager = new MemoryMetaManager();
+        metaManager.start();
+        metaManager.subscribe(CLIENT_B);
+
+        MemoryEventStoreWithFanout eventStore = new MemoryEventStoreWithFanout();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.setDestination("example");
+        eventStore.setCanalMetaManager(metaManager);
+        eventStore.setSubscriberTimeout(200);
+        eventStore.start();
+        eventStore.subscribe(CLIENT_A);
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + i, 1L + i)));
+        }
+        Position first = eventStore.getFirstPosition(CLIENT_A);
+        Events<Event> entrysA = eventStore.tryGet(CLIENT_A, first, bufferSize);
+        eventStore.ack(CLIENT_A, entrysA.getPositionRange().getEnd(), entrysA.getPositionRange().getEndSeq());
+
+        // B一直没有连接，超时之前依旧限制写入
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L + bufferSize, 1L + bufferSize)));
+        sleep(300L);
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L + bufferSize, 1L + bufferSize)));
+        Assert.assertEquals(bufferSize - 1L, eventStore.getAckSequence().get());
+        eventStore.stop();
+        metaManager.stop();
+    }
+}
@@ -0,0 +1,208 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithSequenceBarrier;
+import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试无锁store的put / get / ack / rollback操作
+ *
+ * @version 1.1.4
+ */
+public class MemoryEventStoreWithSequenceBarrierTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testFullPutBatchGetAndAck() {
+        int bufferSize = 16;
+        MemoryEventStoreWithSequenceBarrier eventStore = new MemoryEventStoreWithSequenceBarrier();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+
+        Position first = eventStore.getFirstPosition();
+        Position lastest = eventStore.getLatestPosition();
+        Assert.assertEquals(first, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(lastest, CanalEventUtils.createPosition(buildEvent("1", 1L, 1L + bufferSize - 1)));
+
+        Events<Event> entrys = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(bufferSize, entrys.getEvents().size());
+        Assert.assertEquals(first, entrys.getPositionRange().getStart());
+        Assert.assertEquals(lastest, entrys.getPositionRange().getEnd());
+
+        // get之后未ack，依旧不能写入
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+        eventStore.ack(entrys.getPositionRange().getEnd());
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + bufferSize)));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testRollback() {
+        int bufferSize = 16;
+        MemoryEventStoreWithSequenceBarrier eventStore = new MemoryEventStoreWithSequenceBarrier();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Events<Event> entrys1 = eventStore.tryGet(first, 2);
+        Assert.assertEquals(2, entrys1.getEvents().size());
+        eventStore.ack(entrys1.getPositionRange().getEnd());
+
+        Events<Event> entrys2 = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(bufferSize / 2 - 2, entrys2.getEvents().size());
+        Assert.assertTrue(eventStore.tryGet(first, bufferSize).getEvents().isEmpty());
+
+        eventStore.rollback();
+        Events<Event> entrys3 = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(entrys2.getPositionRange().getStart(), entrys3.getPositionRange().getStart());
+        Assert.assertEquals(entrys2.getPositionRange().getEnd(), entrys3.getPositionRange().getEnd());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testBlockGetWithTimeout() throws Exception {
+        MemoryEventStoreWithSequenceBarrier eventStore = new MemoryEventStoreWithSequenceBarrier();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        long start = System.currentTimeMillis();
+        // 不足batchSize，超时之后有多少取多少
+        Events<Event> entrys = eventStore.get(null, 10, 200L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200L);
+        Assert.assertEquals(1, entrys.getEvents().size());
+
+        Assert.assertTrue(eventStore.put(buildEvent("1", 1L, 2L), 0L, TimeUnit.MILLISECONDS));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testMultiReaderMemSize() throws Exception {
+        final int count = 100000;
+        final int readers = 4;
+        final MemoryEventStoreWithSequenceBarrier eventStore = new MemoryEventStoreWithSequenceBarrier();
+        eventStore.setBufferSize(1024);
+        eventStore.setBatchMode(BatchMode.MEMSIZE);
+        eventStore.start();
+
+        final ConcurrentMap<Long, Boolean> result = new ConcurrentHashMap<Long, Boolean>();
+        final AtomicInteger duplicate = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(readers);
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        executor.submit(new Runnable() {
+
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        eventStore.put(buildEvent("1", i, i, 128L));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < readers; i++) {
+            executor.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        while (result.size() < count) {
+                            Events<Event> entrys = eventStore.tryGet(null, 8);
+                            if (entrys.getEvents().isEmpty()) {
+                                Thread.yield();
+                                continue;
+                            }
+
+                            for (Event event : entrys.getEvents()) {
+                                if (result.putIfAbsent(event.getPosition(), Boolean.TRUE) != null) {
+                                    duplicate.incrementAndGet();
+                                }
+                            }
+
+                            try {
+                                eventStore.ack(entrys.getPositionRange().getEnd(), entrys.getPositionRange()
+                                    .getEndSeq());
+                            } catch (CanalStoreException e) {
+                                // 其他reader已经ack到更大的位置
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        executor.shutdownNow();
+        Assert.assertEquals(0, duplicate.get());
+        Assert.assertEquals(count, result.size());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testWrapAfterAckMemSize() throws Exception {
+        final int count = 100000;
+        final MemoryEventStoreWithSequenceBarrier eventStore = new MemoryEventStoreWithSequenceBarrier();
+        eventStore.setBufferSize(16);
+        eventStore.setBatchMode(BatchMode.MEMSIZE);
+        eventStore.start();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(new Runnable() {
+
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        eventStore.put(buildEvent("1", i, i, 128L));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+
+        // ack之后put立即复用slot，ack释放内存时不能清掉新写入的event
+        long expected = 0;
+        long deadline = System.currentTimeMillis() + 60 * 1000L;
+        while (expected < count) {
+            Assert.assertTrue("get blocked at " + expected, System.currentTimeMillis() < deadline);
+            Events<Event> entrys = eventStore.get(null, 4, 100L, TimeUnit.MILLISECONDS);
+            if (entrys.getEvents().isEmpty()) {
+                continue;
+            }
+
+            for (Event event : entrys.getEvents()) {
+                Assert.assertEquals(expected++, event.getPosition());
+            }
+            eventStore.ack(entrys.getPositionRange().getEnd(), entrys.getPositionRange().getEndSeq());
+        }
+
+        executor.shutdownNow();
+        eventStore.stop();
+    }
+}